@@ -0,0 +1,77 @@
+package benchmarks;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Block;
+import listeners.BlockRemover;
+import listeners.Counter;
+import listeners.PrintingHitListener;
+import listeners.ScoreTrackingListener;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * The BlockFootprint class measures the heap retained per block, for blocks wired with the same three
+ * listeners Game.initialize gives them. It builds the blocks, collects garbage before and after, and reports
+ * the growth of the used heap divided by the number of blocks. Run it with a heap large enough for the blocks:
+ * <pre>
+ * java -Xmx2g -cp target/benchmarks.jar benchmarks.BlockFootprint [blocks]
+ * </pre>
+ */
+public final class BlockFootprint {
+    private static final int DEFAULT_BLOCKS = 1_000_000;
+    private static final int COLUMNS = 1000;
+
+    /**
+     * Prevents instantiation of this entry point.
+     */
+    private BlockFootprint() {
+    }
+
+    /**
+     * Measures and prints the heap retained per block.
+     *
+     * @param args The number of blocks to build, 1,000,000 by default.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BLOCKS;
+        Color[] colors = {Color.GRAY, Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.PINK};
+        PrintingHitListener printing = new PrintingHitListener();
+        BlockRemover remover = new BlockRemover(null, new Counter());
+        ScoreTrackingListener score = new ScoreTrackingListener(new Counter());
+
+        long before = usedHeap();
+        Block[] blocks = new Block[count];
+        for (int i = 0; i < count; i++) {
+            int row = i / COLUMNS;
+            int column = i % COLUMNS;
+            blocks[i] = new Block(new Rectangle(new Point(column * 40, row * 15), 40, 15),
+                    colors[row % colors.length], true, false);
+            blocks[i].addHitListener(printing);
+            blocks[i].addHitListener(remover);
+            blocks[i].addHitListener(score);
+        }
+        long after = usedHeap();
+        double perBlock = (double) (after - before) / count;
+        System.out.printf("%d blocks retain %.1f MB, %.1f bytes per block (including 4 bytes for the array slot)%n",
+                count, (after - before) / 1e6, perBlock);
+        if (blocks[count - 1] == null) {
+            System.out.println(); // Keeps the blocks reachable until they are measured
+        }
+    }
+
+    /**
+     * Returns the used heap after collecting garbage.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
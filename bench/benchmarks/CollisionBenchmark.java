@@ -0,0 +1,129 @@
+package benchmarks;
+
+import game.BlockGrid;
+import game.GameEnvironment;
+import geometry.CollisionInfo;
+import geometry.Line;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import graphics.Block;
+import interfaces.Collidable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CollisionBenchmark class measures collision queries against game environments of several sizes.
+ * The collidables are blocks laid out in a grid of equal cells over the game area, as a level would be,
+ * and are stored either in the tree or in a block grid. The trajectories are ball-sized moves at random
+ * places, so most of them hit nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+    private static final int TRAJECTORIES = 1024;
+
+    @Param({"16", "256", "4096"})
+    private int collidables;
+
+    @Param({"tree", "grid"})
+    private String storage;
+
+    private GameEnvironment environment;
+    private Line[] trajectories;
+    private RayHit rayHit;
+    private int next;
+
+    /**
+     * Creates the environment and the random trajectories.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int columns = (int) Math.ceil(Math.sqrt(collidables * 4.0 / 3.0));
+        int rows = (collidables + columns - 1) / columns;
+        double cellWidth = 800.0 / columns;
+        double cellHeight = 600.0 / rows;
+        environment = new GameEnvironment();
+        if (storage.equals("grid")) {
+            environment.setBlockGrid(new BlockGrid(0, 0, cellWidth, cellHeight, columns, rows));
+        }
+        for (int i = 0; i < collidables; i++) {
+            double x = (i % columns) * cellWidth;
+            double y = (i / columns) * cellHeight;
+            Rectangle rect = new Rectangle(new Point(x + cellWidth / 4, y + cellHeight / 4),
+                    cellWidth / 2, cellHeight / 2);
+            environment.addCollidable(new Block(rect, Color.RED, true, false));
+        }
+
+        trajectories = new Line[TRAJECTORIES];
+        for (int i = 0; i < TRAJECTORIES; i++) {
+            double x = random.nextDouble() * 800;
+            double y = random.nextDouble() * 600;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            trajectories[i] = new Line(x, y, x + 6 * Math.cos(angle), y + 6 * Math.sin(angle));
+        }
+        rayHit = new RayHit();
+    }
+
+    /**
+     * Returns the next trajectory.
+     *
+     * @return The next trajectory.
+     */
+    private Line nextTrajectory() {
+        next = (next + 1) & (TRAJECTORIES - 1);
+        return trajectories[next];
+    }
+
+    /**
+     * Measures GameEnvironment.getClosestCollision.
+     *
+     * @return The closest collision, or null.
+     */
+    @Benchmark
+    public CollisionInfo getClosestCollision() {
+        return environment.getClosestCollision(nextTrajectory());
+    }
+
+    /**
+     * Measures GameEnvironment.closestHit, the allocation-free ray query behind getClosestCollision.
+     *
+     * @return The collidable that was hit, or null.
+     */
+    @Benchmark
+    public Collidable closestHit() {
+        Line line = nextTrajectory();
+        return environment.closestHit(line.start().getX(), line.start().getY(),
+                line.end().getX() - line.start().getX(), line.end().getY() - line.start().getY(), rayHit);
+    }
+
+    /**
+     * Measures GameEnvironment.closestSweep for a ball of radius 5.
+     *
+     * @return The collidable that was hit, or null.
+     */
+    @Benchmark
+    public Collidable closestSweep() {
+        Line line = nextTrajectory();
+        return environment.closestSweep(line.start().getX(), line.start().getY(),
+                line.end().getX() - line.start().getX(), line.end().getY() - line.start().getY(), 5, rayHit);
+    }
+}
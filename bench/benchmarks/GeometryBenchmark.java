@@ -0,0 +1,121 @@
+package benchmarks;
+
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GeometryBenchmark class measures the basic geometry operations used by collision detection.
+ * Each benchmark cycles through a fixed set of random inputs, so the branches taken vary from call to call
+ * the way they do in a game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryBenchmark {
+    private static final int INPUTS = 1024;
+
+    private Line[] lines;
+    private Line[] otherLines;
+    private Rectangle[] rectangles;
+    private Point[] points;
+    private int next;
+
+    /**
+     * Creates the random inputs. Half of the line pairs cross, and most lines cross their rectangle.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lines = new Line[INPUTS];
+        otherLines = new Line[INPUTS];
+        rectangles = new Rectangle[INPUTS];
+        points = new Point[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            double x = random.nextDouble() * 800;
+            double y = random.nextDouble() * 600;
+            double dx = random.nextDouble() * 40 - 20;
+            double dy = random.nextDouble() * 40 - 20;
+            lines[i] = new Line(x, y, x + dx, y + dy);
+            if (i % 2 == 0) {
+                otherLines[i] = new Line(x + dy / 2 + dx / 2, y - dx / 2 + dy / 2, x - dy / 2 + dx / 2,
+                        y + dx / 2 + dy / 2);
+            } else {
+                otherLines[i] = new Line(x + 30, y + 30, x + 30 + dy, y + 30 - dx);
+            }
+            rectangles[i] = new Rectangle(new Point(x + dx / 2 - 10, y + dy / 2 - 5), 20, 10);
+            points[i] = new Point(random.nextDouble() * 800, random.nextDouble() * 600);
+        }
+    }
+
+    /**
+     * Returns the index of the next input.
+     *
+     * @return The index of the next input.
+     */
+    private int nextIndex() {
+        next = (next + 1) & (INPUTS - 1);
+        return next;
+    }
+
+    /**
+     * Measures Line.intersectionWith.
+     *
+     * @return The intersection point, or null.
+     */
+    @Benchmark
+    public Point lineIntersectionWith() {
+        int i = nextIndex();
+        return lines[i].intersectionWith(otherLines[i]);
+    }
+
+    /**
+     * Measures Line.closestIntersectionToStartOfLine.
+     *
+     * @return The closest intersection point, or null.
+     */
+    @Benchmark
+    public Point lineClosestIntersectionToStartOfLine() {
+        int i = nextIndex();
+        return lines[i].closestIntersectionToStartOfLine(rectangles[i]);
+    }
+
+    /**
+     * Measures Rectangle.intersectionPoints.
+     *
+     * @return The intersection points.
+     */
+    @Benchmark
+    public List<Point> rectangleIntersectionPoints() {
+        int i = nextIndex();
+        return rectangles[i].intersectionPoints(lines[i]);
+    }
+
+    /**
+     * Measures Point.distance.
+     *
+     * @return The distance.
+     */
+    @Benchmark
+    public double pointDistance() {
+        int i = nextIndex();
+        return points[i].distance(points[(i + 1) & (INPUTS - 1)]);
+    }
+}
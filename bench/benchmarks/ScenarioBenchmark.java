@@ -0,0 +1,435 @@
+package benchmarks;
+
+import biuoop.KeyboardSensor;
+import com.sun.management.ThreadMXBean;
+import game.Game;
+import game.LatencyHistogram;
+import game.LevelGenerator;
+import game.LevelWriter;
+import game.ScriptedKeyboard;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * The ScenarioBenchmark class measures whole games, end to end, where the JMH benchmarks measure single calls.
+ * Each scenario plays the real game headless, with every ball, block, listener and the paddle, for a fixed
+ * number of ticks after a warm-up. It reports the ticks played per second, the bytes allocated per tick and
+ * the 50th and 99th percentiles of the time of a tick, prints them as a table and writes them to a CSV file.
+ * <p>
+ * The results are checked against a baseline CSV file of thresholds: the fewest ticks per second, the most
+ * bytes per tick and the slowest 99th percentile tick each scenario may have. If any scenario is past its
+ * thresholds, the run exits with status 1. The thresholds it writes with --update-baseline give the measured
+ * numbers some headroom: timing is noisy, and allocation is not.
+ * <p>
+ * Bytes per tick are the same on every machine, but timings are not, so the timing thresholds are scaled to the
+ * machine that runs the check. Before the scenarios, every run times a calibration workload that does not use
+ * the game: sorting a fixed array of doubles, best of several rounds. The baseline keeps the speed of that
+ * workload on the machine the thresholds were taken on, in a row named calibration, and a machine that sorts
+ * twice as fast must play twice as many ticks per second, with half the p99 tick time. A baseline without that
+ * row is checked as it is.
+ * <pre>
+ * java -cp target/benchmarks.jar benchmarks.ScenarioBenchmark [options] [scenario regex]
+ *   --baseline file     the thresholds to check against, bench/scenario-baseline.csv by default
+ *   --csv file          the file to write the results to, scenarios.csv by default
+ *   --update-baseline   write the thresholds of this run to the baseline file instead of checking them
+ * </pre>
+ * The output of the listeners that print hits is thrown away while a scenario runs.
+ */
+public final class ScenarioBenchmark {
+    private static final String DEFAULT_BASELINE = "bench/scenario-baseline.csv";
+    private static final String DEFAULT_CSV = "scenarios.csv";
+    private static final String CSV_HEADER = "scenario,ticks,seconds,ticks_per_second,bytes_per_tick,"
+            + "allocated_mb_per_second,p50_tick_ns,p99_tick_ns,max_tick_ns,status";
+    private static final String BASELINE_HEADER = "scenario,min_ticks_per_second,max_bytes_per_tick,max_p99_tick_ns";
+    private static final double SPEED_HEADROOM = 0.7;
+    private static final double P99_HEADROOM = 2.0;
+    private static final double ALLOCATION_HEADROOM = 1.1;
+    private static final double ALLOCATION_SLACK = 256;
+    private static final String CALIBRATION = "calibration";
+    private static final int CALIBRATION_SIZE = 1 << 16;
+    private static final int CALIBRATION_ROUNDS = 300;
+
+    /**
+     * Prevents instantiation of this entry point.
+     */
+    private ScenarioBenchmark() {
+    }
+
+    /**
+     * Runs the scenarios, writes the results and checks them against the baseline.
+     *
+     * @param args The options and an optional regular expression selecting scenarios by name.
+     * @throws IOException If the baseline or the results cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path baselinePath = Paths.get(DEFAULT_BASELINE);
+        Path csvPath = Paths.get(DEFAULT_CSV);
+        boolean update = false;
+        Pattern filter = Pattern.compile(".*");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--baseline") && i + 1 < args.length) {
+                baselinePath = Paths.get(args[++i]);
+            } else if (args[i].equals("--csv") && i + 1 < args.length) {
+                csvPath = Paths.get(args[++i]);
+            } else if (args[i].equals("--update-baseline")) {
+                update = true;
+            } else {
+                filter = Pattern.compile(args[i]);
+            }
+        }
+
+        Map<String, double[]> baseline = new HashMap<>();
+        if (!update && Files.exists(baselinePath)) {
+            baseline = readBaseline(baselinePath);
+        }
+        double calibration = calibrate();
+        double speedup = 1;
+        double[] reference = baseline.remove(CALIBRATION);
+        if (reference != null) {
+            speedup = calibration / reference[0];
+        }
+        System.out.printf("Calibration: %.0f doubles sorted per second, %.2fx the machine of the baseline%n",
+                calibration, speedup);
+        List<Result> results = new ArrayList<>();
+        boolean regressed = false;
+        System.out.printf("%-20s %10s %12s %12s %12s %12s  %s%n", "scenario", "ticks", "ticks/s", "bytes/tick",
+                "p50 tick ns", "p99 tick ns", "status");
+        for (Scenario scenario : scenarios()) {
+            if (!filter.matcher(scenario.name).find()) {
+                continue;
+            }
+            Result result = run(scenario);
+            result.check(baseline.get(scenario.name), speedup);
+            regressed |= result.status.startsWith("REGRESSED");
+            results.add(result);
+            System.out.printf("%-20s %10d %12.0f %12.0f %12d %12d  %s%n", scenario.name, result.ticks,
+                    result.ticksPerSecond(), result.bytesPerTick(), result.histogram.getPercentile(50),
+                    result.histogram.getPercentile(99), result.status);
+        }
+
+        writeResults(csvPath, results);
+        System.out.println("Wrote " + csvPath);
+        if (update) {
+            writeBaseline(baselinePath, calibration, results);
+            System.out.println("Wrote the thresholds of this run to " + baselinePath);
+        } else if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the scenarios, in the order they are run.
+     *
+     * @return The scenarios.
+     */
+    private static List<Scenario> scenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        // The classic level, game after game, with the random player of Arkanoid --headless
+        scenarios.add(new Scenario("classic", null, 0, 1_000_000, 200_000, false));
+
+        LevelGenerator balls = new LevelGenerator(LevelGenerator.Layout.GRID, 450, 1000, 1);
+        balls.setClosed(true);
+        balls.setMaxHitPoints(LevelWriter.MAX_HIT_POINTS);
+        scenarios.add(new Scenario("balls-1k", balls.generate(), 0, 10_000, 2_000, false));
+
+        LevelGenerator grid = new LevelGenerator(LevelGenerator.Layout.GRID, 100_000, 8, 1);
+        grid.setClosed(true);
+        scenarios.add(new Scenario("grid-100k", grid.generate(), 0, 100_000, 20_000, false));
+
+        LevelGenerator clusters = new LevelGenerator(LevelGenerator.Layout.CLUSTERS, 100_000, 8, 1);
+        clusters.setClosed(true);
+        clusters.setMixedSizes(true);
+        clusters.setMaxHitPoints(3);
+        scenarios.add(new Scenario("clusters-100k", clusters.generate(), 0, 20_000, 5_000, false));
+
+        // A few tough blocks in a closed level keep three balls in play for the whole run
+        LevelGenerator rally = new LevelGenerator(LevelGenerator.Layout.GRID, 90, 3, 1);
+        rally.setClosed(true);
+        rally.setMaxHitPoints(LevelWriter.MAX_HIT_POINTS);
+        scenarios.add(new Scenario("long-rally", rally.generate(), 0, 1_000_000, 200_000, false));
+
+        // Ten thousand balls spawned into the ball system, which moves them with its batch kernel
+        scenarios.add(new Scenario("ball-system-10k", rally.generate(), 10_000, 2_000, 1_000, false));
+
+        // The same balls bouncing off each other, found by the sort and sweep of the ball system
+        scenarios.add(new Scenario("ball-collisions-5k", rally.generate(), 5_000, 2_000, 1_000, true));
+        return scenarios;
+    }
+
+    /**
+     * Runs a scenario: plays its warm-up ticks, and then measures its ticks.
+     *
+     * @param scenario The scenario.
+     * @return The measurements.
+     */
+    private static Result run(Scenario scenario) {
+        Result result = new Result(scenario.name);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            play(scenario, scenario.warmupTicks, new Result(scenario.name));
+            System.gc();
+            play(scenario, scenario.ticks, result);
+        } finally {
+            System.setOut(out);
+        }
+        return result;
+    }
+
+    /**
+     * Plays games of a scenario until the given number of ticks has been played, starting a new game whenever
+     * one ends. Only the ticks are measured, not the loading of the levels.
+     *
+     * @param scenario The scenario.
+     * @param ticks    The number of ticks to play.
+     * @param result   The measurements to add to.
+     */
+    private static void play(Scenario scenario, long ticks, Result result) {
+        String[] moves = {null, KeyboardSensor.LEFT_KEY, KeyboardSensor.RIGHT_KEY};
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] lastTick = new long[1];
+        int games = 0;
+        while (result.ticks < ticks) {
+            ScriptedKeyboard keyboard = new ScriptedKeyboard();
+            Random random = new Random(games++);
+            Game game = new Game(keyboard);
+            if (scenario.level == null) {
+                game.initialize();
+            } else {
+                game.loadLevel(scenario.level);
+            }
+            game.setBallCollisions(scenario.ballCollisions);
+            for (int b = 0; b < scenario.spawnedBalls; b++) {
+                game.spawnBall(40 + random.nextDouble() * 720, 460 + random.nextDouble() * 80, 3, Color.WHITE,
+                        random.nextDouble() * 6 - 3, -1 - random.nextDouble() * 3);
+            }
+            int maxTicks = (int) Math.min(Integer.MAX_VALUE, ticks - result.ticks);
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            lastTick[0] = start;
+            result.ticks += game.simulate(maxTicks, tick -> {
+                long now = System.nanoTime();
+                if (tick > 0) {
+                    result.histogram.record(now - lastTick[0]);
+                }
+                lastTick[0] = now;
+                if (tick % 30 == 0) {
+                    keyboard.releaseAll();
+                    String move = moves[random.nextInt(moves.length)];
+                    if (move != null) {
+                        keyboard.press(move);
+                    }
+                }
+            });
+            result.nanos += System.nanoTime() - start;
+            result.allocatedBytes += threads.getThreadAllocatedBytes(thread) - allocated;
+        }
+    }
+
+    /**
+     * Times the calibration workload: sorting a fixed array of random doubles. The fastest of several rounds
+     * is taken, since a round can only be slowed down by the rest of the machine, never sped up.
+     *
+     * @return The number of doubles sorted per second in the fastest round.
+     */
+    private static double calibrate() {
+        double[] data = new Random(1).doubles(CALIBRATION_SIZE).toArray();
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            double[] copy = data.clone();
+            long start = System.nanoTime();
+            Arrays.sort(copy);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return CALIBRATION_SIZE / (fastest / 1e9);
+    }
+
+    /**
+     * Reads the thresholds of a baseline file.
+     *
+     * @param path The baseline file.
+     * @return The thresholds of each scenario: ticks per second, bytes per tick and p99 tick time, and the speed
+     *         of the calibration workload as the ticks per second of the calibration row, if there is one.
+     * @throws IOException If the file cannot be read or a line is malformed.
+     */
+    private static Map<String, double[]> readBaseline(Path path) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(",");
+            if (fields.length != 4) {
+                throw new IOException("Malformed line " + (i + 1) + " in baseline " + path);
+            }
+            try {
+                baseline.put(fields[0], new double[] {Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3])});
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed line " + (i + 1) + " in baseline " + path, e);
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes the thresholds of the given results, with headroom, as a baseline file, after the speed of the
+     * calibration workload on this machine.
+     *
+     * @param path        The baseline file.
+     * @param calibration The number of doubles sorted per second by the calibration workload.
+     * @param results     The results.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void writeBaseline(Path path, double calibration, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println(BASELINE_HEADER);
+            out.printf(Locale.ROOT, "%s,%.0f,0,0%n", CALIBRATION, calibration);
+            for (Result result : results) {
+                out.printf(Locale.ROOT, "%s,%.0f,%.0f,%d%n", result.name, result.ticksPerSecond() * SPEED_HEADROOM,
+                        result.bytesPerTick() * ALLOCATION_HEADROOM + ALLOCATION_SLACK,
+                        (long) (result.histogram.getPercentile(99) * P99_HEADROOM));
+            }
+        }
+    }
+
+    /**
+     * Writes the results to a CSV file.
+     *
+     * @param path    The CSV file.
+     * @param results The results.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void writeResults(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println(CSV_HEADER);
+            for (Result result : results) {
+                out.printf(Locale.ROOT, "%s,%d,%.3f,%.0f,%.1f,%.1f,%d,%d,%d,%s%n", result.name, result.ticks,
+                        result.nanos / 1e9, result.ticksPerSecond(), result.bytesPerTick(),
+                        result.allocatedBytes / 1e6 / (result.nanos / 1e9), result.histogram.getPercentile(50),
+                        result.histogram.getPercentile(99), result.histogram.getMax(), result.status);
+            }
+        }
+    }
+
+    /**
+     * The Scenario class names a level, the balls to spawn on it and the number of ticks to play on it.
+     */
+    private static final class Scenario {
+        private String name;
+        private LevelWriter level;
+        private int spawnedBalls;
+        private long ticks;
+        private long warmupTicks;
+        private boolean ballCollisions;
+
+        /**
+         * Constructs a Scenario.
+         *
+         * @param name           The name of the scenario.
+         * @param level          The level to play, or null for the classic level.
+         * @param spawnedBalls   The number of balls to spawn into the ball system of each game.
+         * @param ticks          The number of ticks to measure.
+         * @param warmupTicks    The number of ticks to play before measuring.
+         * @param ballCollisions Whether the spawned balls bounce off each other.
+         */
+        Scenario(String name, LevelWriter level, int spawnedBalls, long ticks, long warmupTicks,
+                 boolean ballCollisions) {
+            this.name = name;
+            this.level = level;
+            this.spawnedBalls = spawnedBalls;
+            this.ticks = ticks;
+            this.warmupTicks = warmupTicks;
+            this.ballCollisions = ballCollisions;
+        }
+    }
+
+    /**
+     * The Result class holds the measurements of a scenario and the outcome of checking them against the baseline.
+     */
+    private static final class Result {
+        private String name;
+        private LatencyHistogram histogram;
+        private long ticks;
+        private long nanos;
+        private long allocatedBytes;
+        private String status;
+
+        /**
+         * Constructs an empty Result.
+         *
+         * @param name The name of the scenario.
+         */
+        Result(String name) {
+            this.name = name;
+            this.histogram = new LatencyHistogram();
+            this.ticks = 0;
+            this.nanos = 0;
+            this.allocatedBytes = 0;
+            this.status = "";
+        }
+
+        /**
+         * Returns the number of ticks played per second.
+         *
+         * @return The ticks per second.
+         */
+        private double ticksPerSecond() {
+            return ticks / (nanos / 1e9);
+        }
+
+        /**
+         * Returns the number of bytes allocated per tick.
+         *
+         * @return The bytes per tick.
+         */
+        private double bytesPerTick() {
+            return (double) allocatedBytes / ticks;
+        }
+
+        /**
+         * Checks the measurements against the thresholds of the scenario and sets the status: "ok", "no baseline",
+         * or "REGRESSED" with the measurements that are past their thresholds.
+         *
+         * @param thresholds The fewest ticks per second, the most bytes per tick and the slowest p99 tick time,
+         *                   or null if the baseline has no thresholds for the scenario.
+         * @param speedup    How many times faster this machine is than the one the thresholds were taken on,
+         *                   which scales the timing thresholds but not the allocation threshold.
+         */
+        private void check(double[] thresholds, double speedup) {
+            if (thresholds == null) {
+                status = "no baseline";
+                return;
+            }
+            StringBuilder failures = new StringBuilder();
+            double minTicksPerSecond = thresholds[0] * speedup;
+            double maxP99 = thresholds[2] / speedup;
+            if (ticksPerSecond() < minTicksPerSecond) {
+                failures.append(String.format(Locale.ROOT, " ticks/s<%.0f", minTicksPerSecond));
+            }
+            if (bytesPerTick() > thresholds[1]) {
+                failures.append(String.format(Locale.ROOT, " bytes/tick>%.0f", thresholds[1]));
+            }
+            if (histogram.getPercentile(99) > maxP99) {
+                failures.append(String.format(Locale.ROOT, " p99>%.0fns", maxP99));
+            }
+            status = failures.length() == 0 ? "ok" : "REGRESSED:" + failures;
+        }
+    }
+}
@@ -1,4 +1,18 @@
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+import game.Game;
+import game.InputLog;
+import game.LevelGenerator;
+import game.LevelWriter;
 import game.Menu;
+import game.ScriptedKeyboard;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
 /**
  * The Ass5Game class serves as the entry point for the Arkanoid game application.
@@ -9,11 +23,205 @@ public class Arkanoid {
     /**
      * The main method is the entry point of the application.
      * It creates an instance of the Game class, initializes it, and starts the game loop.
+     * With the arguments "--headless games [maxTicks]" it instead simulates the given number of games
+     * without a display, with a random paddle player, and prints a summary.
+     * With the arguments "--replay file [speed]" it replays an input log recorded with -Darkanoid.record=file:
+     * without a speed as fast as possible and without a display, and otherwise on a GUI at the given speed.
+     * The replay checks that the game ends with the recorded score.
+     * With the arguments "--restore file" it plays a game saved by pressing S on a GUI, from where it was saved.
+     * With the arguments "--level file" it plays a level file on a GUI, and with "--export-level file" it writes
+     * the classic level to a level file, as a starting point for new levels.
+     * With the arguments "--generate file layout blocks balls [seed [maxHitPoints [mixed] [closed]]]" it writes
+     * a level built by LevelGenerator to a level file, where the layout is grid, random or clusters.
      *
-     * @param args Command line arguments (not used).
+     * @param args Command line arguments.
      */
     public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--headless")) {
+            int games = Integer.parseInt(args[1]);
+            int maxTicks = args.length >= 3 ? Integer.parseInt(args[2]) : 100000;
+            simulate(games, maxTicks);
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--replay")) {
+            double speed = args.length >= 3 ? Double.parseDouble(args[2]) : 0;
+            try {
+                if (!replay(args[1], speed)) {
+                    System.exit(1);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read the input log " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--restore")) {
+            try {
+                restore(args[1]);
+            } catch (IOException e) {
+                System.err.println("Could not restore the game from " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length >= 2 && (args[0].equals("--level") || args[0].equals("--export-level"))) {
+            try {
+                if (args[0].equals("--level")) {
+                    playLevel(args[1]);
+                } else {
+                    Game.classicLevel().write(Paths.get(args[1]));
+                }
+            } catch (IOException e) {
+                System.err.println("Could not " + (args[0].equals("--level") ? "read" : "write") + " the level "
+                        + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length >= 5 && args[0].equals("--generate")) {
+            try {
+                generate(args);
+            } catch (IOException e) {
+                System.err.println("Could not write the level " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         Menu menu = new Menu();
         menu.showMenu();
     }
+
+    /**
+     * Simulates games without a display. Game number i is played by a random player seeded with i,
+     * which picks a new paddle direction every 30 ticks.
+     *
+     * @param games    The number of games to simulate.
+     * @param maxTicks The largest number of ticks to play in each game.
+     */
+    private static void simulate(int games, int maxTicks) {
+        long startTime = System.nanoTime();
+        long totalTicks = 0;
+        long totalScore = 0;
+        int cleared = 0;
+        String[] moves = {null, KeyboardSensor.LEFT_KEY, KeyboardSensor.RIGHT_KEY};
+        for (int i = 0; i < games; i++) {
+            ScriptedKeyboard keyboard = new ScriptedKeyboard();
+            Random random = new Random(i);
+            Game game = new Game(keyboard);
+            game.getInputLog().setSeed(i);
+            game.initialize();
+            totalTicks += game.simulate(maxTicks, tick -> {
+                if (tick % 30 == 0) {
+                    keyboard.releaseAll();
+                    String move = moves[random.nextInt(moves.length)];
+                    if (move != null) {
+                        keyboard.press(move);
+                    }
+                }
+            });
+            totalScore += game.getScore().getValue();
+            if (game.isCleared()) {
+                cleared++;
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%d games, %d cleared, average score %.1f, %d ticks in %.2f s (%.0f games/s)%n",
+                games, cleared, (double) totalScore / Math.max(1, games), totalTicks, seconds, games / seconds);
+    }
+
+    /**
+     * Restores a saved game and plays it on a GUI until it ends.
+     *
+     * @param file The save state to restore.
+     * @throws IOException If the save state cannot be read.
+     */
+    private static void restore(String file) throws IOException {
+        GUI gui = new GUI("Arkanoid", 800, 600);
+        Game game = new Game(gui);
+        long startTime = System.nanoTime();
+        game.restore(Paths.get(file));
+        System.out.printf("Restored %s in %.1f ms%n", file, (System.nanoTime() - startTime) / 1e6);
+        boolean won = game.run();
+        System.out.printf("You %s with a score of %d%n", won ? "won" : "lost", game.getScore().getValue());
+        gui.close();
+        System.exit(0);
+    }
+
+    /**
+     * Loads a level file and plays it on a GUI until it ends.
+     *
+     * @param file The level file to play.
+     * @throws IOException If the level file cannot be read.
+     */
+    private static void playLevel(String file) throws IOException {
+        GUI gui = new GUI("Arkanoid", 800, 600);
+        Game game = new Game(gui);
+        long startTime = System.nanoTime();
+        game.loadLevel(Paths.get(file));
+        System.out.printf("Loaded %s in %.1f ms%n", file, (System.nanoTime() - startTime) / 1e6);
+        boolean won = game.run();
+        System.out.printf("You %s with a score of %d%n", won ? "won" : "lost", game.getScore().getValue());
+        gui.close();
+        System.exit(0);
+    }
+
+    /**
+     * Builds a level with LevelGenerator and writes it to a level file.
+     *
+     * @param args The arguments: "--generate file layout blocks balls [seed [maxHitPoints [mixed] [closed]]]".
+     * @throws IOException If the level file cannot be written.
+     */
+    private static void generate(String[] args) throws IOException {
+        LevelGenerator generator = new LevelGenerator(LevelGenerator.Layout.valueOf(args[2].toUpperCase(Locale.ROOT)),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]), args.length >= 6 ? Long.parseLong(args[5]) : 0);
+        if (args.length >= 7) {
+            generator.setMaxHitPoints(Integer.parseInt(args[6]));
+        }
+        List<String> options = Arrays.asList(args).subList(Math.min(7, args.length), args.length);
+        generator.setMixedSizes(options.contains("mixed"));
+        generator.setClosed(options.contains("closed"));
+        long startTime = System.nanoTime();
+        LevelWriter level = generator.generate();
+        level.write(Paths.get(args[1]));
+        System.out.printf("Wrote %s to %s in %.1f ms%n", level.getName(), args[1],
+                (System.nanoTime() - startTime) / 1e6);
+    }
+
+    /**
+     * Replays an input log and compares the final score with the recorded one.
+     *
+     * @param file  The input log to replay.
+     * @param speed The speed to show the replay at on a GUI, or 0 to replay it headless as fast as possible.
+     * @return true if the replay ended with the recorded score, false otherwise.
+     * @throws IOException If the input log cannot be read.
+     */
+    private static boolean replay(String file, double speed) throws IOException {
+        InputLog log = InputLog.read(Paths.get(file));
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        GUI gui = speed > 0 ? new GUI("Arkanoid replay", 800, 600) : null;
+        Game game = new Game(gui, keyboard);
+        game.setPhysicsRate(log.getPhysicsRate());
+        game.setScript(log.player(keyboard));
+        if (log.getLayout().equals(Game.CLASSIC_LAYOUT)) {
+            game.initialize();
+        } else if (log.getLayout().startsWith(LevelGenerator.NAME_PREFIX)) {
+            game.loadLevel(LevelGenerator.fromName(log.getLayout()).generate());
+        } else {
+            game.loadLevel(Paths.get(log.getLayout()));
+        }
+        long startTime = System.nanoTime();
+        if (gui != null) {
+            game.setSpeed(speed);
+            game.run();
+            gui.close();
+        } else {
+            game.simulate(log.getTicks(), null);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        int score = game.getScore().getValue();
+        boolean match = score == log.getFinalScore();
+        System.out.printf("Replayed %d ticks of layout %s in %.3f s: score %d, recorded %d (%s)%n", log.getTicks(),
+                log.getLayout(), seconds, score, log.getFinalScore(), match ? "match" : "MISMATCH");
+        return match;
+    }
 }
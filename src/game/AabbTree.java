@@ -0,0 +1,534 @@
+package game;
+
+import interfaces.Collidable;
+import geometry.RayCast;
+import geometry.RayHit;
+import geometry.Rectangle;
+
+import java.util.Arrays;
+
+/**
+ * The AabbTree class is a dynamic bounding volume hierarchy over collidables that may move.
+ * Every leaf stores a "fat" axis-aligned bounding box, the collision rectangle grown by a margin,
+ * so small moves of a collidable do not change the tree at all. Larger moves re-insert the leaf
+ * and rebalance the branch with tree rotations, which keeps queries logarithmic in the number of collidables.
+ * Nodes live in parallel arrays and are addressed by index; the index of a leaf is the proxy id of its collidable.
+ * <p>
+ * The shape of the tree depends on the order collidables were added, moved and removed in. So that queries do
+ * not, every collidable is added with a key, and of two collidables hit at exactly the same time the one with the
+ * smaller key is reported. Every internal node stores the smallest key under it, so ties are found without
+ * visiting subtrees that cannot hold one.
+ */
+public class AabbTree {
+    private static final int NULL_NODE = -1;
+
+    private double margin;
+    private int root;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private int[] keys;
+    private Collidable[] items;
+    private int capacity;
+    private int freeList;
+
+    /**
+     * Constructs an empty AabbTree.
+     *
+     * @param margin The distance by which leaf boxes are grown around their collision rectangles.
+     */
+    public AabbTree(double margin) {
+        this.margin = margin;
+        this.root = NULL_NODE;
+        this.minX = new double[0];
+        this.minY = new double[0];
+        this.maxX = new double[0];
+        this.maxY = new double[0];
+        this.parent = new int[0];
+        this.child1 = new int[0];
+        this.child2 = new int[0];
+        this.height = new int[0];
+        this.keys = new int[0];
+        this.items = new Collidable[0];
+        this.capacity = 0;
+        this.freeList = NULL_NODE;
+        grow(16);
+    }
+
+    /**
+     * Adds a collidable to the tree.
+     *
+     * @param c   The collidable to add.
+     * @param key The key that decides ties between collidables hit at the same time; the smaller key wins.
+     *            It must not change while the collidable is in the tree.
+     * @return The proxy id of the collidable, used to move or remove it later.
+     */
+    public int createProxy(Collidable c, int key) {
+        int leaf = allocateNode();
+        items[leaf] = c;
+        keys[leaf] = key;
+        setFatBox(leaf, c.getCollisionRectangle());
+        insertLeaf(leaf);
+        return leaf;
+    }
+
+    /**
+     * Removes a collidable from the tree.
+     *
+     * @param proxyId The proxy id returned when the collidable was added.
+     */
+    public void destroyProxy(int proxyId) {
+        removeLeaf(proxyId);
+        freeNode(proxyId);
+    }
+
+    /**
+     * Refits the tree after the collision rectangle of a collidable has changed.
+     * If the new rectangle still lies inside the leaf's fat box nothing needs to be done,
+     * otherwise the leaf is re-inserted with a new fat box.
+     *
+     * @param proxyId The proxy id of the collidable that moved.
+     * @return true if the tree structure changed, false otherwise.
+     */
+    public boolean moveProxy(int proxyId) {
+        Rectangle rect = items[proxyId].getCollisionRectangle();
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        if (left >= minX[proxyId] && top >= minY[proxyId] && left + rect.getWidth() <= maxX[proxyId]
+                && top + rect.getHeight() <= maxY[proxyId]) {
+            return false;
+        }
+        removeLeaf(proxyId);
+        setFatBox(proxyId, rect);
+        insertLeaf(proxyId);
+        return true;
+    }
+
+    /**
+     * Returns the height of the tree, where a tree with a single leaf has height zero.
+     *
+     * @return The height of the tree, or -1 if the tree is empty.
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? -1 : height[root];
+    }
+
+    /**
+     * Finds the closest hit along a ray with a collidable in the tree.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param hit    The closest hit found so far, updated if a collidable in the tree is hit closer.
+     * @return The collidable that was hit closer than the previous hit, or null if there is none.
+     */
+    public Collidable closestHit(double startX, double startY, double dx, double dy, RayHit hit) {
+        if (root == NULL_NODE || entryTime(root, startX, startY, dx, dy, 0) >= hit.getT()) {
+            return null;
+        }
+        int leaf = query(root, startX, startY, dx, dy, 0, false, hit, Integer.MIN_VALUE);
+        return leaf == NULL_NODE ? null : items[leaf];
+    }
+
+    /**
+     * Finds the first collidable in the tree that a moving circle runs into.
+     *
+     * @param startX The x-coordinate of the center of the circle at the start of the move.
+     * @param startY The y-coordinate of the center of the circle at the start of the move.
+     * @param dx     The horizontal extent of the move.
+     * @param dy     The vertical extent of the move.
+     * @param radius The radius of the circle.
+     * @param hit    The closest hit found so far, updated if a collidable in the tree is hit closer.
+     * @return The collidable that was hit closer than the previous hit, or null if there is none.
+     */
+    public Collidable closestSweep(double startX, double startY, double dx, double dy, double radius, RayHit hit) {
+        if (root == NULL_NODE || entryTime(root, startX, startY, dx, dy, radius) >= hit.getT()) {
+            return null;
+        }
+        int leaf = query(root, startX, startY, dx, dy, radius, true, hit, Integer.MIN_VALUE);
+        return leaf == NULL_NODE ? null : items[leaf];
+    }
+
+    /**
+     * Searches the subtree rooted at the given node, visiting the child the path enters first
+     * and skipping any child whose box is entered only after the closest hit found so far,
+     * or at the same time if none of its keys is smaller than the key of that hit.
+     *
+     * @param node    The root of the subtree to search.
+     * @param startX  The x-coordinate of the start of the path.
+     * @param startY  The y-coordinate of the start of the path.
+     * @param dx      The horizontal extent of the path.
+     * @param dy      The vertical extent of the path.
+     * @param radius  The distance by which boxes are grown, 0 for a plain ray.
+     * @param sweep   true to use the swept-circle test at the leaves, false to use the ray test.
+     * @param hit     The closest hit found so far.
+     * @param bestKey The key of the collidable of the closest hit so far, or Integer.MIN_VALUE if that hit
+     *                was found outside the tree, which then keeps it on a tie.
+     * @return The leaf in the subtree that was hit closer than the previous hit, or NULL_NODE.
+     */
+    private int query(int node, double startX, double startY, double dx, double dy, double radius,
+                      boolean sweep, RayHit hit, int bestKey) {
+        if (child1[node] == NULL_NODE) {
+            Rectangle rect = items[node].getCollisionRectangle();
+            double left = rect.getUpperLeft().getX() - radius;
+            double top = rect.getUpperLeft().getY() - radius;
+            double right = rect.getUpperLeft().getX() + rect.getWidth() + radius;
+            double bottom = rect.getUpperLeft().getY() + rect.getHeight() + radius;
+            // A leaf with a smaller key than the closest hit so far also takes a hit at the same time
+            double limit = keys[node] < bestKey ? Math.nextUp(hit.getT()) : hit.getT();
+            boolean closer = sweep ? RayCast.sweep(startX, startY, dx, dy, left, top, right, bottom, hit, limit)
+                    : RayCast.cast(startX, startY, dx, dy, left, top, right, bottom, hit, limit);
+            return closer ? node : NULL_NODE;
+        }
+
+        int near = child1[node];
+        int far = child2[node];
+        double tNear = entryTime(near, startX, startY, dx, dy, radius);
+        double tFar = entryTime(far, startX, startY, dx, dy, radius);
+        if (tFar < tNear) {
+            int swap = near;
+            near = far;
+            far = swap;
+            double swapTime = tNear;
+            tNear = tFar;
+            tFar = swapTime;
+        }
+
+        int closest = NULL_NODE;
+        if (tNear < hit.getT() || (tNear == hit.getT() && keys[near] < bestKey)) {
+            closest = query(near, startX, startY, dx, dy, radius, sweep, hit, bestKey);
+        }
+        int key = closest == NULL_NODE ? bestKey : keys[closest];
+        if (tFar < hit.getT() || (tFar == hit.getT() && keys[far] < key)) {
+            int other = query(far, startX, startY, dx, dy, radius, sweep, hit, key);
+            if (other != NULL_NODE) {
+                closest = other;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Returns the parameter t in [0, 1] at which the path enters the box of the given node grown by the radius.
+     *
+     * @param node   The node whose box is tested.
+     * @param startX The x-coordinate of the start of the path.
+     * @param startY The y-coordinate of the start of the path.
+     * @param dx     The horizontal extent of the path.
+     * @param dy     The vertical extent of the path.
+     * @param radius The distance by which the box is grown.
+     * @return The entry parameter, 0 if the path starts inside the box,
+     *         or positive infinity if the path misses the box.
+     */
+    private double entryTime(int node, double startX, double startY, double dx, double dy, double radius) {
+        return RayCast.entryTime(startX, startY, dx, dy, minX[node] - radius, minY[node] - radius,
+                maxX[node] + radius, maxY[node] + radius);
+    }
+
+    /**
+     * Sets the box of a leaf to the given rectangle grown by the margin.
+     *
+     * @param leaf The leaf node.
+     * @param rect The collision rectangle of the leaf's collidable.
+     */
+    private void setFatBox(int leaf, Rectangle rect) {
+        minX[leaf] = rect.getUpperLeft().getX() - margin;
+        minY[leaf] = rect.getUpperLeft().getY() - margin;
+        maxX[leaf] = rect.getUpperLeft().getX() + rect.getWidth() + margin;
+        maxY[leaf] = rect.getUpperLeft().getY() + rect.getHeight() + margin;
+    }
+
+    /**
+     * Inserts a leaf next to the sibling that increases the total perimeter of the tree the least,
+     * then refits and rebalances the ancestors of the new leaf.
+     *
+     * @param leaf The leaf to insert.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[root] = NULL_NODE;
+            return;
+        }
+
+        int index = root;
+        while (child1[index] != NULL_NODE) {
+            double area = perimeter(index);
+            double combinedArea = combinedPerimeter(index, leaf);
+            double cost = 2 * combinedArea;
+            double inheritanceCost = 2 * (combinedArea - area);
+            double cost1 = descendCost(child1[index], leaf) + inheritanceCost;
+            double cost2 = descendCost(child2[index], leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1[index] : child2[index];
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(newParent, sibling, leaf);
+        height[newParent] = height[sibling] + 1;
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        if (oldParent == NULL_NODE) {
+            root = newParent;
+        } else if (child1[oldParent] == sibling) {
+            child1[oldParent] = newParent;
+        } else {
+            child2[oldParent] = newParent;
+        }
+
+        refitAncestors(parent[leaf]);
+    }
+
+    /**
+     * Detaches a leaf from the tree, replacing its parent with its sibling.
+     *
+     * @param leaf The leaf to remove.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+        freeNode(oldParent);
+        if (grandParent == NULL_NODE) {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            return;
+        }
+        if (child1[grandParent] == oldParent) {
+            child1[grandParent] = sibling;
+        } else {
+            child2[grandParent] = sibling;
+        }
+        parent[sibling] = grandParent;
+        refitAncestors(grandParent);
+    }
+
+    /**
+     * Walks from the given node up to the root, rebalancing and recomputing boxes and heights.
+     *
+     * @param node The first node to refit.
+     */
+    private void refitAncestors(int node) {
+        int index = node;
+        while (index != NULL_NODE) {
+            index = balance(index);
+            height[index] = 1 + Math.max(height[child1[index]], height[child2[index]]);
+            union(index, child1[index], child2[index]);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the subtree rooted at node A is imbalanced.
+     *
+     * @param a The root of the subtree.
+     * @return The new root of the subtree.
+     */
+    private int balance(int a) {
+        if (child1[a] == NULL_NODE || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int difference = height[c] - height[b];
+
+        if (difference > 1) {
+            // Rotate C up
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                union(a, b, g);
+                union(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                union(a, b, f);
+                union(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        if (difference < -1) {
+            // Rotate B up
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                union(a, c, e);
+                union(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                union(a, c, d);
+                union(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Makes newChild take the place of oldChild under the given parent, or makes it the root.
+     *
+     * @param node     The parent node, or NULL_NODE if oldChild was the root.
+     * @param oldChild The child being replaced.
+     * @param newChild The replacing child.
+     */
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL_NODE) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    /**
+     * Returns the cost of pushing a leaf down into the subtree rooted at the given child.
+     *
+     * @param child The candidate child.
+     * @param leaf  The leaf being inserted.
+     * @return The perimeter the child's box would gain by containing the leaf.
+     */
+    private double descendCost(int child, int leaf) {
+        double combined = combinedPerimeter(child, leaf);
+        if (child1[child] == NULL_NODE) {
+            return combined;
+        }
+        return combined - perimeter(child);
+    }
+
+    /**
+     * Returns the perimeter of the box of the given node.
+     *
+     * @param node The node.
+     * @return The perimeter of its box.
+     */
+    private double perimeter(int node) {
+        return 2 * ((maxX[node] - minX[node]) + (maxY[node] - minY[node]));
+    }
+
+    /**
+     * Returns the perimeter of the box enclosing the boxes of two nodes.
+     *
+     * @param first  The first node.
+     * @param second The second node.
+     * @return The perimeter of their union.
+     */
+    private double combinedPerimeter(int first, int second) {
+        double width = Math.max(maxX[first], maxX[second]) - Math.min(minX[first], minX[second]);
+        double height = Math.max(maxY[first], maxY[second]) - Math.min(minY[first], minY[second]);
+        return 2 * (width + height);
+    }
+
+    /**
+     * Sets the box of a node to the union of the boxes of two other nodes, and its key to the smaller of their keys.
+     *
+     * @param node   The node to update.
+     * @param first  The first node.
+     * @param second The second node.
+     */
+    private void union(int node, int first, int second) {
+        minX[node] = Math.min(minX[first], minX[second]);
+        minY[node] = Math.min(minY[first], minY[second]);
+        maxX[node] = Math.max(maxX[first], maxX[second]);
+        maxY[node] = Math.max(maxY[first], maxY[second]);
+        keys[node] = Math.min(keys[first], keys[second]);
+    }
+
+    /**
+     * Takes a node from the free list, growing the node arrays if necessary.
+     *
+     * @return The index of the new node.
+     */
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            grow(capacity * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        items[node] = null;
+        return node;
+    }
+
+    /**
+     * Returns a node to the free list.
+     *
+     * @param node The node to free.
+     */
+    private void freeNode(int node) {
+        items[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Grows the node arrays and links the new nodes into the free list.
+     *
+     * @param newCapacity The new number of nodes.
+     */
+    private void grow(int newCapacity) {
+        minX = Arrays.copyOf(minX, newCapacity);
+        minY = Arrays.copyOf(minY, newCapacity);
+        maxX = Arrays.copyOf(maxX, newCapacity);
+        maxY = Arrays.copyOf(maxY, newCapacity);
+        parent = Arrays.copyOf(parent, newCapacity);
+        child1 = Arrays.copyOf(child1, newCapacity);
+        child2 = Arrays.copyOf(child2, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        keys = Arrays.copyOf(keys, newCapacity);
+        items = Arrays.copyOf(items, newCapacity);
+        for (int i = capacity; i < newCapacity; i++) {
+            parent[i] = i + 1 < newCapacity ? i + 1 : freeList;
+            height[i] = -1;
+        }
+        freeList = capacity;
+        capacity = newCapacity;
+    }
+}
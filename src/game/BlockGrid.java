@@ -0,0 +1,457 @@
+package game;
+
+import graphics.BlockTiles;
+import interfaces.Collidable;
+import geometry.Point;
+import geometry.RayCast;
+import geometry.RayHit;
+import geometry.Rectangle;
+
+/**
+ * The BlockGrid class is a dense tile map for collidables laid out on a regular grid.
+ * Every cell holds at most one collidable whose collision rectangle lies inside that cell,
+ * so a ray query only has to visit the cells its trajectory passes through (Amanatides-Woo traversal)
+ * instead of testing every collidable in the game.
+ * <p>
+ * A cell may instead hold a tile: a block that fills the cell and is stored in the grid's BlockTiles as a
+ * single int, with no object, so a level of a million grid blocks loads by filling an array. A query tests
+ * a tile against the rectangle of its cell and only asks the tiles for the Block of a tile that is hit.
+ */
+public class BlockGrid {
+    private static final double EPSILON = 1e-7;
+
+    private double originX;
+    private double originY;
+    private double cellWidth;
+    private double cellHeight;
+    private int columns;
+    private int rows;
+    private Collidable[] cells;
+    private int size;
+    private BlockTiles tiles;
+
+    /**
+     * Constructs an empty BlockGrid covering columns x rows cells.
+     *
+     * @param originX    The x-coordinate of the upper-left corner of the grid.
+     * @param originY    The y-coordinate of the upper-left corner of the grid.
+     * @param cellWidth  The width of a single cell.
+     * @param cellHeight The height of a single cell.
+     * @param columns    The number of columns in the grid.
+     * @param rows       The number of rows in the grid.
+     * @throws IllegalArgumentException If a dimension is not positive or the grid has too many cells for an array.
+     */
+    public BlockGrid(double originX, double originY, double cellWidth, double cellHeight, int columns, int rows) {
+        if (!(cellWidth > 0) || !(cellHeight > 0) || columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive");
+        }
+        if ((long) columns * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A grid has at most " + Integer.MAX_VALUE + " cells");
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = new Collidable[columns * rows];
+        this.size = 0;
+        this.tiles = null;
+    }
+
+    /**
+     * Returns the x-coordinate of the upper-left corner of the grid.
+     *
+     * @return The x-coordinate of the origin.
+     */
+    public double getOriginX() {
+        return this.originX;
+    }
+
+    /**
+     * Returns the y-coordinate of the upper-left corner of the grid.
+     *
+     * @return The y-coordinate of the origin.
+     */
+    public double getOriginY() {
+        return this.originY;
+    }
+
+    /**
+     * Returns the width of a single cell.
+     *
+     * @return The cell width.
+     */
+    public double getCellWidth() {
+        return this.cellWidth;
+    }
+
+    /**
+     * Returns the height of a single cell.
+     *
+     * @return The cell height.
+     */
+    public double getCellHeight() {
+        return this.cellHeight;
+    }
+
+    /**
+     * Returns the number of columns in the grid.
+     *
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the number of rows in the grid.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of cells in the grid.
+     *
+     * @return The number of columns times the number of rows.
+     */
+    public int getCellCount() {
+        return this.cells.length;
+    }
+
+    /**
+     * Returns the rectangle of a cell, which is also the collision rectangle of a block that fills the cell.
+     *
+     * @param cell The index of the cell, row by row from the upper-left corner.
+     * @return The rectangle of the cell.
+     */
+    public Rectangle getCellRectangle(int cell) {
+        return new Rectangle(new Point(getCellLeft(cell), getCellTop(cell)), cellWidth, cellHeight);
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The x-coordinate of the left edge.
+     */
+    public double getCellLeft(int cell) {
+        return originX + (cell % columns) * cellWidth;
+    }
+
+    /**
+     * Returns the y-coordinate of the top edge of a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The y-coordinate of the top edge.
+     */
+    public double getCellTop(int cell) {
+        return originY + (cell / columns) * cellHeight;
+    }
+
+    /**
+     * Returns the collidable stored in a cell. A tile in the cell is not returned.
+     *
+     * @param cell The index of the cell.
+     * @return The collidable, or null if the cell holds none.
+     */
+    public Collidable get(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Returns the tiles of the grid.
+     *
+     * @return The tiles, or null if the grid has none.
+     */
+    public BlockTiles getTiles() {
+        return this.tiles;
+    }
+
+    /**
+     * Sets the tiles of the grid. Their cells must not hold collidables. This is done by BlockTiles.addToGame.
+     *
+     * @param tiles The tiles, which must have been created over this grid.
+     */
+    public void setTiles(BlockTiles tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * Returns the number of tiles in the grid.
+     *
+     * @return The number of tiles.
+     */
+    public int getTileCount() {
+        return tiles == null ? 0 : tiles.size();
+    }
+
+    /**
+     * Adds the given collidable to the grid if its collision rectangle fits inside a single free cell.
+     * A cell that holds a tile is not free.
+     *
+     * @param c The collidable to add.
+     * @return true if the collidable was stored in the grid, false if it does not fit and must be kept elsewhere.
+     */
+    public boolean add(Collidable c) {
+        int index = cellIndexOf(c.getCollisionRectangle());
+        if (index < 0 || cells[index] != null || (tiles != null && tiles.has(index))) {
+            return false;
+        }
+        cells[index] = c;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the given collidable from the grid.
+     *
+     * @param c The collidable to remove.
+     * @return true if the collidable was stored in the grid and has been removed, false otherwise.
+     */
+    public boolean remove(Collidable c) {
+        int index = cellIndexOf(c.getCollisionRectangle());
+        if (index < 0 || cells[index] != c) {
+            return false;
+        }
+        cells[index] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks if the given collidable is stored in the grid.
+     *
+     * @param c The collidable to look for.
+     * @return true if the collidable is stored in the grid, false otherwise.
+     */
+    public boolean contains(Collidable c) {
+        int index = cellIndexOf(c.getCollisionRectangle());
+        return index >= 0 && cells[index] == c;
+    }
+
+    /**
+     * Checks if the given collidable is the Block of a tile of the grid.
+     *
+     * @param c The collidable to look for.
+     * @return true if the collidable is the Block of a tile, false otherwise.
+     */
+    public boolean containsTile(Collidable c) {
+        if (tiles == null) {
+            return false;
+        }
+        int index = cellIndexOf(c.getCollisionRectangle());
+        return index >= 0 && tiles.getBuiltBlock(index) == c;
+    }
+
+    /**
+     * Removes the tile whose Block is the given collidable.
+     *
+     * @param c The collidable to remove.
+     * @return true if the collidable was the Block of a tile and the tile has been removed, false otherwise.
+     */
+    public boolean removeTile(Collidable c) {
+        if (!containsTile(c)) {
+            return false;
+        }
+        tiles.remove(cellIndexOf(c.getCollisionRectangle()));
+        return true;
+    }
+
+    /**
+     * Returns the number of collidables stored in the grid, not counting tiles.
+     *
+     * @return The number of collidables stored in the grid.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Finds the closest hit along a ray with a collidable stored in the grid.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param hit    The closest hit found so far, updated if a collidable in the grid is hit closer.
+     * @return The collidable that was hit closer than the previous hit, or null if there is none.
+     */
+    public Collidable closestHit(double startX, double startY, double dx, double dy, RayHit hit) {
+        return query(startX, startY, dx, dy, 0, false, hit);
+    }
+
+    /**
+     * Finds the first collidable stored in the grid that a moving circle runs into.
+     *
+     * @param startX The x-coordinate of the center of the circle at the start of the move.
+     * @param startY The y-coordinate of the center of the circle at the start of the move.
+     * @param dx     The horizontal extent of the move.
+     * @param dy     The vertical extent of the move.
+     * @param radius The radius of the circle.
+     * @param hit    The closest hit found so far, updated if a collidable in the grid is hit closer.
+     * @return The collidable that was hit closer than the previous hit, or null if there is none.
+     */
+    public Collidable closestSweep(double startX, double startY, double dx, double dy, double radius, RayHit hit) {
+        return query(startX, startY, dx, dy, radius, true, hit);
+    }
+
+    /**
+     * Walks the cells crossed by the path of the center, nearest first, testing every collidable whose box
+     * grown by the radius overlaps the part of the path inside the current cell. The walk stops as soon as
+     * no unvisited cell can hold a hit closer than the one already held by the given RayHit. A tile is tested
+     * against the rectangle of its cell, and its Block is only asked for if the tile is the closest hit.
+     *
+     * @param startX The x-coordinate of the start of the path.
+     * @param startY The y-coordinate of the start of the path.
+     * @param dx     The horizontal extent of the path.
+     * @param dy     The vertical extent of the path.
+     * @param radius The distance by which collision rectangles are grown, 0 for a plain ray.
+     * @param sweep  true to use the swept-circle test, false to use the ray test.
+     * @param hit    The closest hit found so far.
+     * @return The collidable that was hit closer than the previous hit, or null if there is none.
+     */
+    private Collidable query(double startX, double startY, double dx, double dy, double radius, boolean sweep,
+                             RayHit hit) {
+        if (size == 0 && getTileCount() == 0) {
+            return null;
+        }
+
+        // Clip the path to the bounds of the grid grown by the radius
+        double minX = originX - radius;
+        double minY = originY - radius;
+        double maxX = originX + columns * cellWidth + radius;
+        double maxY = originY + rows * cellHeight + radius;
+        double tEnter = RayCast.entryTime(startX, startY, dx, dy, minX, minY, maxX, maxY);
+        if (tEnter == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        double tExit = RayCast.exitTime(startX, startY, dx, dy, minX, minY, maxX, maxY);
+
+        // Set up the traversal from the cell containing the clipped start point
+        int column = clamp((int) Math.floor((startX + dx * tEnter - originX) / cellWidth), columns);
+        int row = clamp((int) Math.floor((startY + dy * tEnter - originY) / cellHeight), rows);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellWidth / Math.abs(dx);
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellHeight / Math.abs(dy);
+        double tNextX = dx == 0 ? Double.POSITIVE_INFINITY
+                : (originX + (column + (dx > 0 ? 1 : 0)) * cellWidth - startX) / dx;
+        double tNextY = dy == 0 ? Double.POSITIVE_INFINITY
+                : (originY + (row + (dy > 0 ? 1 : 0)) * cellHeight - startY) / dy;
+
+        Collidable closest = null;
+        int closestTile = -1;
+        double tCell = tEnter;
+
+        while (tCell < hit.getT()) {
+            // Test every cell whose collidable, grown by the radius, may touch the part of the path inside
+            // this cell; with a radius of 0 these are this cell and any neighbour whose border the path touches
+            double tLeave = Math.min(tExit, Math.min(tNextX, tNextY));
+            double lowX = startX + dx * (dx > 0 ? tCell : tLeave) - radius - EPSILON;
+            double highX = startX + dx * (dx > 0 ? tLeave : tCell) + radius + EPSILON;
+            double lowY = startY + dy * (dy > 0 ? tCell : tLeave) - radius - EPSILON;
+            double highY = startY + dy * (dy > 0 ? tLeave : tCell) + radius + EPSILON;
+            int fromColumn = clamp((int) Math.floor((lowX - originX) / cellWidth), columns);
+            int toColumn = clamp((int) Math.floor((highX - originX) / cellWidth), columns);
+            int fromRow = clamp((int) Math.floor((lowY - originY) / cellHeight), rows);
+            int toRow = clamp((int) Math.floor((highY - originY) / cellHeight), rows);
+
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromColumn; c <= toColumn; c++) {
+                    int cell = r * columns + c;
+                    Collidable collidable = cells[cell];
+                    double x;
+                    double y;
+                    double width;
+                    double height;
+                    if (collidable != null) {
+                        Rectangle rect = collidable.getCollisionRectangle();
+                        x = rect.getUpperLeft().getX();
+                        y = rect.getUpperLeft().getY();
+                        width = rect.getWidth();
+                        height = rect.getHeight();
+                    } else if (tiles != null && tiles.has(cell)) {
+                        x = originX + c * cellWidth;
+                        y = originY + r * cellHeight;
+                        width = cellWidth;
+                        height = cellHeight;
+                    } else {
+                        continue;
+                    }
+                    double left = x - radius;
+                    double top = y - radius;
+                    double right = x + width + radius;
+                    double bottom = y + height + radius;
+                    boolean closer = sweep ? RayCast.sweep(startX, startY, dx, dy, left, top, right, bottom, hit)
+                            : RayCast.cast(startX, startY, dx, dy, left, top, right, bottom, hit);
+                    if (closer) {
+                        closest = collidable;
+                        closestTile = collidable == null ? cell : -1;
+                    }
+                }
+            }
+
+            // Step into the neighbouring cell whose boundary the path crosses first. Past the outer cells
+            // the path may still run within the radius of the grid, so it stays in the outer cell until it
+            // leaves the grown bounds of the grid
+            if (tNextX < tNextY) {
+                tCell = tNextX;
+                tNextX += tDeltaX;
+                column += stepX;
+                if (column < 0 || column >= columns) {
+                    column -= stepX;
+                    tNextX = Double.POSITIVE_INFINITY;
+                }
+            } else {
+                tCell = tNextY;
+                tNextY += tDeltaY;
+                row += stepY;
+                if (row < 0 || row >= rows) {
+                    row -= stepY;
+                    tNextY = Double.POSITIVE_INFINITY;
+                }
+            }
+            if (tCell > tExit) {
+                break;
+            }
+        }
+
+        return closestTile >= 0 ? tiles.getBlock(closestTile) : closest;
+    }
+
+    /**
+     * Returns the index of the cell that fully contains the given rectangle.
+     *
+     * @param rect The rectangle to locate.
+     * @return The index of the cell containing the rectangle, or -1 if it is outside the grid or spans several cells.
+     */
+    private int cellIndexOf(Rectangle rect) {
+        double left = rect.getUpperLeft().getX() - originX;
+        double top = rect.getUpperLeft().getY() - originY;
+        int column = (int) Math.floor((left + EPSILON) / cellWidth);
+        int row = (int) Math.floor((top + EPSILON) / cellHeight);
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return -1;
+        }
+        if (left + rect.getWidth() > (column + 1) * cellWidth + EPSILON
+                || top + rect.getHeight() > (row + 1) * cellHeight + EPSILON) {
+            return -1;
+        }
+        return row * columns + column;
+    }
+
+    /**
+     * Clamps a cell coordinate into the range [0, count - 1].
+     *
+     * @param value The cell coordinate.
+     * @param count The number of cells along the axis.
+     * @return The clamped cell coordinate.
+     */
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+}
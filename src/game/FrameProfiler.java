@@ -0,0 +1,184 @@
+package game;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * The FrameProfiler class times the phases of the game loop and keeps the times in latency histograms.
+ * A phase is timed by taking a mark with start() before it and passing the mark to stop() after it.
+ * A disabled profiler does not read the clock at all, so the timing calls can stay in the loop.
+ * At the end of the game the histograms are written to a file, as JSON if its name ends with ".json"
+ * and as CSV otherwise. Times are in nanoseconds.
+ */
+public class FrameProfiler {
+    /**
+     * The phases of the game loop that are measured.
+     */
+    public enum Phase {
+        /** Drawing the static layer, which holds the background, the walls and the blocks. */
+        BACKGROUND,
+        /** Drawing all sprites of a frame. */
+        DRAW,
+        /** Replaying the draw commands recorded during a frame on the GUI's surface. */
+        FLUSH,
+        /** Showing a frame on the GUI. */
+        SHOW,
+        /** Notifying all sprites that time has passed, for one physics step. */
+        PHYSICS,
+        /** The time from the start of one frame to the start of the next. */
+        FRAME,
+        /** The number of collision queries made during a frame; a count, not a time. */
+        QUERIES
+    }
+
+    /** The system property that names the file a game writes its profile to. */
+    public static final String PATH_PROPERTY = "arkanoid.profile";
+
+    private String path;
+    private LatencyHistogram[] histograms;
+    private long frameStart;
+    private long frameQueries;
+
+    /**
+     * Constructs a FrameProfiler that writes its results to the given file.
+     *
+     * @param path The file to write the results to, or null for a disabled profiler.
+     */
+    public FrameProfiler(String path) {
+        this.path = path;
+        this.histograms = new LatencyHistogram[Phase.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.frameStart = -1;
+        this.frameQueries = 0;
+    }
+
+    /**
+     * Returns a profiler for the file named by the arkanoid.profile system property,
+     * or a disabled profiler if the property is not set.
+     *
+     * @return The profiler.
+     */
+    public static FrameProfiler fromSystemProperty() {
+        return new FrameProfiler(System.getProperty(PATH_PROPERTY));
+    }
+
+    /**
+     * Checks if the profiler records anything.
+     *
+     * @return true if the profiler is enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return this.path != null;
+    }
+
+    /**
+     * Returns a mark for the start of a phase.
+     *
+     * @return The current time in nanoseconds, or 0 if the profiler is disabled.
+     */
+    public long start() {
+        return path == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the time since the given mark for a phase.
+     *
+     * @param phase The phase that ended.
+     * @param mark  The mark returned by start() when the phase began.
+     */
+    public void stop(Phase phase, long mark) {
+        if (path != null) {
+            histograms[phase.ordinal()].record(System.nanoTime() - mark);
+        }
+    }
+
+    /**
+     * Marks the start of a frame, recording the time since the start of the previous frame
+     * and the number of collision queries made since then.
+     *
+     * @param queries The total number of collision queries made so far.
+     */
+    public void frame(long queries) {
+        if (path == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (frameStart >= 0) {
+            histograms[Phase.FRAME.ordinal()].record(now - frameStart);
+            histograms[Phase.QUERIES.ordinal()].record(queries - frameQueries);
+        }
+        frameStart = now;
+        frameQueries = queries;
+    }
+
+    /**
+     * Returns the histogram of the given phase.
+     *
+     * @param phase The phase.
+     * @return The histogram of the phase.
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Writes the histograms to the profiler's file. Does nothing if the profiler is disabled.
+     * A file that cannot be written is reported on the standard error stream.
+     */
+    public void dump() {
+        if (path == null) {
+            return;
+        }
+        boolean json = path.toLowerCase(Locale.ROOT).endsWith(".json");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+            if (json) {
+                writeJson(out);
+            } else {
+                writeCsv(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write the frame profile to " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the histograms as a JSON object with one member per phase.
+     *
+     * @param out The writer to write to.
+     */
+    private void writeJson(PrintWriter out) {
+        out.println("{");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            LatencyHistogram h = histograms[i];
+            out.printf(Locale.ROOT, "  \"%s\": {\"count\": %d, \"mean\": %.1f, \"min\": %d, \"p50\": %d, "
+                            + "\"p99\": %d, \"p99.9\": %d, \"max\": %d}%s%n",
+                    phases[i].name().toLowerCase(Locale.ROOT), h.getCount(), h.getMean(), h.getMin(),
+                    h.getPercentile(50), h.getPercentile(99), h.getPercentile(99.9), h.getMax(),
+                    i + 1 < phases.length ? "," : "");
+        }
+        out.println("}");
+    }
+
+    /**
+     * Writes the histograms as CSV with one row per phase.
+     *
+     * @param out The writer to write to.
+     */
+    private void writeCsv(PrintWriter out) {
+        out.println("phase,count,mean,min,p50,p99,p99.9,max");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            LatencyHistogram h = histograms[i];
+            out.printf(Locale.ROOT, "%s,%d,%.1f,%d,%d,%d,%d,%d%n", phases[i].name().toLowerCase(Locale.ROOT),
+                    h.getCount(), h.getMean(), h.getMin(), h.getPercentile(50), h.getPercentile(99),
+                    h.getPercentile(99.9), h.getMax());
+        }
+    }
+}
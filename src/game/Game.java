@@ -6,19 +6,37 @@ import biuoop.KeyboardSensor;
 import biuoop.Sleeper;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
 
 import listeners.BlockRemover;
 import listeners.BallRemover;
 import listeners.ScoreTrackingListener;
 import listeners.Counter;
+import listeners.ListenerGroup;
 import geometry.Point;
 import geometry.Rectangle;
 import graphics.Ball;
+import graphics.BallSystem;
+import graphics.BatchingDrawSurface;
 import graphics.Paddle;
 import graphics.SpriteCollection;
+import graphics.StaticLayer;
 import graphics.ScoreIndicator;
 import graphics.Block;
+import graphics.BlockTiles;
+import graphics.NullDrawSurface;
 import interfaces.Collidable;
+import interfaces.HitListener;
 import interfaces.Sprite;
 import listeners.PrintingHitListener;
 
@@ -29,25 +47,176 @@ import listeners.PrintingHitListener;
  * the GUI, and various counters for game elements like balls, blocks, and score.
  */
 public class Game {
+    /** The layout name of the built-in level that initialize sets up. */
+    public static final String CLASSIC_LAYOUT = "classic";
+
+    private static final int BASE_RATE = 60;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLISECOND = 1_000_000L;
+    private static final int MAX_STEPS_PER_FRAME = 12;
+    private static final int REWIND_SECONDS = 10;
+    private static final int REWIND_STEPS_PER_STEP = 2;
+    private static final String REWIND_KEY = "r";
+    private static final String SAVE_KEY = "s";
+    private static final int SAVED_BALL = 0;
+    private static final int SAVED_PADDLE = 1;
+    private static final int SAVED_SCORE_INDICATOR = 2;
+    private static final int SAVED_BALL_SYSTEM = 3;
+
     private SpriteCollection sprites;
+    private StaticLayer staticLayer;
     private GameEnvironment environment;
+    private HitEventQueue hitEvents;
     private GUI gui;
+    private RecordingKeyboard keyboard;
+    private InputLog inputLog;
+    private RewindBuffer rewindBuffer;
+    private IntConsumer script;
+    private int tick;
+    private int logStart;
+    private boolean restored;
+    private double speed;
     private Sleeper sleeper;
     private Counter remainingBlocks;
     private Counter remainingBalls;
     private Counter score;
+    private PrintingHitListener printingHitListener;
+    private BlockRemover blockRemover;
+    private BallRemover ballRemover;
+    private ScoreTrackingListener scoreTrackingListener;
+    private BallSystem ballSystem;
+    private ForkJoinPool physicsPool;
+    private boolean ballCollisions;
+    private int physicsRate;
+    private int frameRate;
+    private FrameProfiler profiler;
+    private volatile boolean rendering;
+    private volatile RuntimeException renderFailure;
 
     /**
      * Constructs a new Game instance, initializing the sprite collection, game environment, and counters.
+     *
+     * @param gui The GUI to draw on and read the keyboard from.
      */
     public Game(GUI gui) {
+        this(gui, gui.getKeyboardSensor());
+    }
+
+    /**
+     * Constructs a headless Game that reads its input from the given keyboard and has no GUI.
+     * A headless game is played with simulate instead of run.
+     *
+     * @param keyboard The keyboard sensor that controls the paddle, for example a ScriptedKeyboard.
+     */
+    public Game(KeyboardSensor keyboard) {
+        this(null, keyboard);
+    }
+
+    /**
+     * Constructs a Game with the given GUI and keyboard sensor, for example to show a replay on a GUI.
+     * The paddle keys of the sensor are sampled and recorded in the game's input log at every physics step.
+     *
+     * @param gui      The GUI to draw on, or null for a headless game.
+     * @param keyboard The keyboard sensor that controls the paddle.
+     */
+    public Game(GUI gui, KeyboardSensor keyboard) {
         this.gui = gui;
+        this.inputLog = new InputLog(CLASSIC_LAYOUT, 240);
+        this.keyboard = new RecordingKeyboard(keyboard, inputLog);
+        this.tick = 0;
+        this.logStart = 0;
+        this.restored = false;
+        this.speed = 1;
         this.sprites = new SpriteCollection();
+        this.staticLayer = new StaticLayer(800, 600, Color.BLUE);
         this.environment = new GameEnvironment();
+        this.hitEvents = new HitEventQueue(environment);
         this.sleeper = new Sleeper();
         this.remainingBlocks = new Counter();
         this.remainingBalls = new Counter();
         this.score = new Counter();
+        this.physicsRate = 240;
+        this.frameRate = 60;
+        this.profiler = FrameProfiler.fromSystemProperty();
+    }
+
+    /**
+     * Sets the profiler that times the phases of the game loop and writes the results when the game ends.
+     * By default a game is profiled only if the arkanoid.profile system property names a file.
+     *
+     * @param profiler The profiler to use.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Sets the number of physics steps per second. Speeds are given per 1/60 second, so the rate changes how
+     * finely the motion is divided and not how fast the game plays.
+     *
+     * @param stepsPerSecond The number of physics steps per second.
+     */
+    public void setPhysicsRate(int stepsPerSecond) {
+        this.physicsRate = stepsPerSecond;
+        this.inputLog.setPhysicsRate(stepsPerSecond);
+    }
+
+    /**
+     * Sets how fast run plays the game compared to real time, for example 4 to show a replay four times as fast.
+     *
+     * @param speed The speed, 1 for real time.
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Sets a script that is called with the number of each physics step before the step is taken,
+     * for example an InputLog player that presses the keys of a ScriptedKeyboard.
+     *
+     * @param script The script, or null for none.
+     */
+    public void setScript(IntConsumer script) {
+        this.script = script;
+    }
+
+    /**
+     * Returns the log of the paddle keys at every physics step so far.
+     * When the arkanoid.record system property names a file, the log is written to it when the game ends.
+     * The log of a restored game only starts at the step the game was saved at, so it is never written.
+     *
+     * @return The input log of the game.
+     */
+    public InputLog getInputLog() {
+        return this.inputLog;
+    }
+
+    /**
+     * Sets the number of frames drawn per second by run.
+     *
+     * @param framesPerSecond The number of frames drawn per second.
+     */
+    public void setFrameRate(int framesPerSecond) {
+        this.frameRate = framesPerSecond;
+    }
+
+    /**
+     * Returns the queue the hits on the game's blocks are collected in until the end of each physics step.
+     *
+     * @return The hit event queue of the game.
+     */
+    public HitEventQueue getHitEvents() {
+        return this.hitEvents;
+    }
+
+    /**
+     * Sets the tile map the game's grid-aligned blocks are stored in, so ball trajectories only visit the cells
+     * they cross. Blocks already in the game are stored again, in the new grid if they fit it.
+     *
+     * @param grid The block grid to use.
+     */
+    public void setBlockGrid(BlockGrid grid) {
+        environment.setBlockGrid(grid);
     }
 
     /**
@@ -65,7 +234,26 @@ public class Game {
      * @param c The collidable object to remove.
      */
     public void removeCollidable(Collidable c) {
+        boolean tile = environment.isTile(c);
         environment.removeCollidable(c);
+        if (tile) {
+            staticLayer.invalidate(c.getCollisionRectangle());
+        }
+        if (rewindBuffer != null && c instanceof Block) {
+            rewindBuffer.blockRemoved((Block) c);
+        }
+    }
+
+    /**
+     * Takes one hit point from a block that survives the hit.
+     *
+     * @param block The block that was hit.
+     */
+    public void damageBlock(Block block) {
+        if (rewindBuffer != null) {
+            rewindBuffer.blockDamaged(block);
+        }
+        block.setHitPoints(block.getHitPoints() - 1);
     }
 
     /**
@@ -77,29 +265,90 @@ public class Game {
         sprites.addSprite(s);
     }
 
+    /**
+     * Checks if a sprite is in the game, apart from the static layer.
+     *
+     * @param s The sprite to look for.
+     * @return true if the sprite is in the game, false otherwise.
+     */
+    public boolean hasSprite(Sprite s) {
+        return sprites.contains(s);
+    }
+
+    /**
+     * Adds a sprite that never moves or changes to the game. Such sprites are rendered once into the static layer
+     * instead of being drawn every frame.
+     *
+     * @param s The sprite to add.
+     */
+    public void addStaticSprite(Sprite s) {
+        staticLayer.add(s);
+    }
+
     /**
      * Removes a sprite from the game.
      *
      * @param s The sprite to remove.
      */
     public void removeSprite(Sprite s) {
-        sprites.removeSprite(s);
+        if (s instanceof Ball) {
+            hitEvents.ballRemoved((Ball) s);
+        }
+        if (!staticLayer.remove(s)) {
+            if (rewindBuffer != null && s instanceof Ball && sprites.contains(s)) {
+                rewindBuffer.ballRemoved((Ball) s);
+            }
+            sprites.removeSprite(s);
+        }
     }
 
     /**
-     * Initializes the game, setting up the GUI, keyboard sensor, balls, blocks, and paddle.
+     * Initializes the game with the classic level, setting up the balls, blocks, and paddle.
      */
     public void initialize() {
-        KeyboardSensor keyboard = gui.getKeyboardSensor();
-        this.remainingBlocks = new Counter();
-        this.remainingBalls = new Counter();
-        this.score = new Counter();
+        try {
+            load(LevelReader.read(classicLevel().toByteBuffer(), CLASSIC_LAYOUT));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Initializes the game with a level file written by LevelWriter, instead of initialize. The file is mapped
+     * into memory and streamed: each free block is decoded and added to the collision index before the next one
+     * is read, and the grid blocks are read in bulk into tiles of the block grid. The path is recorded as the
+     * layout of the input log, so a replay loads the same level.
+     *
+     * @param path The level file.
+     * @throws IOException If the file cannot be read or is not a level of a known version.
+     */
+    public void loadLevel(Path path) throws IOException {
+        inputLog.setLayout(path.toString());
+        load(LevelReader.map(path));
+    }
 
-        // Create balls and add them to the game
-        createBall(new Point(400, 300), 5, Color.WHITE, 3, 3);
-        createBall(new Point(450, 350), 5, Color.WHITE, -3, 3);
-        createBall(new Point(500, 300), 5, Color.WHITE, 3, -3);
+    /**
+     * Initializes the game with a level built in memory, such as one built by LevelGenerator, instead of
+     * initialize. The name of the level is recorded as the layout of the input log.
+     *
+     * @param level The level.
+     */
+    public void loadLevel(LevelWriter level) {
+        inputLog.setLayout(level.getName());
+        try {
+            load(LevelReader.read(level.toByteBuffer(), level.getName()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    /**
+     * Returns the classic level: three white balls, the walls and the death region, and a staircase of six rows
+     * of blocks, each row one block shorter than the one above it.
+     *
+     * @return The classic level, ready to be written or loaded.
+     */
+    public static LevelWriter classicLevel() {
         int blockWidth = 40;
         int blockHeight = 15;
         int blockSpacing = 0;
@@ -109,121 +358,721 @@ public class Game {
         int blocksPerRow = 15;
 
         Color[] rowColors = {Color.GRAY, Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.PINK};
+        LevelWriter level = new LevelWriter(CLASSIC_LAYOUT);
 
-        // Create the shoulder blocks
-        createShoulderBlocks(marginSize);
+        // Index the block field as a tile map so ball trajectories only visit the cells they cross
+        int fieldLeft = 800 - marginSize - blocksPerRow * (blockWidth + blockSpacing);
+        level.setGrid(fieldLeft, topMargin + 30, blockWidth + blockSpacing, blockHeight + blockSpacing,
+                blocksPerRow, rows);
 
-        PrintingHitListener printingHitListener = new PrintingHitListener();
-        BlockRemover blockRemover = new BlockRemover(this, remainingBlocks);
-        BallRemover ballRemover = new BallRemover(this, remainingBalls);
+        // Create balls
+        level.addBall(new Point(400, 300), 5, Color.WHITE, 3, 3);
+        level.addBall(new Point(450, 350), 5, Color.WHITE, -3, 3);
+        level.addBall(new Point(500, 300), 5, Color.WHITE, 3, -3);
 
-        // Create the death region block
-        Block deathRegionBlock = new Block(new Rectangle(new Point(marginSize, 600), 800 - 2 * marginSize, 30),
-                Color.BLUE, false, true);
-        deathRegionBlock.addToGame(this);
-        deathRegionBlock.addHitListener(ballRemover);
+        // Create the shoulder blocks; there is no bottom margin block, so balls can reach the death region
+        level.addBlock(new Rectangle(new Point(0, 0), 800, marginSize), Color.GRAY, 1, 0);
+        level.addBlock(new Rectangle(new Point(0, marginSize), marginSize, 600 - marginSize), Color.GRAY, 1, 0);
+        level.addBlock(new Rectangle(new Point(800 - marginSize, marginSize), marginSize, 600 - marginSize),
+                Color.GRAY, 1, 0);
 
-        ScoreTrackingListener scoreTrackingListener = new ScoreTrackingListener(this.score);
-        ScoreIndicator scoreIndicator = new ScoreIndicator(this.score);
-        this.addSprite(scoreIndicator);
+        // Create the death region block
+        level.addBlock(new Rectangle(new Point(marginSize, 600), 800 - 2 * marginSize, 30), Color.BLUE, 1,
+                LevelWriter.ROLE_REMOVE_BALL);
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < blocksPerRow - i; j++) {
                 int x = 800 - marginSize - (j + 1) * (blockWidth + blockSpacing);
                 int y = topMargin + 30 + i * (blockHeight + blockSpacing); // Positioned under the top margin
-                Rectangle rect = new Rectangle(new Point(x, y), blockWidth, blockHeight);
-                Block block = new Block(rect, rowColors[i], true, false);
-                block.addToGame(this);
-                block.addHitListener(printingHitListener);
-                block.addHitListener(blockRemover);
-                block.addHitListener(scoreTrackingListener);
-                remainingBlocks.increase(1);
+                level.addBlock(new Rectangle(new Point(x, y), blockWidth, blockHeight), rowColors[i], 1,
+                        LevelWriter.ROLE_PRINT | LevelWriter.ROLE_REMOVE | LevelWriter.ROLE_SCORE);
             }
         }
 
         // Adjust the paddle position to sit on top of the bottom margin
-        Rectangle paddleRect = new Rectangle(new Point(360, 600 - marginSize - 15), 80, 15); // Adjusted position
-        Paddle paddle = new Paddle(paddleRect, Color.YELLOW, keyboard, 10.0);
+        level.setPaddle(new Rectangle(new Point(360, 600 - marginSize - 15), 80, 15), Color.YELLOW, 10.0);
+        return level;
+    }
+
+    /**
+     * Sets up the game from a level: the grid, the balls, the score indicator, the blocks and the paddle,
+     * in that order, so a level and a game built by hand step their sprites in the same order. The grid blocks
+     * become tiles, which hold no objects until they are hit.
+     *
+     * @param level The level, positioned at its first ball.
+     * @throws IOException If a record of the level is corrupt.
+     */
+    private void load(LevelReader level) throws IOException {
+        this.remainingBlocks = new Counter();
+        this.remainingBalls = new Counter();
+        this.score = new Counter();
+        this.rewindBuffer = new RewindBuffer(this, REWIND_SECONDS * physicsRate, score, remainingBlocks,
+                remainingBalls);
+        createListeners();
+
+        BlockGrid grid = level.createGrid();
+        if (grid != null) {
+            environment.setBlockGrid(grid);
+        }
+        for (int i = 0; i < level.getBallCount(); i++) {
+            addBall(level.nextBall());
+        }
+        this.addSprite(new ScoreIndicator(this.score));
+
+        int blocks = grid == null ? level.getBlockCount() : level.getFreeBlockCount();
+        environment.ensureCapacity(blocks + 1); // The blocks and the paddle
+        staticLayer.ensureCapacity(blocks);
+        ListenerGroup[] groups = groupsByRoles();
+        for (int i = 0; i < blocks; i++) {
+            addBlock(level.nextBlock(groups));
+        }
+        if (grid != null) {
+            List<Block> taken = new ArrayList<>();
+            addTiles(level.readTiles(grid, groups, taken), taken);
+        }
+
+        createPaddle(level.getPaddleRectangle(), level.getPaddleColor(), level.getPaddleSpeed());
+    }
+
+    /**
+     * Adds a block to the game, counting it among the remaining blocks if it is part of the game.
+     *
+     * @param block The block to add.
+     */
+    private void addBlock(Block block) {
+        block.addToGame(this);
+        if (block.isGameBlock()) {
+            remainingBlocks.increase(1);
+        }
+    }
+
+    /**
+     * Adds the tiles of the block grid to the game, counting them among the remaining blocks, and then the grid
+     * blocks that could not be tiles.
+     *
+     * @param tiles The tiles, over the block grid of the game.
+     * @param taken The grid blocks that are not tiles.
+     */
+    private void addTiles(BlockTiles tiles, List<Block> taken) {
+        tiles.addToGame(this);
+        remainingBlocks.increase(tiles.getGameBlockCount());
+        for (Block block : taken) {
+            addBlock(block);
+        }
+    }
+
+    /**
+     * Creates the listeners that blocks are wired to, bound to the current counters.
+     */
+    private void createListeners() {
+        this.printingHitListener = new PrintingHitListener();
+        this.blockRemover = new BlockRemover(this, remainingBlocks);
+        this.ballRemover = new BallRemover(this, remainingBalls);
+        this.scoreTrackingListener = new ScoreTrackingListener(this.score);
+    }
+
+    /**
+     * Returns the listeners that blocks are wired to, in the order a save state refers to them.
+     * Listener i is the one of the level role 1 << i.
+     *
+     * @return The listeners of the game.
+     */
+    private HitListener[] listeners() {
+        return new HitListener[] {printingHitListener, blockRemover, ballRemover, scoreTrackingListener};
+    }
+
+    /**
+     * Returns the listener group of every combination of level roles.
+     *
+     * @return The listener groups, indexed by the roles.
+     */
+    private ListenerGroup[] groupsByRoles() {
+        HitListener[] listeners = listeners();
+        ListenerGroup[] groups = new ListenerGroup[LevelWriter.ROLE_COMBINATIONS];
+        for (int roles = 0; roles < groups.length; roles++) {
+            ListenerGroup group = ListenerGroup.EMPTY;
+            for (int i = 0; i < listeners.length; i++) {
+                if ((roles & (1 << i)) != 0) {
+                    group = group.with(listeners[i]);
+                }
+            }
+            groups[roles] = group;
+        }
+        return groups;
+    }
+
+    /**
+     * Creates the paddle and adds it to the game.
+     *
+     * @param rect  The rectangle of the paddle.
+     * @param color The color of the paddle.
+     * @param speed The distance the paddle moves per 1/60 second.
+     */
+    private void createPaddle(Rectangle rect, Color color, double speed) {
+        Paddle paddle = new Paddle(rect, color, keyboard, speed);
+        paddle.setGameEnvironment(environment);
         paddle.addToGame(this);
+        if (rewindBuffer != null) {
+            rewindBuffer.setPaddle(paddle);
+        }
     }
 
     /**
-     * Creates a ball and adds it to the game.
+     * Saves a snapshot of the game to a file: the layout and the physics step the game is at, the counters,
+     * the block grid with the blocks in its cells, tiles or not, in the order of the cells, every other block,
+     * each block with the listeners it is wired to, and every other sprite in the order the sprites move.
+     * The snapshot is taken at once and written on a background thread, so the game can go on while it is
+     * written. Save between steps, not from a listener or a sprite.
      *
-     * @param center The center point of the ball.
+     * @param path The file to write the snapshot to.
+     * @return A future that completes when the file is written.
+     * @throws IllegalArgumentException If a block is wired to a listener or the game holds a sprite that the
+     *                                  game did not create.
+     */
+    public CompletableFuture<Void> save(Path path) {
+        BlockGrid grid = environment.getBlockGrid();
+        List<Block> blocks = new ArrayList<>();
+        environment.forEachCollidable(c -> {
+            if (c instanceof Block && (grid == null || !grid.contains(c))) {
+                blocks.add((Block) c);
+            }
+        });
+        BlockTiles tiles = grid == null ? null : grid.getTiles();
+        int gridBlocks = 0;
+        for (int cell = 0; grid != null && cell < grid.getCellCount(); cell++) {
+            if (grid.get(cell) instanceof Block || (tiles != null && tiles.has(cell))) {
+                gridBlocks++;
+            }
+        }
+        SaveState state = SaveState.create(listeners(), blocks.size() + gridBlocks);
+        state.putString(inputLog.getLayout());
+        state.putInt(tick);
+        state.putInt(physicsRate);
+        state.putInt(score.getValue());
+        state.putInt(remainingBlocks.getValue());
+        state.putInt(remainingBalls.getValue());
+
+        state.putInt(grid == null ? 0 : 1);
+        if (grid != null) {
+            state.putDouble(grid.getOriginX());
+            state.putDouble(grid.getOriginY());
+            state.putDouble(grid.getCellWidth());
+            state.putDouble(grid.getCellHeight());
+            state.putInt(grid.getColumns());
+            state.putInt(grid.getRows());
+            state.putInt(gridBlocks);
+            for (int cell = 0; cell < grid.getCellCount(); cell++) {
+                if (grid.get(cell) instanceof Block) {
+                    Block block = (Block) grid.get(cell);
+                    state.putGridBlock(cell, block.getColor(), block.isGameBlock(), block.isDeathRegion(),
+                            block.getHitPoints(), block.getHitListeners());
+                } else if (tiles != null && tiles.has(cell)) {
+                    state.putGridBlock(cell, tiles.getColor(cell), tiles.isGameBlock(cell), tiles.isDeathRegion(cell),
+                            tiles.getHitPoints(cell), tiles.getHitListeners(cell));
+                }
+            }
+        }
+
+        state.putInt(blocks.size());
+        for (Block block : blocks) {
+            state.putBlock(block);
+        }
+
+        List<Sprite> moving = new ArrayList<>();
+        sprites.forEach(moving::add);
+        state.putInt(moving.size());
+        for (Sprite s : moving) {
+            if (s instanceof Ball) {
+                state.putInt(SAVED_BALL);
+                state.putBall((Ball) s);
+            } else if (s instanceof Paddle) {
+                Paddle paddle = (Paddle) s;
+                state.putInt(SAVED_PADDLE);
+                state.putRectangle(paddle.getCollisionRectangle());
+                state.putColor(paddle.getColor());
+                state.putDouble(paddle.getSpeed());
+            } else if (s instanceof ScoreIndicator) {
+                state.putInt(SAVED_SCORE_INDICATOR);
+            } else if (s instanceof BallSystem) {
+                BallSystem system = (BallSystem) s;
+                state.putInt(SAVED_BALL_SYSTEM);
+                state.putInt(system.hasBallCollisions() ? 1 : 0);
+                state.putInt(system.size());
+                for (int i = 0; i < system.size(); i++) {
+                    state.putBall(system.getBall(i));
+                }
+            } else {
+                throw new IllegalArgumentException("Cannot save a sprite of " + s.getClass().getName());
+            }
+        }
+        return state.writeAsync(path);
+    }
+
+    /**
+     * Saves the game to the file named by the arkanoid.save system property, or to arkanoid.arks.
+     * A file that cannot be written is reported on the standard error stream once the write fails.
+     */
+    private void quickSave() {
+        Path path = Paths.get(System.getProperty(SaveState.PATH_PROPERTY, SaveState.DEFAULT_PATH));
+        save(path).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                System.err.println("Could not save the game to " + path + ": " + failure.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Restores a game saved with save. Call this on a new game instead of initialize. The file is mapped into
+     * memory and decoded in place, and the blocks are added to the game directly, already wired to their
+     * listener groups, so restoring a level is not slower than reading it.
+     * <p>
+     * The game goes on from the layout and the physics step it was saved at, but the keys pressed before the
+     * save are not part of the snapshot, so the input log of a restored game cannot replay it from its layout
+     * and is not written to the file named by the arkanoid.record system property.
+     *
+     * @param path The file to restore the game from.
+     * @throws IOException If the file cannot be read or is not a save state of a known version.
+     */
+    public void restore(Path path) throws IOException {
+        this.remainingBlocks = new Counter();
+        this.remainingBalls = new Counter();
+        this.score = new Counter();
+        createListeners();
+        SaveState state = SaveState.map(path, listeners());
+        try {
+            restore(state, path);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt save state " + path, e);
+        }
+    }
+
+    /**
+     * Restores the game from the records of a save state, in the order save wrote them.
+     *
+     * @param state The save state, with its tables read.
+     * @param path  The file the save state was read from, for error messages.
+     * @throws IOException If a record of the save state is corrupt.
+     */
+    private void restore(SaveState state, Path path) throws IOException {
+        inputLog.setLayout(state.getString());
+        this.tick = state.getInt();
+        this.logStart = tick;
+        this.restored = true;
+        int rate = state.getInt();
+        if (rate <= 0) {
+            throw new IOException("Corrupt save state " + path + ": physics rate " + rate);
+        }
+        setPhysicsRate(rate);
+        this.rewindBuffer = new RewindBuffer(this, REWIND_SECONDS * physicsRate, score, remainingBlocks,
+                remainingBalls);
+        int savedScore = state.getInt();
+        int savedBlocks = state.getInt();
+        int savedBalls = state.getInt();
+
+        if (state.getInt() != 0) {
+            double originX = state.getDouble();
+            double originY = state.getDouble();
+            double cellWidth = state.getDouble();
+            double cellHeight = state.getDouble();
+            BlockGrid grid = new BlockGrid(originX, originY, cellWidth, cellHeight, state.getInt(), state.getInt());
+            environment.setBlockGrid(grid);
+            List<Block> taken = new ArrayList<>();
+            addTiles(state.getGridBlocks(grid, taken), taken);
+        }
+
+        int blocks = state.getBlockCount();
+        environment.ensureCapacity(blocks + 1); // The blocks and the paddle
+        staticLayer.ensureCapacity(blocks);
+        for (int i = 0; i < blocks; i++) {
+            state.getBlock().addToGame(this);
+        }
+
+        int moving = state.getCount();
+        for (int i = 0; i < moving; i++) {
+            int kind = state.getInt();
+            if (kind == SAVED_BALL) {
+                addBall(state.getBall());
+            } else if (kind == SAVED_PADDLE) {
+                Rectangle rect = state.getRectangle();
+                Color color = state.getColor();
+                createPaddle(rect, color, state.getDouble());
+            } else if (kind == SAVED_SCORE_INDICATOR) {
+                this.addSprite(new ScoreIndicator(this.score));
+            } else if (kind == SAVED_BALL_SYSTEM) {
+                setBallCollisions(state.getInt() != 0);
+                int balls = state.getBallCount();
+                for (int j = 0; j < balls; j++) {
+                    Ball ball = state.getBall();
+                    spawnBall(ball.getCenter().getX(), ball.getCenter().getY(), ball.getSize(), ball.getColor(),
+                            ball.getVelocity().getDoublex(), ball.getVelocity().getDoubley());
+                }
+            } else {
+                throw new IOException("Corrupt save state " + path + ": unknown sprite kind " + kind);
+            }
+        }
+
+        // Adding the balls counted them again, so set the counters to their saved values last
+        score.increase(savedScore);
+        remainingBlocks.increase(savedBlocks - remainingBlocks.getValue());
+        remainingBalls.increase(savedBalls - remainingBalls.getValue());
+    }
+
+    /**
+     * Adds a ball to the game, counting it among the remaining balls.
+     *
+     * @param ball The ball to add.
+     */
+    private void addBall(Ball ball) {
+        ball.setGameEnvironment(environment);
+        ball.addToGame(this);
+        remainingBalls.increase(1);
+        if (rewindBuffer != null) {
+            rewindBuffer.track(ball);
+        }
+    }
+
+    /**
+     * Spawns a ball in the game's ball system, which moves all spawned balls as one sprite.
+     * Use this instead of creating Ball objects when the game holds a very large number of balls.
+     * The state of such balls is not kept for rewinding, so spawning one turns rewinding off.
+     *
+     * @param x      The x-coordinate of the center of the ball.
+     * @param y      The y-coordinate of the center of the ball.
      * @param radius The radius of the ball.
      * @param color  The color of the ball.
      * @param dx     The horizontal velocity of the ball.
      * @param dy     The vertical velocity of the ball.
      */
-    private void createBall(Point center, int radius, Color color, double dx, double dy) {
-        Ball ball = new Ball(center, radius, color);
-        ball.setVelocity(dx, dy);
-        ball.setGameEnvironment(environment);
-        ball.addToGame(this);
+    public void spawnBall(double x, double y, int radius, Color color, double dx, double dy) {
+        if (ballSystem == null) {
+            ballSystem = new BallSystem(environment, 800, 600);
+            ballSystem.setPool(physicsPool);
+            ballSystem.setBallCollisions(ballCollisions);
+            this.addSprite(ballSystem);
+        }
+        ballSystem.addBall(x, y, radius, color, dx, dy);
+        rewindBuffer = null;
         remainingBalls.increase(1);
     }
 
     /**
-     * Creates the shoulder blocks (margins) around the play area.
+     * Moves the balls of the ball system in parallel on the given pool. The outcome of the game is the same
+     * as when they are moved on the game thread, since their hits are reported in the same order.
      *
-     * @param marginSize The size of the margins.
+     * @param pool The pool to move the balls on, or null to move them on the game thread.
      */
-    private void createShoulderBlocks(int marginSize) {
-        // Create the top margin block
-        Block topMarginBlock = new Block(new Rectangle(new Point(0, 0), 800, marginSize), Color.GRAY, false, false);
-        topMarginBlock.addToGame(this);
-
-        // Create the left margin block
-        Block leftMarginBlock = new Block(new Rectangle(new Point(0, marginSize), marginSize, 600 - marginSize),
-                Color.GRAY, false, false);
-        leftMarginBlock.addToGame(this);
-
-        // Create the right margin block
-        Block rightMarginBlock =
-                new Block(new Rectangle(new Point(800 - marginSize, marginSize), marginSize, 600 - marginSize),
-                        Color.GRAY, false, false);
-        rightMarginBlock.addToGame(this);
+    public void setPhysicsPool(ForkJoinPool pool) {
+        this.physicsPool = pool;
+        if (ballSystem != null) {
+            ballSystem.setPool(pool);
+        }
+    }
 
-        // No bottom margin block to ensure balls can reach the death region
+    /**
+     * Sets whether the balls of the ball system bounce off each other. Balls pass through each other by default.
+     * Balls created as Ball objects never collide with other balls.
+     *
+     * @param ballCollisions true to bounce the spawned balls off each other.
+     */
+    public void setBallCollisions(boolean ballCollisions) {
+        this.ballCollisions = ballCollisions;
+        if (ballSystem != null) {
+            ballSystem.setBallCollisions(ballCollisions);
+        }
     }
 
     /**
      * Runs the game, starting the game loop which updates and draws all game elements.
+     * The game is stepped at the physics rate on a fixed timestep, decoupled from the frame rate: real time is
+     * measured with System.nanoTime and collected in an accumulator, from which whole steps are taken. At most
+     * MAX_STEPS_PER_FRAME steps are taken per frame, so after a long stall the game slows down briefly instead
+     * of stepping ever more to catch up. Frames are drawn between the last two steps, and the loop sleeps
+     * until the deadline of the next frame rather than for a fixed time.
+     * <p>
+     * The simulation runs on the calling thread and the GUI is drawn on a separate render thread. Once per frame
+     * the simulation records the sprites into a BatchingDrawSurface, which holds a snapshot of how they look, and
+     * publishes it through a TripleBuffer. The render thread draws the static layer, replays the newest snapshot
+     * on the GUI's surface and shows it. Neither thread waits for the other, so a slow show never delays a
+     * physics step; if the render thread falls behind, it skips to the newest snapshot.
+     *
+     * @return true if all blocks were removed, false if all balls were lost.
      */
-    public void run() {
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
-        while (remainingBlocks.getValue() > 0 && remainingBalls.getValue() > 0) {
-            long startTime = System.currentTimeMillis(); // timing
-            DrawSurface d = gui.getDrawSurface();
+    public boolean run() {
+        long stepNanos = NANOS_PER_SECOND / physicsRate;
+        long frameNanos = NANOS_PER_SECOND / frameRate;
+        double dt = (double) BASE_RATE / physicsRate;
+        DrawSurface canvas = new NullDrawSurface(800, 600);
+        TripleBuffer<BatchingDrawSurface> frames = new TripleBuffer<>(BatchingDrawSurface::new);
+        this.rendering = true;
+        this.renderFailure = null;
+        Thread renderer = new Thread(() -> render(frames, frameNanos), "arkanoid-render");
+        renderer.setDaemon(true);
+        renderer.start();
 
-            // Set the background color
-            d.setColor(Color.BLUE);
-            d.fillRectangle(0, 0, 800, 600);
+        long previousTime = System.nanoTime();
+        long nextFrame = previousTime;
+        long accumulator = 0;
+        boolean saveHeld = false;
+        while (!isOver()) {
+            if (renderFailure != null) {
+                throw renderFailure;
+            }
+            long now = System.nanoTime();
+            accumulator += (long) ((now - previousTime) * speed);
+            previousTime = now;
+            profiler.frame(environment.getQueryCount());
 
-            // Draw all sprites
-            this.sprites.drawAllOn(d);
-            gui.show(d);
+            // Notify all sprites that time has passed, one fixed step at a time
+            int steps = 0;
+            while (accumulator >= stepNanos && steps < MAX_STEPS_PER_FRAME && !isOver()) {
+                if (script == null && keyboard.isPressed(REWIND_KEY)) {
+                    rewind(REWIND_STEPS_PER_STEP);
+                } else {
+                    step(dt);
+                }
+                accumulator -= stepNanos;
+                steps++;
+            }
+            if (accumulator >= stepNanos) {
+                accumulator %= stepNanos; // Drop the time that could not be caught up with
+            }
+            boolean savePressed = keyboard.isPressed(SAVE_KEY);
+            if (savePressed && !saveHeld) {
+                quickSave();
+            }
+            saveHeld = savePressed;
 
-            // Notify all sprites that time has passed
-            this.sprites.notifyAllTimePassed();
+            // Record a snapshot of the sprites and hand it to the render thread
+            BatchingDrawSurface frame = frames.getBack();
+            frame.begin(canvas);
+            drawSprites(frame, (double) accumulator / stepNanos);
+            frames.publish();
+            LockSupport.unpark(renderer);
 
             // timing
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+            nextFrame += frameNanos;
+            long nanosLeftToSleep = nextFrame - System.nanoTime();
+            if (nanosLeftToSleep >= NANOS_PER_MILLISECOND) {
+                sleeper.sleepFor(nanosLeftToSleep / NANOS_PER_MILLISECOND);
+            } else if (nanosLeftToSleep < -frameNanos) {
+                nextFrame = System.nanoTime(); // More than a frame late, so start a new schedule
             }
         }
+        stopRendering(renderer);
+        profiler.dump();
+        boolean won = finish();
+        endRecording();
+        return won;
+    }
 
-        if (remainingBlocks.getValue() == 0) {
+    /**
+     * The loop of the render thread: waits for a new snapshot, draws it on the GUI and shows it,
+     * until rendering is stopped. A failure is handed to the simulation thread, which rethrows it.
+     *
+     * @param frames     The buffer the snapshots are published through.
+     * @param frameNanos The time between two frames, in nanoseconds.
+     */
+    private void render(TripleBuffer<BatchingDrawSurface> frames, long frameNanos) {
+        try {
+            while (rendering) {
+                BatchingDrawSurface frame = frames.take();
+                if (frame == null) {
+                    LockSupport.parkNanos(frameNanos);
+                    continue;
+                }
+                DrawSurface d = gui.getDrawSurface();
+                drawBackground(d);
+                long mark = profiler.start();
+                frame.flushTo(d);
+                profiler.stop(FrameProfiler.Phase.FLUSH, mark);
+                mark = profiler.start();
+                gui.show(d);
+                profiler.stop(FrameProfiler.Phase.SHOW, mark);
+            }
+        } catch (RuntimeException e) {
+            renderFailure = e;
+        }
+    }
+
+    /**
+     * Stops the render thread and waits for it to show its last frame.
+     *
+     * @param renderer The render thread.
+     */
+    private void stopRendering(Thread renderer) {
+        rendering = false;
+        LockSupport.unpark(renderer);
+        try {
+            renderer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Plays the game without a display and without sleeping between frames, until it is over
+     * or the given number of ticks has been played. Each tick is one physics step, and a frame is drawn
+     * after every tick on a surface that draws nothing.
+     *
+     * @param maxTicks   The largest number of ticks to play.
+     * @param beforeTick Called with the number of the tick before each tick is played, for example to press
+     *                   and release keys of a ScriptedKeyboard; may be null.
+     * @return The number of ticks played.
+     */
+    public int simulate(int maxTicks, IntConsumer beforeTick) {
+        DrawSurface d = new NullDrawSurface(800, 600);
+        int played = 0;
+        while (played < maxTicks && !isOver()) {
+            if (beforeTick != null) {
+                beforeTick.accept(played);
+            }
+            profiler.frame(environment.getQueryCount());
+            playOneTick(d);
+            played++;
+        }
+        profiler.dump();
+        if (isOver()) {
+            finish();
+        }
+        endRecording();
+        return played;
+    }
+
+    /**
+     * Plays one tick of the game: moves all sprites one physics step and then draws a frame on the given surface.
+     *
+     * @param d The surface to draw the frame on.
+     */
+    public void playOneTick(DrawSurface d) {
+        step((double) BASE_RATE / physicsRate);
+        drawFrame(d, 1);
+    }
+
+    /**
+     * Takes one physics step: runs the script, samples and records the paddle keys, notifies all sprites that
+     * time has passed, then dispatches the hits of the step to their listeners.
+     *
+     * @param dt The length of the step, in frames of 1/60 second.
+     */
+    private void step(double dt) {
+        if (script != null) {
+            script.accept(tick);
+        }
+        keyboard.latch();
+        tick++;
+        long mark = profiler.start();
+        this.sprites.notifyAllTimePassed(dt);
+        hitEvents.drain();
+        if (rewindBuffer != null) {
+            rewindBuffer.record();
+        }
+        profiler.stop(FrameProfiler.Phase.PHYSICS, mark);
+    }
+
+    /**
+     * Puts the game back to its state the given number of physics steps ago, at most REWIND_SECONDS seconds.
+     * The input log is cut back to the same step, so it still replays the game as it is played from there.
+     *
+     * @param steps The number of steps to go back.
+     * @return The number of steps actually gone back.
+     */
+    public int rewind(int steps) {
+        if (rewindBuffer == null) {
+            return 0;
+        }
+        int back = rewindBuffer.rewind(steps);
+        tick -= back;
+        inputLog.truncate(tick - logStart);
+        return back;
+    }
+
+    /**
+     * Checks if the game is over, either because all blocks were removed or because all balls were lost.
+     *
+     * @return true if the game is over, false otherwise.
+     */
+    public boolean isOver() {
+        return remainingBlocks.getValue() <= 0 || remainingBalls.getValue() <= 0;
+    }
+
+    /**
+     * Checks if all blocks were removed.
+     *
+     * @return true if all blocks were removed, false otherwise.
+     */
+    public boolean isCleared() {
+        return remainingBlocks.getValue() <= 0;
+    }
+
+    /**
+     * Draws the static layer and all other sprites on the given surface.
+     *
+     * @param d     The surface to draw on.
+     * @param alpha How far to draw the sprites from their states before the last step (0) to their current
+     *              states (1).
+     */
+    private void drawFrame(DrawSurface d, double alpha) {
+        drawBackground(d);
+        drawSprites(d, alpha);
+    }
+
+    /**
+     * Draws the static layer, which holds the background, walls and blocks, on the given surface.
+     *
+     * @param d The surface to draw on.
+     */
+    private void drawBackground(DrawSurface d) {
+        long mark = profiler.start();
+        staticLayer.drawOn(d);
+        profiler.stop(FrameProfiler.Phase.BACKGROUND, mark);
+    }
+
+    /**
+     * Draws all sprites that are not in the static layer on the given surface.
+     *
+     * @param d     The surface to draw on.
+     * @param alpha How far to draw the sprites from their states before the last step (0) to their current
+     *              states (1).
+     */
+    private void drawSprites(DrawSurface d, double alpha) {
+        long mark = profiler.start();
+        this.sprites.drawAllOn(d, alpha);
+        profiler.stop(FrameProfiler.Phase.DRAW, mark);
+    }
+
+    /**
+     * Ends the game, awarding the bonus for clearing all blocks.
+     *
+     * @return true if all blocks were removed, false otherwise.
+     */
+    private boolean finish() {
+        if (isCleared()) {
             score.increase(100); // Award 100 points for clearing all blocks
-            Menu.gameWon(this.gui, score.getValue());
-        } else {
-            Menu.gameLost(this.gui, score.getValue());
+            return true;
         }
+        return false;
+    }
 
+    /**
+     * Stores the final score in the input log and writes the log to the file named by the arkanoid.record
+     * system property, if it is set. A file that cannot be written, or a log that cannot be written because
+     * the game was restored, is reported on the standard error stream.
+     */
+    private void endRecording() {
+        inputLog.setFinalScore(score.getValue());
+        String path = System.getProperty(InputLog.PATH_PROPERTY);
+        if (path == null) {
+            return;
+        }
+        if (restored) {
+            System.err.println("Not writing the input log to " + path + ": a restored game cannot be replayed");
+            return;
+        }
+        try {
+            inputLog.write(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("Could not write the input log to " + path + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -1,25 +1,115 @@
 package game;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import interfaces.Collidable;
 import geometry.Line;
 import geometry.CollisionInfo;
 import geometry.Point;
-import geometry.Rectangle;
+import geometry.RayHit;
 
 /**
  * The GameEnvironment class manages a collection of collidable objects in the game.
  * It provides methods to add and remove collidables and to get information about collisions.
+ * Collidables that fit the cells of the block grid are kept in the grid; all others, including
+ * collidables that move such as the paddle, are kept in a dynamic bounding volume tree. The grid may also
+ * hold tiles, blocks loaded in bulk without objects; the Block of a tile counts as in the environment from the
+ * time a query builds it until it is removed.
+ * Every collidable also holds a slot in a registry, so membership checks and removal cost O(1). Of two collidables
+ * in the tree hit at the same time, the one in the lower slot is reported, whatever the shape of the tree.
+ * Collidables added or removed while forEachCollidable runs are added or removed once it ends; they are stored
+ * in or dropped from the grid and the tree at that point, through the slot listeners of the registry.
+ * The query methods only read the environment, so they may run on several threads at once
+ * as long as no collidable is added, removed or moved meanwhile.
  */
 public class GameEnvironment {
-    private List<Collidable> collidables;
+    private static final double TREE_MARGIN = 10;
+
+    private static final int IN_GRID = -1;
+
+    private AabbTree tree;
+    private BlockGrid blockGrid;
+    private SlotList<Collidable> collidables;
+    private int[] proxies;
+    private LongAdder queries;
 
     /**
-     * Constructs a GameEnvironment with an empty list of collidables.
+     * Constructs a GameEnvironment with no collidables.
      */
     public GameEnvironment() {
-        this.collidables = new ArrayList<>();
+        this.tree = new AabbTree(TREE_MARGIN);
+        this.collidables = new SlotList<>();
+        this.proxies = new int[0];
+        this.queries = new LongAdder();
+        this.collidables.setSlotListeners(this::attach, this::detach);
+    }
+
+    /**
+     * Sets the tile map used to store grid-aligned collidables.
+     * Collidables already in the environment are stored again, in the new grid if they fit it.
+     *
+     * @param grid The block grid to use.
+     * @throws IllegalStateException If the current grid holds tiles, which cannot be moved to another grid.
+     */
+    public void setBlockGrid(BlockGrid grid) {
+        if (blockGrid != null && blockGrid.getTileCount() > 0) {
+            throw new IllegalStateException("A block grid that holds tiles cannot be replaced");
+        }
+        for (int slot = 0; slot < collidables.slotCount(); slot++) {
+            Collidable c = collidables.get(slot);
+            if (c != null) {
+                detach(c, slot);
+            }
+        }
+        this.blockGrid = grid;
+        for (int slot = 0; slot < collidables.slotCount(); slot++) {
+            Collidable c = collidables.get(slot);
+            if (c != null) {
+                attach(c, slot);
+            }
+        }
+    }
+
+    /**
+     * Returns the tile map used to store grid-aligned collidables.
+     *
+     * @return The block grid, or null if the environment has none.
+     */
+    public BlockGrid getBlockGrid() {
+        return this.blockGrid;
+    }
+
+    /**
+     * Performs the given action on every collidable, in the order of their slots in the registry.
+     * Collidables the action adds or removes are added or removed once every collidable has been visited.
+     * The tiles of the block grid are not visited; BlockTiles.forEachTile visits them.
+     *
+     * @param action The action to perform on each collidable.
+     */
+    public void forEachCollidable(Consumer<? super Collidable> action) {
+        collidables.forEach(action);
+    }
+
+    /**
+     * Returns the number of collidables in the environment, counting the tiles of the block grid.
+     *
+     * @return The number of collidables.
+     */
+    public int size() {
+        return collidables.size() + (blockGrid == null ? 0 : blockGrid.getTileCount());
+    }
+
+    /**
+     * Makes room for the given number of collidables, so adding them does not grow the registry.
+     *
+     * @param capacity The number of collidables to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        collidables.ensureCapacity(capacity);
+        if (capacity > proxies.length) {
+            proxies = Arrays.copyOf(proxies, capacity);
+        }
     }
 
     /**
@@ -32,12 +122,139 @@ public class GameEnvironment {
     }
 
     /**
-     * Removes the given collidable from the environment.
+     * Removes the given collidable from the environment. The Block of a tile is removed with its tile at once,
+     * even during forEachCollidable, which does not visit tiles.
      *
      * @param c The collidable to remove.
      */
     public void removeCollidable(Collidable c) {
-        collidables.remove(c);
+        if (blockGrid == null || !blockGrid.removeTile(c)) {
+            collidables.remove(c);
+        }
+    }
+
+    /**
+     * Checks if the given collidable is in the environment.
+     *
+     * @param c The collidable to look for.
+     * @return true if the collidable is in the environment, false otherwise.
+     */
+    public boolean contains(Collidable c) {
+        return collidables.slotOf(c) >= 0 || isTile(c);
+    }
+
+    /**
+     * Checks if the given collidable is the Block of a tile of the block grid.
+     *
+     * @param c The collidable to look for.
+     * @return true if the collidable is the Block of a tile, false otherwise.
+     */
+    public boolean isTile(Collidable c) {
+        return blockGrid != null && blockGrid.containsTile(c);
+    }
+
+    /**
+     * Updates the environment after the collision rectangle of the given collidable has changed.
+     * Collidables that move must call this method after every move.
+     *
+     * @param c The collidable that moved.
+     */
+    public void updateCollidable(Collidable c) {
+        int slot = collidables.slotOf(c);
+        if (slot >= 0 && proxies[slot] != IN_GRID) {
+            tree.moveProxy(proxies[slot]);
+        }
+    }
+
+    /**
+     * Stores a collidable in the block grid if it fits a free cell, and in the tree otherwise.
+     *
+     * @param c    The collidable to store.
+     * @param slot The registry slot of the collidable.
+     */
+    private void attach(Collidable c, int slot) {
+        if (slot >= proxies.length) {
+            proxies = Arrays.copyOf(proxies, Math.max(Math.max(16, slot + 1), 2 * proxies.length));
+        }
+        if (blockGrid != null && blockGrid.add(c)) {
+            proxies[slot] = IN_GRID;
+        } else {
+            proxies[slot] = tree.createProxy(c, slot);
+        }
+    }
+
+    /**
+     * Removes a collidable from the block grid or the tree, wherever it is stored.
+     *
+     * @param c    The collidable to remove.
+     * @param slot The registry slot of the collidable.
+     */
+    private void detach(Collidable c, int slot) {
+        if (proxies[slot] == IN_GRID) {
+            blockGrid.remove(c);
+        } else {
+            tree.destroyProxy(proxies[slot]);
+        }
+    }
+
+    /**
+     * Returns the number of collision queries made so far. Queries may be counted from several threads at once.
+     *
+     * @return The number of calls to closestHit and closestSweep so far.
+     */
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    /**
+     * Finds the closest collidable hit by a ray, without creating any objects.
+     * The ray runs from (startX, startY) to (startX + dx, startY + dy).
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param hit    Receives the parameter and normal of the closest hit; it is reset before the query.
+     * @return The closest collidable hit by the ray, or null if the ray hits nothing.
+     */
+    public Collidable closestHit(double startX, double startY, double dx, double dy, RayHit hit) {
+        queries.increment();
+        hit.reset();
+        Collidable closest = tree.closestHit(startX, startY, dx, dy, hit);
+        if (blockGrid != null) {
+            Collidable gridHit = blockGrid.closestHit(startX, startY, dx, dy, hit);
+            if (gridHit != null) {
+                closest = gridHit;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Finds the first collidable that a circle moving from (startX, startY) to (startX + dx, startY + dy)
+     * runs into, testing the path of its center against collision rectangles grown by the radius.
+     * A circle that already overlaps a collidable is reported at t = 0 unless it is moving out of it.
+     *
+     * @param startX The x-coordinate of the center of the circle at the start of the move.
+     * @param startY The y-coordinate of the center of the circle at the start of the move.
+     * @param dx     The horizontal extent of the move.
+     * @param dy     The vertical extent of the move.
+     * @param radius The radius of the circle.
+     * @param hit    Receives the time of impact and the normal of the face that was hit; it is reset first.
+     * @return The first collidable the circle runs into, or null if the move is free.
+     */
+    public Collidable closestSweep(double startX, double startY, double dx, double dy, double radius,
+                                   RayHit hit) {
+        queries.increment();
+        hit.reset();
+        Collidable closest = tree.closestSweep(startX, startY, dx, dy, radius, hit);
+        if (blockGrid != null) {
+            Collidable gridHit = blockGrid.closestSweep(startX, startY, dx, dy, radius, hit);
+            if (gridHit != null) {
+                closest = gridHit;
+            }
+        }
+        return closest;
     }
 
     /**
@@ -49,26 +266,15 @@ public class GameEnvironment {
      * @return The CollisionInfo about the closest collision, or null if no collision occurs.
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        Point closestCollisionPoint = null;
-        Collidable closestCollisionObject = null;
-        double closestDistance = Double.POSITIVE_INFINITY;
-
-        for (Collidable collidable : collidables) {
-            Rectangle rect = collidable.getCollisionRectangle();
-            Point intersection = trajectory.closestIntersectionToStartOfLine(rect);
-            if (intersection != null) {
-                double distance = trajectory.start().distance(intersection);
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    closestCollisionPoint = intersection;
-                    closestCollisionObject = collidable;
-                }
-            }
-        }
-
-        if (closestCollisionPoint != null) {
-            return new CollisionInfo(closestCollisionPoint, closestCollisionObject);
+        double startX = trajectory.start().getX();
+        double startY = trajectory.start().getY();
+        double dx = trajectory.end().getX() - startX;
+        double dy = trajectory.end().getY() - startY;
+        RayHit hit = new RayHit();
+        Collidable closest = closestHit(startX, startY, dx, dy, hit);
+        if (closest == null) {
+            return null;
         }
-        return null;
+        return new CollisionInfo(new Point(startX + dx * hit.getT(), startY + dy * hit.getT()), closest);
     }
 }
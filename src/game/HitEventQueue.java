@@ -0,0 +1,98 @@
+package game;
+
+import graphics.Ball;
+import graphics.Block;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The HitEventQueue class collects the hits on the blocks of a game during a physics step, so that the hit
+ * listeners run once the step is over instead of in the middle of moving a ball.
+ * Listeners such as BlockRemover and BallRemover change the collections the step iterates over, and running
+ * them afterwards keeps those collections unchanged while the balls move. Events are kept in parallel arrays
+ * that are reused from step to step, so queuing a hit never allocates once the arrays have grown.
+ * Each event is dispatched to the listeners of the block that was hit, in the order the hits happened.
+ * A hit is dropped if the block or the ball was removed from the game by an earlier hit in the same drain.
+ */
+public class HitEventQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private GameEnvironment environment;
+    private Block[] blocks;
+    private Ball[] balls;
+    private int size;
+    private Set<Ball> removedBalls;
+    private boolean draining;
+
+    /**
+     * Constructs an empty HitEventQueue.
+     *
+     * @param environment The environment of the game, used to skip hits on blocks removed earlier in the drain.
+     */
+    public HitEventQueue(GameEnvironment environment) {
+        this.environment = environment;
+        this.blocks = new Block[INITIAL_CAPACITY];
+        this.balls = new Ball[INITIAL_CAPACITY];
+        this.size = 0;
+        this.removedBalls = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Queues a hit on a block.
+     *
+     * @param beingHit The block that was hit.
+     * @param hitter   The ball that hit the block.
+     */
+    public void add(Block beingHit, Ball hitter) {
+        if (size == blocks.length) {
+            blocks = Arrays.copyOf(blocks, 2 * size);
+            balls = Arrays.copyOf(balls, 2 * size);
+        }
+        blocks[size] = beingHit;
+        balls[size] = hitter;
+        size++;
+    }
+
+    /**
+     * Returns the number of queued hits.
+     *
+     * @return The number of queued hits.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Tells the queue that a ball was removed from the game. While the queue is draining, the hits the ball made
+     * later in the queue are dropped; at any other time this does nothing.
+     *
+     * @param ball The ball that was removed.
+     */
+    public void ballRemoved(Ball ball) {
+        if (draining) {
+            removedBalls.add(ball);
+        }
+    }
+
+    /**
+     * Dispatches the queued hits to the listeners of the blocks that were hit, in order, and empties the queue.
+     * A hit on a block, or by a ball, that an earlier hit in the queue removed from the game is dropped, as it
+     * would have been if the listeners had run at the time of the hit.
+     */
+    public void drain() {
+        draining = true;
+        for (int i = 0; i < size; i++) {
+            if (environment.contains(blocks[i]) && !removedBalls.contains(balls[i])) {
+                blocks[i].notifyHit(balls[i]);
+            }
+        }
+        draining = false;
+        removedBalls.clear();
+        Arrays.fill(blocks, 0, size, null);
+        Arrays.fill(balls, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,336 @@
+package game;
+
+import biuoop.KeyboardSensor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The InputLog class records the state of the paddle keys at every physics step of a game, run-length encoded.
+ * Together with the layout, the physics rate and the seed of the player, the log is enough to play the game
+ * again exactly, since the game itself is deterministic. The final score is stored so a replay can be checked.
+ * <p>
+ * The binary format is a header of the magic number "ARKR", the format version, the seed, the physics rate,
+ * the layout name, the final score, the number of ticks and the number of runs, followed by the runs.
+ * Each run is a state byte and the number of ticks it lasts as an unsigned variable-length integer,
+ * so a game where a key is held for seconds at a time takes a few bytes per second.
+ */
+public class InputLog {
+    /** The state bit of the left key. */
+    public static final int LEFT = 1;
+    /** The state bit of the right key. */
+    public static final int RIGHT = 2;
+    /** The system property that names the file a game writes its input log to. */
+    public static final String PATH_PROPERTY = "arkanoid.record";
+
+    private static final int MAGIC = 0x41524B52;
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long seed;
+    private String layout;
+    private int physicsRate;
+    private int finalScore;
+    private byte[] states;
+    private int[] lengths;
+    private int runs;
+    private int ticks;
+
+    /**
+     * Constructs an empty InputLog.
+     *
+     * @param layout      The name of the layout the game starts from.
+     * @param physicsRate The number of physics steps per second of the game.
+     */
+    public InputLog(String layout, int physicsRate) {
+        this.layout = layout;
+        this.physicsRate = physicsRate;
+        this.seed = 0;
+        this.finalScore = 0;
+        this.states = new byte[INITIAL_CAPACITY];
+        this.lengths = new int[INITIAL_CAPACITY];
+        this.runs = 0;
+        this.ticks = 0;
+    }
+
+    /**
+     * Appends the key state of one tick.
+     *
+     * @param state The state, a combination of LEFT and RIGHT.
+     */
+    public void record(int state) {
+        if (runs > 0 && states[runs - 1] == state) {
+            lengths[runs - 1]++;
+        } else {
+            if (runs == states.length) {
+                states = Arrays.copyOf(states, 2 * runs);
+                lengths = Arrays.copyOf(lengths, 2 * runs);
+            }
+            states[runs] = (byte) state;
+            lengths[runs] = 1;
+            runs++;
+        }
+        ticks++;
+    }
+
+    /**
+     * Drops the ticks after the given number of ticks, for example when the game is rewound.
+     *
+     * @param keptTicks The number of ticks to keep.
+     */
+    public void truncate(int keptTicks) {
+        while (ticks > keptTicks) {
+            int drop = Math.min(ticks - keptTicks, lengths[runs - 1]);
+            lengths[runs - 1] -= drop;
+            ticks -= drop;
+            if (lengths[runs - 1] == 0) {
+                runs--;
+            }
+        }
+    }
+
+    /**
+     * Returns a script that replays the log on the given keyboard. The script must be called with the ticks
+     * in order from 0, for example as the beforeTick of Game.simulate. After the last recorded tick no key
+     * is pressed.
+     *
+     * @param keyboard The keyboard to press and release the keys of.
+     * @return The script.
+     */
+    public IntConsumer player(ScriptedKeyboard keyboard) {
+        int[] cursor = {0, 0}; // The current run and the ticks played of it
+        return tick -> {
+            int state = 0;
+            if (cursor[0] < runs) {
+                state = states[cursor[0]];
+                if (++cursor[1] == lengths[cursor[0]]) {
+                    cursor[0]++;
+                    cursor[1] = 0;
+                }
+            }
+            setKey(keyboard, KeyboardSensor.LEFT_KEY, (state & LEFT) != 0);
+            setKey(keyboard, KeyboardSensor.RIGHT_KEY, (state & RIGHT) != 0);
+        };
+    }
+
+    /**
+     * Returns the number of recorded ticks.
+     *
+     * @return The number of ticks.
+     */
+    public int getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the number of runs of equal states the ticks are encoded in.
+     *
+     * @return The number of runs.
+     */
+    public int getRuns() {
+        return this.runs;
+    }
+
+    /**
+     * Returns the seed of the player of the game, or 0 for a human player.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Sets the seed of the player of the game.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the name of the layout the game starts from.
+     *
+     * @return The name of the layout.
+     */
+    public String getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Sets the name of the layout the game starts from.
+     *
+     * @param layout The name of the layout, Game.CLASSIC_LAYOUT or the path of a level file.
+     */
+    public void setLayout(String layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the number of physics steps per second of the game.
+     *
+     * @return The physics rate.
+     */
+    public int getPhysicsRate() {
+        return this.physicsRate;
+    }
+
+    /**
+     * Sets the number of physics steps per second of the game.
+     *
+     * @param physicsRate The physics rate.
+     */
+    public void setPhysicsRate(int physicsRate) {
+        this.physicsRate = physicsRate;
+    }
+
+    /**
+     * Returns the score the game ended with.
+     *
+     * @return The final score.
+     */
+    public int getFinalScore() {
+        return this.finalScore;
+    }
+
+    /**
+     * Sets the score the game ended with.
+     *
+     * @param finalScore The final score.
+     */
+    public void setFinalScore(int finalScore) {
+        this.finalScore = finalScore;
+    }
+
+    /**
+     * Writes the log to a file.
+     *
+     * @param path The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(physicsRate);
+            out.writeUTF(layout);
+            out.writeInt(finalScore);
+            out.writeInt(ticks);
+            out.writeInt(runs);
+            for (int r = 0; r < runs; r++) {
+                out.writeByte(states[r]);
+                writeVarInt(out, lengths[r]);
+            }
+        }
+    }
+
+    /**
+     * Reads a log from a file.
+     *
+     * @param path The file to read.
+     * @return The log.
+     * @throws IOException If the file cannot be read, is not an input log of a known version or is corrupt.
+     */
+    public static InputLog read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not an input log");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported input log version " + version + " in " + path);
+            }
+            long seed = in.readLong();
+            int physicsRate = in.readInt();
+            InputLog log = new InputLog(in.readUTF(), physicsRate);
+            log.seed = seed;
+            log.finalScore = in.readInt();
+            int ticks = in.readInt();
+            int runs = in.readInt();
+            // Every run takes at least two bytes, so a count larger than the file cannot be true
+            if (ticks < 0 || runs < 0 || runs > Files.size(path) / 2) {
+                throw new IOException("Corrupt input log " + path + ": " + runs + " runs of " + ticks + " ticks");
+            }
+            log.states = new byte[Math.max(INITIAL_CAPACITY, runs)];
+            log.lengths = new int[log.states.length];
+            long readTicks = 0;
+            for (int r = 0; r < runs; r++) {
+                log.states[r] = in.readByte();
+                log.lengths[r] = readVarInt(in);
+                if (log.lengths[r] < 1) {
+                    throw new IOException("Corrupt input log " + path + ": run " + r + " is empty");
+                }
+                readTicks += log.lengths[r];
+            }
+            if (readTicks != ticks) {
+                throw new IOException("Corrupt input log " + path + ": expected " + ticks + " ticks");
+            }
+            log.runs = runs;
+            log.ticks = ticks;
+            return log;
+        }
+    }
+
+    /**
+     * Presses or releases a key of a scripted keyboard.
+     *
+     * @param keyboard The keyboard.
+     * @param key      The key.
+     * @param pressed  true to press the key, false to release it.
+     */
+    private static void setKey(ScriptedKeyboard keyboard, String key, boolean pressed) {
+        if (pressed) {
+            keyboard.press(key);
+        } else {
+            keyboard.release(key);
+        }
+    }
+
+    /**
+     * Writes an unsigned integer in 7-bit groups, least significant first, with the high bit set on all
+     * but the last group.
+     *
+     * @param out   The stream to write to.
+     * @param value The value, at least 0.
+     * @throws IOException If the stream cannot be written.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * Reads an unsigned integer written by writeVarInt.
+     *
+     * @param in The stream to read from.
+     * @return The value.
+     * @throws IOException If the stream cannot be read or the value does not fit an int.
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            if (shift == 28 && (b & 0x70) != 0) {
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed length in input log");
+    }
+}
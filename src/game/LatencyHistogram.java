@@ -0,0 +1,145 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The LatencyHistogram class counts recorded values in log-linear buckets.
+ * Values below 2^SUB_BUCKET_BITS get a bucket each; above that, every power of two is split into
+ * 2^SUB_BUCKET_BITS equal buckets, so any value is known to within about 3% while the whole range
+ * of a long fits in a fixed array of counts. Recording a value costs a few arithmetic operations
+ * and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private long[] counts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    /**
+     * Constructs an empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+        reset();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        this.count = 0;
+        this.sum = 0;
+        this.min = Long.MAX_VALUE;
+        this.max = 0;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts[bucketOf(v)]++;
+        count++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, or 0 if no value was recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return The smallest value, or 0 if no value was recorded.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : this.min;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The largest value, or 0 if no value was recorded.
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     * The result is the upper bound of the bucket that holds the percentile, capped by the largest value.
+     *
+     * @param percent The percentage, between 0 and 100.
+     * @return The percentile, or 0 if no value was recorded.
+     */
+    public long getPercentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.max(getMin(), Math.min(max, upperBound(bucket)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the bucket that holds the given value.
+     *
+     * @param value The value, at least 0.
+     * @return The index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value held by the given bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The largest value of the bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long bound = ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+}
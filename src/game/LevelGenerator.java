@@ -0,0 +1,353 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The LevelGenerator class builds levels of any size for scale testing. A level has the walls, the death region
+ * and the paddle of the classic level, a given number of balls below the blocks, and a given number of blocks
+ * laid out in one of the layouts. All random choices come from one seeded generator, so the same parameters
+ * always build the same level, byte for byte.
+ * <p>
+ * The block field is the area of the classic level above the paddle. Block sizes are chosen so that the blocks
+ * fill about the same area whatever their number, and are multiples of 1/64 so that grid positions are exact.
+ * Blocks are worth points and are removed when their hit points run out; they do not print their hits.
+ */
+public class LevelGenerator {
+    /**
+     * The ways blocks are laid out in the block field.
+     */
+    public enum Layout {
+        /** Rows of blocks on the block grid, filled left to right and top to bottom. */
+        GRID,
+        /** Blocks at uniformly random positions, free of the grid, overlapping where they fall. */
+        RANDOM,
+        /** Blocks packed around a few random centers, free of the grid, densest at the centers. */
+        CLUSTERS
+    }
+
+    /** The prefix of the layout name of a generated level, as recorded in an input log. */
+    public static final String NAME_PREFIX = "generated:";
+
+    private static final int MARGIN = 30;
+    private static final double FIELD_LEFT = MARGIN;
+    private static final double FIELD_TOP = 50;
+    private static final double FIELD_WIDTH = 800 - 2 * MARGIN;
+    private static final double FIELD_HEIGHT = 400;
+    private static final double BLOCK_ASPECT = 40.0 / 15.0;
+    private static final double UNIT = 1.0 / 64;
+    private static final int MAX_BLOCK_CELLS = 3;
+    private static final int BLOCKS_PER_CLUSTER = 2000;
+    private static final int BALL_RADIUS = 3;
+    private static final double BALL_SPEED = 4;
+    private static final Color[] ROW_COLORS = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN,
+            Color.PINK};
+
+    private Layout layout;
+    private int blocks;
+    private int balls;
+    private long seed;
+    private boolean mixedSizes;
+    private int maxHitPoints;
+    private boolean closed;
+
+    /**
+     * Constructs a LevelGenerator of blocks of one size with one hit point each.
+     *
+     * @param layout The layout of the blocks.
+     * @param blocks The number of blocks, at least 1.
+     * @param balls  The number of balls, at least 1.
+     * @param seed   The seed of the random choices.
+     */
+    public LevelGenerator(Layout layout, int blocks, int balls, long seed) {
+        if (blocks < 1 || balls < 1) {
+            throw new IllegalArgumentException("A level needs at least one block and one ball");
+        }
+        this.layout = layout;
+        this.blocks = blocks;
+        this.balls = balls;
+        this.seed = seed;
+        this.mixedSizes = false;
+        this.maxHitPoints = 1;
+        this.closed = false;
+    }
+
+    /**
+     * Sets whether blocks have mixed sizes. On the grid a block of mixed size spans one to three cells of
+     * a row, and is stored outside the grid if it spans more than one; elsewhere it is one to three times
+     * as wide and one to two times as high as the base size.
+     *
+     * @param mixed true for blocks of mixed sizes.
+     */
+    public void setMixedSizes(boolean mixed) {
+        this.mixedSizes = mixed;
+    }
+
+    /**
+     * Sets the largest number of hit points a block is given. Each block gets a random number of hit points
+     * from 1 to this number.
+     *
+     * @param hitPoints The largest number of hit points, between 1 and LevelWriter.MAX_HIT_POINTS.
+     */
+    public void setMaxHitPoints(int hitPoints) {
+        if (hitPoints < 1 || hitPoints > LevelWriter.MAX_HIT_POINTS) {
+            throw new IllegalArgumentException("Hit points must be between 1 and " + LevelWriter.MAX_HIT_POINTS);
+        }
+        this.maxHitPoints = hitPoints;
+    }
+
+    /**
+     * Sets whether the level is closed: a closed level has a wall where the death region would be, so no ball
+     * is ever lost and a game on it only ends when its blocks are gone. Closed levels make long rallies that
+     * need no player.
+     *
+     * @param closed true for a closed level.
+     */
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+
+    /**
+     * Returns the name of the levels this generator builds, which holds all of its parameters.
+     * The name is the layout recorded in the input log of a game played on such a level, and
+     * fromName builds the same generator from it.
+     *
+     * @return The name, such as "generated:grid:100000:4:1:mixed:3:open".
+     */
+    public String getName() {
+        return NAME_PREFIX + layout.name().toLowerCase(Locale.ROOT) + ":" + blocks + ":" + balls + ":" + seed
+                + ":" + (mixedSizes ? "mixed" : "uniform") + ":" + maxHitPoints + ":" + (closed ? "closed" : "open");
+    }
+
+    /**
+     * Builds a generator from the name of a level it built. Only the exact names getName returns are accepted,
+     * so a generator built from a name always gives that name back.
+     *
+     * @param name The name, as returned by getName.
+     * @return The generator.
+     * @throws IllegalArgumentException If the name is not the name of a generated level.
+     */
+    public static LevelGenerator fromName(String name) {
+        String[] parts = name.split(":", -1);
+        if (!name.startsWith(NAME_PREFIX) || parts.length != 8) {
+            throw new IllegalArgumentException(name + " is not the name of a generated level");
+        }
+        LevelGenerator generator;
+        try {
+            generator = new LevelGenerator(Layout.valueOf(parts[1].toUpperCase(Locale.ROOT)),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+            generator.setMixedSizes(parts[5].equals("mixed"));
+            generator.setMaxHitPoints(Integer.parseInt(parts[6]));
+            generator.setClosed(parts[7].equals("closed"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(name + " is not the name of a generated level", e);
+        }
+        // Unknown words, other spellings of the numbers and other cases would not give the name back
+        if (!generator.getName().equals(name)) {
+            throw new IllegalArgumentException(name + " is not the name of a generated level");
+        }
+        return generator;
+    }
+
+    /**
+     * Builds the level.
+     *
+     * @return The level, ready to be written or loaded with Game.loadLevel.
+     */
+    public LevelWriter generate() {
+        Random random = new Random(seed);
+        LevelWriter level = new LevelWriter(getName());
+
+        // The walls and the death region of the classic level, or a floor in a closed level
+        level.addBlock(new Rectangle(new Point(0, 0), 800, MARGIN), Color.GRAY, 1, 0);
+        level.addBlock(new Rectangle(new Point(0, MARGIN), MARGIN, 600 - MARGIN), Color.GRAY, 1, 0);
+        level.addBlock(new Rectangle(new Point(800 - MARGIN, MARGIN), MARGIN, 600 - MARGIN), Color.GRAY, 1, 0);
+        if (closed) {
+            level.addBlock(new Rectangle(new Point(MARGIN, 600 - MARGIN), 800 - 2 * MARGIN, MARGIN), Color.GRAY, 1,
+                    0);
+        } else {
+            level.addBlock(new Rectangle(new Point(MARGIN, 600), 800 - 2 * MARGIN, 30), Color.BLUE, 1,
+                    LevelWriter.ROLE_REMOVE_BALL);
+        }
+
+        // The balls start below the block field, heading up at a random angle
+        for (int i = 0; i < balls; i++) {
+            double x = FIELD_LEFT + BALL_RADIUS + random.nextDouble() * (FIELD_WIDTH - 2 * BALL_RADIUS);
+            double y = FIELD_TOP + FIELD_HEIGHT + BALL_RADIUS + random.nextDouble() * 80;
+            double angle = Math.toRadians(-150 + random.nextDouble() * 120);
+            level.addBall(new Point(x, y), BALL_RADIUS, Color.WHITE, BALL_SPEED * StrictMath.cos(angle),
+                    BALL_SPEED * StrictMath.sin(angle));
+        }
+
+        switch (layout) {
+            case GRID:
+                addGridBlocks(level, random);
+                break;
+            case RANDOM:
+                addRandomBlocks(level, random);
+                break;
+            default:
+                addClusteredBlocks(level, random);
+                break;
+        }
+        return level;
+    }
+
+    /**
+     * Adds the blocks in rows on a grid sized to hold them all.
+     *
+     * @param level  The level to add the blocks to.
+     * @param random The source of the random choices.
+     */
+    private void addGridBlocks(LevelWriter level, Random random) {
+        int[] spans = new int[blocks];
+        long cells = 0;
+        for (int i = 0; i < blocks; i++) {
+            spans[i] = mixedSizes ? 1 + random.nextInt(MAX_BLOCK_CELLS) : 1;
+            cells += spans[i];
+        }
+        // Every row may end with a few cells left empty when the next block does not fit it
+        int columns = (int) Math.max(MAX_BLOCK_CELLS,
+                Math.round(Math.sqrt(cells * FIELD_WIDTH / FIELD_HEIGHT / BLOCK_ASPECT)));
+        int rows = (int) ((cells + (long) columns - 1) / columns);
+        while (countRows(spans, columns) > rows) {
+            rows++;
+        }
+        double cellWidth = toUnits(FIELD_WIDTH / columns);
+        double cellHeight = toUnits(FIELD_HEIGHT / rows);
+        level.setGrid(FIELD_LEFT, FIELD_TOP, cellWidth, cellHeight, columns, rows);
+
+        int column = 0;
+        int row = 0;
+        for (int i = 0; i < blocks; i++) {
+            if (column + spans[i] > columns) {
+                column = 0;
+                row++;
+            }
+            Rectangle rect = new Rectangle(new Point(FIELD_LEFT + column * cellWidth, FIELD_TOP + row * cellHeight),
+                    spans[i] * cellWidth, cellHeight);
+            addBlock(level, random, rect, (double) row / rows);
+            column += spans[i];
+        }
+    }
+
+    /**
+     * Adds the blocks at uniformly random positions in the block field.
+     *
+     * @param level  The level to add the blocks to.
+     * @param random The source of the random choices.
+     */
+    private void addRandomBlocks(LevelWriter level, Random random) {
+        double width = baseWidth();
+        double height = toUnits(width / BLOCK_ASPECT);
+        for (int i = 0; i < blocks; i++) {
+            double w = mixedSizes ? width * (1 + random.nextInt(MAX_BLOCK_CELLS)) : width;
+            double h = mixedSizes ? height * (1 + random.nextInt(2)) : height;
+            double x = FIELD_LEFT + toUnits(random.nextDouble() * (FIELD_WIDTH - w));
+            double y = FIELD_TOP + toUnits(random.nextDouble() * (FIELD_HEIGHT - h));
+            addBlock(level, random, new Rectangle(new Point(x, y), w, h), (y - FIELD_TOP) / FIELD_HEIGHT);
+        }
+    }
+
+    /**
+     * Adds the blocks around random centers, with normally distributed offsets, so that the blocks near each
+     * center overlap many times over.
+     *
+     * @param level  The level to add the blocks to.
+     * @param random The source of the random choices.
+     */
+    private void addClusteredBlocks(LevelWriter level, Random random) {
+        int clusters = Math.max(1, Math.min(64, blocks / BLOCKS_PER_CLUSTER));
+        double width = baseWidth();
+        double height = toUnits(width / BLOCK_ASPECT);
+        double spread = Math.min(FIELD_WIDTH, FIELD_HEIGHT) / (4 * Math.sqrt(clusters));
+        double[] centerX = new double[clusters];
+        double[] centerY = new double[clusters];
+        for (int c = 0; c < clusters; c++) {
+            centerX[c] = FIELD_LEFT + spread + random.nextDouble() * (FIELD_WIDTH - 2 * spread);
+            centerY[c] = FIELD_TOP + spread + random.nextDouble() * (FIELD_HEIGHT - 2 * spread);
+        }
+        for (int i = 0; i < blocks; i++) {
+            int c = random.nextInt(clusters);
+            double w = mixedSizes ? width * (1 + random.nextInt(MAX_BLOCK_CELLS)) : width;
+            double h = mixedSizes ? height * (1 + random.nextInt(2)) : height;
+            double x = clamp(centerX[c] + random.nextGaussian() * spread - w / 2, FIELD_LEFT,
+                    FIELD_LEFT + FIELD_WIDTH - w);
+            double y = clamp(centerY[c] + random.nextGaussian() * spread - h / 2, FIELD_TOP,
+                    FIELD_TOP + FIELD_HEIGHT - h);
+            addBlock(level, random, new Rectangle(new Point(toUnits(x), toUnits(y)), w, h),
+                    (y - FIELD_TOP) / FIELD_HEIGHT);
+        }
+    }
+
+    /**
+     * Adds a block with a random number of hit points, colored by its height in the block field.
+     *
+     * @param level  The level to add the block to.
+     * @param random The source of the random choices.
+     * @param rect   The rectangle of the block.
+     * @param depth  How far down the block field the block is, from 0 at the top to 1 at the bottom.
+     */
+    private void addBlock(LevelWriter level, Random random, Rectangle rect, double depth) {
+        int hitPoints = maxHitPoints == 1 ? 1 : 1 + random.nextInt(maxHitPoints);
+        Color color = ROW_COLORS[Math.min(ROW_COLORS.length - 1, (int) (depth * ROW_COLORS.length))];
+        level.addBlock(rect, color, hitPoints, LevelWriter.ROLE_REMOVE | LevelWriter.ROLE_SCORE);
+    }
+
+    /**
+     * Returns the number of rows that blocks of the given spans take when laid out in rows of the given width.
+     *
+     * @param spans   The number of cells of each block.
+     * @param columns The number of cells in a row.
+     * @return The number of rows.
+     */
+    private static int countRows(int[] spans, int columns) {
+        int rows = 1;
+        int column = 0;
+        for (int span : spans) {
+            if (column + span > columns) {
+                column = 0;
+                rows++;
+            }
+            column += span;
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the width of a block of the base size, such that the blocks cover about the block field.
+     *
+     * @return The width, a multiple of 1/64.
+     */
+    private double baseWidth() {
+        double cellsPerBlock = mixedSizes ? (1 + MAX_BLOCK_CELLS) / 2.0 * 1.5 : 1;
+        double area = FIELD_WIDTH * FIELD_HEIGHT / (blocks * cellsPerBlock);
+        return toUnits(Math.min(FIELD_WIDTH / MAX_BLOCK_CELLS, Math.sqrt(area * BLOCK_ASPECT)));
+    }
+
+    /**
+     * Rounds a length down to a multiple of 1/64, but not below 1/64, so that sums of lengths are exact.
+     *
+     * @param length The length.
+     * @return The rounded length.
+     */
+    private static double toUnits(double length) {
+        return Math.max(UNIT, Math.floor(length / UNIT) * UNIT);
+    }
+
+    /**
+     * Returns a value limited to a range.
+     *
+     * @param value The value.
+     * @param min   The lower end of the range.
+     * @param max   The upper end of the range.
+     * @return The value, or the nearer end of the range if it is outside it.
+     */
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
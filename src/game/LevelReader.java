@@ -0,0 +1,362 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Ball;
+import graphics.Block;
+import graphics.BlockTiles;
+import listeners.ListenerGroup;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The LevelReader class streams a level written by LevelWriter. The file is mapped into memory and read once,
+ * front to back: the header is read when the level is opened, and each ball and block is decoded from the
+ * mapped buffer when it is asked for, so the loader can add it to the game before the next one is read and
+ * the level is never held in memory twice. Free blocks are decoded straight into Block objects, already wired
+ * to the listener group of their roles. Grid blocks can be read the same way, or in bulk with readTiles,
+ * which packs each of them into an int of a BlockTiles, so a level of a million grid blocks loads in
+ * milliseconds.
+ */
+public class LevelReader {
+    private ByteBuffer buffer;
+    private String source;
+    private String name;
+    private Color[] palette;
+    private BlockGrid grid;
+    private Rectangle paddle;
+    private Color paddleColor;
+    private double paddleSpeed;
+    private int ballCount;
+    private int freeBlockCount;
+    private int gridBlockCount;
+    private int ballsRead;
+    private int blocksRead;
+
+    /**
+     * Constructs a LevelReader over the given buffer, reading the header of the level.
+     *
+     * @param buffer The buffer holding the level.
+     * @param source The name of the file or buffer, for error messages.
+     * @throws IOException If the buffer does not hold a level of a known version.
+     */
+    private LevelReader(ByteBuffer buffer, String source) throws IOException {
+        this.buffer = buffer;
+        this.source = source;
+        this.ballsRead = 0;
+        this.blocksRead = 0;
+        try {
+            readHeader();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt level " + source, e);
+        }
+    }
+
+    /**
+     * Maps a level file into memory and reads its header.
+     *
+     * @param path The file to read.
+     * @return The reader, positioned at the first ball.
+     * @throws IOException If the file cannot be read or is not a level of a known version.
+     */
+    public static LevelReader map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new LevelReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString());
+        }
+    }
+
+    /**
+     * Reads a level held in a buffer, such as one built by LevelWriter.toByteBuffer.
+     *
+     * @param buffer The buffer holding the level.
+     * @param source The name of the level's origin, for error messages.
+     * @return The reader, positioned at the first ball.
+     * @throws IOException If the buffer does not hold a level of a known version.
+     */
+    public static LevelReader read(ByteBuffer buffer, String source) throws IOException {
+        return new LevelReader(buffer, source);
+    }
+
+    /**
+     * Returns the name of the level.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns a new, empty grid for the blocks of the level.
+     *
+     * @return The grid, or null if the level has none.
+     */
+    public BlockGrid createGrid() {
+        if (grid == null) {
+            return null;
+        }
+        return new BlockGrid(grid.getOriginX(), grid.getOriginY(), grid.getCellWidth(), grid.getCellHeight(),
+                grid.getColumns(), grid.getRows());
+    }
+
+    /**
+     * Returns the rectangle of the paddle.
+     *
+     * @return The rectangle of the paddle.
+     */
+    public Rectangle getPaddleRectangle() {
+        return this.paddle;
+    }
+
+    /**
+     * Returns the color of the paddle.
+     *
+     * @return The color of the paddle.
+     */
+    public Color getPaddleColor() {
+        return this.paddleColor;
+    }
+
+    /**
+     * Returns the distance the paddle moves per 1/60 second.
+     *
+     * @return The speed of the paddle.
+     */
+    public double getPaddleSpeed() {
+        return this.paddleSpeed;
+    }
+
+    /**
+     * Returns the number of balls in the level.
+     *
+     * @return The number of balls.
+     */
+    public int getBallCount() {
+        return this.ballCount;
+    }
+
+    /**
+     * Returns the number of blocks in the level.
+     *
+     * @return The number of blocks.
+     */
+    public int getBlockCount() {
+        return this.freeBlockCount + this.gridBlockCount;
+    }
+
+    /**
+     * Returns the number of blocks of the level stored with their rectangles, which nextBlock reads first.
+     *
+     * @return The number of free blocks.
+     */
+    public int getFreeBlockCount() {
+        return this.freeBlockCount;
+    }
+
+    /**
+     * Reads the next ball. All balls must be read before the first block.
+     *
+     * @return The ball, with no game environment and not added to any game.
+     * @throws IOException If the record of the ball is corrupt or every ball was read.
+     */
+    public Ball nextBall() throws IOException {
+        if (ballsRead == ballCount) {
+            throw new IOException("No more balls in level " + source);
+        }
+        ballsRead++;
+        float x = buffer.getFloat();
+        float y = buffer.getFloat();
+        float dx = buffer.getFloat();
+        float dy = buffer.getFloat();
+        int radius = buffer.getShort();
+        Ball ball = new Ball(new Point(x, y), radius, colorAt(buffer.getShort()));
+        ball.setVelocity(dx, dy);
+        return ball;
+    }
+
+    /**
+     * Reads the next block, the free blocks first and then the grid blocks.
+     *
+     * @param groups The listener group for each combination of roles, indexed by the roles.
+     * @return The block, wired to the group of its roles and not added to any game.
+     * @throws IOException If the record of the block is corrupt or every block was read.
+     */
+    public Block nextBlock(ListenerGroup[] groups) throws IOException {
+        if (ballsRead < ballCount) {
+            buffer.position(buffer.position() + (ballCount - ballsRead) * LevelWriter.BALL_BYTES);
+            ballsRead = ballCount;
+        }
+        if (blocksRead == getBlockCount()) {
+            throw new IOException("No more blocks in level " + source);
+        }
+        Rectangle rect;
+        if (blocksRead < freeBlockCount) {
+            float x = buffer.getFloat();
+            float y = buffer.getFloat();
+            rect = new Rectangle(new Point(x, y), buffer.getFloat(), buffer.getFloat());
+        } else {
+            rect = grid.getCellRectangle(cellAt(buffer.getInt()));
+        }
+        Color color = colorAt(buffer.getShort());
+        int hitPoints = buffer.get() & 0xFF;
+        int roles = rolesOf(buffer.get(), hitPoints);
+        blocksRead++;
+        return block(rect, color, hitPoints, roles, groups);
+    }
+
+    /**
+     * Reads the grid blocks that nextBlock has not read in bulk, straight into tiles over the given grid:
+     * each block costs a few array writes and no objects. A grid block whose cell already holds a block of the
+     * grid or an earlier tile is built as a Block instead and added to the given list, as nextBlock would
+     * build it. Read every free block with nextBlock first.
+     *
+     * @param gameGrid The grid of the game, created by createGrid, whose cells the tiles fill.
+     * @param groups   The listener group for each combination of roles, indexed by the roles.
+     * @param taken    Receives the grid blocks whose cells are taken, in the order they are read.
+     * @return The tiles, not added to any game.
+     * @throws IOException If the record of a block is corrupt or a free block was not read.
+     */
+    public BlockTiles readTiles(BlockGrid gameGrid, ListenerGroup[] groups, List<Block> taken) throws IOException {
+        if (blocksRead < freeBlockCount) {
+            throw new IOException("The free blocks of level " + source + " must be read before its tiles");
+        }
+        if (ballsRead < ballCount) {
+            buffer.position(buffer.position() + (ballCount - ballsRead) * LevelWriter.BALL_BYTES);
+            ballsRead = ballCount;
+        }
+        BlockTiles tiles = new BlockTiles(gameGrid, palette);
+        for (int roles = 0; roles < LevelWriter.ROLE_COMBINATIONS; roles++) {
+            tiles.addKind(groups[roles], (roles & LevelWriter.ROLE_REMOVE) != 0,
+                    (roles & LevelWriter.ROLE_REMOVE_BALL) != 0);
+        }
+        int end = getBlockCount();
+        for (; blocksRead < end; blocksRead++) {
+            int cell = cellAt(buffer.getInt());
+            int color = buffer.getShort() & 0xFFFF;
+            int hitPoints = buffer.get() & 0xFF;
+            int roles = rolesOf(buffer.get(), hitPoints);
+            if (!tiles.put(cell, color, hitPoints, roles)) {
+                taken.add(block(gameGrid.getCellRectangle(cell), colorAt((short) color), hitPoints, roles, groups));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Reads the header, the palette, the grid, the paddle and the record counts, and checks that the records
+     * fill the rest of the buffer exactly.
+     *
+     * @throws IOException If the buffer does not hold a level of a known version.
+     */
+    private void readHeader() throws IOException {
+        if (buffer.getInt() != LevelWriter.MAGIC) {
+            throw new IOException(source + " is not a level");
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != LevelWriter.VERSION) {
+            throw new IOException("Unsupported level version " + version + " in " + source);
+        }
+        byte[] nameBytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(nameBytes);
+        this.name = new String(nameBytes, StandardCharsets.UTF_8);
+        int colors = buffer.getInt();
+        if (colors < 0 || colors > buffer.remaining() / Integer.BYTES) {
+            throw new IOException("Corrupt level " + source + ": a palette of " + colors + " colors");
+        }
+        this.palette = new Color[colors];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = new Color(buffer.getInt(), true);
+        }
+        if (buffer.get() != 0) {
+            double originX = buffer.getDouble();
+            double originY = buffer.getDouble();
+            double cellWidth = buffer.getDouble();
+            double cellHeight = buffer.getDouble();
+            this.grid = new BlockGrid(originX, originY, cellWidth, cellHeight, buffer.getInt(), buffer.getInt());
+        }
+        float x = buffer.getFloat();
+        float y = buffer.getFloat();
+        this.paddle = new Rectangle(new Point(x, y), buffer.getFloat(), buffer.getFloat());
+        this.paddleColor = colorAt(buffer.getShort());
+        this.paddleSpeed = buffer.getFloat();
+        this.ballCount = buffer.getInt();
+        this.freeBlockCount = buffer.getInt();
+        this.gridBlockCount = buffer.getInt();
+        long records = (long) ballCount * LevelWriter.BALL_BYTES + (long) freeBlockCount * LevelWriter.FREE_BLOCK_BYTES
+                + (long) gridBlockCount * LevelWriter.GRID_BLOCK_BYTES;
+        if (ballCount < 0 || freeBlockCount < 0 || gridBlockCount < 0 || records != buffer.remaining()
+                || (gridBlockCount > 0 && grid == null)) {
+            throw new IOException("Corrupt level " + source + ": the records do not match the header");
+        }
+    }
+
+    /**
+     * Checks the index of the cell of a grid block.
+     *
+     * @param cell The index of the cell, as read.
+     * @return The index of the cell.
+     * @throws IOException If the cell is outside the grid.
+     */
+    private int cellAt(int cell) throws IOException {
+        if (cell < 0 || cell >= grid.getCellCount()) {
+            throw new IOException("Cell " + cell + " is outside the grid of level " + source);
+        }
+        return cell;
+    }
+
+    /**
+     * Checks the roles and the hit points of the block being read.
+     *
+     * @param roles     The roles, as read.
+     * @param hitPoints The hit points, as read.
+     * @return The roles.
+     * @throws IOException If the block has no hit points or roles that are not combinations of the roles.
+     */
+    private int rolesOf(byte roles, int hitPoints) throws IOException {
+        if (hitPoints < 1 || roles < 0 || roles >= LevelWriter.ROLE_COMBINATIONS) {
+            throw new IOException("Corrupt block " + blocksRead + " in level " + source);
+        }
+        return roles;
+    }
+
+    /**
+     * Builds a block wired to the listener group of its roles.
+     *
+     * @param rect      The rectangle of the block.
+     * @param color     The color of the block.
+     * @param hitPoints The hit points of the block.
+     * @param roles     The roles of the block.
+     * @param groups    The listener group for each combination of roles.
+     * @return The block, not added to any game.
+     */
+    private static Block block(Rectangle rect, Color color, int hitPoints, int roles, ListenerGroup[] groups) {
+        Block block = new Block(rect, color, (roles & LevelWriter.ROLE_REMOVE) != 0,
+                (roles & LevelWriter.ROLE_REMOVE_BALL) != 0);
+        block.setHitPoints(hitPoints);
+        block.setHitListeners(groups[roles]);
+        return block;
+    }
+
+    /**
+     * Returns the color at an index of the palette.
+     *
+     * @param index The index, read as a short.
+     * @return The color.
+     * @throws IOException If the index is outside the palette.
+     */
+    private Color colorAt(short index) throws IOException {
+        int i = index & 0xFFFF;
+        if (i >= palette.length) {
+            throw new IOException("Color " + i + " is outside the palette of level " + source);
+        }
+        return palette[i];
+    }
+}
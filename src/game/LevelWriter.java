@@ -0,0 +1,310 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The LevelWriter class builds a level file: the block grid, the paddle, the balls and the blocks of a level,
+ * with the color, hit points and listener roles of each block. Game.loadLevel plays such a file, and
+ * LevelReader reads it.
+ * <p>
+ * The format is the magic number "ARKL", the format version, the name of the level, the palette of colors,
+ * the block grid, the paddle, the numbers of balls, free blocks and grid blocks, and then the records of each,
+ * in that order. Coordinates are stored as floats and colors as indices into the palette. A block that fills
+ * a cell of the grid is stored as the index of the cell, in 8 bytes; any other block is stored with its
+ * rectangle, in 20 bytes. Free blocks are loaded before grid blocks, each kind in the order it was added.
+ * A role is a bit for each of the game's listeners, so the file says which listeners a block is wired to
+ * without naming classes.
+ */
+public class LevelWriter {
+    /** The role of a block that reports its hits on the standard output. */
+    public static final int ROLE_PRINT = 1;
+    /** The role of a block that is removed when its hit points run out, and must be removed to win. */
+    public static final int ROLE_REMOVE = 2;
+    /** The role of a block that removes the balls that hit it, such as the death region. */
+    public static final int ROLE_REMOVE_BALL = 4;
+    /** The role of a block that adds to the score when it is hit. */
+    public static final int ROLE_SCORE = 8;
+    /** The number of distinct combinations of roles. */
+    public static final int ROLE_COMBINATIONS = 16;
+
+    /** The magic number a level file starts with, "ARKL". */
+    public static final int MAGIC = 0x41524B4C;
+    /** The version of the format written. */
+    public static final int VERSION = 1;
+    /** The size of the record of a ball. */
+    public static final int BALL_BYTES = 4 * Float.BYTES + 2 * Short.BYTES;
+    /** The size of the record of a block that is stored with its rectangle. */
+    public static final int FREE_BLOCK_BYTES = 4 * Float.BYTES + Short.BYTES + 2;
+    /** The size of the record of a block that fills a cell of the grid. */
+    public static final int GRID_BLOCK_BYTES = Integer.BYTES + Short.BYTES + 2;
+    /** The largest number of hit points a block can have. */
+    public static final int MAX_HIT_POINTS = 255;
+    /** The longest name a level can have, in bytes of UTF-8. */
+    public static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final int MAX_COLORS = 1 << 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String name;
+    private BlockGrid grid;
+    private Rectangle paddle;
+    private Color paddleColor;
+    private double paddleSpeed;
+    private List<Color> palette;
+    private Map<Color, Integer> paletteIndex;
+    private ByteBuffer balls;
+    private ByteBuffer freeBlocks;
+    private ByteBuffer gridBlocks;
+    private int ballCount;
+    private int freeBlockCount;
+    private int gridBlockCount;
+
+    /**
+     * Constructs an empty level with a default paddle and no grid.
+     *
+     * @param name The name of the level, at most MAX_NAME_BYTES long in UTF-8.
+     * @throws IllegalArgumentException If the name is too long to be stored.
+     */
+    public LevelWriter(String name) {
+        if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("A level name has at most " + MAX_NAME_BYTES + " bytes");
+        }
+        this.name = name;
+        this.grid = null;
+        this.paddle = new Rectangle(new Point(360, 555), 80, 15);
+        this.paddleColor = Color.YELLOW;
+        this.paddleSpeed = 10;
+        this.palette = new ArrayList<>();
+        this.paletteIndex = new HashMap<>();
+        this.balls = ByteBuffer.allocate(INITIAL_CAPACITY);
+        this.freeBlocks = ByteBuffer.allocate(INITIAL_CAPACITY);
+        this.gridBlocks = ByteBuffer.allocate(INITIAL_CAPACITY);
+        this.ballCount = 0;
+        this.freeBlockCount = 0;
+        this.gridBlockCount = 0;
+    }
+
+    /**
+     * Returns the name of the level.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Sets the grid the blocks of the level are laid out on. Set the grid before adding blocks: only blocks
+     * added afterwards that fill a cell are stored as grid blocks.
+     *
+     * @param originX    The x-coordinate of the upper-left corner of the grid.
+     * @param originY    The y-coordinate of the upper-left corner of the grid.
+     * @param cellWidth  The width of a single cell.
+     * @param cellHeight The height of a single cell.
+     * @param columns    The number of columns in the grid.
+     * @param rows       The number of rows in the grid.
+     */
+    public void setGrid(double originX, double originY, double cellWidth, double cellHeight, int columns, int rows) {
+        this.grid = new BlockGrid(originX, originY, cellWidth, cellHeight, columns, rows);
+    }
+
+    /**
+     * Sets the paddle of the level.
+     *
+     * @param rect  The rectangle of the paddle.
+     * @param color The color of the paddle.
+     * @param speed The distance the paddle moves per 1/60 second.
+     */
+    public void setPaddle(Rectangle rect, Color color, double speed) {
+        this.paddle = rect;
+        this.paddleColor = color;
+        this.paddleSpeed = speed;
+    }
+
+    /**
+     * Adds a ball to the level.
+     *
+     * @param center The center of the ball.
+     * @param radius The radius of the ball.
+     * @param color  The color of the ball.
+     * @param dx     The horizontal velocity of the ball.
+     * @param dy     The vertical velocity of the ball.
+     */
+    public void addBall(Point center, int radius, Color color, double dx, double dy) {
+        balls = ensure(balls, BALL_BYTES);
+        balls.putFloat((float) center.getX());
+        balls.putFloat((float) center.getY());
+        balls.putFloat((float) dx);
+        balls.putFloat((float) dy);
+        balls.putShort((short) radius);
+        balls.putShort((short) colorIndexOf(color));
+        ballCount++;
+    }
+
+    /**
+     * Adds a block to the level.
+     *
+     * @param rect      The rectangle of the block.
+     * @param color     The color of the block.
+     * @param hitPoints The number of hits the block takes before it is removed, between 1 and MAX_HIT_POINTS.
+     * @param roles     The roles of the block, a combination of the ROLE constants.
+     */
+    public void addBlock(Rectangle rect, Color color, int hitPoints, int roles) {
+        if (hitPoints < 1 || hitPoints > MAX_HIT_POINTS) {
+            throw new IllegalArgumentException("Hit points must be between 1 and " + MAX_HIT_POINTS);
+        }
+        if (roles < 0 || roles >= ROLE_COMBINATIONS) {
+            throw new IllegalArgumentException("Unknown roles " + roles);
+        }
+        int colorIndex = colorIndexOf(color);
+        int cell = cellOf(rect);
+        if (cell >= 0) {
+            gridBlocks = ensure(gridBlocks, GRID_BLOCK_BYTES);
+            gridBlocks.putInt(cell);
+            gridBlocks.putShort((short) colorIndex);
+            gridBlocks.put((byte) hitPoints);
+            gridBlocks.put((byte) roles);
+            gridBlockCount++;
+        } else {
+            freeBlocks = ensure(freeBlocks, FREE_BLOCK_BYTES);
+            freeBlocks.putFloat((float) rect.getUpperLeft().getX());
+            freeBlocks.putFloat((float) rect.getUpperLeft().getY());
+            freeBlocks.putFloat((float) rect.getWidth());
+            freeBlocks.putFloat((float) rect.getHeight());
+            freeBlocks.putShort((short) colorIndex);
+            freeBlocks.put((byte) hitPoints);
+            freeBlocks.put((byte) roles);
+            freeBlockCount++;
+        }
+    }
+
+    /**
+     * Returns the level as it is written to a file.
+     *
+     * @return A buffer holding the level, ready to be read.
+     */
+    public ByteBuffer toByteBuffer() {
+        int paddleColorIndex = colorIndexOf(paddleColor);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + 1 + Short.BYTES + nameBytes.length
+                + Integer.BYTES * (1 + palette.size())
+                + 1 + (grid == null ? 0 : 4 * Double.BYTES + 2 * Integer.BYTES)
+                + 4 * Float.BYTES + Short.BYTES + Float.BYTES
+                + 3 * Integer.BYTES + balls.position() + freeBlocks.position() + gridBlocks.position();
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.put((byte) VERSION);
+        out.putShort((short) nameBytes.length);
+        out.put(nameBytes);
+        out.putInt(palette.size());
+        for (Color color : palette) {
+            out.putInt(color.getRGB());
+        }
+        out.put((byte) (grid == null ? 0 : 1));
+        if (grid != null) {
+            out.putDouble(grid.getOriginX());
+            out.putDouble(grid.getOriginY());
+            out.putDouble(grid.getCellWidth());
+            out.putDouble(grid.getCellHeight());
+            out.putInt(grid.getColumns());
+            out.putInt(grid.getRows());
+        }
+        out.putFloat((float) paddle.getUpperLeft().getX());
+        out.putFloat((float) paddle.getUpperLeft().getY());
+        out.putFloat((float) paddle.getWidth());
+        out.putFloat((float) paddle.getHeight());
+        out.putShort((short) paddleColorIndex);
+        out.putFloat((float) paddleSpeed);
+        out.putInt(ballCount);
+        out.putInt(freeBlockCount);
+        out.putInt(gridBlockCount);
+        out.put(balls.duplicate().flip());
+        out.put(freeBlocks.duplicate().flip());
+        out.put(gridBlocks.duplicate().flip());
+        return out.flip();
+    }
+
+    /**
+     * Writes the level to a file.
+     *
+     * @param path The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer level = toByteBuffer();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (level.hasRemaining()) {
+                channel.write(level);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the grid cell a rectangle fills exactly.
+     *
+     * @param rect The rectangle.
+     * @return The index of the cell, row by row, or -1 if there is no grid or the rectangle does not fill a cell.
+     */
+    private int cellOf(Rectangle rect) {
+        if (grid == null || rect.getWidth() != grid.getCellWidth() || rect.getHeight() != grid.getCellHeight()) {
+            return -1;
+        }
+        double column = (rect.getUpperLeft().getX() - grid.getOriginX()) / grid.getCellWidth();
+        double row = (rect.getUpperLeft().getY() - grid.getOriginY()) / grid.getCellHeight();
+        if (column != Math.rint(column) || row != Math.rint(row) || column < 0 || row < 0
+                || column >= grid.getColumns() || row >= grid.getRows()) {
+            return -1;
+        }
+        return (int) row * grid.getColumns() + (int) column;
+    }
+
+    /**
+     * Returns the palette index of a color, adding the color to the palette if needed.
+     *
+     * @param color The color.
+     * @return The index of the color in the palette.
+     */
+    private int colorIndexOf(Color color) {
+        Integer index = paletteIndex.get(color);
+        if (index == null) {
+            if (palette.size() == MAX_COLORS) {
+                throw new IllegalArgumentException("A level has at most " + MAX_COLORS + " colors");
+            }
+            index = palette.size();
+            palette.add(color);
+            paletteIndex.put(color, index);
+        }
+        return index;
+    }
+
+    /**
+     * Makes room in a buffer for the given number of bytes, doubling it if it is full.
+     *
+     * @param buffer The buffer.
+     * @param bytes  The number of bytes about to be written.
+     * @return The buffer, or a larger copy of it.
+     */
+    private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -6,188 +6,215 @@ import biuoop.KeyboardSensor;
 import biuoop.Sleeper;
 import java.awt.Color;
 
+/**
+ * The Menu class drives the screens of the application: the main menu, the how to play screen, the games
+ * and the result screens. It is a flat state machine. Each screen returns the next one to a single loop,
+ * so playing again never deepens the call stack and a finished Game can be collected as soon as its result
+ * screen is shown. Idle screens do not change, so they are drawn once when they are entered and then only
+ * poll the keyboard.
+ */
 public class Menu {
+    private static final int POLL_MILLISECONDS = 16;
+
     private final GUI gui;
     private final KeyboardSensor keyboard;
     private final Sleeper sleeper;
+    private int lastScore;
 
+    /**
+     * Constructs a Menu with its own window.
+     */
     public Menu() {
         this.gui = new GUI("Arkanoid", 800, 600);
         this.keyboard = gui.getKeyboardSensor();
         this.sleeper = new Sleeper();
+        this.lastScore = 0;
     }
 
+    /**
+     * Shows the main menu and moves between the screens until the player exits, then closes the window.
+     */
     public void showMenu() {
-        while (true) {
-            DrawSurface d = gui.getDrawSurface();
-
-            // Background gradient style
-            d.setColor(new Color(20, 20, 60));
-            d.fillRectangle(0, 0, 800, 600);
-            d.setColor(new Color(80, 120, 250)); 
-            d.fillRectangle(0, 0, 800, 200);
-
-            // Title
-            d.setColor(new Color(255, 220, 0)); 
-            d.drawText(270, 150, "ARKANOID", 70);
-
-            // Menu options
-            d.setColor(Color.WHITE);
-            d.drawText(270, 320, "Press SPACE to Play", 30);
-            d.drawText(240, 380, "Press H for How To Play", 30);
-            d.drawText(300, 440, "Press E to Exit", 30);
-
-            gui.show(d);
-
-            // Handle inputs
-            if (keyboard.isPressed(KeyboardSensor.SPACE_KEY)) {
-                Game game = new Game(gui);
-                game.initialize();
-                game.run();
-            } else if (keyboard.isPressed("h")) {
-                showInstructions(gui);
-            } else if (keyboard.isPressed("e")) {
-                gui.close();
-                System.exit(0);
+        Screen screen = Screen.MENU;
+        while (screen != Screen.EXIT) {
+            switch (screen) {
+                case MENU:
+                    screen = menu();
+                    break;
+                case INSTRUCTIONS:
+                    screen = instructions();
+                    break;
+                case PLAY:
+                    screen = play();
+                    break;
+                case WON:
+                case LOST:
+                    screen = result(screen == Screen.WON);
+                    break;
+                default:
+                    screen = Screen.EXIT;
             }
-
-            sleeper.sleepFor(16);
         }
+        gui.close();
+        System.exit(0);
     }
 
-
-public static void gameLost(GUI gui, int score) {
-    KeyboardSensor keyboard = gui.getKeyboardSensor();
-    Sleeper sleeper = new Sleeper();
-
-    while (true) {
+    /**
+     * Shows the main menu.
+     *
+     * @return The next screen.
+     */
+    private Screen menu() {
         DrawSurface d = gui.getDrawSurface();
 
-        // Background gradient effect (simulated)
-        d.setColor(new Color(255, 240, 240));
+        // Background gradient style
+        d.setColor(new Color(20, 20, 60));
         d.fillRectangle(0, 0, 800, 600);
+        d.setColor(new Color(80, 120, 250));
+        d.fillRectangle(0, 0, 800, 200);
 
-        // Title text
-        d.setColor(new Color(200, 0, 0)); // deep red
-        d.drawText(250, 180, "GAME OVER!", 60);
-
-        // Score display
-        d.setColor(Color.BLACK);
-        d.drawText(290, 270, "Your Score: " + score, 35);
+        // Title
+        d.setColor(new Color(255, 220, 0));
+        d.drawText(270, 150, "ARKANOID", 70);
 
-        // Replay and quit instructions
-        d.setColor(new Color(60, 60, 60));
-        d.drawText(150, 370, "Press SPACE to play again", 25);
-        d.drawText(150, 420, "Press E to exit", 25);
+        // Menu options
+        d.setColor(Color.WHITE);
+        d.drawText(270, 320, "Press SPACE to Play", 30);
+        d.drawText(240, 380, "Press H for How To Play", 30);
+        d.drawText(300, 440, "Press E to Exit", 30);
 
         gui.show(d);
 
-        // Handle input
-        if (keyboard.isPressed(KeyboardSensor.SPACE_KEY)) {
-            Game newGame = new Game(gui);
-            newGame.initialize();
-            newGame.run();
-            break;
+        // Handle inputs
+        String key = waitForKey(KeyboardSensor.SPACE_KEY, "h", "e");
+        if (key.equals(KeyboardSensor.SPACE_KEY)) {
+            return Screen.PLAY;
         }
-
-        if (keyboard.isPressed("e")) {
-            gui.close();
-            System.exit(0);
-        }
-
-        sleeper.sleepFor(16);
+        return key.equals("h") ? Screen.INSTRUCTIONS : Screen.EXIT;
     }
-}
-
-
 
-public static void gameWon(GUI gui, int score) {
-    KeyboardSensor keyboard = gui.getKeyboardSensor();
-    Sleeper sleeper = new Sleeper();
-
-    while (true) {
+    /**
+     * Shows the how to play screen.
+     *
+     * @return The next screen.
+     */
+    private Screen instructions() {
         DrawSurface d = gui.getDrawSurface();
 
-        // Background with bright celebratory tone
-        d.setColor(new Color(255, 250, 200));
+        // Soft light background
+        d.setColor(new Color(240, 245, 255));
         d.fillRectangle(0, 0, 800, 600);
 
-        // Main "You Won!" title
-        d.setColor(new Color(255, 200, 0)); 
-        d.drawText(270, 180, "YOU WON!", 60);
-
-        // Score display
-        d.setColor(new Color(50, 50, 120)); 
-        d.drawText(290, 270, "Your Score: " + score, 35);
+        // Header
+        d.setColor(new Color(60, 90, 200));
+        d.drawText(250, 120, "HOW TO PLAY", 50);
 
-        // Replay and exit instructions
-        d.setColor(new Color(70, 70, 70));
-        d.drawText(150, 370, "Press SPACE to play again", 25);
-        d.drawText(150, 420, "Press E to exit", 25);
+        // Instructions
+        d.setColor(Color.BLACK);
+        d.drawText(150, 220, "->  Use the RIGHT arrow key to move right", 25);
+        d.drawText(150, 260, "<-  Use the LEFT arrow key to move left", 25);
+        d.drawText(150, 300, "  Break all blocks to win the game", 25);
+        d.drawText(150, 340, "  Don't let the balls fall below the paddle!", 25);
+        d.drawText(150, 380, "R   Hold R to rewind up to 10 seconds", 25);
+        d.drawText(150, 420, "S   Press S to save the game", 25);
+
+        // Back/start prompt
+        d.setColor(new Color(40, 40, 40));
+        d.drawText(180, 460, "Press SPACE to Start Playing", 30);
+        d.drawText(230, 510, "Press B to Return to Menu", 25);
 
         gui.show(d);
 
-        // Handle keyboard input
-        if (keyboard.isPressed(KeyboardSensor.SPACE_KEY)) {
-            Game newGame = new Game(gui);
-            newGame.initialize();
-            newGame.run();
-            break;
-        }
-
-        if (keyboard.isPressed("e")) {
-            gui.close();
-            System.exit(0);
-        }
+        String key = waitForKey(KeyboardSensor.SPACE_KEY, "b");
+        return key.equals(KeyboardSensor.SPACE_KEY) ? Screen.PLAY : Screen.MENU;
+    }
 
-        sleeper.sleepFor(16);
+    /**
+     * Plays one game. The game is only referenced while it is played.
+     *
+     * @return The result screen of the game.
+     */
+    private Screen play() {
+        Game game = new Game(gui);
+        game.initialize();
+        boolean won = game.run();
+        lastScore = game.getScore().getValue();
+        return won ? Screen.WON : Screen.LOST;
     }
-}
 
+    /**
+     * Shows the result of the last game.
+     *
+     * @param won true if the last game was won, false if it was lost.
+     * @return The next screen.
+     */
+    private Screen result(boolean won) {
+        DrawSurface d = gui.getDrawSurface();
 
-    // Show instructions screen
-    private void showInstructions(GUI gui) {
-        KeyboardSensor keyboard = gui.getKeyboardSensor();
-        Sleeper sleeper = new Sleeper();
+        if (won) {
+            // Background with bright celebratory tone
+            d.setColor(new Color(255, 250, 200));
+            d.fillRectangle(0, 0, 800, 600);
 
-        while (true) {
-            DrawSurface d = gui.getDrawSurface();
+            // Main "You Won!" title
+            d.setColor(new Color(255, 200, 0));
+            d.drawText(270, 180, "YOU WON!", 60);
+
+            // Score display
+            d.setColor(new Color(50, 50, 120));
+            d.drawText(290, 270, "Your Score: " + lastScore, 35);
 
-            // Soft light background
-            d.setColor(new Color(240, 245, 255));
+            // Replay and exit instructions
+            d.setColor(new Color(70, 70, 70));
+        } else {
+            // Background gradient effect (simulated)
+            d.setColor(new Color(255, 240, 240));
             d.fillRectangle(0, 0, 800, 600);
 
-            // Header
-            d.setColor(new Color(60, 90, 200));
-            d.drawText(250, 120, "HOW TO PLAY", 50);
+            // Title text
+            d.setColor(new Color(200, 0, 0)); // deep red
+            d.drawText(250, 180, "GAME OVER!", 60);
 
-            // Instructions
+            // Score display
             d.setColor(Color.BLACK);
-            d.drawText(150, 220, "->  Use the RIGHT arrow key to move right", 25);
-            d.drawText(150, 260, "<-  Use the LEFT arrow key to move left", 25);
-            d.drawText(150, 300, "  Break all blocks to win the game", 25);
-            d.drawText(150, 340, "  Don't let the balls fall below the paddle!", 25);
-
-            // Back/start prompt
-            d.setColor(new Color(40, 40, 40));
-            d.drawText(180, 460, "Press SPACE to Start Playing", 30);
-            d.drawText(230, 510, "Press B to Return to Menu", 25);
-
-            gui.show(d);
-
-            if (keyboard.isPressed(KeyboardSensor.SPACE_KEY)) {
-                Game game = new Game(gui);
-                game.initialize();
-                game.run();
-                break;
-            }
-
-            if (keyboard.isPressed("b")) {
-                return;
-            }
+            d.drawText(290, 270, "Your Score: " + lastScore, 35);
 
-            sleeper.sleepFor(16);
+            // Replay and quit instructions
+            d.setColor(new Color(60, 60, 60));
         }
+        d.drawText(150, 370, "Press SPACE to play again", 25);
+        d.drawText(150, 420, "Press E to exit", 25);
+
+        gui.show(d);
+
+        String key = waitForKey(KeyboardSensor.SPACE_KEY, "e");
+        return key.equals(KeyboardSensor.SPACE_KEY) ? Screen.PLAY : Screen.EXIT;
     }
 
+    /**
+     * Waits until one of the given keys is pressed, without redrawing the screen.
+     * Keys still held from the previous screen must be released first, so one press never selects
+     * on two screens.
+     *
+     * @param keys The keys to wait for.
+     * @return The key that was pressed.
+     */
+    private String waitForKey(String... keys) {
+        boolean released = false;
+        while (true) {
+            String pressed = null;
+            for (String key : keys) {
+                if (keyboard.isPressed(key)) {
+                    pressed = key;
+                    break;
+                }
+            }
+            if (pressed == null) {
+                released = true;
+            } else if (released) {
+                return pressed;
+            }
+            sleeper.sleepFor(POLL_MILLISECONDS);
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package game;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The RecordingKeyboard class samples the paddle keys of another keyboard sensor once per physics step and
+ * records them in an InputLog. Between samples it reports the sampled state, so the paddle sees exactly the
+ * state that was recorded even if a key changes in the middle of a step. Other keys are read from the
+ * underlying sensor directly.
+ */
+public class RecordingKeyboard implements KeyboardSensor {
+    private KeyboardSensor source;
+    private InputLog log;
+    private int state;
+
+    /**
+     * Constructs a RecordingKeyboard.
+     *
+     * @param source The keyboard sensor to sample.
+     * @param log    The log to record the samples in.
+     */
+    public RecordingKeyboard(KeyboardSensor source, InputLog log) {
+        this.source = source;
+        this.log = log;
+        this.state = 0;
+    }
+
+    /**
+     * Samples the paddle keys of the underlying sensor and records their state. Called once per physics step.
+     */
+    public void latch() {
+        int sampled = 0;
+        if (source.isPressed(LEFT_KEY)) {
+            sampled |= InputLog.LEFT;
+        }
+        if (source.isPressed(RIGHT_KEY)) {
+            sampled |= InputLog.RIGHT;
+        }
+        state = sampled;
+        log.record(sampled);
+    }
+
+    /**
+     * Checks if a key is pressed. The paddle keys report their state at the last sample.
+     *
+     * @param key The key to check.
+     * @return true if the key is pressed, false otherwise.
+     */
+    @Override
+    public boolean isPressed(String key) {
+        if (LEFT_KEY.equals(key)) {
+            return (state & InputLog.LEFT) != 0;
+        }
+        if (RIGHT_KEY.equals(key)) {
+            return (state & InputLog.RIGHT) != 0;
+        }
+        return source.isPressed(key);
+    }
+}
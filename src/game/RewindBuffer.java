@@ -0,0 +1,291 @@
+package game;
+
+import geometry.Point;
+import graphics.Ball;
+import graphics.Block;
+import graphics.Paddle;
+import listeners.Counter;
+import listeners.ListenerGroup;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The RewindBuffer class keeps the state of a game after each of its most recent physics steps, so the game
+ * can be put back to any of them at once instead of being simulated again from the start.
+ * <p>
+ * The buffer is a ring of a fixed number of ticks, held in flat primitive arrays that are allocated once.
+ * For every tick it stores the position, velocity and color of each tracked ball, the position of the paddle,
+ * and the score and remaining block and ball counters. Removals and damage are stored as deltas. A tick lists
+ * only the balls removed and the blocks removed or damaged during it, with the listeners or hit points the
+ * blocks had, and most ticks change none. Rewinding undoes those changes, newest first, and then restores the
+ * rest of the state from the target tick. Recording a tick copies a few numbers per ball and never allocates
+ * unless something was removed or damaged.
+ * <p>
+ * The game keeps its sprites and collidables in slot lists, which hand out the most recently freed slot first.
+ * Undoing every removal in the reverse order of the removals therefore gives each ball and block back the slot it
+ * had, so the game steps its sprites and breaks ties between hits in the same order as when it was first played,
+ * and its input log still replays it exactly.
+ */
+public class RewindBuffer {
+    private static final int BALL_FIELDS = 4;
+    private static final int NOT_IN_GAME = -1;
+    private static final Object BALL_REMOVED = new Object();
+
+    private Game game;
+    private Paddle paddle;
+    private Counter score;
+    private Counter remainingBlocks;
+    private Counter remainingBalls;
+    private List<Ball> balls;
+    private int capacity;
+    private int oldest;
+    private int size;
+    private double[] ballState;
+    private int[] ballColor;
+    private double[] paddleX;
+    private int[] scores;
+    private int[] blocksLeft;
+    private int[] ballsLeft;
+    private Object[][] changes;
+    private List<Object> pending;
+    private List<Color> palette;
+    private Map<Color, Integer> paletteIndex;
+
+    /**
+     * Constructs an empty RewindBuffer.
+     *
+     * @param game            The game whose state is kept.
+     * @param capacity        The number of ticks kept.
+     * @param score           The score counter of the game.
+     * @param remainingBlocks The counter of the blocks left in the game.
+     * @param remainingBalls  The counter of the balls left in the game.
+     */
+    public RewindBuffer(Game game, int capacity, Counter score, Counter remainingBlocks, Counter remainingBalls) {
+        this.game = game;
+        this.capacity = capacity;
+        this.score = score;
+        this.remainingBlocks = remainingBlocks;
+        this.remainingBalls = remainingBalls;
+        this.balls = new ArrayList<>();
+        this.oldest = 0;
+        this.size = 0;
+        this.paddleX = new double[capacity];
+        this.scores = new int[capacity];
+        this.blocksLeft = new int[capacity];
+        this.ballsLeft = new int[capacity];
+        this.changes = new Object[capacity][];
+        this.pending = new ArrayList<>();
+        this.palette = new ArrayList<>();
+        this.paletteIndex = new HashMap<>();
+    }
+
+    /**
+     * Adds a ball to the balls whose state is kept. Any ticks kept so far are dropped.
+     *
+     * @param ball The ball to keep the state of.
+     */
+    public void track(Ball ball) {
+        balls.add(ball);
+        clear();
+    }
+
+    /**
+     * Sets the paddle whose position is kept.
+     *
+     * @param p The paddle.
+     */
+    public void setPaddle(Paddle p) {
+        this.paddle = p;
+    }
+
+    /**
+     * Notes that a block was removed from the game during the current tick, with the listeners it had.
+     *
+     * @param block The block that was removed.
+     */
+    public void blockRemoved(Block block) {
+        pending.add(block);
+        pending.add(block.getHitListeners());
+    }
+
+    /**
+     * Notes that a tracked ball is about to be removed from the game during the current tick.
+     * A ball removed twice in one tick is noted once.
+     *
+     * @param ball The ball that is removed.
+     */
+    public void ballRemoved(Ball ball) {
+        for (int i = 0; i < pending.size(); i += 2) {
+            if (pending.get(i) == ball) {
+                return;
+            }
+        }
+        pending.add(ball);
+        pending.add(BALL_REMOVED);
+    }
+
+    /**
+     * Notes that a block lost a hit point during the current tick, with the hit points it had.
+     *
+     * @param block The block that was damaged.
+     */
+    public void blockDamaged(Block block) {
+        pending.add(block);
+        pending.add(block.getHitPoints());
+    }
+
+    /**
+     * Records the state of the game after a tick, replacing the oldest tick if the buffer is full.
+     */
+    public void record() {
+        if (ballState == null) {
+            ballState = new double[capacity * balls.size() * BALL_FIELDS];
+            ballColor = new int[capacity * balls.size()];
+        }
+        int slot;
+        if (size < capacity) {
+            slot = (oldest + size) % capacity;
+            size++;
+        } else {
+            slot = oldest;
+            oldest = (oldest + 1) % capacity;
+        }
+        int ballCount = balls.size();
+        for (int i = 0; i < ballCount; i++) {
+            Ball ball = balls.get(i);
+            int state = (slot * ballCount + i) * BALL_FIELDS;
+            if (!game.hasSprite(ball)) {
+                ballColor[slot * ballCount + i] = NOT_IN_GAME;
+                continue;
+            }
+            ballState[state] = ball.getCenter().getX();
+            ballState[state + 1] = ball.getCenter().getY();
+            ballState[state + 2] = ball.getVelocity().getDoublex();
+            ballState[state + 3] = ball.getVelocity().getDoubley();
+            ballColor[slot * ballCount + i] = colorIndexOf(ball.getColor());
+        }
+        paddleX[slot] = paddle == null ? 0 : paddle.getX();
+        scores[slot] = score.getValue();
+        blocksLeft[slot] = remainingBlocks.getValue();
+        ballsLeft[slot] = remainingBalls.getValue();
+        changes[slot] = pending.isEmpty() ? null : pending.toArray();
+        pending.clear();
+    }
+
+    /**
+     * Returns the number of ticks the game can be rewound by.
+     *
+     * @return The number of kept ticks before the newest one.
+     */
+    public int available() {
+        return Math.max(0, size - 1);
+    }
+
+    /**
+     * Puts the game back to its state the given number of ticks before the newest recorded tick.
+     * The ticks after that one are dropped from the buffer.
+     *
+     * @param ticks The number of ticks to go back.
+     * @return The number of ticks actually gone back, less than asked if fewer ticks are kept.
+     */
+    public int rewind(int ticks) {
+        int back = Math.min(ticks, available());
+        if (back <= 0) {
+            return 0;
+        }
+
+        // Undo the removals and damage after the target tick, newest first, so everything gets its old slot back
+        for (int k = size - 1; k > size - 1 - back; k--) {
+            int slot = (oldest + k) % capacity;
+            Object[] changed = changes[slot];
+            if (changed != null) {
+                for (int r = changed.length - 2; r >= 0; r -= 2) {
+                    if (changed[r + 1] == BALL_REMOVED) {
+                        ((Ball) changed[r]).addToGame(game);
+                    } else if (changed[r + 1] instanceof ListenerGroup) {
+                        Block block = (Block) changed[r];
+                        block.addToGame(game);
+                        block.setHitListeners((ListenerGroup) changed[r + 1]);
+                    } else {
+                        ((Block) changed[r]).setHitPoints((Integer) changed[r + 1]);
+                    }
+                }
+                changes[slot] = null;
+            }
+        }
+        size -= back;
+        pending.clear();
+
+        // Restore the balls, the paddle and the counters of the target tick
+        int slot = (oldest + size - 1) % capacity;
+        int ballCount = balls.size();
+        for (int i = 0; i < ballCount; i++) {
+            Ball ball = balls.get(i);
+            int color = ballColor[slot * ballCount + i];
+            boolean inGame = game.hasSprite(ball);
+            if (color == NOT_IN_GAME) {
+                if (inGame) {
+                    ball.removeFromGame(game);
+                }
+                continue;
+            }
+            if (!inGame) {
+                ball.addToGame(game);
+            }
+            int state = (slot * ballCount + i) * BALL_FIELDS;
+            ball.setCenter(new Point(ballState[state], ballState[state + 1]));
+            ball.setVelocity(ballState[state + 2], ballState[state + 3]);
+            ball.setColor(palette.get(color));
+        }
+        if (paddle != null) {
+            paddle.setX(paddleX[slot]);
+        }
+        set(score, scores[slot]);
+        set(remainingBlocks, blocksLeft[slot]);
+        set(remainingBalls, ballsLeft[slot]);
+        return back;
+    }
+
+    /**
+     * Drops all kept ticks.
+     */
+    public void clear() {
+        oldest = 0;
+        size = 0;
+        ballState = null;
+        ballColor = null;
+        Arrays.fill(changes, null);
+        pending.clear();
+    }
+
+    /**
+     * Sets a counter to the given value.
+     *
+     * @param counter The counter.
+     * @param value   The value.
+     */
+    private static void set(Counter counter, int value) {
+        counter.increase(value - counter.getValue());
+    }
+
+    /**
+     * Returns the palette index of the given color, adding the color to the palette if needed.
+     *
+     * @param color The color.
+     * @return The index of the color in the palette.
+     */
+    private int colorIndexOf(Color color) {
+        Integer index = paletteIndex.get(color);
+        if (index == null) {
+            index = palette.size();
+            palette.add(color);
+            paletteIndex.put(color, index);
+        }
+        return index;
+    }
+}
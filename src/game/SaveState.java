@@ -0,0 +1,593 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Ball;
+import graphics.Block;
+import graphics.BlockTiles;
+import interfaces.HitListener;
+import listeners.ListenerGroup;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The SaveState class reads and writes the binary snapshot of a game in progress. Game.save and Game.restore
+ * decide what goes into a snapshot and in which order; this class provides the records they are built from,
+ * with a put method and a matching get method for each.
+ * <p>
+ * A snapshot starts with the magic number "ARKS", the format version and the offset of its tables,
+ * followed by the records. Colors and listener groups are written as indices into the tables, which come
+ * after the records because they are only known once every record is written. A listener is stored as its
+ * index in the array of the game's listeners, so restoring wires the blocks to the listeners of the new game.
+ * <p>
+ * A snapshot is encoded on the calling thread, which only copies numbers into a buffer, and written to disk
+ * on a background thread, so saving does not stall the game. It is read through a memory-mapped buffer:
+ * blocks are decoded straight from the page cache, without copying the file or parsing it through a stream.
+ * Blocks that fill cells of the block grid are stored by cell and read back in bulk into tiles, so restoring
+ * a game of a million grid blocks does not build a million objects.
+ */
+public class SaveState {
+    /** The system property that names the file the game is saved to when S is pressed. */
+    public static final String PATH_PROPERTY = "arkanoid.save";
+    /** The file the game is saved to when the system property is not set. */
+    public static final String DEFAULT_PATH = "arkanoid.arks";
+
+    private static final int MAGIC = 0x41524B53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 9;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int BLOCK_BYTES = 4 * Double.BYTES + 3 * Integer.BYTES + 1;
+    private static final int GRID_BLOCK_BYTES = 4 * Integer.BYTES + 1;
+    private static final int BALL_BYTES = 4 * Double.BYTES + 2 * Integer.BYTES;
+    private static final int GAME_BLOCK = 1;
+    private static final int DEATH_REGION = 2;
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "arkanoid-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ByteBuffer buffer;
+    private String source;
+    private HitListener[] listeners;
+    private List<Color> palette;
+    private Map<Color, Integer> paletteIndex;
+    private List<ListenerGroup> groups;
+    private Map<ListenerGroup, Integer> groupIndex;
+    private Color lastColor;
+    private int lastColorIndex;
+    private ListenerGroup lastGroup;
+    private int lastGroupIndex;
+
+    /**
+     * Constructs a SaveState over the given buffer.
+     *
+     * @param buffer    The buffer the snapshot is written to or read from.
+     * @param source    The file the snapshot is read from, for error messages, or null for a new snapshot.
+     * @param listeners The listeners of the game, whose indices identify them in the snapshot.
+     */
+    private SaveState(ByteBuffer buffer, String source, HitListener[] listeners) {
+        this.buffer = buffer;
+        this.source = source;
+        this.listeners = listeners;
+        this.palette = new ArrayList<>();
+        this.paletteIndex = new HashMap<>();
+        this.groups = new ArrayList<>();
+        this.groupIndex = new IdentityHashMap<>();
+        this.lastColor = null;
+        this.lastColorIndex = -1;
+        this.lastGroup = null;
+        this.lastGroupIndex = -1;
+    }
+
+    /**
+     * Starts a new, empty snapshot.
+     *
+     * @param listeners The listeners of the game. Blocks may only be wired to these listeners.
+     * @param blocks    The number of blocks about to be written, so the buffer is allocated once.
+     * @return The snapshot, ready for put calls.
+     */
+    public static SaveState create(HitListener[] listeners, int blocks) {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY + blocks * BLOCK_BYTES);
+        SaveState state = new SaveState(buffer, null, listeners);
+        state.buffer.putInt(MAGIC);
+        state.buffer.put((byte) VERSION);
+        state.buffer.putInt(0); // The offset of the tables, filled in by writeAsync
+        return state;
+    }
+
+    /**
+     * Maps a snapshot file into memory and reads its tables, ready for get calls in the order of the puts.
+     *
+     * @param path      The file to read.
+     * @param listeners The listeners of the new game, in the same order as those of the saved game.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be read or is not a snapshot of a known version.
+     */
+    public static SaveState map(Path path, HitListener[] listeners) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        SaveState state = new SaveState(buffer, path.toString(), listeners);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a save state");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported save state version " + version + " in " + path);
+            }
+            int tables = buffer.getInt();
+            buffer.position(tables);
+            state.readTables();
+            buffer.position(HEADER_BYTES);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt save state " + path, e);
+        }
+        return state;
+    }
+
+    /**
+     * Finishes the snapshot and writes it to a file on a background thread. The file is written under a
+     * temporary name and then renamed, so a crash while saving never leaves a partly written snapshot.
+     * The snapshot must not be used after this call.
+     *
+     * @param path The file to write to.
+     * @return A future that completes when the file is written, or completes exceptionally with an
+     *         UncheckedIOException if it cannot be written.
+     */
+    public CompletableFuture<Void> writeAsync(Path path) {
+        int tables = buffer.position();
+        writeTables();
+        buffer.putInt(HEADER_BYTES - Integer.BYTES, tables);
+        buffer.flip();
+        ByteBuffer snapshot = buffer;
+        this.buffer = null;
+        return CompletableFuture.runAsync(() -> {
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER);
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value The integer.
+     */
+    public void putInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+    }
+
+    /**
+     * Reads an integer.
+     *
+     * @return The integer.
+     */
+    public int getInt() {
+        return buffer.getInt();
+    }
+
+    /**
+     * Writes a double.
+     *
+     * @param value The double.
+     */
+    public void putDouble(double value) {
+        ensure(Double.BYTES).putDouble(value);
+    }
+
+    /**
+     * Reads a double.
+     *
+     * @return The double.
+     */
+    public double getDouble() {
+        return buffer.getDouble();
+    }
+
+    /**
+     * Writes a color as its index in the palette.
+     *
+     * @param color The color.
+     */
+    public void putColor(Color color) {
+        putInt(colorIndexOf(color));
+    }
+
+    /**
+     * Reads a color.
+     *
+     * @return The color.
+     * @throws IOException If the index of the color is outside the palette.
+     */
+    public Color getColor() throws IOException {
+        int index = getInt();
+        if (index < 0 || index >= palette.size()) {
+            throw new IOException("Color " + index + " is outside the palette of save state " + source);
+        }
+        return palette.get(index);
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 bytes.
+     *
+     * @param value The string.
+     */
+    public void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(Integer.BYTES + bytes.length).putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @return The string.
+     * @throws IOException If the length of the string is negative or longer than the rest of the snapshot.
+     */
+    public String getString() throws IOException {
+        int length = getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt string of " + length + " bytes in save state " + source);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the number of blocks that follow.
+     *
+     * @return The number of blocks.
+     * @throws IOException If the number is negative or more blocks than the rest of the snapshot holds.
+     */
+    public int getBlockCount() throws IOException {
+        return getCount(BLOCK_BYTES);
+    }
+
+    /**
+     * Reads the number of balls that follow.
+     *
+     * @return The number of balls.
+     * @throws IOException If the number is negative or more balls than the rest of the snapshot holds.
+     */
+    public int getBallCount() throws IOException {
+        return getCount(BALL_BYTES);
+    }
+
+    /**
+     * Reads the number of records of some kind that follow. Every record is an integer at least.
+     *
+     * @return The number of records.
+     * @throws IOException If the number is negative or more records than the rest of the snapshot holds.
+     */
+    public int getCount() throws IOException {
+        return getCount(Integer.BYTES);
+    }
+
+    /**
+     * Writes a rectangle as the coordinates of its upper-left corner, its width and its height.
+     *
+     * @param rect The rectangle.
+     */
+    public void putRectangle(Rectangle rect) {
+        ensure(4 * Double.BYTES);
+        buffer.putDouble(rect.getUpperLeft().getX());
+        buffer.putDouble(rect.getUpperLeft().getY());
+        buffer.putDouble(rect.getWidth());
+        buffer.putDouble(rect.getHeight());
+    }
+
+    /**
+     * Reads a rectangle.
+     *
+     * @return The rectangle.
+     */
+    public Rectangle getRectangle() {
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        return new Rectangle(new Point(x, y), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Writes a block: its rectangle, its color, its kind, its hit points and the group of its listeners.
+     *
+     * @param block The block.
+     */
+    public void putBlock(Block block) {
+        Rectangle rect = block.getCollisionRectangle();
+        ensure(BLOCK_BYTES);
+        buffer.putDouble(rect.getUpperLeft().getX());
+        buffer.putDouble(rect.getUpperLeft().getY());
+        buffer.putDouble(rect.getWidth());
+        buffer.putDouble(rect.getHeight());
+        buffer.putInt(colorIndexOf(block.getColor()));
+        buffer.put((byte) ((block.isGameBlock() ? GAME_BLOCK : 0) | (block.isDeathRegion() ? DEATH_REGION : 0)));
+        buffer.putInt(block.getHitPoints());
+        buffer.putInt(groupIndexOf(block.getHitListeners()));
+    }
+
+    /**
+     * Reads a block and wires it to the listeners of the new game. The block is not added to any game.
+     *
+     * @return The block.
+     * @throws IOException If the color or the listener group of the block is outside its table.
+     */
+    public Block getBlock() throws IOException {
+        Rectangle rect = getRectangle();
+        Color color = getColor();
+        int kind = buffer.get();
+        Block block = new Block(rect, color, (kind & GAME_BLOCK) != 0, (kind & DEATH_REGION) != 0);
+        block.setHitPoints(buffer.getInt());
+        int group = getInt();
+        if (group < 0 || group >= groups.size()) {
+            throw new IOException("Listener group " + group + " is outside the table of save state " + source);
+        }
+        block.setHitListeners(groups.get(group));
+        return block;
+    }
+
+    /**
+     * Writes a block that fills a cell of the block grid: the index of the cell, its color, its kind, its hit
+     * points and the group of its listeners.
+     *
+     * @param cell        The index of the cell.
+     * @param color       The color of the block.
+     * @param gameBlock   Whether the block is part of the game.
+     * @param deathRegion Whether the block is a death region.
+     * @param hitPoints   The hit points of the block.
+     * @param group       The listeners of the block.
+     */
+    public void putGridBlock(int cell, Color color, boolean gameBlock, boolean deathRegion, int hitPoints,
+                             ListenerGroup group) {
+        ensure(GRID_BLOCK_BYTES);
+        buffer.putInt(cell);
+        buffer.putInt(colorIndexOf(color));
+        buffer.put((byte) ((gameBlock ? GAME_BLOCK : 0) | (deathRegion ? DEATH_REGION : 0)));
+        buffer.putInt(hitPoints);
+        buffer.putInt(groupIndexOf(group));
+    }
+
+    /**
+     * Reads a number of grid blocks, wired to the listeners of the new game, straight into tiles over the given
+     * grid. A block that cannot be a tile, because its cell is taken or its hit points do not fit, is built as a
+     * Block instead and added to the given list.
+     *
+     * @param grid  The block grid of the new game.
+     * @param taken Receives the blocks that are not tiles, in the order they are read.
+     * @return The tiles, not added to any game.
+     * @throws IOException If the number of blocks does not fit in the file, or the cell, the color or the
+     *                     listener group of a block is outside the grid or its table.
+     */
+    public BlockTiles getGridBlocks(BlockGrid grid, List<Block> taken) throws IOException {
+        int count = getCount(GRID_BLOCK_BYTES);
+        BlockTiles tiles = new BlockTiles(grid, palette.toArray(new Color[0]));
+        int[] kinds = new int[4 * groups.size()];
+        Arrays.fill(kinds, -1);
+        for (int i = 0; i < count; i++) {
+            int cell = buffer.getInt();
+            if (cell < 0 || cell >= grid.getCellCount()) {
+                throw new IOException("Cell " + cell + " is outside the grid of save state " + source);
+            }
+            int color = buffer.getInt();
+            if (color < 0 || color >= palette.size()) {
+                throw new IOException("Color " + color + " is outside the palette of save state " + source);
+            }
+            int flags = buffer.get() & (GAME_BLOCK | DEATH_REGION);
+            int hitPoints = buffer.getInt();
+            int group = buffer.getInt();
+            if (group < 0 || group >= groups.size()) {
+                throw new IOException("Listener group " + group + " is outside the table of save state " + source);
+            }
+            int kind = 4 * group + flags;
+            if (kinds[kind] < 0) {
+                kinds[kind] = tiles.addKind(groups.get(group), (flags & GAME_BLOCK) != 0,
+                        (flags & DEATH_REGION) != 0);
+            }
+            if (!tiles.put(cell, color, hitPoints, kinds[kind])) {
+                Block block = new Block(grid.getCellRectangle(cell), palette.get(color), (flags & GAME_BLOCK) != 0,
+                        (flags & DEATH_REGION) != 0);
+                block.setHitPoints(hitPoints);
+                block.setHitListeners(groups.get(group));
+                taken.add(block);
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Writes a ball: its center, its velocity, its radius and its color.
+     *
+     * @param ball The ball.
+     */
+    public void putBall(Ball ball) {
+        ensure(4 * Double.BYTES);
+        buffer.putDouble(ball.getCenter().getX());
+        buffer.putDouble(ball.getCenter().getY());
+        buffer.putDouble(ball.getVelocity().getDoublex());
+        buffer.putDouble(ball.getVelocity().getDoubley());
+        putInt(ball.getSize());
+        putColor(ball.getColor());
+    }
+
+    /**
+     * Reads a ball. The ball has no game environment and is not added to any game.
+     *
+     * @return The ball.
+     * @throws IOException If the color of the ball is outside the palette.
+     */
+    public Ball getBall() throws IOException {
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double dx = buffer.getDouble();
+        double dy = buffer.getDouble();
+        int radius = getInt();
+        Ball ball = new Ball(new Point(x, y), radius, getColor());
+        ball.setVelocity(dx, dy);
+        return ball;
+    }
+
+    /**
+     * Writes the palette and the listener groups at the end of the snapshot.
+     */
+    private void writeTables() {
+        putInt(palette.size());
+        for (Color color : palette) {
+            putInt(color.getRGB());
+        }
+        putInt(groups.size());
+        for (ListenerGroup group : groups) {
+            putInt(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                putInt(indexOfListener(group.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Reads the palette and the listener groups, rebuilding the groups from the listeners of the new game.
+     *
+     * @throws IOException If a group names a listener the new game does not have.
+     */
+    private void readTables() throws IOException {
+        int colors = getInt();
+        for (int i = 0; i < colors; i++) {
+            palette.add(new Color(getInt(), true));
+        }
+        int groupCount = getInt();
+        for (int i = 0; i < groupCount; i++) {
+            int size = getInt();
+            ListenerGroup group = ListenerGroup.EMPTY;
+            for (int j = 0; j < size; j++) {
+                int listener = getInt();
+                if (listener < 0 || listener >= listeners.length) {
+                    throw new IOException("Unknown listener " + listener + " in save state " + source);
+                }
+                group = group.with(listeners[listener]);
+            }
+            groups.add(group);
+        }
+    }
+
+    /**
+     * Reads a number of records and checks that the rest of the snapshot can hold that many.
+     *
+     * @param recordBytes The smallest number of bytes a record takes.
+     * @return The number of records.
+     * @throws IOException If the number is negative or more records than the rest of the snapshot holds.
+     */
+    private int getCount(int recordBytes) throws IOException {
+        int count = getInt();
+        if (count < 0 || count > buffer.remaining() / recordBytes) {
+            throw new IOException("Corrupt save state " + source + ": " + count + " records do not fit in the file");
+        }
+        return count;
+    }
+
+    /**
+     * Returns the palette index of a color, adding the color to the palette if needed. Neighbouring blocks
+     * usually have the same color, so the last color is checked before the palette is looked up.
+     *
+     * @param color The color.
+     * @return The index of the color in the palette.
+     */
+    private int colorIndexOf(Color color) {
+        if (color == lastColor) {
+            return lastColorIndex;
+        }
+        Integer index = paletteIndex.get(color);
+        if (index == null) {
+            index = palette.size();
+            palette.add(color);
+            paletteIndex.put(color, index);
+        }
+        lastColor = color;
+        lastColorIndex = index;
+        return index;
+    }
+
+    /**
+     * Returns the table index of a listener group, adding the group to the table if needed.
+     *
+     * @param group The listener group.
+     * @return The index of the group in the table.
+     */
+    private int groupIndexOf(ListenerGroup group) {
+        if (group == lastGroup) {
+            return lastGroupIndex;
+        }
+        Integer index = groupIndex.get(group);
+        if (index == null) {
+            index = groups.size();
+            groups.add(group);
+            groupIndex.put(group, index);
+        }
+        lastGroup = group;
+        lastGroupIndex = index;
+        return index;
+    }
+
+    /**
+     * Returns the index of a listener among the listeners of the game.
+     *
+     * @param listener The listener.
+     * @return The index of the listener.
+     */
+    private int indexOfListener(HitListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Cannot save a block wired to a listener of "
+                + listener.getClass().getName() + ", which is not one of the game's listeners");
+    }
+
+    /**
+     * Makes room for the given number of bytes, doubling the buffer if it is full.
+     *
+     * @param bytes The number of bytes about to be written.
+     * @return The buffer.
+     */
+    private ByteBuffer ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        return buffer;
+    }
+}
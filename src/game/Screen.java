@@ -0,0 +1,19 @@
+package game;
+
+/**
+ * The screens of the application. The Menu moves from one screen to the next in a single loop.
+ */
+public enum Screen {
+    /** The main menu. */
+    MENU,
+    /** The how to play screen. */
+    INSTRUCTIONS,
+    /** A game being played. */
+    PLAY,
+    /** The result screen after a game that was won. */
+    WON,
+    /** The result screen after a game that was lost. */
+    LOST,
+    /** Leaving the application. */
+    EXIT
+}
@@ -0,0 +1,57 @@
+package game;
+
+import biuoop.KeyboardSensor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The ScriptedKeyboard class is a KeyboardSensor whose keys are pressed and released by code.
+ * It stands in for the keyboard of a GUI when the game is driven by a script or an AI player.
+ */
+public class ScriptedKeyboard implements KeyboardSensor {
+    private Set<String> pressed;
+
+    /**
+     * Constructs a ScriptedKeyboard with no keys pressed.
+     */
+    public ScriptedKeyboard() {
+        this.pressed = new HashSet<>();
+    }
+
+    /**
+     * Presses the given key and holds it until it is released.
+     *
+     * @param key The key to press.
+     */
+    public void press(String key) {
+        pressed.add(key);
+    }
+
+    /**
+     * Releases the given key.
+     *
+     * @param key The key to release.
+     */
+    public void release(String key) {
+        pressed.remove(key);
+    }
+
+    /**
+     * Releases all keys.
+     */
+    public void releaseAll() {
+        pressed.clear();
+    }
+
+    /**
+     * Checks if the given key is pressed.
+     *
+     * @param key The key to check.
+     * @return true if the key is pressed, false otherwise.
+     */
+    @Override
+    public boolean isPressed(String key) {
+        return pressed.contains(key);
+    }
+}
@@ -0,0 +1,222 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The SlotList class stores items in an array of slots. An item keeps its slot for as long as it stays in the
+ * list, so removal only clears the slot and costs O(1), and freed slots are reused by later additions.
+ * Items are compared by identity. Adds and removes made while the list is being iterated with forEach are
+ * buffered and applied in order once the outermost iteration ends, so iterating never needs a copy of the list.
+ * An owner that keeps data per slot registers slot listeners, which are told about every item that takes or
+ * frees a slot, whether the change was made at once or applied after an iteration.
+ *
+ * @param <T> The type of the items.
+ */
+public class SlotList<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] items;
+    private int end;
+    private int size;
+    private int[] freeSlots;
+    private int freeCount;
+    private Map<T, Integer> slots;
+    private int iterating;
+    private List<T> pending;
+    private List<Boolean> pendingAdds;
+    private ObjIntConsumer<? super T> onAdd;
+    private ObjIntConsumer<? super T> onRemove;
+
+    /**
+     * Constructs an empty SlotList.
+     */
+    public SlotList() {
+        this.items = new Object[INITIAL_CAPACITY];
+        this.end = 0;
+        this.size = 0;
+        this.freeSlots = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+        this.slots = new IdentityHashMap<>();
+        this.iterating = 0;
+        this.pending = new ArrayList<>();
+        this.pendingAdds = new ArrayList<>();
+        this.onAdd = null;
+        this.onRemove = null;
+    }
+
+    /**
+     * Sets the listeners told about items taking and freeing slots. They are called after the slot changes,
+     * including for changes buffered during an iteration, which are applied once the iteration ends.
+     *
+     * @param added   Called with each item added to the list and its slot, or null.
+     * @param removed Called with each item removed from the list and the slot it was in, or null.
+     */
+    public void setSlotListeners(ObjIntConsumer<? super T> added, ObjIntConsumer<? super T> removed) {
+        this.onAdd = added;
+        this.onRemove = removed;
+    }
+
+    /**
+     * Adds an item to the list. An item that is already in the list keeps its slot.
+     * During an iteration the addition is buffered until the iteration ends.
+     *
+     * @param item The item to add.
+     * @return The slot of the item, or -1 if the addition was buffered.
+     */
+    public int add(T item) {
+        if (iterating > 0) {
+            pending.add(item);
+            pendingAdds.add(Boolean.TRUE);
+            return -1;
+        }
+        Integer existing = slots.get(item);
+        if (existing != null) {
+            return existing;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (end == items.length) {
+                items = Arrays.copyOf(items, 2 * end);
+                freeSlots = Arrays.copyOf(freeSlots, 2 * end);
+            }
+            slot = end++;
+        }
+        items[slot] = item;
+        slots.put(item, slot);
+        size++;
+        if (onAdd != null) {
+            onAdd.accept(item, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Removes an item from the list, freeing its slot.
+     * During an iteration the removal is buffered until the iteration ends.
+     *
+     * @param item The item to remove.
+     * @return The slot the item was in, or -1 if it was not in the list or the removal was buffered.
+     */
+    public int remove(T item) {
+        if (iterating > 0) {
+            pending.add(item);
+            pendingAdds.add(Boolean.FALSE);
+            return -1;
+        }
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return -1;
+        }
+        items[slot] = null;
+        freeSlots[freeCount++] = slot;
+        size--;
+        if (onRemove != null) {
+            onRemove.accept(item, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Makes room for the given number of items, so adding them all at once, for example a whole level,
+     * never grows the slots or rehashes the index of the items.
+     *
+     * @param capacity The number of items to make room for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= items.length) {
+            return;
+        }
+        items = Arrays.copyOf(items, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        Map<T, Integer> presized = new IdentityHashMap<>(capacity);
+        presized.putAll(slots);
+        slots = presized;
+    }
+
+    /**
+     * Returns the slot of the given item.
+     *
+     * @param item The item to look for.
+     * @return The slot of the item, or -1 if it is not in the list.
+     */
+    public int slotOf(T item) {
+        Integer slot = slots.get(item);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the item in the given slot.
+     *
+     * @param slot The slot, between 0 and slotCount() - 1.
+     * @return The item in the slot, or null if the slot is free.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int slot) {
+        return (T) items[slot];
+    }
+
+    /**
+     * Returns the number of slots in use or freed so far; every slot is smaller than this number.
+     *
+     * @return The number of slots.
+     */
+    public int slotCount() {
+        return this.end;
+    }
+
+    /**
+     * Returns the number of items in the list.
+     *
+     * @return The number of items in the list.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Performs the given action on every item in slot order. Items added or removed by the action are
+     * added or removed once the iteration ends, so every item in the list when the iteration starts is visited.
+     *
+     * @param action The action to perform on each item.
+     */
+    public void forEach(Consumer<? super T> action) {
+        iterating++;
+        try {
+            int last = end;
+            for (int i = 0; i < last; i++) {
+                T item = get(i);
+                if (item != null) {
+                    action.accept(item);
+                }
+            }
+        } finally {
+            iterating--;
+            if (iterating == 0) {
+                applyPending();
+            }
+        }
+    }
+
+    /**
+     * Applies the adds and removes buffered during an iteration, in the order they were made.
+     */
+    private void applyPending() {
+        for (int i = 0; i < pending.size(); i++) {
+            if (pendingAdds.get(i)) {
+                add(pending.get(i));
+            } else {
+                remove(pending.get(i));
+            }
+        }
+        pending.clear();
+        pendingAdds.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The TripleBuffer class hands buffers from one producer thread to one consumer thread without locks.
+ * Of its three buffers the producer owns one, the back buffer, and the consumer owns another, the front buffer.
+ * The third is the latest buffer the producer published. Publishing swaps the back buffer with that one, and
+ * taking swaps the front buffer with it, each with a single atomic exchange. Neither side ever waits for the
+ * other. The producer can always publish, and the consumer always gets the newest published buffer. Buffers
+ * published while the consumer was busy are skipped.
+ *
+ * @param <T> The type of the buffers.
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private Object[] buffers;
+    private AtomicInteger middle;
+    private int back;
+    private int front;
+
+    /**
+     * Constructs a TripleBuffer with three buffers made by the given factory.
+     *
+     * @param factory The factory that makes the buffers.
+     */
+    public TripleBuffer(Supplier<T> factory) {
+        this.buffers = new Object[] {factory.get(), factory.get(), factory.get()};
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * Returns the back buffer, which the producer fills before publishing it.
+     * May only be called by the producer.
+     *
+     * @return The back buffer.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Publishes the back buffer to the consumer and gives the producer a new back buffer.
+     * May only be called by the producer.
+     *
+     * @return The new back buffer.
+     */
+    public T publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+        return getBack();
+    }
+
+    /**
+     * Takes the newest buffer published since the last call, which becomes the consumer's front buffer.
+     * The previous front buffer goes back to the producer. May only be called by the consumer.
+     *
+     * @return The newest published buffer, or null if nothing was published since the last call.
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        if ((middle.get() & FRESH) == 0) {
+            return null;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,330 @@
+package geometry;
+
+/**
+ * The RayCast class provides an allocation-free slab test between a ray and an axis-aligned box.
+ * The ray runs from (startX, startY) to (startX + dx, startY + dy) and is parameterised by t in [0, 1].
+ * All values are passed as primitive doubles and results are written into a reusable RayHit,
+ * so the collision path does not create any objects.
+ */
+public final class RayCast {
+    /** Edge flag for the left edge of a box. */
+    public static final int LEFT = 1;
+    /** Edge flag for the right edge of a box. */
+    public static final int RIGHT = 2;
+    /** Edge flag for the top edge of a box. */
+    public static final int TOP = 4;
+    /** Edge flag for the bottom edge of a box. */
+    public static final int BOTTOM = 8;
+
+    private static final double CORNER_EPSILON = 1e-12;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private RayCast() {
+    }
+
+    /**
+     * Finds the first point at which the ray crosses the border of the box.
+     * If the ray starts outside the box this is the point where it enters the box, otherwise it is the point
+     * where it leaves the box, matching the closest intersection of the ray with the edges of the box.
+     * The hit is stored only if it is closer than the hit already held by the given RayHit.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @param hit    The closest hit found so far, updated if this box is hit closer.
+     * @return true if the box is hit closer than the previous hit, false otherwise.
+     */
+    public static boolean cast(double startX, double startY, double dx, double dy,
+                               double minX, double minY, double maxX, double maxY, RayHit hit) {
+        return cast(startX, startY, dx, dy, minX, minY, maxX, maxY, hit, hit.getT());
+    }
+
+    /**
+     * Finds the first point at which the ray crosses the border of the box, like cast, but stores the hit if it
+     * comes before the given limit instead of before the hit already held by the given RayHit. A limit just past
+     * the time of that hit also accepts a box hit at the same time.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @param hit    Receives the hit if it comes before the limit.
+     * @param limit  The parameter the hit must come before.
+     * @return true if the box is hit before the limit, false otherwise.
+     */
+    public static boolean cast(double startX, double startY, double dx, double dy,
+                               double minX, double minY, double maxX, double maxY, RayHit hit, double limit) {
+        double nearX;
+        double farX;
+        if (dx == 0) {
+            if (startX < minX || startX > maxX) {
+                return false;
+            }
+            nearX = Double.NEGATIVE_INFINITY;
+            farX = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minX - startX) / dx;
+            double t2 = (maxX - startX) / dx;
+            nearX = Math.min(t1, t2);
+            farX = Math.max(t1, t2);
+        }
+
+        double nearY;
+        double farY;
+        if (dy == 0) {
+            if (startY < minY || startY > maxY) {
+                return false;
+            }
+            nearY = Double.NEGATIVE_INFINITY;
+            farY = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minY - startY) / dy;
+            double t2 = (maxY - startY) / dy;
+            nearY = Math.min(t1, t2);
+            farY = Math.max(t1, t2);
+        }
+
+        double tNear = Math.max(nearX, nearY);
+        double tFar = Math.min(farX, farY);
+        if (tNear > tFar) {
+            return false;
+        }
+
+        if (tNear >= 0) {
+            // The ray enters the box through the face of the slab it reaches last
+            if (tNear > 1 || tNear >= limit) {
+                return false;
+            }
+            double normalX = nearX >= nearY - CORNER_EPSILON ? -Math.signum(dx) : 0;
+            double normalY = nearY >= nearX - CORNER_EPSILON ? -Math.signum(dy) : 0;
+            hit.set(tNear, normalX, normalY);
+            return true;
+        }
+
+        // The ray starts inside the box and leaves it through the face of the slab it reaches first
+        if (tFar < 0 || tFar > 1 || tFar >= limit) {
+            return false;
+        }
+        double normalX = farX <= farY + CORNER_EPSILON ? Math.signum(dx) : 0;
+        double normalY = farY <= farX + CORNER_EPSILON ? Math.signum(dy) : 0;
+        hit.set(tFar, normalX, normalY);
+        return true;
+    }
+
+    /**
+     * Finds the point at which a ray moving into the box reaches its border, ignoring rays that leave the box.
+     * Used with a box grown by the radius of a circle, this is the time of impact of the circle moving along
+     * the ray. If the ray starts strictly inside the box, it is pushed out through the face of least penetration:
+     * the hit is reported at t = 0 with the normal of that face, unless the ray already moves away from it.
+     * The hit is stored only if it is closer than the hit already held by the given RayHit.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @param hit    The closest hit found so far, updated if this box is hit closer.
+     * @return true if the box is hit closer than the previous hit, false otherwise.
+     */
+    public static boolean sweep(double startX, double startY, double dx, double dy,
+                                double minX, double minY, double maxX, double maxY, RayHit hit) {
+        return sweep(startX, startY, dx, dy, minX, minY, maxX, maxY, hit, hit.getT());
+    }
+
+    /**
+     * Finds the point at which a ray moving into the box reaches its border, like sweep, but stores the hit if it
+     * comes before the given limit instead of before the hit already held by the given RayHit.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @param hit    Receives the hit if it comes before the limit.
+     * @param limit  The parameter the hit must come before.
+     * @return true if the box is hit before the limit, false otherwise.
+     */
+    public static boolean sweep(double startX, double startY, double dx, double dy,
+                                double minX, double minY, double maxX, double maxY, RayHit hit, double limit) {
+        if (startX > minX && startX < maxX && startY > minY && startY < maxY) {
+            double penetration = startX - minX;
+            double normalX = -1;
+            double normalY = 0;
+            if (maxX - startX < penetration) {
+                penetration = maxX - startX;
+                normalX = 1;
+            }
+            if (startY - minY < penetration) {
+                penetration = startY - minY;
+                normalX = 0;
+                normalY = -1;
+            }
+            if (maxY - startY < penetration) {
+                normalX = 0;
+                normalY = 1;
+            }
+            if (normalX * dx + normalY * dy >= 0 || limit <= 0) {
+                return false;
+            }
+            hit.set(0, normalX, normalY);
+            return true;
+        }
+
+        double nearX;
+        double farX;
+        if (dx == 0) {
+            if (startX < minX || startX > maxX) {
+                return false;
+            }
+            nearX = Double.NEGATIVE_INFINITY;
+            farX = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minX - startX) / dx;
+            double t2 = (maxX - startX) / dx;
+            nearX = Math.min(t1, t2);
+            farX = Math.max(t1, t2);
+        }
+
+        double nearY;
+        double farY;
+        if (dy == 0) {
+            if (startY < minY || startY > maxY) {
+                return false;
+            }
+            nearY = Double.NEGATIVE_INFINITY;
+            farY = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minY - startY) / dy;
+            double t2 = (maxY - startY) / dy;
+            nearY = Math.min(t1, t2);
+            farY = Math.max(t1, t2);
+        }
+
+        double tNear = Math.max(nearX, nearY);
+        double tFar = Math.min(farX, farY);
+        if (tNear > tFar || tNear < 0 || tNear > 1 || tNear >= limit) {
+            return false;
+        }
+        double normalX = nearX >= nearY - CORNER_EPSILON ? -Math.signum(dx) : 0;
+        double normalY = nearY >= nearX - CORNER_EPSILON ? -Math.signum(dy) : 0;
+        hit.set(tNear, normalX, normalY);
+        return true;
+    }
+
+    /**
+     * Returns the parameter at which the ray enters the box.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @return The entry parameter in [0, 1], 0 if the ray starts inside the box,
+     *         or positive infinity if the ray misses the box.
+     */
+    public static double entryTime(double startX, double startY, double dx, double dy,
+                                   double minX, double minY, double maxX, double maxY) {
+        double tEnter = 0;
+        double tExit = 1;
+        if (dx == 0) {
+            if (startX < minX || startX > maxX) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minX - startX) / dx;
+            double t2 = (maxX - startX) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (startY < minY || startY > maxY) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minY - startY) / dy;
+            double t2 = (maxY - startY) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        return tEnter <= tExit ? tEnter : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the parameter at which the ray leaves the box, assuming it enters it.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param minX   The left edge of the box.
+     * @param minY   The top edge of the box.
+     * @param maxX   The right edge of the box.
+     * @param maxY   The bottom edge of the box.
+     * @return The exit parameter, at most 1.
+     */
+    public static double exitTime(double startX, double startY, double dx, double dy,
+                                  double minX, double minY, double maxX, double maxY) {
+        double tExit = 1;
+        if (dx != 0) {
+            tExit = Math.min(tExit, Math.max((minX - startX) / dx, (maxX - startX) / dx));
+        }
+        if (dy != 0) {
+            tExit = Math.min(tExit, Math.max((minY - startY) / dy, (maxY - startY) / dy));
+        }
+        return tExit;
+    }
+
+    /**
+     * Returns the edges of the box that the given point lies on.
+     *
+     * @param x       The x-coordinate of the point.
+     * @param y       The y-coordinate of the point.
+     * @param minX    The left edge of the box.
+     * @param minY    The top edge of the box.
+     * @param maxX    The right edge of the box.
+     * @param maxY    The bottom edge of the box.
+     * @param epsilon The tolerance for comparison.
+     * @return A combination of the LEFT, RIGHT, TOP and BOTTOM flags, or 0 if the point is on no edge.
+     */
+    public static int edgesAt(double x, double y, double minX, double minY, double maxX, double maxY,
+                              double epsilon) {
+        int edges = 0;
+        if (y >= minY && y <= maxY) {
+            if (Math.abs(x - minX) < epsilon) {
+                edges |= LEFT;
+            }
+            if (Math.abs(x - maxX) < epsilon) {
+                edges |= RIGHT;
+            }
+        }
+        if (x >= minX && x <= maxX) {
+            if (Math.abs(y - minY) < epsilon) {
+                edges |= TOP;
+            }
+            if (Math.abs(y - maxY) < epsilon) {
+                edges |= BOTTOM;
+            }
+        }
+        return edges;
+    }
+}
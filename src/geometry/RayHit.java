@@ -0,0 +1,80 @@
+package geometry;
+
+/**
+ * The RayHit class holds the result of a ray cast: the parameter t along the ray at which
+ * the closest hit occurs and the outward normal of the face that was hit.
+ * A single instance is meant to be reused for every query, so ray casts do not create any garbage.
+ */
+public class RayHit {
+    private double t;
+    private double normalX;
+    private double normalY;
+
+    /**
+     * Constructs an empty RayHit.
+     */
+    public RayHit() {
+        reset();
+    }
+
+    /**
+     * Clears the hit, so that any hit along the ray is closer than the stored one.
+     */
+    public void reset() {
+        this.t = Double.POSITIVE_INFINITY;
+        this.normalX = 0;
+        this.normalY = 0;
+    }
+
+    /**
+     * Stores a hit.
+     *
+     * @param t       The parameter along the ray at which the hit occurs.
+     * @param normalX The horizontal component of the normal of the face that was hit.
+     * @param normalY The vertical component of the normal of the face that was hit.
+     */
+    public void set(double t, double normalX, double normalY) {
+        this.t = t;
+        this.normalX = normalX;
+        this.normalY = normalY;
+    }
+
+    /**
+     * Checks if a hit has been stored since the last reset.
+     *
+     * @return true if a hit has been stored, false otherwise.
+     */
+    public boolean isHit() {
+        return this.t != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the parameter along the ray at which the hit occurs,
+     * where 0 is the start of the ray and 1 is its end.
+     *
+     * @return The parameter of the hit, or positive infinity if there is no hit.
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the horizontal component of the normal of the face that was hit.
+     * The component is -1 or 1 if a vertical face was hit and 0 otherwise.
+     *
+     * @return The horizontal component of the normal.
+     */
+    public double getNormalX() {
+        return this.normalX;
+    }
+
+    /**
+     * Returns the vertical component of the normal of the face that was hit.
+     * The component is -1 or 1 if a horizontal face was hit and 0 otherwise.
+     *
+     * @return The vertical component of the normal.
+     */
+    public double getNormalY() {
+        return this.normalY;
+    }
+}
@@ -1,14 +1,12 @@
 package graphics;
 
 import game.Game;
-import geometry.Line;
 import geometry.Point;
+import geometry.RayHit;
 import biuoop.DrawSurface;
 import interfaces.Sprite;
 import game.GameEnvironment;
 import geometry.Velocity;
-import interfaces.Collidable;
-import geometry.CollisionInfo;
 
 import java.awt.Color;
 
@@ -18,10 +16,14 @@ import java.awt.Color;
  */
 public class Ball implements Sprite {
     private Point center;
+    private double previousX;
+    private double previousY;
     private int radius;
     private Color color;
     private Velocity velocity;
     private GameEnvironment gameEnvironment;
+    private RayHit rayHit;
+    private double[] motion;
 
     /**
      * Constructs a Ball with the specified center, radius, and color.
@@ -32,9 +34,13 @@ public class Ball implements Sprite {
      */
     public Ball(Point center, int r, Color color) {
         this.center = center;
+        this.previousX = center.getX();
+        this.previousY = center.getY();
         this.radius = r;
         this.color = color;
         this.velocity = new Velocity(0, 0);
+        this.rayHit = new RayHit();
+        this.motion = new double[SweptCircle.STATE_SIZE];
     }
 
     /**
@@ -132,6 +138,19 @@ public class Ball implements Sprite {
         surface.fillCircle(this.getX(), this.getY(), this.radius);
     }
 
+    /**
+     * Draws the ball on the given DrawSurface, between its centers before and after its last step.
+     *
+     * @param surface The surface to draw the ball on.
+     * @param alpha   How far to draw the ball from its previous center (0) to its current center (1).
+     */
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        surface.setColor(this.color);
+        surface.fillCircle((int) (this.previousX + (this.center.getX() - this.previousX) * alpha),
+                (int) (this.previousY + (this.center.getY() - this.previousY) * alpha), this.radius);
+    }
+
     /**
      * Notifies the ball that time has passed.
      * This method is part of the Sprite interface.
@@ -141,6 +160,16 @@ public class Ball implements Sprite {
         moveOneStep(800, 600);
     }
 
+    /**
+     * Notifies the ball that the given amount of time has passed, moving it by its velocity scaled by dt.
+     *
+     * @param dt The time that has passed, in frames of 1/60 second.
+     */
+    @Override
+    public void timePassed(double dt) {
+        moveOneStep(800, 600, dt);
+    }
+
     /**
      * Sets the velocity of the ball.
      *
@@ -198,50 +227,37 @@ public class Ball implements Sprite {
 
     /**
      * Moves the ball one step, considering collisions with other objects and boundaries.
+     * The ball is swept as a circle along its velocity, so it cannot tunnel through thin collidables, and
+     * every collision within the step is resolved in time-of-impact order.
      *
      * @param width  The width of the game area.
      * @param height The height of the game area.
      */
     public void moveOneStep(int width, int height) {
-        double nextX = this.center.getX() + this.velocity.getDoublex();
-        double nextY = this.center.getY() + this.velocity.getDoubley();
-
-        Line trajectory = new Line(this.center, new Point(nextX, nextY));
-        CollisionInfo collisionInfo = this.gameEnvironment.getClosestCollision(trajectory);
-
-        if (collisionInfo != null) {
-            Point collisionPoint = collisionInfo.collisionPoint();
-            Collidable collisionObject = collisionInfo.collisionObject();
-
-            double collisionDx = collisionPoint.getX() - this.center.getX();
-            double collisionDy = collisionPoint.getY() - this.center.getY();
-            double adjustmentFactor = (Math.sqrt(collisionDx * collisionDx + collisionDy * collisionDy) - this.radius)
-                    / Math.sqrt(collisionDx * collisionDx + collisionDy * collisionDy);
-            double adjustedX = this.center.getX() + collisionDx * adjustmentFactor;
-            double adjustedY = this.center.getY() + collisionDy * adjustmentFactor;
-
-            this.center = new Point(adjustedX, adjustedY);
-
-            this.velocity = collisionObject.hit(this, collisionPoint, this.velocity);
-
-            double moveAwayX = this.velocity.getDoublex() * 0.05;
-            double moveAwayY = this.velocity.getDoubley() * 0.05;
-            this.center = new Point(this.center.getX() + moveAwayX, this.center.getY() + moveAwayY);
-        } else {
-            this.center = new Point(nextX, nextY);
-        }
-
-        if (this.center.getX() - this.radius < 0) {
-            this.center = new Point(this.radius, this.center.getY());
-            this.velocity = new Velocity(-this.velocity.getDoublex(), this.velocity.getDoubley());
-        } else if (this.center.getX() + this.radius > width) {
-            this.center = new Point(width - this.radius, this.center.getY());
-            this.velocity = new Velocity(-this.velocity.getDoublex(), this.velocity.getDoubley());
-        }
+        moveOneStep(width, height, 1);
+    }
 
-        if (this.center.getY() - this.radius < 0) {
-            this.center = new Point(this.center.getX(), this.radius);
-            this.velocity = new Velocity(this.velocity.getDoublex(), -this.velocity.getDoubley());
+    /**
+     * Moves the ball by its velocity scaled by dt, considering collisions with other objects and boundaries.
+     *
+     * @param width  The width of the game area.
+     * @param height The height of the game area.
+     * @param dt     The length of the step, in frames of 1/60 second.
+     */
+    public void moveOneStep(int width, int height, double dt) {
+        this.previousX = this.center.getX();
+        this.previousY = this.center.getY();
+        this.motion[SweptCircle.X] = this.center.getX();
+        this.motion[SweptCircle.Y] = this.center.getY();
+        this.motion[SweptCircle.DX] = this.velocity.getDoublex();
+        this.motion[SweptCircle.DY] = this.velocity.getDoubley();
+
+        SweptCircle.move(this.gameEnvironment, this.motion, this.radius, width, height, dt, this, this.rayHit);
+
+        this.center = new Point(this.motion[SweptCircle.X], this.motion[SweptCircle.Y]);
+        if (this.motion[SweptCircle.DX] != this.velocity.getDoublex()
+                || this.motion[SweptCircle.DY] != this.velocity.getDoubley()) {
+            this.velocity = new Velocity(this.motion[SweptCircle.DX], this.motion[SweptCircle.DY]);
         }
     }
 
@@ -0,0 +1,152 @@
+package graphics;
+
+/**
+ * The BallKernel class moves the balls of a BallSystem that are clear of every collidable, in batches.
+ * The bounds of the collidables are passed as flat arrays. A ball is clear when the box it sweeps during the
+ * step, grown by its radius, overlaps none of the bounds and stays inside the game area. A clear ball cannot
+ * hit anything during the step, so it is simply moved by its velocity, exactly as SweptCircle would move it,
+ * and only the other balls have to be swept through the game environment.
+ * <p>
+ * This class is the scalar kernel. When the jdk.incubator.vector module is present and the kernel built
+ * against it is on the class path, create returns that kernel instead, which tests several balls against each
+ * collidable at once; otherwise it returns this one. Both kernels move the same balls to the same places.
+ * A kernel may keep scratch arrays, so balls moved on different threads are moved by different kernels.
+ */
+class BallKernel {
+    /** Index of the x-coordinates of the centers in the state arrays. */
+    static final int X = 0;
+    /** Index of the y-coordinates of the centers in the state arrays. */
+    static final int Y = 1;
+    /** Index of the horizontal velocities in the state arrays. */
+    static final int DX = 2;
+    /** Index of the vertical velocities in the state arrays. */
+    static final int DY = 3;
+    /** Index of the x-coordinates of the centers before the step in the state arrays. */
+    static final int PREVIOUS_X = 4;
+    /** Index of the y-coordinates of the centers before the step in the state arrays. */
+    static final int PREVIOUS_Y = 5;
+    /** Index of the left edges in the box arrays. */
+    static final int LEFT = 0;
+    /** Index of the top edges in the box arrays. */
+    static final int TOP = 1;
+    /** Index of the right edges in the box arrays. */
+    static final int RIGHT = 2;
+    /** Index of the bottom edges in the box arrays. */
+    static final int BOTTOM = 3;
+
+    /** The distance by which the swept box of a ball is grown, so that balls touching a collidable are swept. */
+    static final double MARGIN = 1e-6;
+
+    /** The system property that, when true, keeps the scalar kernel even if the vector kernel is available. */
+    static final String SCALAR_PROPERTY = "arkanoid.scalar";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "graphics.VectorBallKernel";
+    private static final BallKernel INSTANCE = load();
+
+    /**
+     * Returns a new kernel of the fastest kind available.
+     *
+     * @return A vector kernel if the Vector API is present, and a scalar kernel otherwise.
+     */
+    static BallKernel create() {
+        return INSTANCE.newKernel();
+    }
+
+    /**
+     * Returns a new kernel of the same kind as this one, with its own scratch arrays.
+     *
+     * @return The new kernel.
+     */
+    BallKernel newKernel() {
+        return new BallKernel();
+    }
+
+    /**
+     * Returns the name of the kernel, for reports.
+     *
+     * @return The name.
+     */
+    String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Moves the balls in [from, to) that are clear of all boxes and of the edges of the game area, and marks
+     * which balls were moved. A ball that is moved has its previous position set to where it started.
+     *
+     * @param state    The positions and velocities of the balls, indexed by X, Y, DX, DY, PREVIOUS_X and
+     *                 PREVIOUS_Y.
+     * @param radius   The radii of the balls.
+     * @param removed  Whether each ball was removed; removed balls are not moved.
+     * @param boxes    The bounds of the collidables, indexed by LEFT, TOP, RIGHT and BOTTOM.
+     * @param boxCount The number of boxes.
+     * @param width    The width of the game area.
+     * @param dt       The length of the step, in frames of 1/60 second.
+     * @param from     The index of the first ball.
+     * @param to       The index after the last ball.
+     * @param moved    Receives true for each ball that was moved, and false for the others.
+     */
+    void moveClear(double[][] state, int[] radius, boolean[] removed, double[][] boxes, int boxCount, int width,
+                   double dt, int from, int to, boolean[] moved) {
+        double[] left = boxes[LEFT];
+        double[] top = boxes[TOP];
+        double[] right = boxes[RIGHT];
+        double[] bottom = boxes[BOTTOM];
+        for (int i = from; i < to; i++) {
+            moved[i] = false;
+            if (removed[i]) {
+                continue;
+            }
+            double r = radius[i];
+            double x = state[X][i];
+            double y = state[Y][i];
+            double nextX = x + state[DX][i] * dt;
+            double nextY = y + state[DY][i] * dt;
+            if (nextX - r < 0 || nextX + r > width || nextY - r < 0) {
+                continue;
+            }
+            double minX = Math.min(x, nextX) - r - MARGIN;
+            double maxX = Math.max(x, nextX) + r + MARGIN;
+            double minY = Math.min(y, nextY) - r - MARGIN;
+            double maxY = Math.max(y, nextY) + r + MARGIN;
+            boolean clear = true;
+            for (int b = 0; b < boxCount && clear; b++) {
+                clear = minX > right[b] || maxX < left[b] || minY > bottom[b] || maxY < top[b];
+            }
+            if (clear) {
+                state[PREVIOUS_X][i] = x;
+                state[PREVIOUS_Y][i] = y;
+                state[X][i] = nextX;
+                state[Y][i] = nextY;
+                moved[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the vector kernel if it can be loaded, and the scalar kernel otherwise.
+     *
+     * @return The kernel.
+     */
+    private static BallKernel load() {
+        if (Boolean.getBoolean(SCALAR_PROPERTY) || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return new BallKernel();
+        }
+        try {
+            BallKernel kernel = (BallKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            return kernel.isSupported() ? kernel : new BallKernel();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new BallKernel();
+        }
+    }
+
+    /**
+     * Returns whether the kernel can run on this machine.
+     *
+     * @return true for the scalar kernel.
+     */
+    boolean isSupported() {
+        return true;
+    }
+}
@@ -0,0 +1,867 @@
+package graphics;
+
+import biuoop.DrawSurface;
+import game.BlockGrid;
+import game.Game;
+import game.GameEnvironment;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import geometry.Velocity;
+import interfaces.Collidable;
+import interfaces.Sprite;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The BallSystem class holds many balls as one sprite, in a structure-of-arrays layout.
+ * Positions, velocities, radii and colors are kept in primitive arrays and all balls are moved in one loop,
+ * so a step creates no objects unless a ball hits something. Collidables and hit listeners still see
+ * an ordinary Ball: a ball gets a handle object that reads and writes its arrays the first time it hits
+ * something, and keeps it until it is dropped, so hits can be queued and dispatched after the step. A dropped
+ * handle keeps the last state of its ball as a plain Ball, and adding it to the game puts the ball back.
+ * <p>
+ * A step runs in two phases. First every ball is moved against the environment as it stood at the start
+ * of the step, and its hits are recorded in the buffer of its chunk instead of being reported. Then the hits
+ * are reported to the collidables one by one, in the order of the balls. The first phase only reads the
+ * environment, so the chunks can be moved in parallel on a ForkJoinPool, and because the hits are reported
+ * in the same order either way, a parallel step has exactly the same outcome as a sequential one.
+ * <p>
+ * When the environment holds few collidables, their bounds are copied into flat arrays at the start of the
+ * step, and a BallKernel first moves, in batches, the balls that are clear of all of them. Only the balls
+ * near a collidable are swept through the environment. This changes how fast a step is, not its outcome.
+ * <p>
+ * Balls pass through each other unless ball collisions are turned on. Then, after the hits are reported, the
+ * balls that overlap bounce off each other elastically, with masses that grow with their areas. Overlapping
+ * pairs are found by sort and sweep: the balls are kept in an order sorted by the left edges of their x-intervals,
+ * and each ball is only tested against the balls after it whose intervals start before its own ends. The order is
+ * sorted again by insertion after every step; balls move little in a step, so it is nearly sorted already and the
+ * sort takes close to linear time.
+ */
+public class BallSystem implements Sprite {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int CHUNK_SIZE = 1024;
+    private static final int MAX_BATCH_BOXES = 256;
+
+    private GameEnvironment gameEnvironment;
+    private int width;
+    private int height;
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    private double[] previousX;
+    private double[] previousY;
+    private int[] radius;
+    private int[] colorIndex;
+    private boolean[] removed;
+    private boolean[] moved;
+    private int count;
+    private int removedCount;
+    private List<Color> palette;
+    private Map<Color, Integer> paletteIndex;
+    private Handle[] handles;
+    private Chunk[] chunks;
+    private ForkJoinPool pool;
+    private BallKernel kernel;
+    private double[][] state;
+    private double[][] boxes;
+    private int boxCount;
+    private boolean ballCollisions;
+    private int[] order;
+    private int orderCount;
+    private int[] newIndex;
+    private double[] sortedLeft;
+    private double[] sortedY;
+
+    /**
+     * Constructs an empty BallSystem.
+     *
+     * @param gameEnvironment The game environment the balls move in.
+     * @param width           The width of the game area.
+     * @param height          The height of the game area.
+     */
+    public BallSystem(GameEnvironment gameEnvironment, int width, int height) {
+        this.gameEnvironment = gameEnvironment;
+        this.width = width;
+        this.height = height;
+        this.x = new double[INITIAL_CAPACITY];
+        this.y = new double[INITIAL_CAPACITY];
+        this.dx = new double[INITIAL_CAPACITY];
+        this.dy = new double[INITIAL_CAPACITY];
+        this.previousX = new double[INITIAL_CAPACITY];
+        this.previousY = new double[INITIAL_CAPACITY];
+        this.radius = new int[INITIAL_CAPACITY];
+        this.colorIndex = new int[INITIAL_CAPACITY];
+        this.removed = new boolean[INITIAL_CAPACITY];
+        this.moved = new boolean[INITIAL_CAPACITY];
+        this.count = 0;
+        this.removedCount = 0;
+        this.palette = new ArrayList<>();
+        this.paletteIndex = new HashMap<>();
+        this.handles = new Handle[INITIAL_CAPACITY];
+        this.chunks = new Chunk[0];
+        this.kernel = BallKernel.create();
+        this.state = new double[][] {x, y, dx, dy, previousX, previousY};
+        this.boxes = new double[4][MAX_BATCH_BOXES];
+        this.boxCount = -1;
+        this.ballCollisions = false;
+        this.order = new int[INITIAL_CAPACITY];
+        this.orderCount = 0;
+        this.newIndex = new int[INITIAL_CAPACITY];
+        this.sortedLeft = new double[INITIAL_CAPACITY];
+        this.sortedY = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Sets the pool used to move the balls in parallel.
+     *
+     * @param pool The pool to move the balls on, or null to move them on the calling thread.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a ball to the system.
+     *
+     * @param centerX   The x-coordinate of the center of the ball.
+     * @param centerY   The y-coordinate of the center of the ball.
+     * @param r         The radius of the ball.
+     * @param color     The color of the ball.
+     * @param velocityX The horizontal velocity of the ball.
+     * @param velocityY The vertical velocity of the ball.
+     */
+    public void addBall(double centerX, double centerY, int r, Color color, double velocityX, double velocityY) {
+        if (count == x.length) {
+            int capacity = 2 * count;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            dx = Arrays.copyOf(dx, capacity);
+            dy = Arrays.copyOf(dy, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            colorIndex = Arrays.copyOf(colorIndex, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+            moved = Arrays.copyOf(moved, capacity);
+            handles = Arrays.copyOf(handles, capacity);
+            order = Arrays.copyOf(order, capacity);
+            newIndex = Arrays.copyOf(newIndex, capacity);
+            sortedLeft = Arrays.copyOf(sortedLeft, capacity);
+            sortedY = Arrays.copyOf(sortedY, capacity);
+            state = new double[][] {x, y, dx, dy, previousX, previousY};
+        }
+        x[count] = centerX;
+        y[count] = centerY;
+        dx[count] = velocityX;
+        dy[count] = velocityY;
+        previousX[count] = centerX;
+        previousY[count] = centerY;
+        radius[count] = r;
+        colorIndex[count] = colorIndexOf(color);
+        removed[count] = false;
+        handles[count] = null;
+        count++;
+    }
+
+    /**
+     * Sets whether the balls that are clear of all collidables are moved in batches before the others are swept.
+     * Batching is on by default and does not change the outcome of a step.
+     *
+     * @param batching true to move clear balls in batches, false to sweep every ball.
+     */
+    public void setBatching(boolean batching) {
+        this.kernel = batching ? BallKernel.create() : null;
+        for (Chunk chunk : chunks) {
+            chunk.kernel = null;
+        }
+    }
+
+    /**
+     * Returns the name of the kernel that moves clear balls in batches.
+     *
+     * @return "vector" or "scalar", or "none" if batching is off.
+     */
+    public String getKernelName() {
+        return kernel == null ? "none" : kernel.getName();
+    }
+
+    /**
+     * Sets whether the balls of the system bounce off each other. Ball collisions are off by default.
+     *
+     * @param ballCollisions true to bounce balls off each other, false to let them pass through each other.
+     */
+    public void setBallCollisions(boolean ballCollisions) {
+        this.ballCollisions = ballCollisions;
+        this.orderCount = 0;
+    }
+
+    /**
+     * Returns whether the balls of the system bounce off each other.
+     *
+     * @return true if ball collisions are on.
+     */
+    public boolean hasBallCollisions() {
+        return ballCollisions;
+    }
+
+    /**
+     * Returns the number of balls in the system.
+     *
+     * @return The number of balls in the system.
+     */
+    public int size() {
+        return count - removedCount;
+    }
+
+    /**
+     * Returns a view of the ball at the given index as a Ball, which reads and writes the state of the ball
+     * in the system. Between steps the balls are at indices 0 to size() - 1.
+     *
+     * @param index The index of the ball.
+     * @return The view of the ball.
+     */
+    public Ball getBall(int index) {
+        return handleOf(index);
+    }
+
+    /**
+     * Draws all balls on the given DrawSurface.
+     *
+     * @param surface The surface to draw the balls on.
+     */
+    @Override
+    public void drawOn(DrawSurface surface) {
+        int lastColor = -1;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (colorIndex[i] != lastColor) {
+                lastColor = colorIndex[i];
+                surface.setColor(palette.get(lastColor));
+            }
+            surface.fillCircle((int) x[i], (int) y[i], radius[i]);
+        }
+    }
+
+    /**
+     * Draws all balls on the given DrawSurface, between their centers before and after their last step.
+     *
+     * @param surface The surface to draw the balls on.
+     * @param alpha   How far to draw the balls from their previous centers (0) to their current centers (1).
+     */
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        int lastColor = -1;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (colorIndex[i] != lastColor) {
+                lastColor = colorIndex[i];
+                surface.setColor(palette.get(lastColor));
+            }
+            surface.fillCircle((int) (previousX[i] + (x[i] - previousX[i]) * alpha),
+                    (int) (previousY[i] + (y[i] - previousY[i]) * alpha), radius[i]);
+        }
+    }
+
+    /**
+     * Moves every ball one step, reports the hits of the step and drops the balls that were removed from the game.
+     * Hits on a collidable that an earlier hit of the same step removed from the game are not reported.
+     */
+    @Override
+    public void timePassed() {
+        timePassed(1);
+    }
+
+    /**
+     * Moves every ball by its velocity scaled by dt, reports the hits of the step, drops the balls
+     * that were removed from the game and, if ball collisions are on, bounces the balls off each other.
+     *
+     * @param dt The time that has passed, in frames of 1/60 second.
+     */
+    @Override
+    public void timePassed(double dt) {
+        int chunkCount = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks.length < chunkCount) {
+            int old = chunks.length;
+            chunks = Arrays.copyOf(chunks, chunkCount);
+            for (int c = old; c < chunkCount; c++) {
+                chunks[c] = new Chunk();
+            }
+        }
+
+        copyBoxes();
+        if (pool == null || chunkCount < 2) {
+            for (int c = 0; c < chunkCount; c++) {
+                moveChunk(c, dt);
+            }
+        } else {
+            pool.invoke(new MoveTask(0, chunkCount, dt));
+        }
+
+        for (int c = 0; c < chunkCount; c++) {
+            reportHits(chunks[c].hits);
+        }
+        compact();
+        if (ballCollisions) {
+            collideBalls();
+        }
+    }
+
+    /**
+     * Sorts the balls by the left edges of their x-intervals and bounces off each other the pairs that overlap.
+     * Balls added since the last step are appended to the order before it is sorted.
+     */
+    private void collideBalls() {
+        while (orderCount < count) {
+            order[orderCount] = orderCount;
+            orderCount++;
+        }
+
+        // Copy the edges in the order, so the sort and the sweep read them in sequence; collisions do not move balls
+        int maxRadius = 0;
+        for (int p = 0; p < orderCount; p++) {
+            int i = order[p];
+            sortedLeft[p] = x[i] - radius[i];
+            maxRadius = Math.max(maxRadius, radius[i]);
+        }
+        sortOrder();
+        for (int p = 0; p < orderCount; p++) {
+            sortedY[p] = y[order[p]];
+        }
+        for (int p = 0; p < orderCount; p++) {
+            int i = order[p];
+            double right = x[i] + radius[i];
+            double reach = radius[i] + maxRadius;
+            for (int q = p + 1; q < orderCount && sortedLeft[q] <= right; q++) {
+                if (Math.abs(sortedY[q] - sortedY[p]) < reach) {
+                    collide(i, order[q]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the order and the left edges copied along it by insertion, by the left edges of the balls and then
+     * by their indices, so that the order only depends on where the balls are. The order is nearly sorted after
+     * a step, and insertion sort then only does as much work as balls have swapped places.
+     */
+    private void sortOrder() {
+        for (int p = 1; p < orderCount; p++) {
+            int ball = order[p];
+            double left = sortedLeft[p];
+            int q = p - 1;
+            while (q >= 0 && (left < sortedLeft[q] || (left == sortedLeft[q] && ball < order[q]))) {
+                order[q + 1] = order[q];
+                sortedLeft[q + 1] = sortedLeft[q];
+                q--;
+            }
+            order[q + 1] = ball;
+            sortedLeft[q + 1] = left;
+        }
+    }
+
+    /**
+     * Bounces two balls off each other if they overlap and are moving towards each other. The components of
+     * their velocities along the line between their centers are exchanged as in an elastic collision, with
+     * masses proportional to their areas. Their positions are left alone, so a collision never pushes a ball into
+     * a collidable; balls that overlap while moving apart simply keep moving apart.
+     *
+     * @param i The index of the first ball.
+     * @param j The index of the second ball.
+     */
+    private void collide(int i, int j) {
+        double offsetX = x[j] - x[i];
+        double offsetY = y[j] - y[i];
+        double reach = radius[i] + radius[j];
+        double distanceSquared = offsetX * offsetX + offsetY * offsetY;
+        if (distanceSquared >= reach * reach || distanceSquared == 0) {
+            return;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        double normalX = offsetX / distance;
+        double normalY = offsetY / distance;
+        double approach = (dx[j] - dx[i]) * normalX + (dy[j] - dy[i]) * normalY;
+        if (approach >= 0) {
+            return;
+        }
+        double massI = (double) radius[i] * radius[i];
+        double massJ = (double) radius[j] * radius[j];
+        double impulse = 2 * approach / (massI + massJ);
+        dx[i] += impulse * massJ * normalX;
+        dy[i] += impulse * massJ * normalY;
+        dx[j] -= impulse * massI * normalX;
+        dy[j] -= impulse * massI * normalY;
+    }
+
+    /**
+     * Moves the balls of one chunk, recording their hits in the chunk's buffer.
+     *
+     * @param c  The index of the chunk.
+     * @param dt The length of the step, in frames of 1/60 second.
+     */
+    private void moveChunk(int c, double dt) {
+        Chunk chunk = chunks[c];
+        double[] motion = chunk.motion;
+        chunk.hits.clear();
+        int end = Math.min(count, (c + 1) * CHUNK_SIZE);
+        if (boxCount >= 0) {
+            if (chunk.kernel == null) {
+                chunk.kernel = kernel.newKernel();
+            }
+            chunk.kernel.moveClear(state, radius, removed, boxes, boxCount, width, dt, c * CHUNK_SIZE, end, moved);
+        }
+        for (int i = c * CHUNK_SIZE; i < end; i++) {
+            if (removed[i] || (boxCount >= 0 && moved[i])) {
+                continue;
+            }
+            previousX[i] = x[i];
+            previousY[i] = y[i];
+            motion[SweptCircle.X] = x[i];
+            motion[SweptCircle.Y] = y[i];
+            motion[SweptCircle.DX] = dx[i];
+            motion[SweptCircle.DY] = dy[i];
+            SweptCircle.record(gameEnvironment, motion, radius[i], width, height, dt, i, chunk.hits,
+                    chunk.rayHit);
+            x[i] = motion[SweptCircle.X];
+            y[i] = motion[SweptCircle.Y];
+            dx[i] = motion[SweptCircle.DX];
+            dy[i] = motion[SweptCircle.DY];
+        }
+    }
+
+    /**
+     * Copies the bounds of the collidables into the box arrays, for the kernel to test the balls against.
+     * If batching is off or there are too many collidables for batches to pay off, no bounds are copied and
+     * every ball is swept.
+     */
+    private void copyBoxes() {
+        boxCount = -1;
+        if (kernel == null || gameEnvironment.size() > MAX_BATCH_BOXES) {
+            return;
+        }
+        boxCount = 0;
+        gameEnvironment.forEachCollidable(this::addBox);
+        BlockGrid grid = gameEnvironment.getBlockGrid();
+        if (grid != null && grid.getTiles() != null) {
+            grid.getTiles().forEachTile(cell -> addBox(grid.getCellLeft(cell), grid.getCellTop(cell),
+                    grid.getCellWidth(), grid.getCellHeight()));
+        }
+    }
+
+    /**
+     * Adds the bounds of a collidable to the box arrays.
+     *
+     * @param c The collidable.
+     */
+    private void addBox(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        addBox(rect.getUpperLeft().getX(), rect.getUpperLeft().getY(), rect.getWidth(), rect.getHeight());
+    }
+
+    /**
+     * Adds a box to the box arrays.
+     *
+     * @param left   The x-coordinate of the left edge of the box.
+     * @param top    The y-coordinate of the top edge of the box.
+     * @param width  The width of the box.
+     * @param height The height of the box.
+     */
+    private void addBox(double left, double top, double width, double height) {
+        boxes[BallKernel.LEFT][boxCount] = left;
+        boxes[BallKernel.TOP][boxCount] = top;
+        boxes[BallKernel.RIGHT][boxCount] = left + width;
+        boxes[BallKernel.BOTTOM][boxCount] = top + height;
+        boxCount++;
+    }
+
+    /**
+     * Reports the recorded hits to the collidables that were hit, passing the handle of the hitting ball.
+     *
+     * @param hits The recorded hits.
+     */
+    private void reportHits(HitBuffer hits) {
+        for (int h = 0; h < hits.size(); h++) {
+            int i = hits.ball(h);
+            Collidable target = hits.target(h);
+            if (removed[i] || !gameEnvironment.contains(target)) {
+                continue;
+            }
+            target.hit(handleOf(i), new Point(hits.contactX(h), hits.contactY(h)),
+                    new Velocity(hits.velocityX(h), hits.velocityY(h)));
+        }
+    }
+
+    /**
+     * Marks the ball at the given index as removed. Its remaining hits are not reported and it is dropped after the step.
+     *
+     * @param index The index of the ball.
+     */
+    private void removeBall(int index) {
+        if (!removed[index]) {
+            removed[index] = true;
+            removedCount++;
+        }
+    }
+
+    /**
+     * Brings back a ball that was removed during the current step, before it is dropped.
+     *
+     * @param index The index of the ball.
+     */
+    private void restoreBall(int index) {
+        if (removed[index]) {
+            removed[index] = false;
+            removedCount--;
+        }
+    }
+
+    /**
+     * Returns the handle of the ball at the given index, creating it on the ball's first hit.
+     *
+     * @param index The index of the ball.
+     * @return The handle of the ball.
+     */
+    private Handle handleOf(int index) {
+        if (handles[index] == null) {
+            handles[index] = new Handle(index);
+        }
+        return handles[index];
+    }
+
+    /**
+     * Drops removed balls, keeping the remaining balls in their order.
+     * The handles of the dropped balls no longer refer to any ball; the others follow their balls, and so does
+     * the order of the balls used to find ball collisions.
+     */
+    private void compact() {
+        if (removedCount == 0) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                if (handles[i] != null) {
+                    handles[i].drop();
+                }
+                newIndex[i] = -1;
+                continue;
+            }
+            newIndex[i] = kept;
+            x[kept] = x[i];
+            y[kept] = y[i];
+            dx[kept] = dx[i];
+            dy[kept] = dy[i];
+            previousX[kept] = previousX[i];
+            previousY[kept] = previousY[i];
+            radius[kept] = radius[i];
+            colorIndex[kept] = colorIndex[i];
+            removed[kept] = false;
+            handles[kept] = handles[i];
+            if (handles[kept] != null) {
+                handles[kept].index = kept;
+            }
+            kept++;
+        }
+        Arrays.fill(handles, kept, count, null);
+        count = kept;
+        removedCount = 0;
+
+        int ordered = 0;
+        for (int p = 0; p < orderCount; p++) {
+            int index = newIndex[order[p]];
+            if (index >= 0) {
+                order[ordered++] = index;
+            }
+        }
+        orderCount = ordered;
+    }
+
+    /**
+     * Returns the palette index of the given color, adding the color to the palette if needed.
+     *
+     * @param color The color.
+     * @return The index of the color in the palette.
+     */
+    private int colorIndexOf(Color color) {
+        Integer index = paletteIndex.get(color);
+        if (index == null) {
+            index = palette.size();
+            palette.add(color);
+            paletteIndex.put(color, index);
+        }
+        return index;
+    }
+
+    /**
+     * The Chunk class holds the hit buffer, the batch kernel and the scratch objects of one range of CHUNK_SIZE
+     * balls, so chunks moved on different threads share nothing.
+     */
+    private static final class Chunk {
+        private HitBuffer hits;
+        private RayHit rayHit;
+        private double[] motion;
+        private BallKernel kernel;
+
+        /**
+         * Constructs a Chunk with an empty hit buffer. Its kernel is created when the chunk is first batched.
+         */
+        Chunk() {
+            this.hits = new HitBuffer();
+            this.rayHit = new RayHit();
+            this.motion = new double[SweptCircle.STATE_SIZE];
+            this.kernel = null;
+        }
+    }
+
+    /**
+     * The MoveTask class moves a range of chunks, splitting it in halves until single chunks remain.
+     */
+    private final class MoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+        private double dt;
+
+        /**
+         * Constructs a MoveTask for the chunks in [from, to).
+         *
+         * @param from The index of the first chunk.
+         * @param to   The index after the last chunk.
+         * @param dt   The length of the step, in frames of 1/60 second.
+         */
+        MoveTask(int from, int to, double dt) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        /**
+         * Moves the chunks of the range.
+         */
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                moveChunk(from, dt);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MoveTask(from, middle, dt), new MoveTask(middle, to, dt));
+        }
+    }
+
+    /**
+     * The Handle class presents one ball of the system as a Ball,
+     * reading and writing its state straight from the system's arrays.
+     * Once its ball is dropped from the system, the handle holds the last state of the ball and acts as a plain
+     * Ball, until it is added to the game again.
+     */
+    private class Handle extends Ball {
+        private int index;
+
+        /**
+         * Constructs a Handle.
+         *
+         * @param index The index of the ball.
+         */
+        Handle(int index) {
+            super(new Point(x[index], y[index]), radius[index], palette.get(colorIndex[index]));
+            this.index = index;
+        }
+
+        /**
+         * Copies the state of the ball into the handle, which no longer refers to any ball of the system.
+         */
+        void drop() {
+            super.setCenter(new Point(x[index], y[index]));
+            super.setVelocity(dx[index], dy[index]);
+            super.setColor(palette.get(colorIndex[index]));
+            index = -1;
+        }
+
+        /**
+         * Returns the x-coordinate of the center of the ball.
+         *
+         * @return The x-coordinate of the center.
+         */
+        @Override
+        public int getX() {
+            if (index < 0) {
+                return super.getX();
+            }
+            return (int) x[index];
+        }
+
+        /**
+         * Returns the y-coordinate of the center of the ball.
+         *
+         * @return The y-coordinate of the center.
+         */
+        @Override
+        public int getY() {
+            if (index < 0) {
+                return super.getY();
+            }
+            return (int) y[index];
+        }
+
+        /**
+         * Returns the radius of the ball.
+         *
+         * @return The radius of the ball.
+         */
+        @Override
+        public int getSize() {
+            if (index < 0) {
+                return super.getSize();
+            }
+            return radius[index];
+        }
+
+        /**
+         * Returns the color of the ball.
+         *
+         * @return The color of the ball.
+         */
+        @Override
+        public Color getColor() {
+            if (index < 0) {
+                return super.getColor();
+            }
+            return palette.get(colorIndex[index]);
+        }
+
+        /**
+         * Sets the color of the ball.
+         *
+         * @param color The new color of the ball.
+         */
+        @Override
+        public void setColor(Color color) {
+            if (index < 0) {
+                super.setColor(color);
+                return;
+            }
+            colorIndex[index] = colorIndexOf(color);
+        }
+
+        /**
+         * Returns the center point of the ball.
+         *
+         * @return The center point of the ball.
+         */
+        @Override
+        public Point getCenter() {
+            if (index < 0) {
+                return super.getCenter();
+            }
+            return new Point(x[index], y[index]);
+        }
+
+        /**
+         * Sets the center point of the ball.
+         *
+         * @param center The new center point of the ball.
+         */
+        @Override
+        public void setCenter(Point center) {
+            if (index < 0) {
+                super.setCenter(center);
+                return;
+            }
+            x[index] = center.getX();
+            y[index] = center.getY();
+        }
+
+        /**
+         * Returns the velocity of the ball.
+         *
+         * @return The velocity of the ball.
+         */
+        @Override
+        public Velocity getVelocity() {
+            if (index < 0) {
+                return super.getVelocity();
+            }
+            return new Velocity(dx[index], dy[index]);
+        }
+
+        /**
+         * Sets the velocity of the ball.
+         *
+         * @param v The new velocity of the ball.
+         */
+        @Override
+        public void setVelocity(Velocity v) {
+            if (index < 0) {
+                super.setVelocity(v);
+                return;
+            }
+            dx[index] = v.getDoublex();
+            dy[index] = v.getDoubley();
+        }
+
+        /**
+         * Sets the velocity of the ball.
+         *
+         * @param velocityX The horizontal component of the velocity.
+         * @param velocityY The vertical component of the velocity.
+         */
+        @Override
+        public void setVelocity(double velocityX, double velocityY) {
+            if (index < 0) {
+                super.setVelocity(velocityX, velocityY);
+                return;
+            }
+            dx[index] = velocityX;
+            dy[index] = velocityY;
+        }
+
+        /**
+         * Puts the ball back into the system: a ball removed during the current step is kept, and a dropped ball
+         * is added again with the state the handle holds, and the handle refers to it again. A ball that is in
+         * the system is left alone. Like Ball.addToGame, this does not count the ball in the game's counters.
+         *
+         * @param g The game the ball is added to, which holds the system.
+         */
+        @Override
+        public void addToGame(Game g) {
+            if (index >= 0) {
+                restoreBall(index);
+                return;
+            }
+            Point center = super.getCenter();
+            Velocity velocity = super.getVelocity();
+            addBall(center.getX(), center.getY(), super.getSize(), super.getColor(), velocity.getDoublex(),
+                    velocity.getDoubley());
+            index = count - 1;
+            handles[index] = this;
+        }
+
+        /**
+         * Removes the ball from the system, unless it was already dropped, and drops the hits it made later in
+         * the game's hit queue.
+         *
+         * @param g The game the ball is removed from.
+         */
+        @Override
+        public void removeFromGame(Game g) {
+            if (index >= 0) {
+                removeBall(index);
+            }
+            g.getHitEvents().ballRemoved(this);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BatchingDrawSurface class records the draw commands of a frame and replays them on a real surface in bulk.
+ * On flush every command is put on a layer, one above the highest layer of the earlier commands it overlaps, or on
+ * the same layer if those commands have its type and color. Commands on one layer that differ in type or color never
+ * overlap, so each layer is replayed sorted by primitive type and then by color, and the real surface sees one color
+ * change per color and type on a layer instead of one per sprite. Overlapping commands keep the order they were
+ * recorded in, so a shape recorded later is always drawn on top.
+ * <p>
+ * Overlaps are found through a coarse grid of cells over the surface, and each command covers a box that is at least
+ * as large as what it draws, so two commands may be kept in order when they do not touch, but never the other way
+ * round. The palette of a frame grows with the colors it uses, and is only cleared when the next frame begins, so a
+ * frame is always replayed in full, on the surface it is flushed to.
+ */
+public class BatchingDrawSurface implements DrawSurface {
+    private static final int IMAGE = 0;
+    private static final int FILL_RECTANGLE = 1;
+    private static final int FILL_OVAL = 2;
+    private static final int FILL_CIRCLE = 3;
+    private static final int FILL_POLYGON = 4;
+    private static final int DRAW_RECTANGLE = 5;
+    private static final int DRAW_OVAL = 6;
+    private static final int DRAW_CIRCLE = 7;
+    private static final int DRAW_POLYGON = 8;
+    private static final int LINE = 9;
+    private static final int TEXT = 10;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int LAYER_SHIFT = 52;
+    private static final int MAX_LAYER = (1 << 11) - 1;
+    private static final int BATCH_SHIFT = 32;
+    private static final int TYPE_SHIFT = 16;
+    private static final int MAX_COLORS = 1 << 16;
+    private static final int CELL_SIZE = 16;
+    private static final int EMPTY = -1;
+    private static final int MIXED = -1;
+    private static final int PALETTE_RESET = 1 << 12;
+
+    private DrawSurface target;
+    private int[] type;
+    private int[] color;
+    private int[] arg1;
+    private int[] arg2;
+    private int[] arg3;
+    private int[] arg4;
+    private Object[] object;
+    private long[] keys;
+    private int size;
+    private int currentColor;
+    private List<Color> palette;
+    private Map<Color, Integer> paletteIndex;
+    private int[] cellLayer;
+    private int[] cellBatch;
+    private int columns;
+    private int rows;
+    private int firstColumn;
+    private int lastColumn;
+    private int firstRow;
+    private int lastRow;
+
+    /**
+     * Constructs an empty BatchingDrawSurface.
+     */
+    public BatchingDrawSurface() {
+        this.type = new int[INITIAL_CAPACITY];
+        this.color = new int[INITIAL_CAPACITY];
+        this.arg1 = new int[INITIAL_CAPACITY];
+        this.arg2 = new int[INITIAL_CAPACITY];
+        this.arg3 = new int[INITIAL_CAPACITY];
+        this.arg4 = new int[INITIAL_CAPACITY];
+        this.object = new Object[INITIAL_CAPACITY];
+        this.keys = new long[INITIAL_CAPACITY];
+        this.palette = new ArrayList<>();
+        this.paletteIndex = new HashMap<>();
+        this.cellLayer = new int[0];
+        this.cellBatch = new int[0];
+    }
+
+    /**
+     * Starts recording a frame that will be replayed on the given surface. The palette is kept from frame to
+     * frame, so the colors of a game are looked up once, unless the last frame left it with many colors.
+     *
+     * @param surface The surface to replay the commands on.
+     */
+    public void begin(DrawSurface surface) {
+        this.target = surface;
+        this.size = 0;
+        if (palette.size() > PALETTE_RESET) {
+            palette.clear();
+            paletteIndex.clear();
+        }
+        this.currentColor = colorIndexOf(Color.BLACK);
+    }
+
+    /**
+     * Sorts the recorded commands by layer, type and color, and replays them on the surface given to begin.
+     * A frame with more layers than the sort key holds is replayed in several runs, one after the other.
+     */
+    public void flush() {
+        resizeCells();
+        int lastColor = -1;
+        int start = 0;
+        while (start < size) {
+            int end = layer(start);
+            Arrays.sort(keys, start, end);
+            for (int k = start; k < end; k++) {
+                int i = (int) keys[k];
+                if (type[i] != IMAGE && color[i] != lastColor) {
+                    lastColor = color[i];
+                    target.setColor(palette.get(lastColor));
+                }
+                replay(i);
+            }
+            start = end;
+        }
+        Arrays.fill(object, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Sorts the recorded commands and replays them on the given surface instead of the one given to begin.
+     * This lets a frame be recorded on one thread and replayed on another.
+     *
+     * @param surface The surface to replay the commands on.
+     */
+    public void flushTo(DrawSurface surface) {
+        this.target = surface;
+        flush();
+    }
+
+    /**
+     * Returns the number of commands recorded since the last flush.
+     *
+     * @return The number of recorded commands.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the width of the surface given to begin.
+     *
+     * @return The width of the surface.
+     */
+    @Override
+    public int getWidth() {
+        return target.getWidth();
+    }
+
+    /**
+     * Returns the height of the surface given to begin.
+     *
+     * @return The height of the surface.
+     */
+    @Override
+    public int getHeight() {
+        return target.getHeight();
+    }
+
+    /**
+     * Sets the color of the commands recorded after this call.
+     *
+     * @param c The color.
+     */
+    @Override
+    public void setColor(Color c) {
+        currentColor = colorIndexOf(c);
+    }
+
+    /**
+     * Records a line.
+     *
+     * @param x1 The x-coordinate of the start of the line.
+     * @param y1 The y-coordinate of the start of the line.
+     * @param x2 The x-coordinate of the end of the line.
+     * @param y2 The y-coordinate of the end of the line.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(LINE, x1, y1, x2, y2, null);
+    }
+
+    /**
+     * Records the outline of an oval.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        record(DRAW_OVAL, x, y, width, height, null);
+    }
+
+    /**
+     * Records a filled oval.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        record(FILL_OVAL, x, y, width, height, null);
+    }
+
+    /**
+     * Records the outline of a rectangle.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        record(DRAW_RECTANGLE, x, y, width, height, null);
+    }
+
+    /**
+     * Records a filled rectangle.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        record(FILL_RECTANGLE, x, y, width, height, null);
+    }
+
+    /**
+     * Records an image.
+     *
+     * @param x     The x-coordinate of the upper-left corner of the image.
+     * @param y     The y-coordinate of the upper-left corner of the image.
+     * @param image The image.
+     */
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        record(IMAGE, x, y, 0, 0, image);
+    }
+
+    /**
+     * Records the outline of a circle.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void drawCircle(int x, int y, int radius) {
+        record(DRAW_CIRCLE, x, y, radius, 0, null);
+    }
+
+    /**
+     * Records a filled circle.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void fillCircle(int x, int y, int radius) {
+        record(FILL_CIRCLE, x, y, radius, 0, null);
+    }
+
+    /**
+     * Records text.
+     *
+     * @param x        The x-coordinate of the start of the text.
+     * @param y        The y-coordinate of the baseline of the text.
+     * @param text     The text.
+     * @param fontSize The size of the font.
+     */
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        record(TEXT, x, y, fontSize, 0, text);
+    }
+
+    /**
+     * Records the outline of a polygon.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        record(DRAW_POLYGON, 0, 0, 0, 0, polygon);
+    }
+
+    /**
+     * Records a filled polygon.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        record(FILL_POLYGON, 0, 0, 0, 0, polygon);
+    }
+
+    /**
+     * Records one command with the current color.
+     *
+     * @param commandType The type of the command.
+     * @param a           The first integer argument.
+     * @param b           The second integer argument.
+     * @param c           The third integer argument.
+     * @param d           The fourth integer argument.
+     * @param o           The object argument, or null.
+     */
+    private void record(int commandType, int a, int b, int c, int d, Object o) {
+        if (size == type.length) {
+            int capacity = 2 * size;
+            type = Arrays.copyOf(type, capacity);
+            color = Arrays.copyOf(color, capacity);
+            arg1 = Arrays.copyOf(arg1, capacity);
+            arg2 = Arrays.copyOf(arg2, capacity);
+            arg3 = Arrays.copyOf(arg3, capacity);
+            arg4 = Arrays.copyOf(arg4, capacity);
+            object = Arrays.copyOf(object, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        int commandColor = commandType == IMAGE ? 0 : currentColor;
+        type[size] = commandType;
+        color[size] = commandColor;
+        arg1[size] = a;
+        arg2[size] = b;
+        arg3[size] = c;
+        arg4[size] = d;
+        object[size] = o;
+        size++;
+    }
+
+    /**
+     * Puts the commands from the given one on in layers and writes their sort keys, until the last command or
+     * until a command would need more layers than the key holds. The sort key holds, from the most significant
+     * bits down, the layer, the type, the color and the position of the command in the recording.
+     *
+     * @param start The index of the first command to put in a layer.
+     * @return The index after the last command that was put in a layer.
+     */
+    private int layer(int start) {
+        Arrays.fill(cellLayer, 0, columns * rows, EMPTY);
+        for (int i = start; i < size; i++) {
+            int batch = (type[i] << TYPE_SHIFT) | color[i];
+            coverCells(i);
+            int layer = 0;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int cell = row * columns + firstColumn; cell <= row * columns + lastColumn; cell++) {
+                    if (cellLayer[cell] != EMPTY) {
+                        layer = Math.max(layer, cellBatch[cell] == batch ? cellLayer[cell] : cellLayer[cell] + 1);
+                    }
+                }
+            }
+            if (layer > MAX_LAYER) {
+                return i;
+            }
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int cell = row * columns + firstColumn; cell <= row * columns + lastColumn; cell++) {
+                    if (layer > cellLayer[cell]) {
+                        cellLayer[cell] = layer;
+                        cellBatch[cell] = batch;
+                    } else if (cellBatch[cell] != batch) {
+                        cellBatch[cell] = MIXED;
+                    }
+                }
+            }
+            keys[i] = ((long) layer << LAYER_SHIFT) | ((long) batch << BATCH_SHIFT) | i;
+        }
+        return size;
+    }
+
+    /**
+     * Sizes the grid of cells to the surface the frame is replayed on.
+     */
+    private void resizeCells() {
+        columns = Math.max(1, (target.getWidth() + CELL_SIZE - 1) / CELL_SIZE);
+        rows = Math.max(1, (target.getHeight() + CELL_SIZE - 1) / CELL_SIZE);
+        if (cellLayer.length < columns * rows) {
+            cellLayer = new int[columns * rows];
+            cellBatch = new int[columns * rows];
+        }
+    }
+
+    /**
+     * Finds the cells covered by the box around a recorded command. The box has a margin of one pixel around
+     * everything the command may draw, and a box outside the surface is clamped to the cells on its edge.
+     *
+     * @param i The index of the command.
+     */
+    private void coverCells(int i) {
+        int left;
+        int top;
+        int right;
+        int bottom;
+        switch (type[i]) {
+            case IMAGE:
+                Image image = (Image) object[i];
+                left = arg1[i];
+                top = arg2[i];
+                int imageWidth = image.getWidth(null);
+                int imageHeight = image.getHeight(null);
+                right = imageWidth < 0 ? Integer.MAX_VALUE : left + imageWidth;
+                bottom = imageHeight < 0 ? Integer.MAX_VALUE : top + imageHeight;
+                break;
+            case FILL_CIRCLE:
+            case DRAW_CIRCLE:
+                left = arg1[i] - arg3[i];
+                top = arg2[i] - arg3[i];
+                right = arg1[i] + arg3[i];
+                bottom = arg2[i] + arg3[i];
+                break;
+            case FILL_POLYGON:
+            case DRAW_POLYGON:
+                Polygon polygon = (Polygon) object[i];
+                left = Integer.MAX_VALUE;
+                top = Integer.MAX_VALUE;
+                right = Integer.MIN_VALUE;
+                bottom = Integer.MIN_VALUE;
+                for (int p = 0; p < polygon.npoints; p++) {
+                    left = Math.min(left, polygon.xpoints[p]);
+                    top = Math.min(top, polygon.ypoints[p]);
+                    right = Math.max(right, polygon.xpoints[p]);
+                    bottom = Math.max(bottom, polygon.ypoints[p]);
+                }
+                break;
+            case LINE:
+                left = Math.min(arg1[i], arg3[i]);
+                top = Math.min(arg2[i], arg4[i]);
+                right = Math.max(arg1[i], arg3[i]);
+                bottom = Math.max(arg2[i], arg4[i]);
+                break;
+            case TEXT:
+                String text = (String) object[i];
+                left = arg1[i];
+                top = arg2[i] - arg3[i];
+                right = arg1[i] + text.length() * arg3[i];
+                bottom = arg2[i] + arg3[i];
+                break;
+            default:
+                left = arg1[i];
+                top = arg2[i];
+                right = arg1[i] + Math.max(0, arg3[i]);
+                bottom = arg2[i] + Math.max(0, arg4[i]);
+        }
+        firstColumn = cellOf((long) left - 1, columns);
+        lastColumn = cellOf((long) right + 1, columns);
+        firstRow = cellOf((long) top - 1, rows);
+        lastRow = cellOf((long) bottom + 1, rows);
+    }
+
+    /**
+     * Returns the cell along one axis that holds the given coordinate, clamped to the grid.
+     *
+     * @param coordinate The coordinate.
+     * @param cells      The number of cells along the axis.
+     * @return The index of the cell along the axis.
+     */
+    private static int cellOf(long coordinate, int cells) {
+        return (int) Math.max(0, Math.min(cells - 1, Math.floorDiv(coordinate, CELL_SIZE)));
+    }
+
+    /**
+     * Replays one recorded command on the target surface.
+     *
+     * @param i The index of the command.
+     */
+    private void replay(int i) {
+        switch (type[i]) {
+            case IMAGE:
+                target.drawImage(arg1[i], arg2[i], (Image) object[i]);
+                break;
+            case FILL_RECTANGLE:
+                target.fillRectangle(arg1[i], arg2[i], arg3[i], arg4[i]);
+                break;
+            case FILL_OVAL:
+                target.fillOval(arg1[i], arg2[i], arg3[i], arg4[i]);
+                break;
+            case FILL_CIRCLE:
+                target.fillCircle(arg1[i], arg2[i], arg3[i]);
+                break;
+            case FILL_POLYGON:
+                target.fillPolygon((Polygon) object[i]);
+                break;
+            case DRAW_RECTANGLE:
+                target.drawRectangle(arg1[i], arg2[i], arg3[i], arg4[i]);
+                break;
+            case DRAW_OVAL:
+                target.drawOval(arg1[i], arg2[i], arg3[i], arg4[i]);
+                break;
+            case DRAW_CIRCLE:
+                target.drawCircle(arg1[i], arg2[i], arg3[i]);
+                break;
+            case DRAW_POLYGON:
+                target.drawPolygon((Polygon) object[i]);
+                break;
+            case LINE:
+                target.drawLine(arg1[i], arg2[i], arg3[i], arg4[i]);
+                break;
+            case TEXT:
+                target.drawText(arg1[i], arg2[i], (String) object[i], arg3[i]);
+                break;
+            default:
+                // Unknown commands are never recorded
+        }
+    }
+
+    /**
+     * Returns the palette index of the given color, adding the color to the palette if needed.
+     *
+     * @param c The color.
+     * @return The index of the color in the palette.
+     */
+    private int colorIndexOf(Color c) {
+        Integer index = paletteIndex.get(c);
+        if (index == null) {
+            if (palette.size() == MAX_COLORS) {
+                throw new IllegalStateException("A frame uses at most " + MAX_COLORS + " colors");
+            }
+            index = palette.size();
+            palette.add(c);
+            paletteIndex.put(c, index);
+        }
+        return index;
+    }
+}
@@ -1,7 +1,9 @@
 package graphics;
 
 import game.Game;
+import game.HitEventQueue;
 import geometry.Point;
+import geometry.RayCast;
 import geometry.Rectangle;
 import biuoop.DrawSurface;
 import interfaces.Collidable;
@@ -9,22 +11,25 @@ import interfaces.HitNotifier;
 import interfaces.Sprite;
 
 import java.awt.Color;
-import java.util.List;
-import java.util.ArrayList;
 
 import interfaces.HitListener;
 import geometry.Velocity;
+import listeners.ListenerGroup;
 
 /**
  * The Block class represents a block in the Arkanoid game.
  * It provides methods to draw the block, handle collisions, and notify listeners of hit events.
+ * A block holds its hit listeners as a shared, interned ListenerGroup, so blocks with the same listeners
+ * cost one reference each instead of a list each.
  */
 public class Block implements Collidable, Sprite, HitNotifier {
     private Rectangle rectangle;
     private Color color;
-    private List<HitListener> hitListeners;
+    private ListenerGroup hitListeners;
+    private HitEventQueue hitEvents;
     private boolean isGameBlock;
     private boolean isDeathRegion;
+    private int hitPoints;
 
     /**
      * Constructs a Block with the specified rectangle, color, and type flags.
@@ -37,9 +42,37 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Block(Rectangle rectangle, Color color, boolean isGameBlock, boolean isDeathRegion) {
         this.rectangle = rectangle;
         this.color = color;
-        this.hitListeners = new ArrayList<>();
+        this.hitListeners = ListenerGroup.EMPTY;
         this.isGameBlock = isGameBlock;
         this.isDeathRegion = isDeathRegion;
+        this.hitPoints = 1;
+    }
+
+    /**
+     * Returns the color of the block.
+     *
+     * @return The color of the block.
+     */
+    public Color getColor() {
+        return this.color;
+    }
+
+    /**
+     * Returns the number of hits the block takes before it is removed from the game.
+     *
+     * @return The hit points left, at least 1 while the block is in the game.
+     */
+    public int getHitPoints() {
+        return this.hitPoints;
+    }
+
+    /**
+     * Sets the number of hits the block takes before it is removed from the game.
+     *
+     * @param hitPoints The hit points, at least 1.
+     */
+    public void setHitPoints(int hitPoints) {
+        this.hitPoints = hitPoints;
     }
 
     /**
@@ -72,6 +105,8 @@ public class Block implements Collidable, Sprite, HitNotifier {
 
     /**
      * Handles the collision with a ball, changing its velocity and notifying listeners.
+     * Once the block is in a game the listeners are notified through the game's hit event queue,
+     * after the current physics step.
      *
      * @param hitter          The ball that hit the block.
      * @param collisionPoint  The point where the collision occurred.
@@ -80,37 +115,47 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
+        Velocity newVelocity = deflect(collisionPoint, currentVelocity);
+
+        if (!ballColorMatch(hitter)) {
+            if (hitEvents != null) {
+                hitEvents.add(this, hitter);
+            } else {
+                this.notifyHit(hitter);
+            }
+            if (isGameBlock) {
+                hitter.setColor(this.color);
+            }
+        }
+
+        return newVelocity;
+    }
+
+    /**
+     * Returns the velocity of a ball after hitting the block, reversing each component
+     * whose edge contains the collision point.
+     *
+     * @param collisionPoint  The point where the collision occurs.
+     * @param currentVelocity The current velocity of the ball.
+     * @return The new velocity of the ball after the collision.
+     */
+    @Override
+    public Velocity deflect(Point collisionPoint, Velocity currentVelocity) {
         double dx = currentVelocity.getDoublex();
         double dy = currentVelocity.getDoubley();
 
         double rectLeftX = rectangle.getUpperLeft().getX();
-        double rectRightX = rectLeftX + rectangle.getWidth();
         double rectTopY = rectangle.getUpperLeft().getY();
-        double rectBottomY = rectTopY + rectangle.getHeight();
-
-        double epsilon = 1e-10;
+        int edges = RayCast.edgesAt(collisionPoint.getX(), collisionPoint.getY(), rectLeftX, rectTopY,
+                rectLeftX + rectangle.getWidth(), rectTopY + rectangle.getHeight(), 1e-10);
 
-        boolean verticalEdgeHit = (Math.abs(collisionPoint.getX() - rectLeftX) < epsilon
-                || Math.abs(collisionPoint.getX() - rectRightX) < epsilon)
-                && collisionPoint.getY() >= rectTopY && collisionPoint.getY() <= rectBottomY;
-        boolean horizontalEdgeHit = (Math.abs(collisionPoint.getY() - rectTopY) < epsilon
-                || Math.abs(collisionPoint.getY() - rectBottomY) < epsilon)
-                && collisionPoint.getX() >= rectLeftX && collisionPoint.getX() <= rectRightX;
-
-        if (verticalEdgeHit) {
+        if ((edges & (RayCast.LEFT | RayCast.RIGHT)) != 0) {
             dx = -dx;
         }
-        if (horizontalEdgeHit) {
+        if ((edges & (RayCast.TOP | RayCast.BOTTOM)) != 0) {
             dy = -dy;
         }
 
-        if (!ballColorMatch(hitter)) {
-            this.notifyHit(hitter);
-            if (isGameBlock) {
-                hitter.setColor(this.color);
-            }
-        }
-
         return new Velocity(dx, dy);
     }
 
@@ -121,12 +166,17 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public void drawOn(DrawSurface surface) {
+        double x = this.rectangle.getUpperLeft().getX();
+        double y = this.rectangle.getUpperLeft().getY();
+        // Each edge is rounded on its own, so blocks that share an edge share it on screen too
+        int left = (int) Math.round(x);
+        int top = (int) Math.round(y);
+        int width = (int) Math.round(x + this.rectangle.getWidth()) - left;
+        int height = (int) Math.round(y + this.rectangle.getHeight()) - top;
         surface.setColor(this.color);
-        surface.fillRectangle((int) this.rectangle.getUpperLeft().getX(), (int) this.rectangle.getUpperLeft().getY(),
-                (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
+        surface.fillRectangle(left, top, width, height);
         surface.setColor(Color.BLACK);
-        surface.drawRectangle((int) this.rectangle.getUpperLeft().getX(), (int) this.rectangle.getUpperLeft().getY(),
-                (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
+        surface.drawRectangle(left, top, width, height);
     }
 
     /**
@@ -139,15 +189,26 @@ public class Block implements Collidable, Sprite, HitNotifier {
     }
 
     /**
-     * Adds the block to the game as a sprite and collidable.
+     * Adds the block to the game as a static sprite and a collidable.
      *
      * @param g The game to add the block to.
      */
     public void addToGame(Game g) {
-        g.addSprite(this);
+        this.hitEvents = g.getHitEvents();
+        g.addStaticSprite(this);
         g.addCollidable(this);
     }
 
+    /**
+     * Sets the queue the block's hits are collected in, as adding it to a game does. BlockTiles uses this for
+     * the Blocks it builds, which are in the game without having been added to it.
+     *
+     * @param hitEvents The hit event queue of the game, or null to notify the listeners at once.
+     */
+    public void setHitEvents(HitEventQueue hitEvents) {
+        this.hitEvents = hitEvents;
+    }
+
     /**
      * Checks if the color of the ball matches the color of the block.
      *
@@ -170,14 +231,30 @@ public class Block implements Collidable, Sprite, HitNotifier {
 
     /**
      * Notifies all registered listeners about a hit event.
+     * Listener groups never change, so a listener may remove itself without the group being copied on every hit.
      *
      * @param hitter The ball that hit the block.
      */
-    private void notifyHit(Ball hitter) {
-        List<HitListener> listeners = new ArrayList<>(this.hitListeners);
-        for (HitListener hl : listeners) {
-            hl.hitEvent(this, hitter);
-        }
+    public void notifyHit(Ball hitter) {
+        this.hitListeners.notifyHit(this, hitter);
+    }
+
+    /**
+     * Returns the group of listeners of the block.
+     *
+     * @return The listener group of the block.
+     */
+    public ListenerGroup getHitListeners() {
+        return this.hitListeners;
+    }
+
+    /**
+     * Replaces all listeners of the block with the given group, for example when the game is rewound.
+     *
+     * @param group The new listener group of the block.
+     */
+    public void setHitListeners(ListenerGroup group) {
+        this.hitListeners = group;
     }
 
     /**
@@ -186,7 +263,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param h The hit listener to add.
      */
     public void addHitListener(HitListener h) {
-        hitListeners.add(h);
+        hitListeners = hitListeners.with(h);
     }
 
     /**
@@ -195,6 +272,6 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param h The hit listener to remove.
      */
     public void removeHitListener(HitListener h) {
-        hitListeners.remove(h);
+        hitListeners = hitListeners.without(h);
     }
 }
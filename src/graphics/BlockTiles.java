@@ -0,0 +1,346 @@
+package graphics;
+
+import biuoop.DrawSurface;
+import game.BlockGrid;
+import game.Game;
+import game.HitEventQueue;
+import interfaces.Sprite;
+import listeners.ListenerGroup;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.function.IntConsumer;
+
+/**
+ * The BlockTiles class holds the blocks that fill cells of a block grid as one int per cell, so loading a level
+ * or a save state with a million grid blocks fills an array instead of building a million objects.
+ * A tile packs the palette index of its color, its hit points and its kind, which names the listener group and
+ * the type flags it shares with other tiles. Tiles are drawn as one static sprite.
+ * <p>
+ * Collidables and hit listeners still see an ordinary Block: the grid tests a tile against the rectangle of
+ * its cell, and a tile gets a Block the first time it is the closest hit, which it keeps until it is removed.
+ * Queries may run on several threads at once and the tiles are drawn on the render thread, so Blocks are built,
+ * tiles removed and tiles drawn under the lock of the tiles. A removed tile's Block is an ordinary Block, and
+ * adding it to the game again stores it in the grid as an object.
+ */
+public class BlockTiles implements Sprite {
+    /** The number of colors a tile can refer to. */
+    public static final int MAX_COLORS = 1 << 16;
+    /** The largest number of hit points a tile can have. */
+    public static final int MAX_HIT_POINTS = 255;
+    /** The number of kinds the tiles can have. */
+    public static final int MAX_KINDS = 256;
+
+    private BlockGrid grid;
+    private Color[] palette;
+    private ListenerGroup[] groups;
+    private boolean[] gameBlocks;
+    private boolean[] deathRegions;
+    private int kindCount;
+    private int[] tiles;
+    private int size;
+    private int gameBlockCount;
+    private Block[] blocks;
+    private HitEventQueue hitEvents;
+
+    /**
+     * Constructs BlockTiles with no tiles and no kinds over the cells of a grid.
+     *
+     * @param grid    The grid whose cells the tiles fill.
+     * @param palette The colors the tiles refer to by index.
+     */
+    public BlockTiles(BlockGrid grid, Color[] palette) {
+        this.grid = grid;
+        this.palette = palette;
+        this.groups = new ListenerGroup[MAX_KINDS];
+        this.gameBlocks = new boolean[MAX_KINDS];
+        this.deathRegions = new boolean[MAX_KINDS];
+        this.kindCount = 0;
+        this.tiles = new int[grid.getCellCount()];
+        this.size = 0;
+        this.gameBlockCount = 0;
+        this.blocks = null;
+        this.hitEvents = null;
+    }
+
+    /**
+     * Adds a kind of tile.
+     *
+     * @param group         The listeners of the tiles of the kind.
+     * @param isGameBlock   Whether the tiles of the kind are part of the game.
+     * @param isDeathRegion Whether the tiles of the kind are death regions.
+     * @return The index of the kind, or -1 if the tiles already have MAX_KINDS kinds.
+     */
+    public int addKind(ListenerGroup group, boolean isGameBlock, boolean isDeathRegion) {
+        if (kindCount == MAX_KINDS) {
+            return -1;
+        }
+        groups[kindCount] = group;
+        gameBlocks[kindCount] = isGameBlock;
+        deathRegions[kindCount] = isDeathRegion;
+        return kindCount++;
+    }
+
+    /**
+     * Stores a tile in a cell, if the cell is free and the tile can be packed.
+     *
+     * @param cell      The index of the cell.
+     * @param color     The palette index of the color of the block.
+     * @param hitPoints The hit points of the block.
+     * @param kind      The kind of the block, as returned by addKind.
+     * @return true if the tile was stored, false if the cell holds a tile or a collidable, or the color, the hit
+     *         points or the kind do not fit a tile, in which case the block must be built as a Block.
+     */
+    public boolean put(int cell, int color, int hitPoints, int kind) {
+        if (tiles[cell] != 0 || grid.get(cell) != null || color < 0 || color >= Math.min(palette.length, MAX_COLORS)
+                || hitPoints < 1 || hitPoints > MAX_HIT_POINTS || kind < 0 || kind >= kindCount) {
+            return false;
+        }
+        // Hit points are at least 1, so a tile is never 0
+        tiles[cell] = color << 16 | hitPoints << 8 | kind;
+        size++;
+        if (gameBlocks[kind]) {
+            gameBlockCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a cell holds a tile.
+     *
+     * @param cell The index of the cell.
+     * @return true if the cell holds a tile, false otherwise.
+     */
+    public boolean has(int cell) {
+        return tiles[cell] != 0;
+    }
+
+    /**
+     * Returns the number of tiles.
+     *
+     * @return The number of tiles.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of tiles that are part of the game, the ones a player must break to win.
+     *
+     * @return The number of tiles of kinds that are game blocks.
+     */
+    public int getGameBlockCount() {
+        return this.gameBlockCount;
+    }
+
+    /**
+     * Performs the given action on the cell of every tile, in the order of the cells.
+     *
+     * @param action The action to perform on each cell that holds a tile.
+     */
+    public void forEachTile(IntConsumer action) {
+        int visited = 0;
+        for (int cell = 0; cell < tiles.length && visited < size; cell++) {
+            if (tiles[cell] != 0) {
+                action.accept(cell);
+                visited++;
+            }
+        }
+    }
+
+    /**
+     * Returns the Block of a tile, building it the first time it is asked for. The Block is wired to the
+     * listeners of its kind and queues its hits on the hit event queue of the game.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return The Block of the tile.
+     */
+    public synchronized Block getBlock(int cell) {
+        if (blocks == null) {
+            blocks = new Block[tiles.length];
+        }
+        if (blocks[cell] == null) {
+            int tile = tiles[cell];
+            int kind = tile & 0xFF;
+            Block block = new Block(grid.getCellRectangle(cell), palette[tile >>> 16], gameBlocks[kind],
+                    deathRegions[kind]);
+            block.setHitPoints(tile >>> 8 & 0xFF);
+            block.setHitListeners(groups[kind]);
+            block.setHitEvents(hitEvents);
+            blocks[cell] = block;
+        }
+        return blocks[cell];
+    }
+
+    /**
+     * Returns the Block of a tile if it was built.
+     *
+     * @param cell The index of the cell.
+     * @return The Block, or null if the cell holds no tile or the Block of its tile was not built.
+     */
+    public synchronized Block getBuiltBlock(int cell) {
+        return blocks == null ? null : blocks[cell];
+    }
+
+    /**
+     * Removes the tile of a cell, with its Block if it was built.
+     *
+     * @param cell The index of a cell that holds a tile.
+     */
+    public synchronized void remove(int cell) {
+        if (gameBlocks[tiles[cell] & 0xFF]) {
+            gameBlockCount--;
+        }
+        tiles[cell] = 0;
+        size--;
+        if (blocks != null) {
+            blocks[cell] = null;
+        }
+    }
+
+    /**
+     * Returns the color of a tile.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return The color.
+     */
+    public Color getColor(int cell) {
+        return palette[tiles[cell] >>> 16];
+    }
+
+    /**
+     * Returns the hit points of a tile, which are those of its Block once it is built.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return The hit points.
+     */
+    public int getHitPoints(int cell) {
+        Block block = getBuiltBlock(cell);
+        return block != null ? block.getHitPoints() : tiles[cell] >>> 8 & 0xFF;
+    }
+
+    /**
+     * Returns the listeners of a tile, which are those of its Block once it is built.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return The listener group.
+     */
+    public ListenerGroup getHitListeners(int cell) {
+        Block block = getBuiltBlock(cell);
+        return block != null ? block.getHitListeners() : groups[tiles[cell] & 0xFF];
+    }
+
+    /**
+     * Checks if a tile is part of the game.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return true if the tile is a game block, false otherwise.
+     */
+    public boolean isGameBlock(int cell) {
+        return gameBlocks[tiles[cell] & 0xFF];
+    }
+
+    /**
+     * Checks if a tile is a death region.
+     *
+     * @param cell The index of a cell that holds a tile.
+     * @return true if the tile is a death region, false otherwise.
+     */
+    public boolean isDeathRegion(int cell) {
+        return deathRegions[tiles[cell] & 0xFF];
+    }
+
+    /**
+     * Draws the tiles on the given DrawSurface, each like Block draws itself. On an ImageDrawSurface with a
+     * clip only the tiles whose cells overlap the clip are drawn, so repainting a small area of a static layer
+     * does not visit every tile. The render thread draws under the lock of the tiles, so a tile that the game
+     * removes meanwhile is either drawn whole or not at all.
+     *
+     * @param d The surface to draw the tiles on.
+     */
+    @Override
+    public synchronized void drawOn(DrawSurface d) {
+        int firstColumn = 0;
+        int lastColumn = grid.getColumns() - 1;
+        int firstRow = 0;
+        int lastRow = grid.getRows() - 1;
+        Rectangle clip = d instanceof ImageDrawSurface ? ((ImageDrawSurface) d).getClipBounds() : null;
+        if (clip != null) {
+            // Outlines are drawn one pixel past the right and bottom edges of a cell
+            firstColumn = Math.max(firstColumn, column(clip.x - 1));
+            lastColumn = Math.min(lastColumn, column(clip.x + clip.width));
+            firstRow = Math.max(firstRow, row(clip.y - 1));
+            lastRow = Math.min(lastRow, row(clip.y + clip.height));
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            // A cell ends where the next one starts, so cells that are not whole pixels leave no gaps
+            int top = edge(grid.getOriginY(), grid.getCellHeight(), r);
+            int height = edge(grid.getOriginY(), grid.getCellHeight(), r + 1) - top;
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int tile = tiles[r * grid.getColumns() + c];
+                if (tile == 0) {
+                    continue;
+                }
+                int left = edge(grid.getOriginX(), grid.getCellWidth(), c);
+                int width = edge(grid.getOriginX(), grid.getCellWidth(), c + 1) - left;
+                d.setColor(palette[tile >>> 16]);
+                d.fillRectangle(left, top, width, height);
+                d.setColor(Color.BLACK);
+                d.drawRectangle(left, top, width, height);
+            }
+        }
+    }
+
+    /**
+     * Notifies the tiles that time has passed.
+     * This method is part of the Sprite interface.
+     */
+    @Override
+    public void timePassed() {
+        // No action needed
+    }
+
+    /**
+     * Adds the tiles to a game: they are stored in its block grid, which must be the grid they were created
+     * over, drawn in its static layer, and their Blocks queue their hits on its hit event queue.
+     *
+     * @param g The game to add the tiles to.
+     */
+    public void addToGame(Game g) {
+        this.hitEvents = g.getHitEvents();
+        grid.setTiles(this);
+        g.addStaticSprite(this);
+    }
+
+    /**
+     * Returns the pixel a cell edge is drawn at, rounded like the edges of a Block.
+     *
+     * @param origin The coordinate of the first edge of the grid.
+     * @param size   The size of a cell.
+     * @param index  The index of the edge, which is the index of the column or row that starts at it.
+     * @return The pixel coordinate of the edge.
+     */
+    private static int edge(double origin, double size, int index) {
+        return (int) Math.round(origin + index * size);
+    }
+
+    /**
+     * Returns the column of the grid that holds the given x-coordinate, which may be outside the grid.
+     *
+     * @param x The x-coordinate.
+     * @return The column.
+     */
+    private int column(double x) {
+        return (int) Math.floor((x - grid.getOriginX()) / grid.getCellWidth());
+    }
+
+    /**
+     * Returns the row of the grid that holds the given y-coordinate, which may be outside the grid.
+     *
+     * @param y The y-coordinate.
+     * @return The row.
+     */
+    private int row(double y) {
+        return (int) Math.floor((y - grid.getOriginY()) / grid.getCellHeight());
+    }
+}
@@ -0,0 +1,142 @@
+package graphics;
+
+import interfaces.Collidable;
+
+import java.util.Arrays;
+
+/**
+ * The HitBuffer class records the hits found while balls are moved, so they can be reported later.
+ * Each hit is stored as the index of the ball, the collidable that was hit, the point of contact and
+ * the velocity of the ball just before the hit, in parallel arrays that are reused from step to step.
+ */
+final class HitBuffer {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ball;
+    private Collidable[] target;
+    private double[] contactX;
+    private double[] contactY;
+    private double[] velocityX;
+    private double[] velocityY;
+    private int size;
+
+    /**
+     * Constructs an empty HitBuffer.
+     */
+    HitBuffer() {
+        this.ball = new int[INITIAL_CAPACITY];
+        this.target = new Collidable[INITIAL_CAPACITY];
+        this.contactX = new double[INITIAL_CAPACITY];
+        this.contactY = new double[INITIAL_CAPACITY];
+        this.velocityX = new double[INITIAL_CAPACITY];
+        this.velocityY = new double[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Records a hit.
+     *
+     * @param ballIndex    The index of the ball that hit.
+     * @param collidable   The collidable that was hit.
+     * @param pointX       The x-coordinate of the point of contact.
+     * @param pointY       The y-coordinate of the point of contact.
+     * @param hitVelocityX The horizontal velocity of the ball just before the hit.
+     * @param hitVelocityY The vertical velocity of the ball just before the hit.
+     */
+    void add(int ballIndex, Collidable collidable, double pointX, double pointY,
+             double hitVelocityX, double hitVelocityY) {
+        if (size == ball.length) {
+            int capacity = 2 * size;
+            ball = Arrays.copyOf(ball, capacity);
+            target = Arrays.copyOf(target, capacity);
+            contactX = Arrays.copyOf(contactX, capacity);
+            contactY = Arrays.copyOf(contactY, capacity);
+            velocityX = Arrays.copyOf(velocityX, capacity);
+            velocityY = Arrays.copyOf(velocityY, capacity);
+        }
+        ball[size] = ballIndex;
+        target[size] = collidable;
+        contactX[size] = pointX;
+        contactY[size] = pointY;
+        velocityX[size] = hitVelocityX;
+        velocityY[size] = hitVelocityY;
+        size++;
+    }
+
+    /**
+     * Removes all recorded hits.
+     */
+    void clear() {
+        Arrays.fill(target, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the number of recorded hits.
+     *
+     * @return The number of recorded hits.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the index of the ball of the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The index of the ball.
+     */
+    int ball(int i) {
+        return ball[i];
+    }
+
+    /**
+     * Returns the collidable of the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The collidable that was hit.
+     */
+    Collidable target(int i) {
+        return target[i];
+    }
+
+    /**
+     * Returns the x-coordinate of the point of contact of the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The x-coordinate of the point of contact.
+     */
+    double contactX(int i) {
+        return contactX[i];
+    }
+
+    /**
+     * Returns the y-coordinate of the point of contact of the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The y-coordinate of the point of contact.
+     */
+    double contactY(int i) {
+        return contactY[i];
+    }
+
+    /**
+     * Returns the horizontal velocity of the ball just before the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The horizontal velocity.
+     */
+    double velocityX(int i) {
+        return velocityX[i];
+    }
+
+    /**
+     * Returns the vertical velocity of the ball just before the given hit.
+     *
+     * @param i The index of the hit.
+     * @return The vertical velocity.
+     */
+    double velocityY(int i) {
+        return velocityY[i];
+    }
+}
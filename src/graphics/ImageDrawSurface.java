@@ -0,0 +1,230 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * The ImageDrawSurface class is a DrawSurface that draws into an offscreen image,
+ * so sprites can be rendered once and the result reused across frames.
+ */
+public class ImageDrawSurface implements DrawSurface {
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    /**
+     * Constructs an ImageDrawSurface that draws into the given image.
+     *
+     * @param image The image to draw into.
+     */
+    public ImageDrawSurface(BufferedImage image) {
+        this.image = image;
+        this.graphics = image.createGraphics();
+    }
+
+    /**
+     * Restricts drawing to the given rectangle until the clip is cleared.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    public void setClip(int x, int y, int width, int height) {
+        graphics.setClip(x, y, width, height);
+    }
+
+    /**
+     * Allows drawing anywhere on the image again.
+     */
+    public void clearClip() {
+        graphics.setClip(null);
+    }
+
+    /**
+     * Returns the rectangle drawing is restricted to.
+     *
+     * @return The clip, or null if drawing is allowed anywhere on the image.
+     */
+    public Rectangle getClipBounds() {
+        return graphics.getClipBounds();
+    }
+
+    /**
+     * Releases the graphics context of the surface. The surface cannot be drawn on afterwards.
+     */
+    public void dispose() {
+        graphics.dispose();
+    }
+
+    /**
+     * Returns the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * Returns the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Sets the color used by the following drawing operations.
+     *
+     * @param color The color.
+     */
+    @Override
+    public void setColor(Color color) {
+        graphics.setColor(color);
+    }
+
+    /**
+     * Draws a line.
+     *
+     * @param x1 The x-coordinate of the start of the line.
+     * @param y1 The y-coordinate of the start of the line.
+     * @param x2 The x-coordinate of the end of the line.
+     * @param y2 The y-coordinate of the end of the line.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws the outline of an oval.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        graphics.drawOval(x, y, width, height);
+    }
+
+    /**
+     * Fills an oval.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        graphics.fillOval(x, y, width, height);
+    }
+
+    /**
+     * Draws the outline of a rectangle.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        graphics.drawRect(x, y, width, height);
+    }
+
+    /**
+     * Fills a rectangle.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        graphics.fillRect(x, y, width, height);
+    }
+
+    /**
+     * Draws an image.
+     *
+     * @param x     The x-coordinate of the upper-left corner of the image.
+     * @param y     The y-coordinate of the upper-left corner of the image.
+     * @param other The image to draw.
+     */
+    @Override
+    public void drawImage(int x, int y, Image other) {
+        graphics.drawImage(other, x, y, null);
+    }
+
+    /**
+     * Draws the outline of a circle.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void drawCircle(int x, int y, int radius) {
+        graphics.drawOval(x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+
+    /**
+     * Fills a circle.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void fillCircle(int x, int y, int radius) {
+        graphics.fillOval(x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+
+    /**
+     * Draws text.
+     *
+     * @param x        The x-coordinate of the start of the text.
+     * @param y        The y-coordinate of the baseline of the text.
+     * @param text     The text.
+     * @param fontSize The size of the font.
+     */
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, fontSize));
+        graphics.drawString(text, x, y);
+    }
+
+    /**
+     * Draws the outline of a polygon.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        graphics.drawPolygon(polygon);
+    }
+
+    /**
+     * Fills a polygon.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        graphics.fillPolygon(polygon);
+    }
+}
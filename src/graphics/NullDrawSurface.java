@@ -0,0 +1,179 @@
+package graphics;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * The NullDrawSurface class is a DrawSurface that draws nothing.
+ * It stands in for the surface of a GUI when the game runs without a display.
+ */
+public class NullDrawSurface implements DrawSurface {
+    private int width;
+    private int height;
+
+    /**
+     * Constructs a NullDrawSurface of the given size.
+     *
+     * @param width  The width reported by the surface.
+     * @param height The height reported by the surface.
+     */
+    public NullDrawSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the width of the surface.
+     *
+     * @return The width of the surface.
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the surface.
+     *
+     * @return The height of the surface.
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Ignores the color.
+     *
+     * @param color The color.
+     */
+    @Override
+    public void setColor(Color color) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x1 The x-coordinate of the start of the line.
+     * @param y1 The y-coordinate of the start of the line.
+     * @param x2 The x-coordinate of the end of the line.
+     * @param y2 The y-coordinate of the end of the line.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the oval's bounds.
+     * @param y      The y-coordinate of the upper-left corner of the oval's bounds.
+     * @param width  The width of the oval.
+     * @param height The height of the oval.
+     */
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the upper-left corner of the rectangle.
+     * @param y      The y-coordinate of the upper-left corner of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x     The x-coordinate of the upper-left corner of the image.
+     * @param y     The y-coordinate of the upper-left corner of the image.
+     * @param image The image.
+     */
+    @Override
+    public void drawImage(int x, int y, Image image) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void drawCircle(int x, int y, int radius) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x      The x-coordinate of the center of the circle.
+     * @param y      The y-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     */
+    @Override
+    public void fillCircle(int x, int y, int radius) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param x        The x-coordinate of the start of the text.
+     * @param y        The y-coordinate of the baseline of the text.
+     * @param text     The text.
+     * @param fontSize The size of the font.
+     */
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon polygon) {
+    }
+
+    /**
+     * Draws nothing.
+     *
+     * @param polygon The polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon polygon) {
+    }
+}
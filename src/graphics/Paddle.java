@@ -1,6 +1,7 @@
 package graphics;
 
 import game.Game;
+import game.GameEnvironment;
 import geometry.Point;
 import geometry.Rectangle;
 import biuoop.DrawSurface;
@@ -17,9 +18,11 @@ import java.awt.Color;
  */
 public class Paddle implements Sprite, Collidable {
     private Rectangle rectangle;
+    private double previousX;
     private Color color;
     private KeyboardSensor keyboard;
     private double speed;
+    private GameEnvironment gameEnvironment;
 
     /**
      * Constructs a Paddle with the specified rectangle, color, keyboard sensor, and speed.
@@ -31,6 +34,7 @@ public class Paddle implements Sprite, Collidable {
      */
     public Paddle(Rectangle rectangle, Color color, KeyboardSensor keyboard, double speed) {
         this.rectangle = rectangle;
+        this.previousX = rectangle.getUpperLeft().getX();
         this.color = color;
         this.keyboard = keyboard;
         this.speed = speed;
@@ -40,24 +44,78 @@ public class Paddle implements Sprite, Collidable {
      * Moves the paddle to the left, wrapping around the screen if necessary.
      */
     public void moveLeft() {
-        double newX = this.rectangle.getUpperLeft().getX() - speed;
-        if (newX < 30) { // Wrap around to the right side within the screen
-            newX = 770 - this.rectangle.getWidth();
-        }
-        this.rectangle = new Rectangle(new Point(newX, this.rectangle.getUpperLeft().getY()),
-                this.rectangle.getWidth(), this.rectangle.getHeight());
+        moveBy(-speed);
     }
 
     /**
      * Moves the paddle to the right, wrapping around the screen if necessary.
      */
     public void moveRight() {
-        double newX = this.rectangle.getUpperLeft().getX() + speed;
-        if (newX + this.rectangle.getWidth() > 770) { // Wrap around to the left side within the screen
+        moveBy(speed);
+    }
+
+    /**
+     * Moves the paddle horizontally by the given distance, wrapping around the screen if necessary.
+     * A paddle that wraps around is not drawn between its old and new positions.
+     *
+     * @param distance The distance to move, negative to move to the left.
+     */
+    private void moveBy(double distance) {
+        double newX = this.rectangle.getUpperLeft().getX() + distance;
+        if (distance < 0 && newX < 30) { // Wrap around to the right side within the screen
+            newX = 770 - this.rectangle.getWidth();
+            this.previousX = newX;
+        } else if (distance > 0 && newX + this.rectangle.getWidth() > 770) { // Wrap around to the left side
             newX = 30;
+            this.previousX = newX;
         }
         this.rectangle = new Rectangle(new Point(newX, this.rectangle.getUpperLeft().getY()),
                 this.rectangle.getWidth(), this.rectangle.getHeight());
+        if (this.gameEnvironment != null) {
+            this.gameEnvironment.updateCollidable(this);
+        }
+    }
+
+    /**
+     * Returns the color of the paddle.
+     *
+     * @return The color of the paddle.
+     */
+    public Color getColor() {
+        return this.color;
+    }
+
+    /**
+     * Returns the distance the paddle moves per 1/60 second while a key is held.
+     *
+     * @return The speed of the paddle.
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of the paddle.
+     *
+     * @return The x-coordinate of the paddle.
+     */
+    public double getX() {
+        return this.rectangle.getUpperLeft().getX();
+    }
+
+    /**
+     * Puts the paddle at the given x-coordinate, for example when the game is rewound.
+     * The paddle is not drawn between its old and new positions.
+     *
+     * @param x The new x-coordinate of the left edge of the paddle.
+     */
+    public void setX(double x) {
+        this.rectangle = new Rectangle(new Point(x, this.rectangle.getUpperLeft().getY()),
+                this.rectangle.getWidth(), this.rectangle.getHeight());
+        this.previousX = x;
+        if (this.gameEnvironment != null) {
+            this.gameEnvironment.updateCollidable(this);
+        }
     }
 
     /**
@@ -66,11 +124,23 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public void timePassed() {
+        timePassed(1);
+    }
+
+    /**
+     * Notifies the paddle that the given amount of time has passed, moving it by its speed scaled by dt
+     * in the direction of the pressed arrow keys.
+     *
+     * @param dt The time that has passed, in frames of 1/60 second.
+     */
+    @Override
+    public void timePassed(double dt) {
+        this.previousX = this.rectangle.getUpperLeft().getX();
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
-            moveLeft();
+            moveBy(-speed * dt);
         }
         if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
-            moveRight();
+            moveBy(speed * dt);
         }
     }
 
@@ -86,6 +156,20 @@ public class Paddle implements Sprite, Collidable {
                 (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
     }
 
+    /**
+     * Draws the paddle on the given DrawSurface, between its positions before and after its last step.
+     *
+     * @param surface The surface to draw the paddle on.
+     * @param alpha   How far to draw the paddle from its previous position (0) to its current position (1).
+     */
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        double x = this.previousX + (this.rectangle.getUpperLeft().getX() - this.previousX) * alpha;
+        surface.setColor(this.color);
+        surface.fillRectangle((int) x, (int) this.rectangle.getUpperLeft().getY(),
+                (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
+    }
+
     /**
      * Returns the rectangle representing the paddle's collision shape.
      *
@@ -106,6 +190,19 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public Velocity hit(Ball ball, Point collisionPoint, Velocity currentVelocity) {
+        return deflect(collisionPoint, currentVelocity);
+    }
+
+    /**
+     * Returns the velocity of a ball after hitting the paddle. The paddle is split into five regions
+     * and the ball leaves at an angle that depends on the region it hit.
+     *
+     * @param collisionPoint  The point where the collision occurs.
+     * @param currentVelocity The current velocity of the ball.
+     * @return The new velocity of the ball after the collision.
+     */
+    @Override
+    public Velocity deflect(Point collisionPoint, Velocity currentVelocity) {
         double dx = currentVelocity.getDoublex();
         double dy = currentVelocity.getDoubley();
         double rectLeftX = rectangle.getUpperLeft().getX();
@@ -156,6 +253,15 @@ public class Paddle implements Sprite, Collidable {
         return newVelocity;
     }
 
+    /**
+     * Sets the game environment the paddle is registered in, so it can be told when the paddle moves.
+     *
+     * @param gameEnvironment The game environment of the paddle.
+     */
+    public void setGameEnvironment(GameEnvironment gameEnvironment) {
+        this.gameEnvironment = gameEnvironment;
+    }
+
     /**
      * Adds the paddle to the game as a sprite and collidable.
      *
@@ -1,23 +1,24 @@
 package graphics;
 
 import biuoop.DrawSurface;
+import game.SlotList;
 import interfaces.Sprite;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The SpriteCollection class manages a collection of Sprite objects.
  * It provides methods to add, remove, notify, and draw all sprites in the collection.
+ * Sprites added or removed while the collection is being notified or drawn take effect once that pass ends.
  */
 public class SpriteCollection {
-    private List<Sprite> sprites;
+    private SlotList<Sprite> sprites;
 
     /**
      * Constructs a SpriteCollection with an empty list of sprites.
      */
     public SpriteCollection() {
-        this.sprites = new ArrayList<>();
+        this.sprites = new SlotList<>();
     }
 
     /**
@@ -38,15 +39,40 @@ public class SpriteCollection {
         sprites.remove(s);
     }
 
+    /**
+     * Checks if a sprite is in the collection.
+     *
+     * @param s The sprite to look for.
+     * @return true if the sprite is in the collection, false otherwise.
+     */
+    public boolean contains(Sprite s) {
+        return sprites.slotOf(s) >= 0;
+    }
+
+    /**
+     * Performs the given action on every sprite, in the order the sprites are notified.
+     *
+     * @param action The action to perform on each sprite.
+     */
+    public void forEach(Consumer<? super Sprite> action) {
+        sprites.forEach(action);
+    }
+
     /**
      * Notifies all sprites in the collection that time has passed.
      * This method calls the timePassed() method on all sprites.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites); // Make a copy of the list
-        for (Sprite s : spritesCopy) {
-            s.timePassed();
-        }
+        sprites.forEach(Sprite::timePassed);
+    }
+
+    /**
+     * Notifies all sprites in the collection that the given amount of time has passed.
+     *
+     * @param dt The time that has passed, in frames of 1/60 second.
+     */
+    public void notifyAllTimePassed(double dt) {
+        sprites.forEach(s -> s.timePassed(dt));
     }
 
     /**
@@ -56,9 +82,16 @@ public class SpriteCollection {
      * @param d The surface to draw the sprites on.
      */
     public void drawAllOn(DrawSurface d) {
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites); // Make a copy of the list
-        for (Sprite s : spritesCopy) {
-            s.drawOn(d);
-        }
+        sprites.forEach(s -> s.drawOn(d));
+    }
+
+    /**
+     * Draws all sprites in the collection on the given DrawSurface, between their previous and current states.
+     *
+     * @param d     The surface to draw the sprites on.
+     * @param alpha How far to draw the sprites from their previous states (0) to their current states (1).
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        sprites.forEach(s -> s.drawOn(d, alpha));
     }
 }
@@ -0,0 +1,401 @@
+package graphics;
+
+import biuoop.DrawSurface;
+import game.SlotList;
+import geometry.Rectangle;
+import interfaces.Collidable;
+import interfaces.Sprite;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The StaticLayer class pre-renders the background and the sprites that never move, such as the walls and the
+ * blocks, into an offscreen image that is drawn with a single call per frame.
+ * When a sprite is added or removed only its area of the image is repainted: the area is cleared to the
+ * background color and the sprites that overlap it are drawn again, clipped to it. Sprites are located by
+ * their collision rectangle if they are collidables; any other sprite makes the whole image be repainted.
+ * Sprites may be added and removed on one thread while the layer is drawn on another.
+ * <p>
+ * The collidable sprites are indexed in a grid of square buckets, so repainting an area only visits the sprites
+ * in the buckets it covers, not every sprite of the level. The areas that changed since the last frame are
+ * merged first wherever that does not grow them, so a row of removed blocks is repainted as one area.
+ */
+public class StaticLayer implements Sprite {
+    private static final int BUCKET_SIZE = 16;
+
+    private int width;
+    private int height;
+    private Color background;
+    private SlotList<Sprite> sprites;
+    private BufferedImage image;
+    private ImageDrawSurface surface;
+    private List<Rectangle> dirty;
+    private boolean fullRepaint;
+    private int columns;
+    private int rows;
+    private int[][] buckets;
+    private int[] bucketSizes;
+    private int[] unlocated;
+    private int unlocatedCount;
+    private int[] visits;
+    private int visit;
+    private int[] candidates;
+    private int[] areas;
+    private int areaCount;
+
+    /**
+     * Constructs an empty StaticLayer.
+     *
+     * @param width      The width of the layer.
+     * @param height     The height of the layer.
+     * @param background The color the layer is filled with behind its sprites.
+     */
+    public StaticLayer(int width, int height, Color background) {
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        this.sprites = new SlotList<>();
+        this.dirty = new ArrayList<>();
+        this.fullRepaint = true;
+        this.columns = Math.max(1, (width + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        this.rows = Math.max(1, (height + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        this.buckets = new int[columns * rows][];
+        this.bucketSizes = new int[columns * rows];
+        this.unlocated = new int[4];
+        this.unlocatedCount = 0;
+        this.visits = new int[0];
+        this.visit = 0;
+        this.candidates = new int[0];
+        this.areas = new int[0];
+        this.areaCount = 0;
+        this.sprites.setSlotListeners(this::index, this::unindex);
+    }
+
+    /**
+     * Adds a sprite to the layer. The sprite must not move or change its appearance while it is in the layer.
+     *
+     * @param s The sprite to add.
+     */
+    public synchronized void add(Sprite s) {
+        if (sprites.slotOf(s) < 0) {
+            sprites.add(s);
+            invalidate(s);
+        }
+    }
+
+    /**
+     * Makes room for the given number of sprites, so adding them does not grow the layer.
+     *
+     * @param capacity The number of sprites to make room for.
+     */
+    public synchronized void ensureCapacity(int capacity) {
+        sprites.ensureCapacity(capacity);
+        if (capacity > visits.length) {
+            visits = Arrays.copyOf(visits, capacity);
+        }
+    }
+
+    /**
+     * Removes a sprite from the layer.
+     *
+     * @param s The sprite to remove.
+     * @return true if the sprite was in the layer, false otherwise.
+     */
+    public synchronized boolean remove(Sprite s) {
+        if (sprites.remove(s) < 0) {
+            return false;
+        }
+        invalidate(s);
+        return true;
+    }
+
+    /**
+     * Draws the layer on the given DrawSurface, first repainting the parts of the image that changed.
+     * Nothing is rendered for a NullDrawSurface, so headless games never pay for the image.
+     *
+     * @param d The surface to draw the layer on.
+     */
+    @Override
+    public synchronized void drawOn(DrawSurface d) {
+        if (d instanceof NullDrawSurface) {
+            return;
+        }
+        if (image == null) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            surface = new ImageDrawSurface(image);
+        }
+        if (fullRepaint) {
+            surface.clearClip();
+            surface.setColor(background);
+            surface.fillRectangle(0, 0, width, height);
+            sprites.forEach(s -> s.drawOn(surface));
+            fullRepaint = false;
+            dirty.clear();
+        }
+        mergeDirty();
+        for (int a = 0; a < areaCount; a++) {
+            repaint(areas[4 * a], areas[4 * a + 1], areas[4 * a + 2], areas[4 * a + 3]);
+        }
+        dirty.clear();
+        d.drawImage(0, 0, image);
+    }
+
+    /**
+     * Notifies the layer that time has passed.
+     * This method is part of the Sprite interface.
+     */
+    @Override
+    public void timePassed() {
+        // No action needed
+    }
+
+    /**
+     * Marks an area of the layer as needing a repaint, for example when a sprite of the layer that draws many
+     * blocks, such as BlockTiles, stops drawing one of them.
+     *
+     * @param area The area that changed.
+     */
+    public synchronized void invalidate(Rectangle area) {
+        if (!fullRepaint) {
+            dirty.add(area);
+        }
+    }
+
+    /**
+     * Marks the area of the given sprite as needing a repaint.
+     *
+     * @param s The sprite that was added or removed.
+     */
+    private void invalidate(Sprite s) {
+        if (s instanceof Collidable) {
+            invalidate(((Collidable) s).getCollisionRectangle());
+        } else {
+            fullRepaint = true;
+        }
+    }
+
+    /**
+     * Turns the dirty rectangles into the areas to repaint, and merges two areas wherever the area that
+     * covers both is no larger than the two together. Each area is grown by a pixel on each side, since outlines
+     * are drawn one pixel past the right and bottom edges of a rectangle, so the areas of neighboring blocks in a
+     * row or column overlap and are merged.
+     */
+    private void mergeDirty() {
+        if (areas.length < 4 * dirty.size()) {
+            areas = new int[4 * dirty.size()];
+        }
+        areaCount = 0;
+        for (Rectangle rect : dirty) {
+            int a = 4 * areaCount++;
+            areas[a] = (int) Math.floor(rect.getUpperLeft().getX()) - 1;
+            areas[a + 1] = (int) Math.floor(rect.getUpperLeft().getY()) - 1;
+            areas[a + 2] = (int) Math.ceil(rect.getWidth()) + 3;
+            areas[a + 3] = (int) Math.ceil(rect.getHeight()) + 3;
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < areaCount; i++) {
+                for (int j = i + 1; j < areaCount; j++) {
+                    if (merge(4 * i, 4 * j)) {
+                        areaCount--;
+                        System.arraycopy(areas, 4 * areaCount, areas, 4 * j, 4);
+                        j--;
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the second of two areas into the first if the area that covers both is no larger than the two
+     * areas together.
+     *
+     * @param a The offset of the first area in the area array.
+     * @param b The offset of the second area in the area array.
+     * @return true if the areas were merged, false otherwise.
+     */
+    private boolean merge(int a, int b) {
+        int left = Math.min(areas[a], areas[b]);
+        int top = Math.min(areas[a + 1], areas[b + 1]);
+        int right = Math.max(areas[a] + areas[a + 2], areas[b] + areas[b + 2]);
+        int bottom = Math.max(areas[a + 1] + areas[a + 3], areas[b + 1] + areas[b + 3]);
+        long union = (long) (right - left) * (bottom - top);
+        if (union > (long) areas[a + 2] * areas[a + 3] + (long) areas[b + 2] * areas[b + 3]) {
+            return false;
+        }
+        areas[a] = left;
+        areas[a + 1] = top;
+        areas[a + 2] = right - left;
+        areas[a + 3] = bottom - top;
+        return true;
+    }
+
+    /**
+     * Repaints one area of the image: clears it and draws again, in slot order, the sprites whose buckets it
+     * covers and that overlap it, together with the sprites that are not located.
+     *
+     * @param x The x-coordinate of the upper-left corner of the area.
+     * @param y The y-coordinate of the upper-left corner of the area.
+     * @param w The width of the area.
+     * @param h The height of the area.
+     */
+    private void repaint(int x, int y, int w, int h) {
+        if (candidates.length < sprites.slotCount()) {
+            candidates = new int[sprites.slotCount()];
+        }
+        visit++;
+        int count = 0;
+        for (int i = 0; i < unlocatedCount; i++) {
+            candidates[count++] = unlocated[i];
+        }
+        int firstColumn = column(x);
+        int lastColumn = column(x + w);
+        int lastRow = row(y + h);
+        for (int r = row(y); r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int bucket = r * columns + c;
+                for (int i = 0; i < bucketSizes[bucket]; i++) {
+                    int slot = buckets[bucket][i];
+                    if (visits[slot] != visit) {
+                        visits[slot] = visit;
+                        candidates[count++] = slot;
+                    }
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+
+        surface.setClip(x, y, w, h);
+        surface.setColor(background);
+        surface.fillRectangle(x, y, w, h);
+        for (int i = 0; i < count; i++) {
+            Sprite s = sprites.get(candidates[i]);
+            if (!(s instanceof Collidable) || overlaps(((Collidable) s).getCollisionRectangle(), x, y, w, h)) {
+                s.drawOn(surface);
+            }
+        }
+        surface.clearClip();
+    }
+
+    /**
+     * Adds a sprite to the buckets its collision rectangle covers, including its outline, or to the sprites
+     * that are not located if it is not a collidable.
+     *
+     * @param s    The sprite.
+     * @param slot The slot of the sprite.
+     */
+    private void index(Sprite s, int slot) {
+        if (slot >= visits.length) {
+            visits = Arrays.copyOf(visits, Math.max(16, Math.max(slot + 1, 2 * visits.length)));
+        }
+        if (!(s instanceof Collidable)) {
+            if (unlocatedCount == unlocated.length) {
+                unlocated = Arrays.copyOf(unlocated, 2 * unlocatedCount);
+            }
+            unlocated[unlocatedCount++] = slot;
+            return;
+        }
+        Rectangle rect = ((Collidable) s).getCollisionRectangle();
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        int lastColumn = column(left + rect.getWidth() + 1);
+        int lastRow = row(top + rect.getHeight() + 1);
+        for (int r = row(top); r <= lastRow; r++) {
+            for (int c = column(left); c <= lastColumn; c++) {
+                int bucket = r * columns + c;
+                if (buckets[bucket] == null) {
+                    buckets[bucket] = new int[4];
+                } else if (bucketSizes[bucket] == buckets[bucket].length) {
+                    buckets[bucket] = Arrays.copyOf(buckets[bucket], 2 * bucketSizes[bucket]);
+                }
+                buckets[bucket][bucketSizes[bucket]++] = slot;
+            }
+        }
+    }
+
+    /**
+     * Removes a sprite from the buckets its collision rectangle covers, or from the sprites that are not located.
+     * Static sprites do not move, so the rectangle covers the same buckets as when the sprite was added.
+     *
+     * @param s    The sprite.
+     * @param slot The slot the sprite was in.
+     */
+    private void unindex(Sprite s, int slot) {
+        if (!(s instanceof Collidable)) {
+            unlocatedCount = removeSlot(unlocated, unlocatedCount, slot);
+            return;
+        }
+        Rectangle rect = ((Collidable) s).getCollisionRectangle();
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        int lastColumn = column(left + rect.getWidth() + 1);
+        int lastRow = row(top + rect.getHeight() + 1);
+        for (int r = row(top); r <= lastRow; r++) {
+            for (int c = column(left); c <= lastColumn; c++) {
+                int bucket = r * columns + c;
+                bucketSizes[bucket] = removeSlot(buckets[bucket], bucketSizes[bucket], slot);
+            }
+        }
+    }
+
+    /**
+     * Removes a slot from an unordered array of slots, moving the last slot into its place.
+     *
+     * @param slots The array of slots.
+     * @param count The number of slots in the array.
+     * @param slot  The slot to remove.
+     * @return The number of slots left in the array.
+     */
+    private static int removeSlot(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[count - 1];
+                return count - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the column of buckets that holds the given x-coordinate, clamped to the layer.
+     *
+     * @param x The x-coordinate.
+     * @return The column.
+     */
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / BUCKET_SIZE)));
+    }
+
+    /**
+     * Returns the row of buckets that holds the given y-coordinate, clamped to the layer.
+     *
+     * @param y The y-coordinate.
+     * @return The row.
+     */
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / BUCKET_SIZE)));
+    }
+
+    /**
+     * Checks if a rectangle, including its outline, overlaps the given area.
+     *
+     * @param rect The rectangle.
+     * @param x    The x-coordinate of the upper-left corner of the area.
+     * @param y    The y-coordinate of the upper-left corner of the area.
+     * @param w    The width of the area.
+     * @param h    The height of the area.
+     * @return true if the rectangle overlaps the area, false otherwise.
+     */
+    private static boolean overlaps(Rectangle rect, int x, int y, int w, int h) {
+        double left = rect.getUpperLeft().getX();
+        double top = rect.getUpperLeft().getY();
+        return left <= x + w && left + rect.getWidth() + 1 >= x
+                && top <= y + h && top + rect.getHeight() + 1 >= y;
+    }
+}
@@ -0,0 +1,163 @@
+package graphics;
+
+import game.GameEnvironment;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import geometry.Velocity;
+import interfaces.Collidable;
+
+/**
+ * The SweptCircle class moves a ball through the game environment for one step.
+ * The ball is swept as a circle along its velocity, so it cannot tunnel through thin collidables, and
+ * every collision within the step is resolved in time-of-impact order, up to MAX_IMPACTS per step.
+ * The state of the ball is passed as primitive values in an array, so the same solver serves single
+ * Ball objects and the packed arrays of a BallSystem.
+ */
+final class SweptCircle {
+    /** Index of the x-coordinate of the center in a state array. */
+    static final int X = 0;
+    /** Index of the y-coordinate of the center in a state array. */
+    static final int Y = 1;
+    /** Index of the horizontal velocity in a state array. */
+    static final int DX = 2;
+    /** Index of the vertical velocity in a state array. */
+    static final int DY = 3;
+    /** The length of a state array. */
+    static final int STATE_SIZE = 4;
+
+    private static final int MAX_IMPACTS = 8;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private SweptCircle() {
+    }
+
+    /**
+     * Moves a ball one step, considering collisions with other objects and boundaries.
+     * Collidables that are hit are told so through their hit method with the given hitter, whose center
+     * is moved to the point of impact first.
+     *
+     * @param environment The game environment the ball moves in.
+     * @param state       The center and velocity of the ball, updated in place.
+     * @param radius      The radius of the ball.
+     * @param width       The width of the game area.
+     * @param height      The height of the game area.
+     * @param dt          The length of the step, in frames of 1/60 second.
+     * @param hitter      The ball reported to the collidables that are hit.
+     * @param hit         A reusable RayHit for the sweep queries.
+     */
+    static void move(GameEnvironment environment, double[] state, double radius, int width, int height,
+                     double dt, Ball hitter, RayHit hit) {
+        step(environment, state, radius, width, height, dt, hitter, 0, null, hit);
+    }
+
+    /**
+     * Moves a ball one step like move, but without telling the collidables that they were hit.
+     * The new velocity after each hit is taken from the collidable's deflect method and the hit is recorded
+     * in the given buffer instead, so the step only reads the environment and may run on any thread.
+     *
+     * @param environment The game environment the ball moves in.
+     * @param state       The center and velocity of the ball, updated in place.
+     * @param radius      The radius of the ball.
+     * @param width       The width of the game area.
+     * @param height      The height of the game area.
+     * @param dt          The length of the step, in frames of 1/60 second.
+     * @param ball        The index of the ball, recorded with its hits.
+     * @param hits        The buffer that receives the hits.
+     * @param hit         A reusable RayHit for the sweep queries.
+     */
+    static void record(GameEnvironment environment, double[] state, double radius, int width, int height,
+                       double dt, int ball, HitBuffer hits, RayHit hit) {
+        step(environment, state, radius, width, height, dt, null, ball, hits, hit);
+    }
+
+    /**
+     * Moves a ball one step, either reporting each hit at once to the given hitter or recording it in a buffer.
+     *
+     * @param environment The game environment the ball moves in.
+     * @param state       The center and velocity of the ball, updated in place.
+     * @param radius      The radius of the ball.
+     * @param width       The width of the game area.
+     * @param height      The height of the game area.
+     * @param dt          The length of the step, in frames of 1/60 second.
+     * @param hitter      The ball reported to the collidables that are hit, used when hits is null.
+     * @param ball        The index of the ball, used when hits is not null.
+     * @param hits        The buffer that receives the hits, or null to report them at once.
+     * @param hit         A reusable RayHit for the sweep queries.
+     */
+    private static void step(GameEnvironment environment, double[] state, double radius, int width, int height,
+                             double dt, Ball hitter, int ball, HitBuffer hits, RayHit hit) {
+        double x = state[X];
+        double y = state[Y];
+        double velocityX = state[DX];
+        double velocityY = state[DY];
+        double remaining = dt;
+
+        for (int impacts = 0; impacts < MAX_IMPACTS && remaining > 0; impacts++) {
+            double dx = velocityX * remaining;
+            double dy = velocityY * remaining;
+            Collidable collisionObject = environment.closestSweep(x, y, dx, dy, radius, hit);
+            if (collisionObject == null) {
+                x += dx;
+                y += dy;
+                break;
+            }
+
+            // Advance to the time of impact, where the ball touches the collision rectangle
+            double t = hit.getT();
+            double normalX = hit.getNormalX();
+            double normalY = hit.getNormalY();
+            x += dx * t;
+            y += dy * t;
+            remaining *= 1 - t;
+
+            Rectangle rect = collisionObject.getCollisionRectangle();
+            double left = rect.getUpperLeft().getX();
+            double top = rect.getUpperLeft().getY();
+            double right = left + rect.getWidth();
+            double bottom = top + rect.getHeight();
+            double contactX = normalX < 0 ? left : normalX > 0 ? right : Math.max(left, Math.min(right, x));
+            double contactY = normalY < 0 ? top : normalY > 0 ? bottom : Math.max(top, Math.min(bottom, y));
+            Velocity newVelocity;
+            if (hits == null) {
+                hitter.setCenter(new Point(x, y));
+                newVelocity = collisionObject.hit(hitter, new Point(contactX, contactY),
+                        new Velocity(velocityX, velocityY));
+            } else {
+                hits.add(ball, collisionObject, contactX, contactY, velocityX, velocityY);
+                newVelocity = collisionObject.deflect(new Point(contactX, contactY),
+                        new Velocity(velocityX, velocityY));
+            }
+            velocityX = newVelocity.getDoublex();
+            velocityY = newVelocity.getDoubley();
+
+            // Never keep moving into the face that was hit, or the next sweep would report it again
+            if (velocityX * normalX < 0) {
+                velocityX = -velocityX;
+            }
+            if (velocityY * normalY < 0) {
+                velocityY = -velocityY;
+            }
+        }
+
+        if (x - radius < 0) {
+            x = radius;
+            velocityX = -velocityX;
+        } else if (x + radius > width) {
+            x = width - radius;
+            velocityX = -velocityX;
+        }
+
+        if (y - radius < 0) {
+            y = radius;
+            velocityY = -velocityY;
+        }
+
+        state[X] = x;
+        state[Y] = y;
+        state[DX] = velocityX;
+        state[DY] = velocityY;
+    }
+}
@@ -28,4 +28,15 @@ public interface Collidable {
      * @return The new velocity expected after the hit.
      */
     Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+
+    /**
+     * Returns the velocity a ball would have after hitting the object at the specified point,
+     * without notifying anyone of the hit. The method must not change any state,
+     * since it may be called from several threads at once.
+     *
+     * @param collisionPoint The point at which the collision occurs.
+     * @param currentVelocity The current velocity of the ball.
+     * @return The new velocity expected after the hit.
+     */
+    Velocity deflect(Point collisionPoint, Velocity currentVelocity);
 }
@@ -18,4 +18,27 @@ public interface Sprite {
      * Notifies the sprite that time has passed.
      */
     void timePassed();
+
+    /**
+     * Notifies the sprite that the given amount of time has passed.
+     * Time is measured in frames of 1/60 second, the unit in which speeds are given, so sprites that move
+     * scale their motion by dt. By default the sprite is notified once through timePassed().
+     *
+     * @param dt The time that has passed, in frames of 1/60 second.
+     */
+    default void timePassed(double dt) {
+        timePassed();
+    }
+
+    /**
+     * Draws the sprite between its state before and after its last step, so its motion looks smooth
+     * when the screen is drawn at a different rate than the game is stepped.
+     * By default the sprite is drawn in its current state.
+     *
+     * @param d     The surface to draw the sprite on.
+     * @param alpha How far to draw the sprite from its previous state (0) to its current state (1).
+     */
+    default void drawOn(DrawSurface d, double alpha) {
+        drawOn(d);
+    }
 }
@@ -27,8 +27,8 @@ public class BlockRemover implements HitListener {
 
     /**
      * This method is called whenever the beingHit object is hit.
-     * It removes the block from the game, decreases the counter of remaining blocks,
-     * and removes this listener from the block.
+     * A block with more than one hit point loses one. Otherwise the block is removed from the game,
+     * the counter of remaining blocks is decreased, and this listener is removed from the block.
      *
      * @param beingHit The block that was hit.
      * @param hitter The ball that hit the block.
@@ -36,6 +36,10 @@ public class BlockRemover implements HitListener {
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
         if (beingHit.isGameBlock()) {
+            if (beingHit.getHitPoints() > 1) {
+                game.damageBlock(beingHit);
+                return;
+            }
             beingHit.removeFromGame(game);
             remainingBlocks.decrease(1);
             beingHit.removeHitListener(this);
@@ -0,0 +1,194 @@
+package listeners;
+
+import graphics.Ball;
+import graphics.Block;
+import interfaces.HitListener;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The ListenerGroup class is an immutable, interned list of hit listeners that any number of blocks can share.
+ * Blocks that have the same listeners in the same order hold the same group, so a level where every block has
+ * the same listeners stores them once instead of once per block. Adding or removing a listener gives another
+ * group instead of changing this one. A group can therefore be iterated while its listeners change the groups
+ * of blocks, without being copied.
+ * <p>
+ * Groups are interned weakly: a group that no block holds any more is collected with its listeners, so
+ * the listeners of a finished game are not kept alive. Listeners are compared by identity.
+ */
+public final class ListenerGroup {
+    /** The group with no listeners. */
+    public static final ListenerGroup EMPTY = new ListenerGroup(new HitListener[0]);
+
+    private static final Map<ListenerGroup, WeakReference<ListenerGroup>> INTERNED = new WeakHashMap<>();
+
+    private HitListener[] listeners;
+    private int hash;
+    private WeakReference<ListenerGroup> lastAdded;
+    private WeakReference<ListenerGroup> lastRemoved;
+    private HitListener lastRemovedListener;
+
+    /**
+     * Constructs a ListenerGroup with the given listeners.
+     *
+     * @param listeners The listeners, in the order they are notified.
+     */
+    private ListenerGroup(HitListener[] listeners) {
+        this.listeners = listeners;
+        int h = 1;
+        for (HitListener listener : listeners) {
+            h = 31 * h + System.identityHashCode(listener);
+        }
+        this.hash = h;
+    }
+
+    /**
+     * Returns the group with the listeners of this group followed by the given listener.
+     * The result of the last call is remembered, so giving many blocks the same listeners in the same order
+     * does not allocate.
+     *
+     * @param listener The listener to add.
+     * @return The interned group with the listener added.
+     */
+    public ListenerGroup with(HitListener listener) {
+        ListenerGroup cached = lastAdded == null ? null : lastAdded.get();
+        if (cached != null && cached.listeners[cached.listeners.length - 1] == listener) {
+            return cached;
+        }
+        HitListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        ListenerGroup group = intern(added);
+        lastAdded = new WeakReference<>(group);
+        return group;
+    }
+
+    /**
+     * Returns the group with the listeners of this group except the first occurrence of the given listener.
+     *
+     * @param listener The listener to remove.
+     * @return The interned group with the listener removed, or this group if it does not hold the listener.
+     *         The result of the last call is remembered, like in with.
+     */
+    public ListenerGroup without(HitListener listener) {
+        int index = indexOf(listener);
+        if (index < 0) {
+            return this;
+        }
+        ListenerGroup cached = lastRemoved == null ? null : lastRemoved.get();
+        if (cached != null && lastRemovedListener == listener) {
+            return cached;
+        }
+        HitListener[] removed = new HitListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, removed, 0, index);
+        System.arraycopy(listeners, index + 1, removed, index, listeners.length - index - 1);
+        ListenerGroup group = intern(removed);
+        lastRemoved = new WeakReference<>(group);
+        lastRemovedListener = listener;
+        return group;
+    }
+
+    /**
+     * Notifies every listener of the group about a hit, in order.
+     *
+     * @param beingHit The block that was hit.
+     * @param hitter   The ball that hit the block.
+     */
+    public void notifyHit(Block beingHit, Ball hitter) {
+        for (HitListener listener : listeners) {
+            listener.hitEvent(beingHit, hitter);
+        }
+    }
+
+    /**
+     * Returns the number of listeners in the group.
+     *
+     * @return The number of listeners.
+     */
+    public int size() {
+        return this.listeners.length;
+    }
+
+    /**
+     * Returns the listener at the given position in the group.
+     *
+     * @param index The position of the listener, between 0 and size() - 1.
+     * @return The listener.
+     */
+    public HitListener get(int index) {
+        return this.listeners[index];
+    }
+
+    /**
+     * Checks if another object is a group with the same listeners in the same order.
+     *
+     * @param other The object to compare with.
+     * @return true if the object is a group with the same listeners, false otherwise.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ListenerGroup) || ((ListenerGroup) other).hash != hash) {
+            return false;
+        }
+        HitListener[] otherListeners = ((ListenerGroup) other).listeners;
+        if (otherListeners.length != listeners.length) {
+            return false;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (otherListeners[i] != listeners[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash code computed from the identities of the listeners.
+     *
+     * @return The hash code of the group.
+     */
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given listener.
+     *
+     * @param listener The listener to look for.
+     * @return The index of the listener, or -1 if the group does not hold it.
+     */
+    private int indexOf(HitListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the interned group with the given listeners, creating it if no block holds such a group.
+     *
+     * @param listeners The listeners of the group.
+     * @return The interned group.
+     */
+    private static synchronized ListenerGroup intern(HitListener[] listeners) {
+        if (listeners.length == 0) {
+            return EMPTY;
+        }
+        ListenerGroup group = new ListenerGroup(listeners);
+        WeakReference<ListenerGroup> existing = INTERNED.get(group);
+        ListenerGroup interned = existing == null ? null : existing.get();
+        if (interned != null) {
+            return interned;
+        }
+        INTERNED.put(group, new WeakReference<>(group));
+        return group;
+    }
+}
@@ -0,0 +1,225 @@
+package game;
+
+import geometry.Point;
+import geometry.RayCast;
+import geometry.RayHit;
+import geometry.Rectangle;
+import graphics.Block;
+import graphics.Paddle;
+import interfaces.Collidable;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for AabbTree: its rotations, its proxies, and queries that must find the same hits as testing every block.
+ */
+class AabbTreeTest {
+
+    /**
+     * Of two blocks hit at the same time, the one with the smaller key is reported, whichever was added first
+     * and however many other blocks shape the tree around them.
+     */
+    @Test
+    void tiesGoToTheSmallerKey() {
+        for (int fillers = 0; fillers < 40; fillers += 7) {
+            for (boolean leftFirst : new boolean[] {true, false}) {
+                Block left = block(0, 100, 10, 10);
+                Block right = block(10, 100, 10, 10);
+                AabbTree tree = new AabbTree(10);
+                for (int i = 0; i < fillers; i++) {
+                    tree.createProxy(block(40 + 15 * i, 30 * (i % 5), 10, 10), 100 + i);
+                }
+                tree.createProxy(leftFirst ? left : right, leftFirst ? 5 : 2);
+                tree.createProxy(leftFirst ? right : left, leftFirst ? 2 : 5);
+
+                RayHit hit = new RayHit();
+                assertSame(right, tree.closestHit(10, 50, 0, 100, hit));
+                assertEquals(0.5, hit.getT());
+                hit.reset();
+                assertSame(right, tree.closestSweep(10, 50, 0, 100, 2, hit));
+                assertEquals(0.48, hit.getT(), 1e-12);
+            }
+        }
+    }
+
+    /**
+     * A hit found before the tree is queried is kept when a block in the tree is hit at the same time.
+     */
+    @Test
+    void earlierHitIsKeptOnATie() {
+        AabbTree tree = new AabbTree(10);
+        tree.createProxy(block(0, 100, 10, 10), 0);
+        RayHit hit = new RayHit();
+        hit.set(0.5, 1, 0);
+        assertNull(tree.closestHit(5, 50, 0, 100, hit));
+        assertEquals(1, hit.getNormalX());
+    }
+
+    /**
+     * Blocks added in sorted order, which would make an unbalanced tree a list, are rotated into a tree of
+     * logarithmic height, and the tree stays balanced as blocks are removed.
+     */
+    @Test
+    void rotationsKeepTheTreeBalanced() {
+        AabbTree tree = new AabbTree(1);
+        assertEquals(-1, tree.getHeight());
+        int[] proxies = new int[1024];
+        for (int i = 0; i < proxies.length; i++) {
+            proxies[i] = tree.createProxy(block(20 * i, 0, 10, 10), i);
+        }
+        assertTrue(tree.getHeight() <= 2 * 10, "height " + tree.getHeight());
+
+        for (int i = 0; i < proxies.length; i += 2) {
+            tree.destroyProxy(proxies[i]);
+        }
+        assertTrue(tree.getHeight() <= 2 * 9, "height " + tree.getHeight());
+        for (int i = 1; i < proxies.length; i += 2) {
+            tree.destroyProxy(proxies[i]);
+        }
+        assertEquals(-1, tree.getHeight());
+        assertNull(tree.closestHit(-10, 5, 30000, 0, new RayHit()));
+    }
+
+    /**
+     * A removed block is no longer hit, and its proxy id is reused by the next block added.
+     */
+    @Test
+    void removedBlocksAreNotHit() {
+        AabbTree tree = new AabbTree(1);
+        Block near = block(100, 0, 10, 10);
+        Block far = block(200, 0, 10, 10);
+        int nearProxy = tree.createProxy(near, 0);
+        tree.createProxy(far, 1);
+        assertSame(near, tree.closestHit(0, 5, 300, 0, new RayHit()));
+
+        tree.destroyProxy(nearProxy);
+        assertSame(far, tree.closestHit(0, 5, 300, 0, new RayHit()));
+        assertEquals(nearProxy, tree.createProxy(block(150, 0, 10, 10), 2));
+    }
+
+    /**
+     * A move within the margin of a leaf leaves the tree as it is, a longer move re-inserts the leaf, and the
+     * collidable is hit at its new place either way.
+     */
+    @Test
+    void movedCollidablesAreHitWhereTheyAre() {
+        AabbTree tree = new AabbTree(5);
+        Paddle paddle = new Paddle(new Rectangle(new Point(100, 100), 50, 10), Color.BLUE, null, 5);
+        int proxy = tree.createProxy(paddle, 0);
+        for (int i = 0; i < 20; i++) {
+            tree.createProxy(block(30 * i, 0, 10, 10), i + 1);
+        }
+
+        paddle.setX(103);
+        assertFalse(tree.moveProxy(proxy));
+        RayHit hit = new RayHit();
+        assertSame(paddle, tree.closestHit(152, 200, 0, -150, hit));
+        assertEquals(0.6, hit.getT(), 1e-12);
+
+        paddle.setX(400);
+        assertTrue(tree.moveProxy(proxy));
+        assertNull(tree.closestHit(152, 200, 0, -150, new RayHit()));
+        assertSame(paddle, tree.closestHit(420, 200, 0, -150, new RayHit()));
+    }
+
+    /**
+     * After random adds, moves and removes, rays and swept circles hit blocks in the tree at the same time as
+     * a test against every block does.
+     */
+    @Test
+    void queriesMatchTestingEveryBlock() {
+        Random random = new Random(7);
+        AabbTree tree = new AabbTree(2);
+        List<Collidable> collidables = new ArrayList<>();
+        List<Integer> proxies = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(4);
+            if (action == 0 && !collidables.isEmpty()) {
+                int index = random.nextInt(collidables.size());
+                tree.destroyProxy(proxies.remove(index));
+                collidables.remove(index);
+            } else if (action == 1 && !collidables.isEmpty()) {
+                int index = random.nextInt(collidables.size());
+                if (collidables.get(index) instanceof Paddle) {
+                    ((Paddle) collidables.get(index)).setX(random.nextDouble() * 500);
+                    tree.moveProxy(proxies.get(index));
+                }
+            } else {
+                Collidable c = random.nextInt(5) == 0
+                        ? new Paddle(new Rectangle(new Point(random.nextDouble() * 500, random.nextDouble() * 500),
+                                40, 8), Color.BLUE, null, 5)
+                        : block(random.nextDouble() * 500, random.nextDouble() * 500, 1 + random.nextDouble() * 30,
+                                1 + random.nextDouble() * 30);
+                collidables.add(c);
+                proxies.add(tree.createProxy(c, step));
+            }
+
+            double startX = random.nextDouble() * 600 - 50;
+            double startY = random.nextDouble() * 600 - 50;
+            double dx = (random.nextDouble() - 0.5) * 300;
+            double dy = (random.nextDouble() - 0.5) * 300;
+            double radius = step % 2 == 0 ? 0 : random.nextDouble() * 6;
+            RayHit expected = new RayHit();
+            for (Collidable c : collidables) {
+                test(c, startX, startY, dx, dy, radius, expected);
+            }
+            RayHit actual = new RayHit();
+            Collidable hit = radius == 0 ? tree.closestHit(startX, startY, dx, dy, actual)
+                    : tree.closestSweep(startX, startY, dx, dy, radius, actual);
+            assertEquals(expected.getT(), actual.getT(), "step " + step);
+            if (hit != null) {
+                RayHit own = new RayHit();
+                test(hit, startX, startY, dx, dy, radius, own);
+                assertEquals(actual.getT(), own.getT(), "step " + step);
+            }
+        }
+    }
+
+    /**
+     * Tests a ray or a swept circle against a single collidable.
+     *
+     * @param c      The collidable.
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param radius The radius of the swept circle, or 0 for a ray.
+     * @param hit    The closest hit found so far, updated if the collidable is hit closer.
+     */
+    private static void test(Collidable c, double startX, double startY, double dx, double dy, double radius,
+                             RayHit hit) {
+        Rectangle rect = c.getCollisionRectangle();
+        double left = rect.getUpperLeft().getX() - radius;
+        double top = rect.getUpperLeft().getY() - radius;
+        double right = rect.getUpperLeft().getX() + rect.getWidth() + radius;
+        double bottom = rect.getUpperLeft().getY() + rect.getHeight() + radius;
+        if (radius == 0) {
+            RayCast.cast(startX, startY, dx, dy, left, top, right, bottom, hit);
+        } else {
+            RayCast.sweep(startX, startY, dx, dy, left, top, right, bottom, hit);
+        }
+    }
+
+    /**
+     * Returns a block with the given bounds.
+     *
+     * @param x      The x-coordinate of the upper-left corner.
+     * @param y      The y-coordinate of the upper-left corner.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @return The block.
+     */
+    private static Block block(double x, double y, double width, double height) {
+        return new Block(new Rectangle(new Point(x, y), width, height), Color.BLUE, true, false);
+    }
+}
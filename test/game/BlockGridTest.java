@@ -0,0 +1,247 @@
+package game;
+
+import geometry.Point;
+import geometry.RayCast;
+import geometry.RayHit;
+import geometry.Rectangle;
+import graphics.Block;
+import interfaces.Collidable;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for BlockGrid, whose traversal of the cells along a ray must find the same hits as testing every block.
+ */
+class BlockGridTest {
+    private static final double ORIGIN_X = 10;
+    private static final double ORIGIN_Y = 20;
+    private static final double CELL_WIDTH = 25;
+    private static final double CELL_HEIGHT = 15;
+    private static final int COLUMNS = 12;
+    private static final int ROWS = 9;
+    private static final int RAYS = 20000;
+
+    /**
+     * On a randomly filled grid, rays and swept circles in every direction, starting inside and outside the
+     * grid, hit blocks at the same time as a test against every block does.
+     */
+    @Test
+    void traversalMatchesTestingEveryBlock() {
+        Random random = new Random(42);
+        BlockGrid grid = grid();
+        List<Block> blocks = new ArrayList<>();
+        for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+            if (random.nextInt(3) != 0) {
+                continue;
+            }
+            double left = ORIGIN_X + (cell % COLUMNS) * CELL_WIDTH;
+            double top = ORIGIN_Y + (cell / COLUMNS) * CELL_HEIGHT;
+            // Half of the blocks fill their cells, so neighbours share edges; the others are smaller
+            Block block = random.nextBoolean() ? block(left, top, CELL_WIDTH, CELL_HEIGHT)
+                    : block(left + 5, top + 3, 12, 7);
+            assertTrue(grid.add(block));
+            blocks.add(block);
+        }
+
+        for (int i = 0; i < RAYS; i++) {
+            double startX = ORIGIN_X - 50 + random.nextDouble() * (COLUMNS * CELL_WIDTH + 100);
+            double startY = ORIGIN_Y - 50 + random.nextDouble() * (ROWS * CELL_HEIGHT + 100);
+            // Every tenth ray is axis-aligned, and may run along the borders of cells
+            double dx = i % 10 == 0 ? 0 : (random.nextDouble() - 0.5) * 400;
+            double dy = i % 10 == 1 ? 0 : (random.nextDouble() - 0.5) * 400;
+            if (i % 10 == 0) {
+                startX = ORIGIN_X + random.nextInt(COLUMNS + 1) * CELL_WIDTH;
+            }
+            double radius = i % 2 == 0 ? 0 : random.nextDouble() * 10;
+            assertSameHit(grid, blocks, startX, startY, dx, dy, radius);
+        }
+    }
+
+    /**
+     * An empty grid is never hit and leaves the hit untouched.
+     */
+    @Test
+    void emptyGridIsNeverHit() {
+        RayHit hit = new RayHit();
+        assertNull(grid().closestHit(0, 0, 500, 500, hit));
+        assertNull(grid().closestSweep(0, 0, 500, 500, 5, hit));
+        assertFalse(hit.isHit());
+    }
+
+    /**
+     * In a full grid a ray from outside hits the first block on its side of the grid, on the face it faces.
+     */
+    @Test
+    void fullGridIsHitAtItsBorder() {
+        BlockGrid grid = grid();
+        for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+            assertTrue(grid.add(block(ORIGIN_X + (cell % COLUMNS) * CELL_WIDTH,
+                    ORIGIN_Y + (cell / COLUMNS) * CELL_HEIGHT, CELL_WIDTH, CELL_HEIGHT)));
+        }
+        assertEquals(COLUMNS * ROWS, grid.size());
+
+        RayHit hit = new RayHit();
+        Collidable first = grid.closestHit(ORIGIN_X - 100, ORIGIN_Y + 3.5 * CELL_HEIGHT, 1000, 0, hit);
+        assertSame(grid.get(3 * COLUMNS), first);
+        assertEquals(0.1, hit.getT(), 1e-12);
+        assertEquals(-1, hit.getNormalX());
+        assertEquals(0, hit.getNormalY());
+
+        hit.reset();
+        Collidable last = grid.closestHit(ORIGIN_X + 0.5 * CELL_WIDTH, ORIGIN_Y + ROWS * CELL_HEIGHT + 100,
+                0, -200, hit);
+        assertSame(grid.get((ROWS - 1) * COLUMNS), last);
+        assertEquals(0.5, hit.getT(), 1e-12);
+        assertEquals(1, hit.getNormalY());
+    }
+
+    /**
+     * A ray that grazes a block, running along its edge, hits it, and so does a circle passing by within its
+     * radius, while a ray that stops short of a block or passes it misses.
+     */
+    @Test
+    void grazingHitsAndNearMisses() {
+        BlockGrid grid = grid();
+        Block block = block(ORIGIN_X + CELL_WIDTH, ORIGIN_Y + 2 * CELL_HEIGHT, CELL_WIDTH, CELL_HEIGHT);
+        grid.add(block);
+        double left = ORIGIN_X + CELL_WIDTH;
+        double top = ORIGIN_Y + 2 * CELL_HEIGHT;
+
+        RayHit hit = new RayHit();
+        assertSame(block, grid.closestHit(left, top + 100, 0, -200, hit));
+        assertEquals(1, hit.getNormalY());
+        hit.reset();
+        assertSame(block, grid.closestHit(ORIGIN_X, top, 100, 0, hit));
+        assertEquals(-1, hit.getNormalX());
+
+        hit.reset();
+        assertNull(grid.closestHit(ORIGIN_X, top + 5, CELL_WIDTH - 1, 0, hit));
+        assertNull(grid.closestHit(left - 1, top + 100, 0, -200, hit));
+        assertFalse(hit.isHit());
+
+        assertSame(block, grid.closestSweep(left - 3, top + 100, 0, -200, 4, hit));
+        assertEquals((100 - CELL_HEIGHT - 4) / 200, hit.getT(), 1e-12);
+        hit.reset();
+        assertNull(grid.closestSweep(left - 5, top + 100, 0, -200, 4, hit));
+    }
+
+    /**
+     * A hit already held closer than any block of the grid is kept.
+     */
+    @Test
+    void closerHitIsKept() {
+        BlockGrid grid = grid();
+        grid.add(block(ORIGIN_X, ORIGIN_Y, CELL_WIDTH, CELL_HEIGHT));
+        RayHit hit = new RayHit();
+        hit.set(0.1, 0, 1);
+        assertNull(grid.closestHit(ORIGIN_X + 5, ORIGIN_Y + 100, 0, -100, hit));
+        assertEquals(0.1, hit.getT());
+    }
+
+    /**
+     * Only a block inside a single free cell of the grid is stored, and a removed block is no longer hit.
+     */
+    @Test
+    void onlyBlocksInsideOneFreeCellAreStored() {
+        BlockGrid grid = grid();
+        Block inCell = block(ORIGIN_X + 2, ORIGIN_Y + 2, 10, 10);
+        assertTrue(grid.add(inCell));
+        assertFalse(grid.add(block(ORIGIN_X, ORIGIN_Y, CELL_WIDTH, CELL_HEIGHT)));
+        assertFalse(grid.add(block(ORIGIN_X + 20, ORIGIN_Y + CELL_HEIGHT, 10, 10)));
+        assertFalse(grid.add(block(ORIGIN_X - 5, ORIGIN_Y, 10, 10)));
+        assertFalse(grid.add(block(ORIGIN_X + COLUMNS * CELL_WIDTH, ORIGIN_Y, 10, 10)));
+        assertEquals(1, grid.size());
+
+        assertTrue(grid.remove(inCell));
+        assertFalse(grid.remove(inCell));
+        assertFalse(grid.contains(inCell));
+        assertNull(grid.closestHit(ORIGIN_X + 5, ORIGIN_Y + 100, 0, -100, new RayHit()));
+    }
+
+    /**
+     * Checks that the grid and a test against every block find a hit at the same time, and that the
+     * collidable the grid reports is hit at that time.
+     *
+     * @param grid   The grid.
+     * @param blocks Every block in the grid.
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param radius The radius of the swept circle, or 0 for a ray.
+     */
+    private static void assertSameHit(BlockGrid grid, List<Block> blocks, double startX, double startY,
+                                      double dx, double dy, double radius) {
+        RayHit expected = new RayHit();
+        for (Block block : blocks) {
+            test(block, startX, startY, dx, dy, radius, expected);
+        }
+        RayHit actual = new RayHit();
+        Collidable hit = radius == 0 ? grid.closestHit(startX, startY, dx, dy, actual)
+                : grid.closestSweep(startX, startY, dx, dy, radius, actual);
+        String ray = "ray (" + startX + ", " + startY + ") + (" + dx + ", " + dy + "), radius " + radius;
+        assertEquals(expected.getT(), actual.getT(), ray);
+        if (hit != null) {
+            RayHit own = new RayHit();
+            test(hit, startX, startY, dx, dy, radius, own);
+            assertEquals(actual.getT(), own.getT(), ray);
+        }
+    }
+
+    /**
+     * Tests a ray or a swept circle against a single collidable.
+     *
+     * @param c      The collidable.
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param radius The radius of the swept circle, or 0 for a ray.
+     * @param hit    The closest hit found so far, updated if the collidable is hit closer.
+     */
+    private static void test(Collidable c, double startX, double startY, double dx, double dy, double radius,
+                             RayHit hit) {
+        Rectangle rect = c.getCollisionRectangle();
+        double left = rect.getUpperLeft().getX() - radius;
+        double top = rect.getUpperLeft().getY() - radius;
+        double right = rect.getUpperLeft().getX() + rect.getWidth() + radius;
+        double bottom = rect.getUpperLeft().getY() + rect.getHeight() + radius;
+        if (radius == 0) {
+            RayCast.cast(startX, startY, dx, dy, left, top, right, bottom, hit);
+        } else {
+            RayCast.sweep(startX, startY, dx, dy, left, top, right, bottom, hit);
+        }
+    }
+
+    /**
+     * Returns an empty grid of COLUMNS x ROWS cells.
+     *
+     * @return The grid.
+     */
+    private static BlockGrid grid() {
+        return new BlockGrid(ORIGIN_X, ORIGIN_Y, CELL_WIDTH, CELL_HEIGHT, COLUMNS, ROWS);
+    }
+
+    /**
+     * Returns a block with the given bounds.
+     *
+     * @param x      The x-coordinate of the upper-left corner.
+     * @param y      The y-coordinate of the upper-left corner.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @return The block.
+     */
+    private static Block block(double x, double y, double width, double height) {
+        return new Block(new Rectangle(new Point(x, y), width, height), Color.BLUE, true, false);
+    }
+}
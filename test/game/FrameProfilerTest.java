@@ -0,0 +1,113 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for FrameProfiler and the files it writes its histograms to.
+ */
+class FrameProfilerTest {
+    @TempDir
+    private Path directory;
+
+    /**
+     * A profile named ".json" is written as a JSON object with one member per phase, in the order of the phases.
+     *
+     * @throws IOException If the profile cannot be read back.
+     */
+    @Test
+    void jsonDumpHasOneMemberPerPhase() throws IOException {
+        Path path = directory.resolve("profile.JSON");
+        FrameProfiler profiler = profiler(path);
+        profiler.dump();
+
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(FrameProfiler.Phase.values().length + 2, lines.size());
+        assertEquals("{", lines.get(0));
+        assertEquals("  \"background\": {\"count\": 0, \"mean\": 0.0, \"min\": 0, \"p50\": 0, \"p99\": 0, "
+                + "\"p99.9\": 0, \"max\": 0},", lines.get(1));
+        assertEquals("  \"physics\": {\"count\": 3, \"mean\": 20.0, \"min\": 10, \"p50\": 20, \"p99\": 30, "
+                + "\"p99.9\": 30, \"max\": 30},", lines.get(5));
+        assertEquals("  \"queries\": {\"count\": 1, \"mean\": 1234.0, \"min\": 1234, \"p50\": 1234, "
+                + "\"p99\": 1234, \"p99.9\": 1234, \"max\": 1234}", lines.get(7));
+        assertEquals("}", lines.get(8));
+    }
+
+    /**
+     * Any other profile is written as CSV with a header and one row per phase.
+     *
+     * @throws IOException If the profile cannot be read back.
+     */
+    @Test
+    void csvDumpHasOneRowPerPhase() throws IOException {
+        Path path = directory.resolve("profile.csv");
+        FrameProfiler profiler = profiler(path);
+        profiler.dump();
+
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(FrameProfiler.Phase.values().length + 1, lines.size());
+        assertEquals("phase,count,mean,min,p50,p99,p99.9,max", lines.get(0));
+        assertEquals("background,0,0.0,0,0,0,0,0", lines.get(1));
+        assertEquals("physics,3,20.0,10,20,30,30,30", lines.get(5));
+        assertEquals("queries,1,1234.0,1234,1234,1234,1234,1234", lines.get(7));
+    }
+
+    /**
+     * A disabled profiler does not read the clock, records nothing and writes no file.
+     */
+    @Test
+    void disabledProfilerRecordsNothing() {
+        FrameProfiler profiler = new FrameProfiler(null);
+        assertFalse(profiler.isEnabled());
+        assertEquals(0, profiler.start());
+        profiler.stop(FrameProfiler.Phase.DRAW, 0);
+        profiler.frame(10);
+        profiler.frame(20);
+        profiler.dump();
+        for (FrameProfiler.Phase phase : FrameProfiler.Phase.values()) {
+            assertEquals(0, profiler.getHistogram(phase).getCount());
+        }
+    }
+
+    /**
+     * Each frame after the first records the time since the previous frame and the queries made since then.
+     */
+    @Test
+    void framesRecordTheQueriesInBetween() {
+        FrameProfiler profiler = new FrameProfiler(directory.resolve("frames.csv").toString());
+        assertTrue(profiler.isEnabled());
+        profiler.frame(100);
+        profiler.frame(130);
+        profiler.frame(180);
+        LatencyHistogram queries = profiler.getHistogram(FrameProfiler.Phase.QUERIES);
+        assertEquals(2, queries.getCount());
+        assertEquals(30, queries.getMin());
+        assertEquals(50, queries.getMax());
+        assertEquals(2, profiler.getHistogram(FrameProfiler.Phase.FRAME).getCount());
+    }
+
+    /**
+     * Returns an enabled profiler for the given file, with three physics steps and one frame's queries recorded.
+     *
+     * @param path The file the profiler writes to.
+     * @return The profiler.
+     */
+    private static FrameProfiler profiler(Path path) {
+        FrameProfiler profiler = new FrameProfiler(path.toString());
+        LatencyHistogram physics = profiler.getHistogram(FrameProfiler.Phase.PHYSICS);
+        physics.record(10);
+        physics.record(20);
+        physics.record(30);
+        profiler.getHistogram(FrameProfiler.Phase.QUERIES).record(1234);
+        return profiler;
+    }
+}
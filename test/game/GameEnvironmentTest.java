@@ -0,0 +1,126 @@
+package game;
+
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import graphics.Block;
+import interfaces.Collidable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for GameEnvironment, in particular changes made while its collidables are being iterated.
+ */
+class GameEnvironmentTest {
+    private GameEnvironment environment;
+    private Block first;
+    private Block inCell;
+    private Block offGrid;
+
+    /**
+     * Creates an environment with a 10 x 10 grid of 20 x 20 cells, holding one block.
+     */
+    @BeforeEach
+    void setUp() {
+        environment = new GameEnvironment();
+        environment.setBlockGrid(new BlockGrid(0, 0, 20, 20, 10, 10));
+        first = block(0, 0, 20, 20);
+        inCell = block(100, 100, 20, 20);
+        offGrid = block(150, 10, 30, 30);
+        environment.addCollidable(first);
+    }
+
+    /**
+     * Collidables added during an iteration are stored in the grid or the tree once the iteration ends.
+     */
+    @Test
+    void addDuringIterationIsStoredAfterwards() {
+        int[] visited = new int[1];
+        environment.forEachCollidable(c -> {
+            visited[0]++;
+            environment.addCollidable(inCell);
+            environment.addCollidable(offGrid);
+        });
+
+        assertEquals(1, visited[0]);
+        assertEquals(3, environment.size());
+        assertTrue(environment.contains(inCell));
+        assertTrue(environment.contains(offGrid));
+        assertTrue(environment.getBlockGrid().contains(inCell));
+        assertFalse(environment.getBlockGrid().contains(offGrid));
+        assertSame(inCell, environment.closestHit(110, 190, 0, -100, new RayHit()));
+        assertSame(offGrid, environment.closestHit(165, 190, 0, -200, new RayHit()));
+    }
+
+    /**
+     * Collidables removed during an iteration are dropped from the grid and the tree once the iteration ends.
+     */
+    @Test
+    void removeDuringIterationIsDroppedAfterwards() {
+        environment.addCollidable(inCell);
+        environment.addCollidable(offGrid);
+        environment.forEachCollidable(c -> {
+            environment.removeCollidable(inCell);
+            environment.removeCollidable(offGrid);
+        });
+
+        assertEquals(1, environment.size());
+        assertFalse(environment.contains(inCell));
+        assertFalse(environment.contains(offGrid));
+        assertFalse(environment.getBlockGrid().contains(inCell));
+        assertNull(environment.closestHit(110, 190, 0, -100, new RayHit()));
+        assertNull(environment.closestHit(165, 190, 0, -200, new RayHit()));
+    }
+
+    /**
+     * A collidable added and removed during the same iteration is not in the environment afterwards,
+     * and its slot can be used again.
+     */
+    @Test
+    void addAndRemoveDuringIterationCancelOut() {
+        environment.forEachCollidable(c -> {
+            environment.addCollidable(offGrid);
+            environment.removeCollidable(offGrid);
+        });
+
+        assertFalse(environment.contains(offGrid));
+        assertNull(environment.closestHit(165, 190, 0, -200, new RayHit()));
+        environment.addCollidable(offGrid);
+        assertSame(offGrid, environment.closestHit(165, 190, 0, -200, new RayHit()));
+    }
+
+    /**
+     * Collidables changed during an iteration follow the grid when it is replaced afterwards.
+     */
+    @Test
+    void replacingTheGridKeepsCollidablesAddedDuringIteration() {
+        environment.forEachCollidable(c -> environment.addCollidable(inCell));
+        environment.setBlockGrid(null);
+
+        Collidable hit = environment.closestHit(110, 190, 0, -100, new RayHit());
+        assertSame(inCell, hit);
+        environment.removeCollidable(inCell);
+        assertNull(environment.closestHit(110, 190, 0, -100, new RayHit()));
+    }
+
+    /**
+     * Returns a block with the given bounds.
+     *
+     * @param x      The x-coordinate of the upper-left corner.
+     * @param y      The y-coordinate of the upper-left corner.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @return The block.
+     */
+    private static Block block(double x, double y, double width, double height) {
+        return new Block(new Rectangle(new Point(x, y), width, height), Color.BLUE, true, false);
+    }
+}
@@ -0,0 +1,154 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Ball;
+import graphics.BallSystem;
+import graphics.Block;
+import listeners.BallRemover;
+import listeners.Counter;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests for HitEventQueue, which dispatches the hits of a physics step once the step is over.
+ */
+class HitEventQueueTest {
+    private static final int MANY_HITS = 100;
+
+    /**
+     * Hits reach the listeners of the blocks that were hit in the order they were queued, and draining empties
+     * the queue.
+     */
+    @Test
+    void hitsAreDispatchedInOrder() {
+        GameEnvironment environment = new GameEnvironment();
+        HitEventQueue queue = new HitEventQueue(environment);
+        List<String> hits = new ArrayList<>();
+        Block first = block(environment, 0, hits, "first");
+        Block second = block(environment, 1, hits, "second");
+        Ball ball = new Ball(10, 10, 5, Color.WHITE);
+
+        queue.add(second, ball);
+        queue.add(first, ball);
+        queue.add(second, ball);
+        assertEquals(3, queue.size());
+        queue.drain();
+        assertEquals(List.of("second", "first", "second"), hits);
+        assertEquals(0, queue.size());
+
+        queue.drain();
+        assertEquals(3, hits.size());
+    }
+
+    /**
+     * A hit on a block that an earlier hit in the same drain removed from the game is dropped.
+     */
+    @Test
+    void hitsOnRemovedBlocksAreDropped() {
+        GameEnvironment environment = new GameEnvironment();
+        HitEventQueue queue = new HitEventQueue(environment);
+        List<String> hits = new ArrayList<>();
+        Block first = block(environment, 0, hits, "first");
+        Block second = block(environment, 1, hits, "second");
+        first.addHitListener((beingHit, hitter) -> environment.removeCollidable(second));
+        Ball ball = new Ball(10, 10, 5, Color.WHITE);
+
+        queue.add(second, ball);
+        queue.add(first, ball);
+        queue.add(second, ball);
+        queue.drain();
+        assertEquals(List.of("second", "first"), hits);
+    }
+
+    /**
+     * The queue grows past its initial capacity and keeps every hit, in order.
+     */
+    @Test
+    void queueGrowsWithoutLosingHits() {
+        GameEnvironment environment = new GameEnvironment();
+        HitEventQueue queue = new HitEventQueue(environment);
+        List<String> hits = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        Block[] blocks = new Block[MANY_HITS];
+        for (int i = 0; i < MANY_HITS; i++) {
+            blocks[i] = block(environment, i, hits, "block " + i);
+        }
+        Ball ball = new Ball(10, 10, 5, Color.WHITE);
+
+        for (int i = 0; i < MANY_HITS; i++) {
+            int index = (7 * i) % MANY_HITS;
+            queue.add(blocks[index], ball);
+            expected.add("block " + index);
+        }
+        assertEquals(MANY_HITS, queue.size());
+        queue.drain();
+        assertEquals(expected, hits);
+    }
+
+    /**
+     * A ball that hits two death regions in one step is removed by the first hit only, so it is counted out of
+     * the game once, whether it is a plain Ball or a ball of a BallSystem.
+     */
+    @Test
+    void ballRemovedEarlierInTheDrainIsCountedOnce() {
+        Game game = new Game(new ScriptedKeyboard());
+        Counter remainingBalls = new Counter();
+        remainingBalls.increase(2);
+        Block bottom = deathRegion(game, remainingBalls, 580);
+        Block floor = deathRegion(game, remainingBalls, 590);
+        Ball ball = new Ball(new Point(400, 585), 5, Color.WHITE);
+        ball.addToGame(game);
+        BallSystem system = new BallSystem(new GameEnvironment(), 800, 600);
+        system.addBall(300, 585, 5, Color.WHITE, 0, 1);
+        Ball handle = system.getBall(0);
+
+        HitEventQueue queue = game.getHitEvents();
+        queue.add(bottom, ball);
+        queue.add(bottom, handle);
+        queue.add(floor, ball);
+        queue.add(floor, handle);
+        queue.drain();
+        assertEquals(0, remainingBalls.getValue());
+        assertFalse(game.hasSprite(ball));
+        system.timePassed();
+        assertEquals(0, system.size());
+    }
+
+    /**
+     * Returns a block in the environment that records its hits under the given name.
+     *
+     * @param environment The environment to add the block to.
+     * @param index       The index of the block, which places it in its own column.
+     * @param hits        The list the names of the hit blocks are added to.
+     * @param name        The name recorded for a hit on the block.
+     * @return The block.
+     */
+    private static Block block(GameEnvironment environment, int index, List<String> hits, String name) {
+        Block block = new Block(new Rectangle(new Point(10 * index, 100), 10, 10), Color.RED, true, false);
+        block.addHitListener((beingHit, hitter) -> hits.add(name));
+        environment.addCollidable(block);
+        return block;
+    }
+
+    /**
+     * Returns a death region added to the game, which removes the balls that hit it.
+     *
+     * @param game           The game to add the region to.
+     * @param remainingBalls The counter of the balls left in the game.
+     * @param top            The y-coordinate of the top of the region.
+     * @return The death region.
+     */
+    private static Block deathRegion(Game game, Counter remainingBalls, double top) {
+        Block region = new Block(new Rectangle(new Point(0, top), 800, 10), Color.GRAY, false, true);
+        region.addHitListener(new BallRemover(game, remainingBalls));
+        region.addToGame(game);
+        return region;
+    }
+}
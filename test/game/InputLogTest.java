@@ -0,0 +1,212 @@
+package game;
+
+import biuoop.KeyboardSensor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for InputLog, its run-length encoding and the file format it is written in.
+ */
+class InputLogTest {
+    private static final String LAYOUT = "classic";
+    private static final int TICKS_OFFSET = Integer.BYTES + 1 + Long.BYTES + Integer.BYTES + Short.BYTES
+            + LAYOUT.length() + Integer.BYTES;
+    private static final int RUNS_OFFSET = TICKS_OFFSET + Integer.BYTES;
+    private static final int FIRST_RUN_OFFSET = RUNS_OFFSET + Integer.BYTES;
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Equal states of consecutive ticks are kept as one run, and the runs, whose lengths take one to three
+     * bytes, are read back with the header and replayed tick by tick.
+     *
+     * @throws IOException If the log cannot be written or read.
+     */
+    @Test
+    void runsRoundTrip() throws IOException {
+        InputLog log = log(new int[] {InputLog.LEFT, 1}, new int[] {0, 300},
+                new int[] {InputLog.LEFT | InputLog.RIGHT, 200000}, new int[] {InputLog.RIGHT, 5});
+        log.setSeed(-7);
+        log.setFinalScore(1234);
+        assertEquals(4, log.getRuns());
+        assertEquals(200306, log.getTicks());
+
+        InputLog read = InputLog.read(write(log));
+        assertEquals(LAYOUT, read.getLayout());
+        assertEquals(120, read.getPhysicsRate());
+        assertEquals(-7, read.getSeed());
+        assertEquals(1234, read.getFinalScore());
+        assertEquals(4, read.getRuns());
+        assertEquals(200306, read.getTicks());
+
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        IntConsumer player = read.player(keyboard);
+        assertKeys(player, keyboard, 0, true, false);
+        for (int tick = 1; tick <= 300; tick++) {
+            assertKeys(player, keyboard, tick, false, false);
+        }
+        for (int tick = 301; tick <= 200300; tick++) {
+            assertKeys(player, keyboard, tick, true, true);
+        }
+        for (int tick = 200301; tick <= 200305; tick++) {
+            assertKeys(player, keyboard, tick, false, true);
+        }
+        assertKeys(player, keyboard, 200306, false, false);
+    }
+
+    /**
+     * A log without ticks is written and read back empty.
+     *
+     * @throws IOException If the log cannot be written or read.
+     */
+    @Test
+    void emptyLogRoundTrips() throws IOException {
+        InputLog read = InputLog.read(write(new InputLog(LAYOUT, 120)));
+        assertEquals(0, read.getTicks());
+        assertEquals(0, read.getRuns());
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        assertKeys(read.player(keyboard), keyboard, 0, false, false);
+    }
+
+    /**
+     * Truncating a log drops whole runs and shortens the last run kept.
+     */
+    @Test
+    void truncateDropsTheLastTicks() {
+        InputLog log = log(new int[] {InputLog.LEFT, 10}, new int[] {0, 10}, new int[] {InputLog.RIGHT, 10});
+        log.truncate(25);
+        assertEquals(25, log.getTicks());
+        assertEquals(3, log.getRuns());
+        log.truncate(10);
+        assertEquals(10, log.getTicks());
+        assertEquals(1, log.getRuns());
+        log.record(InputLog.LEFT);
+        assertEquals(1, log.getRuns());
+        log.truncate(0);
+        assertEquals(0, log.getRuns());
+    }
+
+    /**
+     * Wrong magic numbers and versions, negative or impossible counts, empty runs, run lengths that do not fit
+     * an int or do not add up to the ticks, and truncated files are reported as IOExceptions.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    @Test
+    void corruptLogsAreReported() throws IOException {
+        byte[] written = Files.readAllBytes(write(log(new int[] {InputLog.LEFT, 300}, new int[] {0, 1})));
+
+        assertCorrupt(withInt(written, 0, 0));
+        assertCorrupt(withByte(written, Integer.BYTES, 99));
+        assertCorrupt(withInt(written, TICKS_OFFSET, 302));
+        assertCorrupt(withInt(written, TICKS_OFFSET, -1));
+        assertCorrupt(withInt(written, RUNS_OFFSET, -1));
+        assertCorrupt(withInt(written, RUNS_OFFSET, Integer.MAX_VALUE));
+        assertCorrupt(withInt(written, RUNS_OFFSET, 3));
+        byte[] emptyRun = withInt(written, TICKS_OFFSET, 300);
+        emptyRun[emptyRun.length - 1] = 0;
+        assertCorrupt(emptyRun);
+        byte[] tooLong = Arrays.copyOf(written, FIRST_RUN_OFFSET + 6);
+        ByteBuffer.wrap(tooLong).putInt(RUNS_OFFSET, 1).position(FIRST_RUN_OFFSET + 1)
+                .put(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x1F});
+        assertCorrupt(tooLong);
+        assertCorrupt(Arrays.copyOf(written, written.length - 1));
+        assertCorrupt(Arrays.copyOf(written, RUNS_OFFSET));
+        assertCorrupt(new byte[0]);
+    }
+
+    /**
+     * Returns a log of the given runs.
+     *
+     * @param runs The runs, each a state and the number of ticks it lasts.
+     * @return The log, for the classic layout at 120 steps per second.
+     */
+    private static InputLog log(int[]... runs) {
+        InputLog log = new InputLog(LAYOUT, 120);
+        for (int[] run : runs) {
+            for (int i = 0; i < run[1]; i++) {
+                log.record(run[0]);
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Writes a log to a file in the temporary directory.
+     *
+     * @param log The log.
+     * @return The file.
+     * @throws IOException If the log cannot be written.
+     */
+    private Path write(InputLog log) throws IOException {
+        Path path = directory.resolve("game.arkr");
+        log.write(path);
+        return path;
+    }
+
+    /**
+     * Plays a tick of a log and checks the keys it leaves pressed.
+     *
+     * @param player   The player of the log.
+     * @param keyboard The keyboard the player presses the keys of.
+     * @param tick     The tick to play.
+     * @param left     Whether the left key must be pressed.
+     * @param right    Whether the right key must be pressed.
+     */
+    private static void assertKeys(IntConsumer player, ScriptedKeyboard keyboard, int tick, boolean left,
+                                   boolean right) {
+        player.accept(tick);
+        assertEquals(left, keyboard.isPressed(KeyboardSensor.LEFT_KEY), "left key at tick " + tick);
+        assertEquals(right, keyboard.isPressed(KeyboardSensor.RIGHT_KEY), "right key at tick " + tick);
+    }
+
+    /**
+     * Returns a copy of a written log with an integer replaced.
+     *
+     * @param written The log file.
+     * @param offset  The offset of the integer.
+     * @param value   The new value of the integer.
+     * @return The changed copy.
+     */
+    private static byte[] withInt(byte[] written, int offset, int value) {
+        byte[] changed = written.clone();
+        ByteBuffer.wrap(changed).putInt(offset, value);
+        return changed;
+    }
+
+    /**
+     * Returns a copy of a written log with a byte replaced.
+     *
+     * @param written The log file.
+     * @param offset  The offset of the byte.
+     * @param value   The new value of the byte.
+     * @return The changed copy.
+     */
+    private static byte[] withByte(byte[] written, int offset, int value) {
+        byte[] changed = written.clone();
+        changed[offset] = (byte) value;
+        return changed;
+    }
+
+    /**
+     * Checks that reading a log from the given bytes fails with an IOException.
+     *
+     * @param bytes The contents of the log file.
+     * @throws IOException If the file cannot be written.
+     */
+    private void assertCorrupt(byte[] bytes) throws IOException {
+        Path path = Files.write(directory.resolve("corrupt.arkr"), bytes);
+        assertThrows(IOException.class, () -> InputLog.read(path));
+    }
+}
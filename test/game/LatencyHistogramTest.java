@@ -0,0 +1,115 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for LatencyHistogram, whose log-linear buckets must keep every value to within one sub-bucket.
+ */
+class LatencyHistogramTest {
+    private static final int SUB_BUCKETS = 32;
+    private static final int VALUES = 100000;
+
+    /**
+     * Values below the number of sub-buckets get a bucket each, so their percentiles are exact.
+     */
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 0; v < SUB_BUCKETS; v++) {
+            histogram.record(v);
+        }
+        for (int v = 0; v < SUB_BUCKETS; v++) {
+            assertEquals(v, histogram.getPercentile(100.0 * (v + 1) / SUB_BUCKETS), "value " + v);
+        }
+        assertEquals(0, histogram.getMin());
+        assertEquals(SUB_BUCKETS - 1, histogram.getMax());
+        assertEquals((SUB_BUCKETS - 1) / 2.0, histogram.getMean());
+    }
+
+    /**
+     * Each power of two from the number of sub-buckets up starts a new bucket, and the buckets above it are a
+     * thirty-second of the power wide, up to the top of the range of a long.
+     */
+    @Test
+    void bucketsStartAtPowersOfTwo() {
+        for (int exponent = 5; exponent < Long.SIZE - 1; exponent++) {
+            long power = 1L << exponent;
+            long width = power / SUB_BUCKETS;
+            assertEquals(power - 1, upperBoundOf(power - 1), "below 2^" + exponent);
+            assertEquals(power + width - 1, upperBoundOf(power), "at 2^" + exponent);
+            assertEquals(power + width - 1, upperBoundOf(power + width - 1), "in the first bucket of 2^" + exponent);
+            assertEquals(power + 2 * width - 1, upperBoundOf(power + width), "in the second bucket of 2^" + exponent);
+        }
+        assertEquals(Long.MAX_VALUE, upperBoundOf(Long.MAX_VALUE - 1));
+    }
+
+    /**
+     * On values spread over many orders of magnitude, every percentile lies between the exact percentile and
+     * one thirty-second above it.
+     */
+    @Test
+    void percentilesAreWithinOneSubBucket() {
+        Random random = new Random(9);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = (long) Math.pow(10, 1 + random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percent : new double[] {1, 10, 50, 90, 99, 99.9, 99.99, 100}) {
+            long exact = values[(int) Math.ceil(percent / 100 * VALUES) - 1];
+            long percentile = histogram.getPercentile(percent);
+            assertTrue(percentile >= exact, "p" + percent + " " + percentile + " below " + exact);
+            assertTrue(percentile <= exact + exact / SUB_BUCKETS, "p" + percent + " " + percentile
+                    + " too far above " + exact);
+        }
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[VALUES - 1], histogram.getMax());
+        assertEquals(values[VALUES - 1], histogram.getPercentile(100));
+    }
+
+    /**
+     * An empty histogram reports zeros, negative values are recorded as zero, and reset empties the histogram.
+     */
+    @Test
+    void emptyAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(50));
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds the given value, as reported by the median of a histogram
+     * that holds the value and a larger one.
+     *
+     * @param value The value.
+     * @return The largest value of the value's bucket.
+     */
+    private static long upperBoundOf(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getPercentile(50);
+    }
+}
@@ -0,0 +1,174 @@
+package game;
+
+import geometry.Rectangle;
+import graphics.Block;
+import listeners.ListenerGroup;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for LevelGenerator, whose levels must be fully determined by their names.
+ */
+class LevelGeneratorTest {
+    private static final double FIELD_LEFT = 30;
+    private static final double FIELD_TOP = 50;
+    private static final double FIELD_RIGHT = 770;
+    private static final double FIELD_BOTTOM = 450;
+    private static final int BLOCKS = 5000;
+
+    /**
+     * Every layout, with uniform and mixed sizes, builds the same bytes from the same parameters, and the same
+     * bytes again from a generator built from the level's name. Another seed builds another level.
+     */
+    @Test
+    void sameNameAndSeedBuildTheSameBytes() {
+        for (LevelGenerator.Layout layout : LevelGenerator.Layout.values()) {
+            for (boolean mixed : new boolean[] {false, true}) {
+                LevelGenerator generator = generator(layout, mixed, 42);
+                byte[] level = bytes(generator.generate());
+                assertArrayEquals(level, bytes(generator(layout, mixed, 42).generate()), generator.getName());
+                assertArrayEquals(level, bytes(LevelGenerator.fromName(generator.getName()).generate()),
+                        generator.getName());
+                assertFalse(Arrays.equals(level, bytes(generator(layout, mixed, 43).generate())),
+                        generator.getName());
+            }
+        }
+    }
+
+    /**
+     * A generator built from the name of another gives the same name back, for every layout and setting.
+     */
+    @Test
+    void namesRoundTrip() {
+        for (LevelGenerator.Layout layout : LevelGenerator.Layout.values()) {
+            for (boolean mixed : new boolean[] {false, true}) {
+                for (boolean closed : new boolean[] {false, true}) {
+                    LevelGenerator generator = new LevelGenerator(layout, 1000000, 7, -123456789012L);
+                    generator.setMixedSizes(mixed);
+                    generator.setMaxHitPoints(LevelWriter.MAX_HIT_POINTS);
+                    generator.setClosed(closed);
+                    String name = generator.getName();
+                    assertTrue(name.startsWith(LevelGenerator.NAME_PREFIX));
+                    assertEquals(name, LevelGenerator.fromName(name).getName());
+                }
+            }
+        }
+        assertEquals("generated:grid:100000:4:1:mixed:3:open",
+                LevelGenerator.fromName("generated:grid:100000:4:1:mixed:3:open").getName());
+    }
+
+    /**
+     * The blocks of a grid level of mixed sizes lie inside the block field, on whole cells of the grid, and no
+     * two of them share a cell.
+     *
+     * @throws IOException If the level cannot be read back.
+     */
+    @Test
+    void gridBlocksStayInTheFieldAndDoNotOverlap() throws IOException {
+        LevelGenerator generator = generator(LevelGenerator.Layout.GRID, true, 7);
+        LevelReader reader = LevelReader.read(generator.generate().toByteBuffer(), "test");
+        BlockGrid grid = reader.createGrid();
+        assertTrue(grid.getOriginX() >= FIELD_LEFT);
+        assertTrue(grid.getOriginY() >= FIELD_TOP);
+        assertTrue(grid.getOriginX() + grid.getColumns() * grid.getCellWidth() <= FIELD_RIGHT);
+        assertTrue(grid.getOriginY() + grid.getRows() * grid.getCellHeight() <= FIELD_BOTTOM);
+
+        ListenerGroup[] groups = new ListenerGroup[LevelWriter.ROLE_COMBINATIONS];
+        Arrays.fill(groups, ListenerGroup.EMPTY);
+        boolean[] taken = new boolean[grid.getColumns() * grid.getRows()];
+        int gameBlocks = 0;
+        for (int i = 0; i < reader.getBlockCount(); i++) {
+            Block block = reader.nextBlock(groups);
+            if (!block.isGameBlock()) {
+                continue;
+            }
+            gameBlocks++;
+            Rectangle rect = block.getCollisionRectangle();
+            double columnsFromOrigin = (rect.getUpperLeft().getX() - grid.getOriginX()) / grid.getCellWidth();
+            double rowsFromOrigin = (rect.getUpperLeft().getY() - grid.getOriginY()) / grid.getCellHeight();
+            double span = rect.getWidth() / grid.getCellWidth();
+            assertEquals(Math.rint(columnsFromOrigin), columnsFromOrigin, "column of block " + i);
+            assertEquals(Math.rint(rowsFromOrigin), rowsFromOrigin, "row of block " + i);
+            assertEquals(Math.rint(span), span, "span of block " + i);
+            assertEquals(grid.getCellHeight(), rect.getHeight(), "height of block " + i);
+            int column = (int) columnsFromOrigin;
+            int row = (int) rowsFromOrigin;
+            assertTrue(column >= 0 && column + span <= grid.getColumns(), "block " + i + " is off the grid");
+            assertTrue(row >= 0 && row < grid.getRows(), "block " + i + " is off the grid");
+            for (int c = column; c < column + span; c++) {
+                int cell = row * grid.getColumns() + c;
+                assertFalse(taken[cell], "cell " + cell + " is taken twice");
+                taken[cell] = true;
+            }
+        }
+        assertEquals(BLOCKS, gameBlocks);
+        assertTrue(reader.getFreeBlockCount() > 4);
+    }
+
+    /**
+     * Names that are not the exact name of a generated level, or that hold parameters a generator refuses, are
+     * rejected.
+     */
+    @Test
+    void invalidNamesAreRejected() {
+        String[] names = {
+            "classic",
+            "generated:",
+            "generated:grid:100:4:1:mixed:3",
+            "generated:grid:100:4:1:mixed:3:open:",
+            "generated:grid:100:4:1:mixed:3:open:closed",
+            "generated:hexagons:100:4:1:mixed:3:open",
+            "generated:GRID:100:4:1:mixed:3:open",
+            "generated:grid:0:4:1:mixed:3:open",
+            "generated:grid:100:0:1:mixed:3:open",
+            "generated:grid:ten:4:1:mixed:3:open",
+            "generated:grid:+100:4:1:mixed:3:open",
+            "generated:grid:100:4:01:mixed:3:open",
+            "generated:grid:100:4:1:huge:3:open",
+            "generated:grid:100:4:1:mixed:0:open",
+            "generated:grid:100:4:1:mixed:256:open",
+            "generated:grid:100:4:1:mixed:3:ajar",
+            "Generated:grid:100:4:1:mixed:3:open",
+        };
+        for (String name : names) {
+            assertThrows(IllegalArgumentException.class, () -> LevelGenerator.fromName(name), name);
+        }
+    }
+
+    /**
+     * Returns a generator of BLOCKS blocks, four balls and up to three hit points.
+     *
+     * @param layout The layout of the blocks.
+     * @param mixed  Whether the blocks have mixed sizes.
+     * @param seed   The seed of the random choices.
+     * @return The generator.
+     */
+    private static LevelGenerator generator(LevelGenerator.Layout layout, boolean mixed, long seed) {
+        LevelGenerator generator = new LevelGenerator(layout, BLOCKS, 4, seed);
+        generator.setMixedSizes(mixed);
+        generator.setMaxHitPoints(3);
+        return generator;
+    }
+
+    /**
+     * Returns the bytes of a level file.
+     *
+     * @param level The level.
+     * @return The bytes the level is written as.
+     */
+    private static byte[] bytes(LevelWriter level) {
+        ByteBuffer buffer = level.toByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,346 @@
+package game;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Ball;
+import graphics.Block;
+import graphics.BlockTiles;
+import interfaces.HitListener;
+import listeners.ListenerGroup;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for LevelWriter and the level files it writes, read back through LevelReader.
+ */
+class LevelWriterTest {
+    private static final int NAME_OFFSET = Integer.BYTES + 1 + Short.BYTES;
+    private static final int GRID_BYTES = 4 * Double.BYTES + 2 * Integer.BYTES;
+    private static final int PADDLE_BYTES = 4 * Float.BYTES + Short.BYTES + Float.BYTES;
+
+    /**
+     * A name of the longest length a level file holds is read back whole.
+     *
+     * @throws IOException If the level cannot be read back.
+     */
+    @Test
+    void longestNameRoundTrips() throws IOException {
+        String name = "é".repeat(LevelWriter.MAX_NAME_BYTES / 2) + "x";
+        LevelWriter level = new LevelWriter(name);
+        assertEquals(name, LevelReader.read(level.toByteBuffer(), "test").getName());
+    }
+
+    /**
+     * A name too long for a level file is rejected when the level is created, not truncated when it is written.
+     */
+    @Test
+    void tooLongNameIsRejected() {
+        String name = "é".repeat(LevelWriter.MAX_NAME_BYTES / 2 + 1);
+        assertThrows(IllegalArgumentException.class, () -> new LevelWriter(name));
+    }
+
+    /**
+     * The grid, the paddle, the balls and the blocks of a level are read back as they were added, the blocks
+     * that fill a grid cell after the others, each wired to the listener group of its roles.
+     *
+     * @throws IOException If the level cannot be read back.
+     */
+    @Test
+    void levelRoundTrips() throws IOException {
+        LevelReader reader = LevelReader.read(level().toByteBuffer(), "test");
+        assertEquals("t", reader.getName());
+        assertEquals(1, reader.getBallCount());
+        assertEquals(3, reader.getBlockCount());
+        assertEquals(1, reader.getFreeBlockCount());
+
+        BlockGrid grid = reader.createGrid();
+        assertEquals(0, grid.getOriginX());
+        assertEquals(5, grid.getOriginY());
+        assertEquals(20, grid.getCellWidth());
+        assertEquals(10, grid.getCellHeight());
+        assertEquals(4, grid.getColumns());
+        assertEquals(3, grid.getRows());
+        assertBounds(reader.getPaddleRectangle(), 300, 550, 80, 15);
+        assertEquals(Color.ORANGE, reader.getPaddleColor());
+        assertEquals(7.5, reader.getPaddleSpeed());
+
+        Ball ball = reader.nextBall();
+        assertEquals(400, ball.getX());
+        assertEquals(500, ball.getY());
+        assertEquals(5, ball.getSize());
+        assertEquals(Color.WHITE, ball.getColor());
+        assertEquals(2.5, ball.getVelocity().getDoublex());
+        assertEquals(-3, ball.getVelocity().getDoubley());
+        assertThrows(IOException.class, reader::nextBall);
+
+        ListenerGroup[] groups = groups();
+        Block free = reader.nextBlock(groups);
+        assertBounds(free.getCollisionRectangle(), 500.5, 300.25, 33, 17);
+        assertEquals(Color.RED, free.getColor());
+        assertEquals(2, free.getHitPoints());
+        assertTrue(free.isGameBlock());
+        assertFalse(free.isDeathRegion());
+        assertSame(groups[LevelWriter.ROLE_REMOVE], free.getHitListeners());
+
+        Block first = reader.nextBlock(groups);
+        assertBounds(first.getCollisionRectangle(), 20, 15, 20, 10);
+        assertEquals(Color.GREEN, first.getColor());
+        assertEquals(LevelWriter.MAX_HIT_POINTS, first.getHitPoints());
+        assertSame(groups[LevelWriter.ROLE_REMOVE | LevelWriter.ROLE_SCORE], first.getHitListeners());
+        Block last = reader.nextBlock(groups);
+        assertBounds(last.getCollisionRectangle(), 60, 25, 20, 10);
+        assertTrue(last.isDeathRegion());
+        assertFalse(last.isGameBlock());
+        assertSame(groups[LevelWriter.ROLE_REMOVE_BALL], last.getHitListeners());
+        assertThrows(IOException.class, () -> reader.nextBlock(groups));
+    }
+
+    /**
+     * A level without a grid, balls or blocks is read back empty.
+     *
+     * @throws IOException If the level cannot be read back.
+     */
+    @Test
+    void emptyLevelRoundTrips() throws IOException {
+        LevelReader reader = LevelReader.read(new LevelWriter("").toByteBuffer(), "test");
+        assertEquals("", reader.getName());
+        assertNull(reader.createGrid());
+        assertEquals(0, reader.getBallCount());
+        assertEquals(0, reader.getBlockCount());
+        assertEquals(Color.YELLOW, reader.getPaddleColor());
+        assertThrows(IOException.class, reader::nextBall);
+        assertThrows(IOException.class, () -> reader.nextBlock(groups()));
+    }
+
+    /**
+     * Wrong magic numbers and versions, counts and palettes that do not match the file, impossible grids, and
+     * truncated files are reported as IOExceptions when the level is opened.
+     */
+    @Test
+    void corruptHeadersAreReported() {
+        byte[] level = bytes(level());
+        int palette = NAME_OFFSET + 1;
+        int grid = palette + (1 + 5) * Integer.BYTES + 1;
+        int columns = grid + 4 * Double.BYTES;
+        int counts = grid + GRID_BYTES + PADDLE_BYTES;
+
+        assertCorrupt(withInt(level, 0, 0));
+        assertCorrupt(withByte(level, Integer.BYTES, 99));
+        assertCorrupt(withShort(level, Integer.BYTES + 1, 0x7FFF));
+        assertCorrupt(withInt(level, palette, -1));
+        assertCorrupt(withInt(level, palette, Integer.MAX_VALUE));
+        assertCorrupt(withInt(level, palette, 6));
+        assertCorrupt(withInt(level, columns, 0));
+        assertCorrupt(withInt(withInt(level, columns, 1 << 16), columns + Integer.BYTES, 1 << 16));
+        assertCorrupt(withDouble(level, columns - Double.BYTES, Double.NaN));
+        assertCorrupt(withInt(level, counts, 2));
+        assertCorrupt(withInt(level, counts + Integer.BYTES, -1));
+        assertCorrupt(withInt(level, counts + 2 * Integer.BYTES, 3));
+        assertCorrupt(Arrays.copyOf(level, level.length - 1));
+        assertCorrupt(Arrays.copyOf(level, level.length + 1));
+        assertCorrupt(Arrays.copyOf(level, counts));
+        assertCorrupt(new byte[0]);
+    }
+
+    /**
+     * Palette indices outside the palette, cells outside the grid, blocks without hit points and unknown
+     * roles are reported as IOExceptions, whether the grid blocks are read one by one or in bulk as tiles.
+     */
+    @Test
+    void corruptRecordsAreReported() {
+        byte[] level = bytes(level());
+        int grid = level.length - 2 * LevelWriter.GRID_BLOCK_BYTES;
+        int free = grid - LevelWriter.FREE_BLOCK_BYTES;
+        int ball = free - LevelWriter.BALL_BYTES;
+        int paddleColor = ball - 3 * Integer.BYTES - Float.BYTES - Short.BYTES;
+
+        assertCorrupt(withShort(level, paddleColor, 5));
+        assertCorrupt(withShort(level, paddleColor, 0xFFFF));
+        assertRecordCorrupt(withShort(level, ball + 4 * Float.BYTES + Short.BYTES, 5));
+        assertRecordCorrupt(withShort(level, free + 4 * Float.BYTES, 5));
+        assertRecordCorrupt(withByte(level, free + 4 * Float.BYTES + Short.BYTES, 0));
+        assertRecordCorrupt(withByte(level, free + 4 * Float.BYTES + Short.BYTES + 1, LevelWriter.ROLE_COMBINATIONS));
+        for (int offset : new int[] {grid, grid + LevelWriter.GRID_BLOCK_BYTES}) {
+            assertRecordCorrupt(withInt(level, offset, -1));
+            assertRecordCorrupt(withInt(level, offset, 12));
+            assertRecordCorrupt(withInt(level, offset, Integer.MAX_VALUE));
+            assertRecordCorrupt(withShort(level, offset + Integer.BYTES, 5));
+            assertRecordCorrupt(withByte(level, offset + Integer.BYTES + Short.BYTES, 0));
+            assertRecordCorrupt(withByte(level, offset + Integer.BYTES + Short.BYTES + 1, -1));
+        }
+    }
+
+    /**
+     * Returns a level with a 4 x 3 grid, a paddle, a ball, a free block and two grid blocks, whose palette holds
+     * white, red, green, blue and orange in that order.
+     *
+     * @return The level.
+     */
+    private static LevelWriter level() {
+        LevelWriter level = new LevelWriter("t");
+        level.setGrid(0, 5, 20, 10, 4, 3);
+        level.setPaddle(new Rectangle(new Point(300, 550), 80, 15), Color.ORANGE, 7.5);
+        level.addBall(new Point(400, 500), 5, Color.WHITE, 2.5, -3);
+        level.addBlock(new Rectangle(new Point(500.5, 300.25), 33, 17), Color.RED, 2, LevelWriter.ROLE_REMOVE);
+        level.addBlock(new Rectangle(new Point(20, 15), 20, 10), Color.GREEN, LevelWriter.MAX_HIT_POINTS,
+                LevelWriter.ROLE_REMOVE | LevelWriter.ROLE_SCORE);
+        level.addBlock(new Rectangle(new Point(60, 25), 20, 10), Color.BLUE, 1, LevelWriter.ROLE_REMOVE_BALL);
+        return level;
+    }
+
+    /**
+     * Returns a distinct listener group for each combination of roles.
+     *
+     * @return The groups, indexed by the roles.
+     */
+    private static ListenerGroup[] groups() {
+        ListenerGroup[] groups = new ListenerGroup[LevelWriter.ROLE_COMBINATIONS];
+        for (int roles = 0; roles < groups.length; roles++) {
+            HitListener listener = (beingHit, hitter) -> { };
+            groups[roles] = ListenerGroup.EMPTY.with(listener);
+        }
+        return groups;
+    }
+
+    /**
+     * Reads every record of a level, the grid blocks one by one or in bulk as tiles.
+     *
+     * @param level The level file.
+     * @param tiles true to read the grid blocks as tiles, false to read them with nextBlock.
+     * @throws IOException If the level is corrupt.
+     */
+    private static void readAll(byte[] level, boolean tiles) throws IOException {
+        LevelReader reader = LevelReader.read(ByteBuffer.wrap(level), "test");
+        for (int i = 0; i < reader.getBallCount(); i++) {
+            reader.nextBall();
+        }
+        ListenerGroup[] groups = groups();
+        int blocks = tiles ? reader.getFreeBlockCount() : reader.getBlockCount();
+        for (int i = 0; i < blocks; i++) {
+            reader.nextBlock(groups);
+        }
+        if (tiles) {
+            List<Block> taken = new ArrayList<>();
+            BlockTiles read = reader.readTiles(reader.createGrid(), groups, taken);
+            assertEquals(reader.getBlockCount() - reader.getFreeBlockCount(), read.size() + taken.size());
+        }
+    }
+
+    /**
+     * Checks that opening a level from the given bytes fails with an IOException.
+     *
+     * @param level The level file.
+     */
+    private static void assertCorrupt(byte[] level) {
+        assertThrows(IOException.class, () -> LevelReader.read(ByteBuffer.wrap(level), "test"));
+    }
+
+    /**
+     * Checks that a level opens but reading its records fails with an IOException, both when its grid blocks
+     * are read one by one and when they are read as tiles.
+     *
+     * @param level The level file.
+     */
+    private static void assertRecordCorrupt(byte[] level) {
+        assertThrows(IOException.class, () -> readAll(level, false));
+        assertThrows(IOException.class, () -> readAll(level, true));
+    }
+
+    /**
+     * Checks the bounds of a rectangle.
+     *
+     * @param rect   The rectangle.
+     * @param x      The expected x-coordinate of the upper-left corner.
+     * @param y      The expected y-coordinate of the upper-left corner.
+     * @param width  The expected width.
+     * @param height The expected height.
+     */
+    private static void assertBounds(Rectangle rect, double x, double y, double width, double height) {
+        assertEquals(x, rect.getUpperLeft().getX());
+        assertEquals(y, rect.getUpperLeft().getY());
+        assertEquals(width, rect.getWidth());
+        assertEquals(height, rect.getHeight());
+    }
+
+    /**
+     * Returns the bytes of a level file.
+     *
+     * @param level The level.
+     * @return The bytes.
+     */
+    private static byte[] bytes(LevelWriter level) {
+        ByteBuffer buffer = level.toByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a copy of a level file with an integer replaced.
+     *
+     * @param level  The level file.
+     * @param offset The offset of the integer.
+     * @param value  The new value.
+     * @return The changed copy.
+     */
+    private static byte[] withInt(byte[] level, int offset, int value) {
+        byte[] changed = level.clone();
+        ByteBuffer.wrap(changed).putInt(offset, value);
+        return changed;
+    }
+
+    /**
+     * Returns a copy of a level file with a short replaced.
+     *
+     * @param level  The level file.
+     * @param offset The offset of the short.
+     * @param value  The new value, of which the low 16 bits are written.
+     * @return The changed copy.
+     */
+    private static byte[] withShort(byte[] level, int offset, int value) {
+        byte[] changed = level.clone();
+        ByteBuffer.wrap(changed).putShort(offset, (short) value);
+        return changed;
+    }
+
+    /**
+     * Returns a copy of a level file with a double replaced.
+     *
+     * @param level  The level file.
+     * @param offset The offset of the double.
+     * @param value  The new value.
+     * @return The changed copy.
+     */
+    private static byte[] withDouble(byte[] level, int offset, double value) {
+        byte[] changed = level.clone();
+        ByteBuffer.wrap(changed).putDouble(offset, value);
+        return changed;
+    }
+
+    /**
+     * Returns a copy of a level file with a byte replaced.
+     *
+     * @param level  The level file.
+     * @param offset The offset of the byte.
+     * @param value  The new value.
+     * @return The changed copy.
+     */
+    private static byte[] withByte(byte[] level, int offset, int value) {
+        byte[] changed = level.clone();
+        changed[offset] = (byte) value;
+        return changed;
+    }
+}
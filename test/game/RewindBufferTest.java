@@ -0,0 +1,114 @@
+package game;
+
+import biuoop.KeyboardSensor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that rewinding a game with RewindBuffer leaves it in the state a replay of its input log reaches.
+ */
+class RewindBufferTest {
+    private static final int PLAYED_TICKS = 800;
+    private static final int REWOUND_TICKS = 700;
+    private static final int MAX_TICKS = 200000;
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Plays the classic level until a block was broken and two balls were lost, rewinds to before all of it,
+     * and checks that the game is then the same as a replay of its input log, down to the order its sprites
+     * step in and the slots of its blocks, which a snapshot of the game records.
+     *
+     * @throws IOException If a snapshot cannot be written or read.
+     */
+    @Test
+    void rewoundGameMatchesReplayOfItsLog() throws IOException {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game game = new Game(keyboard);
+        game.initialize();
+        game.simulate(PLAYED_TICKS, player(keyboard, 80));
+        assertTrue(game.getScore().getValue() > 0);
+        assertEquals(REWOUND_TICKS, game.rewind(REWOUND_TICKS));
+        assertEquals(0, game.getScore().getValue());
+
+        Game replay = replay(game.getInputLog());
+        assertArrayEquals(snapshot(game, "rewound.arks"), snapshot(replay, "replayed.arks"));
+    }
+
+    /**
+     * Plays the classic level, rewinds it, plays on with different keys until the game ends, and checks that
+     * the input log replays the game to the same score.
+     */
+    @Test
+    void rewoundGameReplaysToTheSameScore() {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game game = new Game(keyboard);
+        game.initialize();
+        game.simulate(PLAYED_TICKS, player(keyboard, 80));
+        game.rewind(REWOUND_TICKS);
+        assertEquals(PLAYED_TICKS - REWOUND_TICKS, game.getInputLog().getTicks());
+        game.simulate(MAX_TICKS, player(keyboard, 50));
+        assertTrue(game.isOver());
+
+        InputLog log = game.getInputLog();
+        Game replay = replay(log);
+        assertTrue(replay.isOver());
+        assertEquals(log.getFinalScore(), replay.getScore().getValue());
+    }
+
+    /**
+     * Replays an input log of the classic level on a new headless game.
+     *
+     * @param log The input log.
+     * @return The game, after the last tick of the log.
+     */
+    private static Game replay(InputLog log) {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game replay = new Game(keyboard);
+        replay.setPhysicsRate(log.getPhysicsRate());
+        replay.setScript(log.player(keyboard));
+        replay.initialize();
+        replay.simulate(log.getTicks(), null);
+        return replay;
+    }
+
+    /**
+     * Saves a snapshot of a game and returns its bytes.
+     *
+     * @param game The game.
+     * @param name The name of the file to save the snapshot to.
+     * @return The bytes of the snapshot.
+     * @throws IOException If the snapshot cannot be read back.
+     */
+    private byte[] snapshot(Game game, String name) throws IOException {
+        Path path = directory.resolve(name);
+        game.save(path).join();
+        return Files.readAllBytes(path);
+    }
+
+    /**
+     * Returns a player that moves the paddle left and right in turns.
+     *
+     * @param keyboard The keyboard the player presses the keys of.
+     * @param period   The number of ticks the player holds each key for.
+     * @return The player.
+     */
+    private static IntConsumer player(ScriptedKeyboard keyboard, int period) {
+        return tick -> {
+            if (tick % period == 0) {
+                keyboard.releaseAll();
+                keyboard.press(tick % (2 * period) == 0 ? KeyboardSensor.LEFT_KEY : KeyboardSensor.RIGHT_KEY);
+            }
+        };
+    }
+}
@@ -0,0 +1,322 @@
+package game;
+
+import biuoop.KeyboardSensor;
+import geometry.Point;
+import geometry.Rectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for SaveState, through Game.save and Game.restore.
+ */
+class SaveStateTest {
+    private static final int PLAYED_TICKS = 600;
+    private static final int MAX_TICKS = 200000;
+    private static final int GRID_TICKS = 50;
+    private static final int GRID_MORE_TICKS = 250;
+    private static final int HEADER_BYTES = 9;
+    private static final int BLOCK_RECT_BYTES = 4 * Double.BYTES;
+    private static final int GRID_BYTES = 4 * Double.BYTES + 2 * Integer.BYTES;
+    private static final int GRID_BLOCK_BYTES = 4 * Integer.BYTES + 1;
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * A restored game goes on from the layout and step it was saved at, and plays on to the same score as the
+     * game it was saved from.
+     *
+     * @throws IOException If the game cannot be saved or restored.
+     */
+    @Test
+    void restoredGamePlaysOnLikeTheSavedGame() throws IOException {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game game = new Game(keyboard);
+        game.initialize();
+        game.simulate(PLAYED_TICKS, player(keyboard));
+        assertFalse(game.isOver());
+        Path path = save(game);
+
+        ScriptedKeyboard restoredKeyboard = new ScriptedKeyboard();
+        Game restored = new Game(restoredKeyboard);
+        restored.restore(path);
+        assertEquals(Game.CLASSIC_LAYOUT, restored.getInputLog().getLayout());
+        assertEquals(game.getScore().getValue(), restored.getScore().getValue());
+
+        int played = game.simulate(MAX_TICKS, player(keyboard));
+        assertEquals(played, restored.simulate(MAX_TICKS, player(restoredKeyboard)));
+        assertEquals(game.getScore().getValue(), restored.getScore().getValue());
+        assertEquals(played, restored.getInputLog().getTicks());
+    }
+
+    /**
+     * The input log of a restored game is not written, since it cannot replay the game from its layout.
+     *
+     * @throws IOException If the game cannot be saved or restored.
+     */
+    @Test
+    void restoredGameDoesNotWriteItsInputLog() throws IOException {
+        Game game = new Game(new ScriptedKeyboard());
+        game.initialize();
+        game.simulate(PLAYED_TICKS, null);
+        Path path = save(game);
+
+        Path log = directory.resolve("restored.arkr");
+        Game restored = new Game(new ScriptedKeyboard());
+        restored.restore(path);
+        System.setProperty(InputLog.PATH_PROPERTY, log.toString());
+        try {
+            restored.simulate(MAX_TICKS, null);
+        } finally {
+            System.clearProperty(InputLog.PATH_PROPERTY);
+        }
+        assertTrue(restored.isOver());
+        assertFalse(Files.exists(log));
+    }
+
+    /**
+     * A game on a generated grid level, whose grid blocks are loaded as tiles and partly broken, is saved
+     * again after it is restored to the same bytes, and plays on like the saved game.
+     *
+     * @throws IOException If the game cannot be saved or restored.
+     */
+    @Test
+    void gridLevelRoundTrips() throws IOException {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game game = gridLevel(keyboard);
+        game.simulate(GRID_TICKS, player(keyboard));
+        assertTrue(game.getScore().getValue() > 0);
+        byte[] saved = Files.readAllBytes(save(game));
+
+        ScriptedKeyboard restoredKeyboard = new ScriptedKeyboard();
+        Game restored = new Game(restoredKeyboard);
+        restored.restore(write(saved));
+        assertArrayEquals(saved, Files.readAllBytes(save(restored)));
+
+        game.simulate(GRID_MORE_TICKS, player(keyboard));
+        restored.simulate(GRID_MORE_TICKS, player(restoredKeyboard));
+        assertTrue(game.getScore().getValue() > 0);
+        assertEquals(game.getScore().getValue(), restored.getScore().getValue());
+    }
+
+    /**
+     * A game on a grid level that is rewound, so broken tiles come back as blocks in their cells, is saved to
+     * the same bytes as a game that only played up to the step it was rewound to.
+     *
+     * @throws IOException If the game cannot be saved.
+     */
+    @Test
+    void rewoundGridLevelSavesLikeAGameThatNeverWentOn() throws IOException {
+        ScriptedKeyboard keyboard = new ScriptedKeyboard();
+        Game game = gridLevel(keyboard);
+        game.simulate(GRID_TICKS, player(keyboard));
+        int score = game.getScore().getValue();
+        game.simulate(GRID_MORE_TICKS, player(keyboard));
+        assertTrue(game.getScore().getValue() > score);
+        assertEquals(GRID_MORE_TICKS, game.rewind(GRID_MORE_TICKS));
+        assertEquals(score, game.getScore().getValue());
+        byte[] rewound = Files.readAllBytes(save(game));
+
+        ScriptedKeyboard otherKeyboard = new ScriptedKeyboard();
+        Game other = gridLevel(otherKeyboard);
+        other.simulate(GRID_TICKS, player(otherKeyboard));
+        assertArrayEquals(rewound, Files.readAllBytes(save(other)));
+    }
+
+    /**
+     * A level without blocks and a level whose grid is full, with a free block beside it, are saved again after
+     * they are restored to the same bytes.
+     *
+     * @throws IOException If a game cannot be saved or restored.
+     */
+    @Test
+    void emptyAndFullGridsRoundTrip() throws IOException {
+        LevelWriter empty = new LevelWriter("empty");
+        empty.setGrid(0, 0, 40, 20, 4, 3);
+        empty.addBall(new Point(400, 500), 5, Color.WHITE, 2, -3);
+        assertRoundTrips(empty);
+
+        LevelWriter full = new LevelWriter("full");
+        full.setGrid(100, 100, 40, 20, 4, 3);
+        int roles = LevelWriter.ROLE_REMOVE | LevelWriter.ROLE_SCORE;
+        for (int cell = 0; cell < 12; cell++) {
+            full.addBlock(new Rectangle(new Point(100 + 40 * (cell % 4), 100 + 20 * (cell / 4)), 40, 20),
+                    cell % 2 == 0 ? Color.RED : Color.GREEN, 1 + cell, roles);
+        }
+        full.addBlock(new Rectangle(new Point(500, 300), 33, 17), Color.BLUE, 2, LevelWriter.ROLE_REMOVE);
+        full.addBall(new Point(400, 500), 5, Color.WHITE, 2, -3);
+        assertRoundTrips(full);
+    }
+
+    /**
+     * Cells outside the grid, colors and listener groups outside their tables, and counts larger than the file,
+     * are reported as IOExceptions, like every other corrupt record, whether the block is a grid block or not,
+     * and so are truncated files and wrong magic numbers and versions.
+     *
+     * @throws IOException If the game cannot be saved.
+     */
+    @Test
+    void corruptRecordsAreReported() throws IOException {
+        Game game = new Game(new ScriptedKeyboard());
+        game.initialize();
+        byte[] saved = Files.readAllBytes(save(game));
+        int gridBlockCount = gridBlockCountOffset();
+        int cell = gridBlockCount + Integer.BYTES;
+        int gridColor = cell + Integer.BYTES;
+        int gridGroup = gridColor + Integer.BYTES + 1 + Integer.BYTES;
+        int blockCount = cell + ByteBuffer.wrap(saved).getInt(gridBlockCount) * GRID_BLOCK_BYTES;
+        int color = blockCount + Integer.BYTES + BLOCK_RECT_BYTES;
+        int group = color + Integer.BYTES + 1 + Integer.BYTES;
+
+        assertCorrupt(withInt(saved, cell, 15 * 6));
+        assertCorrupt(withInt(saved, cell, -1));
+        assertCorrupt(withInt(saved, gridColor, 1 << 20));
+        assertCorrupt(withInt(saved, gridGroup, -1));
+        assertCorrupt(withInt(saved, gridBlockCount, Integer.MAX_VALUE));
+        assertCorrupt(withInt(saved, color, 1 << 20));
+        assertCorrupt(withInt(saved, color, -1));
+        assertCorrupt(withInt(saved, group, 1 << 20));
+        assertCorrupt(withInt(saved, blockCount, Integer.MAX_VALUE));
+        assertCorrupt(withInt(saved, blockCount, -1));
+        assertCorrupt(withInt(saved, HEADER_BYTES, -1));
+        assertCorrupt(withInt(saved, HEADER_BYTES - Integer.BYTES, saved.length + 1));
+        assertCorrupt(Arrays.copyOf(saved, HEADER_BYTES + 2));
+        assertCorrupt(withInt(saved, 0, 0));
+        assertEquals(1, saved[Integer.BYTES]);
+        assertCorrupt(withByte(saved, Integer.BYTES, 0));
+        assertCorrupt(withByte(saved, Integer.BYTES, 2));
+        assertCorrupt(new byte[0]);
+    }
+
+    /**
+     * Saves a game to a file in the temporary directory and waits for the file to be written.
+     *
+     * @param game The game.
+     * @return The file.
+     */
+    private Path save(Game game) {
+        Path path = directory.resolve("game.arks");
+        game.save(path).join();
+        return path;
+    }
+
+    /**
+     * Returns a game on a generated grid level of 2000 blocks, closed so it goes on until every block is broken.
+     *
+     * @param keyboard The keyboard of the game.
+     * @return The game.
+     */
+    private static Game gridLevel(ScriptedKeyboard keyboard) {
+        LevelGenerator generator = new LevelGenerator(LevelGenerator.Layout.GRID, 2000, 20, 1);
+        generator.setClosed(true);
+        Game game = new Game(keyboard);
+        game.loadLevel(generator.generate());
+        return game;
+    }
+
+    /**
+     * Loads a level, saves it, restores the save, and checks that the restored game saves to the same bytes.
+     *
+     * @param level The level.
+     * @throws IOException If the game cannot be saved or restored.
+     */
+    private void assertRoundTrips(LevelWriter level) throws IOException {
+        Game game = new Game(new ScriptedKeyboard());
+        game.loadLevel(level);
+        byte[] saved = Files.readAllBytes(save(game));
+        Game restored = new Game(new ScriptedKeyboard());
+        restored.restore(write(saved));
+        assertArrayEquals(saved, Files.readAllBytes(save(restored)));
+    }
+
+    /**
+     * Writes a snapshot to a file of its own in the temporary directory.
+     *
+     * @param bytes The snapshot.
+     * @return The file.
+     * @throws IOException If the file cannot be written.
+     */
+    private Path write(byte[] bytes) throws IOException {
+        return Files.write(directory.resolve("saved.arks"), bytes);
+    }
+
+    /**
+     * Returns a player that moves the paddle left and right in turns, every 80 ticks.
+     *
+     * @param keyboard The keyboard the player presses the keys of.
+     * @return The player.
+     */
+    private static IntConsumer player(ScriptedKeyboard keyboard) {
+        return tick -> {
+            if (tick % 80 == 0) {
+                keyboard.releaseAll();
+                keyboard.press(tick % 160 == 0 ? KeyboardSensor.LEFT_KEY : KeyboardSensor.RIGHT_KEY);
+            }
+        };
+    }
+
+    /**
+     * Returns the offset of the number of grid blocks in a snapshot of the classic level, which has a block
+     * grid: after the layout, the step, the physics rate, the three counters and the grid.
+     *
+     * @return The offset of the number of grid blocks.
+     */
+    private static int gridBlockCountOffset() {
+        return HEADER_BYTES + Integer.BYTES + Game.CLASSIC_LAYOUT.getBytes(StandardCharsets.UTF_8).length
+                + 6 * Integer.BYTES + GRID_BYTES;
+    }
+
+    /**
+     * Returns a copy of a snapshot with an integer replaced.
+     *
+     * @param saved  The snapshot.
+     * @param offset The offset of the integer.
+     * @param value  The new value of the integer.
+     * @return The changed copy.
+     */
+    private static byte[] withInt(byte[] saved, int offset, int value) {
+        byte[] changed = saved.clone();
+        ByteBuffer.wrap(changed).putInt(offset, value);
+        return changed;
+    }
+
+    /**
+     * Returns a copy of a snapshot with a byte replaced.
+     *
+     * @param saved  The snapshot.
+     * @param offset The offset of the byte.
+     * @param value  The new value of the byte.
+     * @return The changed copy.
+     */
+    private static byte[] withByte(byte[] saved, int offset, int value) {
+        byte[] changed = saved.clone();
+        changed[offset] = (byte) value;
+        return changed;
+    }
+
+    /**
+     * Checks that restoring a game from the given bytes fails with an IOException.
+     *
+     * @param bytes The contents of the snapshot file.
+     * @throws IOException If the file cannot be written.
+     */
+    private void assertCorrupt(byte[] bytes) throws IOException {
+        Path path = Files.write(directory.resolve("corrupt.arks"), bytes);
+        assertThrows(IOException.class, () -> new Game(new ScriptedKeyboard()).restore(path));
+    }
+}
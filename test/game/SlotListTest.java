@@ -0,0 +1,189 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for SlotList, in particular adds and removes made while it is being iterated.
+ */
+class SlotListTest {
+
+    /**
+     * Items keep their slots, freed slots are reused, and items are told apart by identity.
+     */
+    @Test
+    void slotsAreKeptAndReused() {
+        SlotList<String> list = new SlotList<>();
+        String a = "a";
+        String b = "b";
+        String otherA = new String(a);
+        assertEquals(0, list.add(a));
+        assertEquals(1, list.add(b));
+        assertEquals(2, list.add(otherA));
+        assertEquals(0, list.add(a));
+        assertEquals(3, list.size());
+
+        assertEquals(1, list.remove(b));
+        assertEquals(-1, list.remove(b));
+        assertNull(list.get(1));
+        assertEquals(-1, list.slotOf(b));
+        assertEquals(1, list.add("c"));
+        assertEquals(3, list.slotCount());
+        assertEquals(3, list.size());
+    }
+
+    /**
+     * An empty list, and one whose items were all removed, is iterated without visiting anything.
+     */
+    @Test
+    void emptyListVisitsNothing() {
+        SlotList<String> list = new SlotList<>();
+        List<String> visited = new ArrayList<>();
+        list.forEach(visited::add);
+        list.remove(list.get(list.add("a")));
+        list.forEach(visited::add);
+        assertEquals(List.of(), visited);
+        assertEquals(0, list.size());
+    }
+
+    /**
+     * Items added during an iteration are not visited by it, items removed during it still are, and both
+     * changes are made once the iteration ends.
+     */
+    @Test
+    void changesDuringIterationAreMadeAfterwards() {
+        SlotList<String> list = listOf("a", "b", "c");
+        String b = list.get(1);
+        String d = "d";
+        List<String> visited = new ArrayList<>();
+        list.forEach(item -> {
+            visited.add(item);
+            if (item.equals("a")) {
+                assertEquals(-1, list.remove(b));
+                assertEquals(-1, list.add(d));
+                assertEquals(3, list.size());
+            }
+        });
+
+        assertEquals(List.of("a", "b", "c"), visited);
+        assertEquals(3, list.size());
+        assertEquals(-1, list.slotOf(b));
+        assertSame(d, list.get(1));
+    }
+
+    /**
+     * An item added and removed during the same iteration is not in the list afterwards, and one removed and
+     * added again keeps its slot.
+     */
+    @Test
+    void changesDuringIterationAreMadeInOrder() {
+        SlotList<String> list = listOf("a", "b");
+        String added = "added";
+        String b = list.get(1);
+        list.forEach(item -> {
+            if (item.equals("a")) {
+                list.add(added);
+                list.remove(added);
+                list.remove(b);
+                list.add(b);
+            }
+        });
+
+        assertEquals(-1, list.slotOf(added));
+        assertEquals(1, list.slotOf(b));
+        assertEquals(2, list.size());
+    }
+
+    /**
+     * Changes made during nested iterations wait for the outermost iteration to end.
+     */
+    @Test
+    void nestedIterationsApplyChangesAtTheOutermostEnd() {
+        SlotList<String> list = listOf("a", "b");
+        int[] visits = new int[1];
+        list.forEach(outer -> list.forEach(inner -> {
+            visits[0]++;
+            list.add(outer + inner);
+        }));
+
+        assertEquals(4, visits[0]);
+        assertEquals(6, list.size());
+    }
+
+    /**
+     * Changes buffered by an iteration that throws are still made.
+     */
+    @Test
+    void changesAreMadeWhenTheActionThrows() {
+        SlotList<String> list = listOf("a");
+        String b = "b";
+        assertThrows(IllegalStateException.class, () -> list.forEach(item -> {
+            list.add(b);
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(1, list.slotOf(b));
+        list.forEach(item -> list.remove(item));
+        assertEquals(0, list.size());
+    }
+
+    /**
+     * Slot listeners are told about every change with its slot, including the changes buffered during an
+     * iteration, once they are made.
+     */
+    @Test
+    void slotListenersSeeBufferedChanges() {
+        SlotList<String> list = new SlotList<>();
+        List<String> events = new ArrayList<>();
+        list.setSlotListeners((item, slot) -> events.add("+" + item + slot),
+                (item, slot) -> events.add("-" + item + slot));
+        String a = "a";
+        list.add(a);
+        list.forEach(item -> {
+            list.add("b");
+            list.remove(a);
+            assertEquals(List.of("+a0"), events);
+        });
+        list.add("c");
+
+        assertEquals(List.of("+a0", "+b1", "-a0", "+c0"), events);
+    }
+
+    /**
+     * Making room for more items keeps the items and their slots.
+     */
+    @Test
+    void ensureCapacityKeepsTheItems() {
+        SlotList<String> list = listOf("a", "b", "c");
+        String b = list.get(1);
+        list.ensureCapacity(1000);
+        assertSame(b, list.get(1));
+        assertEquals(1, list.slotOf(b));
+        for (int i = 0; i < 997; i++) {
+            list.add("item " + i);
+        }
+        assertEquals(1000, list.slotCount());
+        assertEquals(1000, list.size());
+    }
+
+    /**
+     * Returns a list holding the given items in their order.
+     *
+     * @param items The items.
+     * @return The list.
+     */
+    private static SlotList<String> listOf(String... items) {
+        SlotList<String> list = new SlotList<>();
+        for (String item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+}
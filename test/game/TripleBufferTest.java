@@ -0,0 +1,106 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for TripleBuffer, which must only ever hand the consumer whole frames that the producer is done with.
+ */
+class TripleBufferTest {
+    private static final int SLOTS = 256;
+    private static final int FRAMES = 200000;
+
+    /**
+     * The consumer gets nothing until a frame is published, then the newest published frame once, and never the
+     * buffer the producer is filling.
+     */
+    @Test
+    void consumerGetsTheNewestPublishedFrameOnce() {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+        assertNull(buffer.take());
+
+        buffer.getBack()[0] = 1;
+        long[] back = buffer.publish();
+        assertNotSame(back, buffer.take());
+        assertNull(buffer.take());
+
+        buffer.getBack()[0] = 2;
+        buffer.publish();
+        buffer.getBack()[0] = 3;
+        long[] filling = buffer.publish();
+        long[] front = buffer.take();
+        assertEquals(3, front[0]);
+        assertNotSame(filling, front);
+        assertSame(filling, buffer.getBack());
+        assertNull(buffer.take());
+
+        buffer.getBack()[0] = 4;
+        buffer.publish();
+        assertNotSame(front, buffer.getBack());
+        assertEquals(4, buffer.take()[0]);
+    }
+
+    /**
+     * A producer thread fills every slot of a frame with the frame's number and publishes it, while the consumer
+     * takes frames as fast as it can. Every frame the consumer gets is whole, newer than the one before, and stays
+     * unchanged while the consumer holds it, so the producer never writes into it. The last frame is not lost.
+     *
+     * @throws InterruptedException If the test is interrupted while waiting for the producer.
+     */
+    @Test
+    void consumerOnlySeesWholeFramesUnderContention() throws InterruptedException {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[SLOTS]);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (long frame = 1; frame <= FRAMES; frame++) {
+                Arrays.fill(buffer.getBack(), frame);
+                buffer.publish();
+            }
+            done.set(true);
+        }, "producer");
+        producer.start();
+
+        long last = 0;
+        int taken = 0;
+        while (!done.get() || last < FRAMES) {
+            long[] frame = buffer.take();
+            if (frame == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long number = frame[0];
+            assertTrue(number > last, "frame " + number + " after " + last);
+            assertWhole(frame, number);
+            // Hold the frame for a moment and check that nothing wrote into it
+            for (int spin = 0; spin < 100; spin++) {
+                Thread.onSpinWait();
+            }
+            assertWhole(frame, number);
+            last = number;
+            taken++;
+        }
+        producer.join();
+        assertEquals(FRAMES, last);
+        assertTrue(taken > 1);
+    }
+
+    /**
+     * Checks that every slot of a frame holds the frame's number.
+     *
+     * @param frame  The frame.
+     * @param number The number of the frame.
+     */
+    private static void assertWhole(long[] frame, long number) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            assertEquals(number, frame[slot], "slot " + slot);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for RayCast, the slab test of a ray or a swept circle against an axis-aligned box.
+ */
+class RayCastTest {
+    private static final double MIN_X = 10;
+    private static final double MIN_Y = 20;
+    private static final double MAX_X = 30;
+    private static final double MAX_Y = 30;
+
+    /**
+     * A ray from outside the box enters it through the face it reaches last, and a ray from inside leaves it
+     * through the face it reaches first.
+     */
+    @Test
+    void castEntersAndLeavesThroughTheRightFace() {
+        RayHit hit = new RayHit();
+        assertTrue(cast(0, 25, 20, 0, hit));
+        assertHit(hit, 0.5, -1, 0);
+
+        hit.reset();
+        assertTrue(cast(20, 0, 0, 40, hit));
+        assertHit(hit, 0.5, 0, -1);
+
+        hit.reset();
+        assertTrue(cast(20, 25, 20, 0, hit));
+        assertHit(hit, 0.5, 1, 0);
+    }
+
+    /**
+     * A ray through a corner of the box is reported with the normals of both faces of the corner.
+     */
+    @Test
+    void castThroughACornerHasBothNormals() {
+        RayHit hit = new RayHit();
+        assertTrue(cast(0, 10, 20, 20, hit));
+        assertHit(hit, 0.5, -1, -1);
+    }
+
+    /**
+     * A ray that grazes the box, running along one of its edges, hits it where it reaches its other face.
+     */
+    @Test
+    void castAlongAnEdgeIsAHit() {
+        RayHit hit = new RayHit();
+        assertTrue(cast(0, MIN_Y, 20, 0, hit));
+        assertHit(hit, 0.5, -1, 0);
+
+        hit.reset();
+        assertTrue(cast(MAX_X, 40, 0, -20, hit));
+        assertHit(hit, 0.5, 0, 1);
+    }
+
+    /**
+     * Rays that pass the box, stop short of it, point away from it or run parallel to it outside its slab
+     * miss, and a ray that ends on the box hits it at t = 1.
+     */
+    @Test
+    void castMisses() {
+        RayHit hit = new RayHit();
+        assertFalse(cast(0, 0, 40, 10, hit));
+        assertFalse(cast(0, 25, 9, 0, hit));
+        assertFalse(cast(0, 25, -20, 0, hit));
+        assertFalse(cast(0, 19, 100, 0, hit));
+        assertFalse(cast(9, 0, 0, 100, hit));
+        assertFalse(cast(0, 0, 0, 0, hit));
+        assertFalse(hit.isHit());
+
+        assertTrue(cast(0, 25, 10, 0, hit));
+        assertHit(hit, 1, -1, 0);
+    }
+
+    /**
+     * A hit is only stored if it comes before the hit already held, or before the given limit, so a limit just
+     * past a hit also accepts a hit at the same time.
+     */
+    @Test
+    void closerHitsWin() {
+        RayHit hit = new RayHit();
+        hit.set(0.4, 0, 1);
+        assertFalse(cast(0, 25, 20, 0, hit));
+        hit.set(0.5, 0, 1);
+        assertFalse(cast(0, 25, 20, 0, hit));
+        assertTrue(RayCast.cast(0, 25, 20, 0, MIN_X, MIN_Y, MAX_X, MAX_Y, hit, Math.nextUp(0.5)));
+        assertHit(hit, 0.5, -1, 0);
+    }
+
+    /**
+     * A circle swept towards the box, tested against the box grown by its radius, hits it at its time of
+     * impact, and one leaving the box is not hit.
+     */
+    @Test
+    void sweepFindsTheTimeOfImpact() {
+        double radius = 4;
+        RayHit hit = new RayHit();
+        assertTrue(sweep(0, 25, 20, 0, radius, hit));
+        assertHit(hit, 0.3, -1, 0);
+
+        hit.reset();
+        assertTrue(sweep(MAX_X + 3, 50, 0, -20, radius, hit));
+        assertHit(hit, 0.8, 0, 1);
+
+        hit.reset();
+        assertFalse(sweep(MAX_X + radius, 25, 10, 0, radius, hit));
+        assertFalse(sweep(MAX_X + radius + 1, 50, 0, -20, radius, hit));
+        assertFalse(hit.isHit());
+    }
+
+    /**
+     * A circle that starts inside the grown box is pushed out at once through the face it is closest to,
+     * unless it already moves away from that face.
+     */
+    @Test
+    void sweepFromInsidePushesOut() {
+        double radius = 4;
+        RayHit hit = new RayHit();
+        assertTrue(sweep(MIN_X - 2, 25, 5, 1, radius, hit));
+        assertHit(hit, 0, -1, 0);
+
+        hit.reset();
+        assertTrue(sweep(20, MAX_Y + 1, 1, -5, radius, hit));
+        assertHit(hit, 0, 0, 1);
+
+        hit.reset();
+        assertFalse(sweep(MIN_X - 2, 25, -5, 0, radius, hit));
+        assertFalse(hit.isHit());
+    }
+
+    /**
+     * The entry and exit times clip a ray to the box, and a ray missing the box never enters it.
+     */
+    @Test
+    void entryAndExitTimesClipTheRay() {
+        assertEquals(0.5, RayCast.entryTime(0, 25, 20, 0, MIN_X, MIN_Y, MAX_X, MAX_Y));
+        assertEquals(1, RayCast.exitTime(0, 25, 20, 0, MIN_X, MIN_Y, MAX_X, MAX_Y));
+        assertEquals(0.75, RayCast.exitTime(0, 25, 40, 0, MIN_X, MIN_Y, MAX_X, MAX_Y));
+        assertEquals(0, RayCast.entryTime(20, 25, 40, 0, MIN_X, MIN_Y, MAX_X, MAX_Y));
+        assertEquals(Double.POSITIVE_INFINITY, RayCast.entryTime(0, 0, 40, 10, MIN_X, MIN_Y, MAX_X, MAX_Y));
+        assertEquals(Double.POSITIVE_INFINITY, RayCast.entryTime(0, 25, 5, 0, MIN_X, MIN_Y, MAX_X, MAX_Y));
+    }
+
+    /**
+     * A point on a corner of the box is on both edges of the corner, and a point near an edge is on it within
+     * the tolerance.
+     */
+    @Test
+    void edgesAtFindsEveryEdgeOfAPoint() {
+        assertEquals(RayCast.LEFT | RayCast.TOP, RayCast.edgesAt(MIN_X, MIN_Y, MIN_X, MIN_Y, MAX_X, MAX_Y, 1e-10));
+        assertEquals(RayCast.RIGHT, RayCast.edgesAt(MAX_X + 1e-11, 25, MIN_X, MIN_Y, MAX_X, MAX_Y, 1e-10));
+        assertEquals(RayCast.BOTTOM, RayCast.edgesAt(20, MAX_Y, MIN_X, MIN_Y, MAX_X, MAX_Y, 1e-10));
+        assertEquals(0, RayCast.edgesAt(20, 25, MIN_X, MIN_Y, MAX_X, MAX_Y, 1e-10));
+        assertEquals(0, RayCast.edgesAt(MAX_X, MAX_Y + 1, MIN_X, MIN_Y, MAX_X, MAX_Y, 1e-10));
+    }
+
+    /**
+     * For random rays, the slab test finds the same first point on the border of a box as intersecting the ray
+     * with each edge of the rectangle.
+     */
+    @Test
+    void castMatchesTheIntersectionOfTheEdges() {
+        Random random = new Random(3);
+        Rectangle rect = new Rectangle(new Point(MIN_X, MIN_Y), MAX_X - MIN_X, MAX_Y - MIN_Y);
+        for (int i = 0; i < 10000; i++) {
+            double startX = random.nextDouble() * 60 - 10;
+            double startY = random.nextDouble() * 60 - 10;
+            double dx = (random.nextDouble() - 0.5) * 80;
+            double dy = (random.nextDouble() - 0.5) * 80;
+            Point expected = new Line(startX, startY, startX + dx, startY + dy).closestIntersectionToStartOfLine(rect);
+            RayHit hit = new RayHit();
+            if (expected == null) {
+                assertFalse(cast(startX, startY, dx, dy, hit), "ray " + i);
+            } else {
+                assertTrue(cast(startX, startY, dx, dy, hit), "ray " + i);
+                assertEquals(expected.getX(), startX + dx * hit.getT(), 1e-9, "ray " + i);
+                assertEquals(expected.getY(), startY + dy * hit.getT(), 1e-9, "ray " + i);
+            }
+        }
+        assertNotNull(new Line(0, 25, 20, 25).closestIntersectionToStartOfLine(rect));
+        assertNull(new Line(0, 0, 5, 5).closestIntersectionToStartOfLine(rect));
+    }
+
+    /**
+     * Casts a ray against the box of the tests.
+     *
+     * @param startX The x-coordinate of the start of the ray.
+     * @param startY The y-coordinate of the start of the ray.
+     * @param dx     The horizontal extent of the ray.
+     * @param dy     The vertical extent of the ray.
+     * @param hit    The closest hit found so far.
+     * @return true if the box is hit closer than the previous hit, false otherwise.
+     */
+    private static boolean cast(double startX, double startY, double dx, double dy, RayHit hit) {
+        return RayCast.cast(startX, startY, dx, dy, MIN_X, MIN_Y, MAX_X, MAX_Y, hit);
+    }
+
+    /**
+     * Sweeps a circle against the box of the tests.
+     *
+     * @param startX The x-coordinate of the center of the circle at the start of the move.
+     * @param startY The y-coordinate of the center of the circle at the start of the move.
+     * @param dx     The horizontal extent of the move.
+     * @param dy     The vertical extent of the move.
+     * @param radius The radius of the circle.
+     * @param hit    The closest hit found so far.
+     * @return true if the box is hit closer than the previous hit, false otherwise.
+     */
+    private static boolean sweep(double startX, double startY, double dx, double dy, double radius, RayHit hit) {
+        return RayCast.sweep(startX, startY, dx, dy, MIN_X - radius, MIN_Y - radius, MAX_X + radius,
+                MAX_Y + radius, hit);
+    }
+
+    /**
+     * Checks the time and the normal of a hit.
+     *
+     * @param hit     The hit.
+     * @param t       The expected parameter along the ray.
+     * @param normalX The expected horizontal component of the normal.
+     * @param normalY The expected vertical component of the normal.
+     */
+    private static void assertHit(RayHit hit, double t, double normalX, double normalY) {
+        assertEquals(t, hit.getT(), 1e-12);
+        assertEquals(normalX, hit.getNormalX());
+        assertEquals(normalY, hit.getNormalY());
+    }
+}
@@ -0,0 +1,149 @@
+package graphics;
+
+import game.GameEnvironment;
+import geometry.Point;
+import geometry.Rectangle;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for BallKernel, the scalar kernel that moves the balls of a BallSystem that are clear of every collidable.
+ */
+class BallKernelTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int BALLS = 2000;
+    private static final int STEPS = 300;
+
+    /**
+     * A ball clear of every box moves by its velocity, and balls that would touch a box, cross an edge of the game
+     * area, were removed or lie outside the range are left where they are.
+     */
+    @Test
+    void onlyClearBallsAreMoved() {
+        double[][] state = new double[6][7];
+        int[] radius = new int[7];
+        boolean[] removed = new boolean[7];
+        // A box at x 100-200, y 100-150
+        double[][] boxes = {{100}, {100}, {200}, {150}};
+        ball(state, radius, 0, 400, 300, 3, -2, 5);
+        ball(state, radius, 1, 150, 80, 0, 40, 5);
+        ball(state, radius, 2, 150, 96, 0, 0.5, 5);
+        ball(state, radius, 3, 6, 300, -4, 0, 5);
+        ball(state, radius, 4, 400, 300, 3, -2, 5);
+        removed[4] = true;
+        ball(state, radius, 5, 400, 6, 0, -4, 5);
+        ball(state, radius, 6, 400, 300, 3, -2, 5);
+        boolean[] moved = new boolean[7];
+
+        new BallKernel().moveClear(state, radius, removed, boxes, 1, WIDTH, 0.5, 0, 6, moved);
+        assertArrayEquals(new boolean[] {true, false, false, false, false, false, false}, moved);
+        assertEquals(401.5, state[BallKernel.X][0]);
+        assertEquals(299, state[BallKernel.Y][0]);
+        assertEquals(400, state[BallKernel.PREVIOUS_X][0]);
+        assertEquals(300, state[BallKernel.PREVIOUS_Y][0]);
+        for (int i = 1; i < 7; i++) {
+            assertEquals(i == 3 ? 6 : i == 1 || i == 2 ? 150 : 400, state[BallKernel.X][i], "ball " + i);
+            assertEquals(0, state[BallKernel.PREVIOUS_X][i], "ball " + i);
+        }
+    }
+
+    /**
+     * A ball system that moves clear balls through the kernel plays the same steps as one that sweeps every ball
+     * through the game environment.
+     */
+    @Test
+    void batchedStepsMatchSweptSteps() {
+        List<String> sweptHits = new ArrayList<>();
+        BallSystem swept = run(false, sweptHits);
+        List<String> batchedHits = new ArrayList<>();
+        BallSystem batched = run(true, batchedHits);
+
+        assertTrue(sweptHits.size() > BALLS);
+        assertEquals(sweptHits.size(), batchedHits.size());
+        for (int i = 0; i < sweptHits.size(); i++) {
+            assertEquals(sweptHits.get(i), batchedHits.get(i), "hit " + i);
+        }
+        assertEquals(swept.size(), batched.size());
+        for (int i = 0; i < swept.size(); i++) {
+            assertEquals(swept.getBall(i).getCenter().getX(), batched.getBall(i).getCenter().getX(), "ball " + i);
+            assertEquals(swept.getBall(i).getCenter().getY(), batched.getBall(i).getCenter().getY(), "ball " + i);
+        }
+    }
+
+    /**
+     * Sets the position and velocity of one ball in the state arrays.
+     *
+     * @param state  The state arrays.
+     * @param radius The radii of the balls.
+     * @param i      The index of the ball.
+     * @param x      The x-coordinate of the center.
+     * @param y      The y-coordinate of the center.
+     * @param dx     The horizontal velocity.
+     * @param dy     The vertical velocity.
+     * @param r      The radius.
+     */
+    private static void ball(double[][] state, int[] radius, int i, double x, double y, double dx, double dy, int r) {
+        state[BallKernel.X][i] = x;
+        state[BallKernel.Y][i] = y;
+        state[BallKernel.DX][i] = dx;
+        state[BallKernel.DY][i] = dy;
+        radius[i] = r;
+    }
+
+    /**
+     * Moves a seeded set of balls inside walls and around a field of blocks for a number of steps.
+     *
+     * @param batching Whether clear balls are moved in batches.
+     * @param hits     The list every hit is recorded in, as the index of the block and the center of the ball.
+     * @return The ball system after the last step.
+     */
+    private static BallSystem run(boolean batching, List<String> hits) {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(block(0, 0, WIDTH, 20));
+        environment.addCollidable(block(0, HEIGHT - 20, WIDTH, 20));
+        environment.addCollidable(block(0, 20, 20, HEIGHT - 40));
+        environment.addCollidable(block(WIDTH - 20, 20, 20, HEIGHT - 40));
+        for (int i = 0; i < 30; i++) {
+            Block block = block(100 + 60 * (i % 10), 200 + 40 * (i / 10), 50, 20);
+            String name = "block " + i + " hit by ";
+            block.addHitListener((beingHit, hitter) -> hits.add(name + hitter.getCenter().getX() + ","
+                    + hitter.getCenter().getY()));
+            environment.addCollidable(block);
+        }
+
+        BallSystem system = new BallSystem(environment, WIDTH, HEIGHT);
+        system.setBatching(batching);
+        Random random = new Random(11);
+        for (int i = 0; i < BALLS; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            system.addBall(30 + random.nextDouble() * (WIDTH - 60), 30 + random.nextDouble() * 150, 3, Color.WHITE,
+                    4 * Math.cos(angle), 4 * Math.sin(angle));
+        }
+        for (int step = 0; step < STEPS; step++) {
+            system.timePassed(step % 3 == 0 ? 0.5 : 1);
+        }
+        return system;
+    }
+
+    /**
+     * Returns a block that is not a game block nor a death region.
+     *
+     * @param left   The x-coordinate of the left edge of the block.
+     * @param top    The y-coordinate of the top edge of the block.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @return The block.
+     */
+    private static Block block(double left, double top, double width, double height) {
+        return new Block(new Rectangle(new Point(left, top), width, height), Color.BLUE, false, false);
+    }
+}
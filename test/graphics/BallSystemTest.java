@@ -0,0 +1,298 @@
+package graphics;
+
+import game.Game;
+import game.GameEnvironment;
+import game.ScriptedKeyboard;
+import geometry.Point;
+import geometry.Rectangle;
+import geometry.Velocity;
+import listeners.Counter;
+import listeners.ScoreTrackingListener;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for BallSystem and the handles that present its balls as plain Balls.
+ */
+class BallSystemTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int MANY_BALLS = 3500;
+    private static final int STEPS = 300;
+
+    /**
+     * A handle whose ball was dropped keeps the last state of the ball, and adding it to the game puts the ball
+     * back into the system, where the handle follows it again.
+     */
+    @Test
+    void droppedHandleCanBeAddedBack() {
+        Game game = new Game(new ScriptedKeyboard());
+        BallSystem system = new BallSystem(new GameEnvironment(), 800, 600);
+        system.addBall(100, 200, 4, Color.RED, 1, -2);
+        system.addBall(300, 200, 5, Color.GREEN, -1, 2);
+        Ball handle = system.getBall(0);
+
+        handle.removeFromGame(game);
+        system.timePassed();
+        assertEquals(1, system.size());
+        assertEquals(100, handle.getCenter().getX());
+        assertEquals(200, handle.getCenter().getY());
+        assertEquals(4, handle.getSize());
+        assertEquals(Color.RED, handle.getColor());
+        assertEquals(-2, handle.getVelocity().getDoubley());
+
+        handle.addToGame(game);
+        assertEquals(2, system.size());
+        assertSame(handle, system.getBall(1));
+        system.timePassed();
+        assertEquals(101, system.getBall(1).getCenter().getX());
+        assertEquals(198, handle.getCenter().getY());
+    }
+
+    /**
+     * A ball removed and added back within the same step is not dropped.
+     */
+    @Test
+    void ballRemovedAndAddedBackIsKept() {
+        Game game = new Game(new ScriptedKeyboard());
+        BallSystem system = new BallSystem(new GameEnvironment(), 800, 600);
+        system.addBall(100, 200, 4, Color.RED, 1, 0);
+        Ball handle = system.getBall(0);
+
+        handle.removeFromGame(game);
+        handle.addToGame(game);
+        handle.addToGame(game);
+        system.timePassed();
+        assertEquals(1, system.size());
+        assertSame(handle, system.getBall(0));
+        assertEquals(101, handle.getCenter().getX());
+    }
+
+    /**
+     * Balls spread over several chunks and moved on a pool end up where the same balls moved on the calling
+     * thread do, after hitting the same blocks in the same order and scoring the same points.
+     */
+    @Test
+    void parallelRunMatchesSequentialRun() {
+        List<String> sequentialHits = new ArrayList<>();
+        Counter sequentialScore = new Counter();
+        BallSystem sequential = run(null, sequentialHits, sequentialScore);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<String> parallelHits = new ArrayList<>();
+        Counter parallelScore = new Counter();
+        BallSystem parallel;
+        try {
+            parallel = run(pool, parallelHits, parallelScore);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(sequentialHits.size() > MANY_BALLS);
+        assertEquals(sequentialHits.size(), parallelHits.size());
+        for (int i = 0; i < sequentialHits.size(); i++) {
+            assertEquals(sequentialHits.get(i), parallelHits.get(i), "hit " + i);
+        }
+        assertEquals(sequentialScore.getValue(), parallelScore.getValue());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Ball expected = sequential.getBall(i);
+            Ball actual = parallel.getBall(i);
+            assertEquals(expected.getCenter().getX(), actual.getCenter().getX(), "x of ball " + i);
+            assertEquals(expected.getCenter().getY(), actual.getCenter().getY(), "y of ball " + i);
+            assertEquals(expected.getVelocity().getDoublex(), actual.getVelocity().getDoublex(), "dx of ball " + i);
+            assertEquals(expected.getVelocity().getDoubley(), actual.getVelocity().getDoubley(), "dy of ball " + i);
+        }
+    }
+
+    /**
+     * Two balls of the same size that meet at an angle exchange the components of their velocities along the line
+     * between their centers, which keeps their momentum and their kinetic energy.
+     */
+    @Test
+    void collisionOfEqualBallsConservesMomentumAndEnergy() {
+        BallSystem system = new BallSystem(new GameEnvironment(), WIDTH, HEIGHT);
+        system.setBallCollisions(true);
+        system.addBall(100, 300, 5, Color.RED, 3, 1);
+        system.addBall(107, 304, 5, Color.GREEN, -1, 0);
+        system.timePassed();
+
+        Velocity first = system.getBall(0).getVelocity();
+        Velocity second = system.getBall(1).getVelocity();
+        assertNotEquals(3, first.getDoublex());
+        assertEquals(2, first.getDoublex() + second.getDoublex(), 1e-12);
+        assertEquals(1, first.getDoubley() + second.getDoubley(), 1e-12);
+        assertEquals(3 * 3 + 1 * 1 + 1 * 1, energy(first) + energy(second), 1e-12);
+    }
+
+    /**
+     * On a field of pairs of balls of different sizes, some overlapping and some not, the sort and sweep bounces
+     * exactly the pairs that testing every pair of balls finds overlapping and moving towards each other.
+     */
+    @Test
+    void sweepFindsThePairsTestingEveryPairFinds() {
+        Random random = new Random(5);
+        List<double[]> balls = new ArrayList<>();
+        for (int cell = 0; cell < 12 * 9; cell++) {
+            double centerX = 60 + 60 * (cell % 12) + random.nextDouble() * 2;
+            double centerY = 60 + 60 * (cell / 12) + random.nextDouble() * 2;
+            int firstRadius = 2 + random.nextInt(5);
+            int secondRadius = 2 + random.nextInt(5);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = (0.5 + random.nextDouble()) * (firstRadius + secondRadius);
+            balls.add(new double[] {centerX, centerY, firstRadius, random.nextDouble() * 2 - 1,
+                    random.nextDouble() * 2 - 1});
+            balls.add(new double[] {centerX + distance * Math.cos(angle), centerY + distance * Math.sin(angle),
+                    secondRadius, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1});
+        }
+        Collections.shuffle(balls, random);
+
+        BallSystem system = new BallSystem(new GameEnvironment(), WIDTH, HEIGHT);
+        system.setBallCollisions(true);
+        for (double[] ball : balls) {
+            system.addBall(ball[0], ball[1], (int) ball[2], Color.WHITE, ball[3], ball[4]);
+        }
+        system.timePassed();
+
+        int collisions = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            for (int j = i + 1; j < balls.size(); j++) {
+                if (bounce(balls.get(i), balls.get(j))) {
+                    collisions++;
+                }
+            }
+        }
+        assertTrue(collisions > 10);
+        assertTrue(collisions < balls.size() / 2);
+        for (int i = 0; i < balls.size(); i++) {
+            Velocity velocity = system.getBall(i).getVelocity();
+            assertEquals(balls.get(i)[3], velocity.getDoublex(), 1e-12, "ball " + i);
+            assertEquals(balls.get(i)[4], velocity.getDoubley(), 1e-12, "ball " + i);
+        }
+    }
+
+    /**
+     * Balls that do not touch, and balls that overlap while moving apart, keep their velocities.
+     */
+    @Test
+    void ballsThatDoNotCollideAreLeftAlone() {
+        BallSystem system = new BallSystem(new GameEnvironment(), WIDTH, HEIGHT);
+        system.setBallCollisions(true);
+        system.addBall(100, 300, 5, Color.RED, 1, 0);
+        system.addBall(110.001, 300, 5, Color.RED, 1, 0);
+        system.addBall(200, 300, 5, Color.GREEN, -1, 0.5);
+        system.addBall(204, 303, 5, Color.GREEN, 1, 0.5);
+        system.addBall(300, 300, 8, Color.BLUE, 0, 2);
+        system.timePassed();
+
+        double[][] velocities = {{1, 0}, {1, 0}, {-1, 0.5}, {1, 0.5}, {0, 2}};
+        for (int i = 0; i < velocities.length; i++) {
+            assertEquals(velocities[i][0], system.getBall(i).getVelocity().getDoublex(), "ball " + i);
+            assertEquals(velocities[i][1], system.getBall(i).getVelocity().getDoubley(), "ball " + i);
+        }
+    }
+
+    /**
+     * Moves a seeded set of balls inside walls and around a field of blocks for a number of steps.
+     *
+     * @param pool  The pool to move the balls on, or null to move them on the calling thread.
+     * @param hits  The list every hit is recorded in, as the index of the block and the center of the ball.
+     * @param score The counter the hits on the blocks are scored in.
+     * @return The ball system after the last step.
+     */
+    private static BallSystem run(ForkJoinPool pool, List<String> hits, Counter score) {
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(block(0, 0, WIDTH, 20));
+        environment.addCollidable(block(0, HEIGHT - 20, WIDTH, 20));
+        environment.addCollidable(block(0, 20, 20, HEIGHT - 40));
+        environment.addCollidable(block(WIDTH - 20, 20, 20, HEIGHT - 40));
+        ScoreTrackingListener scoring = new ScoreTrackingListener(score);
+        for (int i = 0; i < 60; i++) {
+            Block block = block(100 + 60 * (i % 10), 150 + 40 * (i / 10), 50, 20);
+            String name = "block " + i + " hit by ";
+            block.addHitListener((beingHit, hitter) -> hits.add(name + hitter.getCenter().getX() + ","
+                    + hitter.getCenter().getY()));
+            block.addHitListener(scoring);
+            environment.addCollidable(block);
+        }
+
+        BallSystem system = new BallSystem(environment, WIDTH, HEIGHT);
+        system.setPool(pool);
+        Random random = new Random(7);
+        for (int i = 0; i < MANY_BALLS; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            system.addBall(30 + random.nextDouble() * (WIDTH - 60), 30 + random.nextDouble() * 100, 3, Color.WHITE,
+                    5 * Math.cos(angle), 5 * Math.sin(angle));
+        }
+        for (int step = 0; step < STEPS; step++) {
+            system.timePassed();
+        }
+        return system;
+    }
+
+    /**
+     * Returns a block that is not a game block nor a death region.
+     *
+     * @param left   The x-coordinate of the left edge of the block.
+     * @param top    The y-coordinate of the top edge of the block.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @return The block.
+     */
+    private static Block block(double left, double top, double width, double height) {
+        return new Block(new Rectangle(new Point(left, top), width, height), Color.BLUE, false, false);
+    }
+
+    /**
+     * Returns twice the kinetic energy of a ball of unit mass.
+     *
+     * @param velocity The velocity of the ball.
+     * @return The squared speed.
+     */
+    private static double energy(Velocity velocity) {
+        return velocity.getDoublex() * velocity.getDoublex() + velocity.getDoubley() * velocity.getDoubley();
+    }
+
+    /**
+     * Moves two balls by one step of their velocities and bounces them off each other if they then overlap and
+     * move towards each other, as an elastic collision with masses proportional to their areas.
+     *
+     * @param first  The first ball, as x, y, radius, dx and dy; its position is left where it started.
+     * @param second The second ball, in the same form.
+     * @return true if the balls bounced.
+     */
+    private static boolean bounce(double[] first, double[] second) {
+        double offsetX = (second[0] + second[3]) - (first[0] + first[3]);
+        double offsetY = (second[1] + second[4]) - (first[1] + first[4]);
+        double reach = first[2] + second[2];
+        double distance = Math.sqrt(offsetX * offsetX + offsetY * offsetY);
+        if (distance >= reach) {
+            return false;
+        }
+        double normalX = offsetX / distance;
+        double normalY = offsetY / distance;
+        double approach = (second[3] - first[3]) * normalX + (second[4] - first[4]) * normalY;
+        if (approach >= 0) {
+            return false;
+        }
+        double firstMass = first[2] * first[2];
+        double secondMass = second[2] * second[2];
+        double impulse = 2 * approach / (firstMass + secondMass);
+        first[3] += impulse * secondMass * normalX;
+        first[4] += impulse * secondMass * normalY;
+        second[3] -= impulse * firstMass * normalX;
+        second[4] -= impulse * firstMass * normalY;
+        return true;
+    }
+}
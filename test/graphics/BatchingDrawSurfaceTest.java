@@ -0,0 +1,114 @@
+package graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for BatchingDrawSurface.
+ */
+class BatchingDrawSurfaceTest {
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    /**
+     * A frame with more colors than the palette used to hold is recorded in full while the canvas is a null
+     * surface, and every command reaches the surface the frame is flushed to.
+     */
+    @Test
+    void framesWithManyColorsAreReplayedInFull() {
+        BatchingDrawSurface frame = new BatchingDrawSurface();
+        frame.begin(new NullDrawSurface(WIDTH, HEIGHT));
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame.setColor(new Color(i + 1));
+            frame.fillRectangle(i % WIDTH, i / WIDTH, 1, 1);
+        }
+        assertEquals(WIDTH * HEIGHT, frame.size());
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        frame.flushTo(new ImageDrawSurface(image));
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            assertEquals(i + 1, image.getRGB(i % WIDTH, i / WIDTH) & 0xFFFFFF, "pixel " + i);
+        }
+        assertEquals(0, frame.size());
+    }
+
+    /**
+     * A fill recorded after an outline and a fill it overlaps is drawn on top of both, and an outline recorded
+     * before a fill stays visible only where the fill does not cover it.
+     */
+    @Test
+    void laterCommandsStayOnTopOfOverlappingOnes() {
+        BatchingDrawSurface frame = new BatchingDrawSurface();
+        frame.begin(new NullDrawSurface(WIDTH, HEIGHT));
+        frame.setColor(Color.RED);
+        frame.drawRectangle(10, 10, 20, 20);
+        frame.setColor(Color.GREEN);
+        frame.fillRectangle(10, 10, 20, 20);
+        frame.setColor(Color.BLUE);
+        frame.fillRectangle(50, 50, 10, 10);
+        frame.setColor(Color.GREEN);
+        frame.fillRectangle(55, 55, 10, 10);
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        frame.flushTo(new ImageDrawSurface(image));
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(10, 10));
+        assertEquals(Color.RED.getRGB(), image.getRGB(30, 30));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(52, 52));
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(57, 57));
+    }
+
+    /**
+     * Balls that do not overlap are replayed with one color change per fill color and one for all the outlines,
+     * and every outline still lands on top of its own fill.
+     */
+    @Test
+    void shapesThatDoNotOverlapAreBatchedByColor() {
+        BatchingDrawSurface frame = new BatchingDrawSurface();
+        frame.begin(new NullDrawSurface(WIDTH, HEIGHT));
+        for (int i = 0; i < 9; i++) {
+            frame.setColor(i % 2 == 0 ? Color.RED : Color.GREEN);
+            frame.fillCircle(8 + 32 * (i % 3), 8 + 32 * (i / 3), 3);
+            frame.setColor(Color.BLACK);
+            frame.drawCircle(8 + 32 * (i % 3), 8 + 32 * (i / 3), 3);
+        }
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        CountingDrawSurface surface = new CountingDrawSurface(image);
+        frame.flushTo(surface);
+        assertEquals(3, surface.colorChanges);
+        assertEquals(Color.RED.getRGB(), image.getRGB(8, 8));
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(40, 8));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(5, 8));
+    }
+
+    /**
+     * The CountingDrawSurface class draws into an image and counts the color changes it is asked for.
+     */
+    private static final class CountingDrawSurface extends ImageDrawSurface {
+        private int colorChanges;
+
+        /**
+         * Constructs a CountingDrawSurface that draws into the given image.
+         *
+         * @param image The image to draw into.
+         */
+        CountingDrawSurface(BufferedImage image) {
+            super(image);
+        }
+
+        /**
+         * Counts the color change and sets the color.
+         *
+         * @param c The color.
+         */
+        @Override
+        public void setColor(Color c) {
+            colorChanges++;
+            super.setColor(c);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package graphics;
+
+import game.BlockGrid;
+import game.GameEnvironment;
+import game.LevelReader;
+import game.LevelWriter;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import interfaces.Collidable;
+import listeners.ListenerGroup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for BlockTiles, the grid blocks of a level or a save state stored as one int per cell.
+ */
+class BlockTilesTest {
+    private static final int IMAGE_SIZE = 200;
+
+    private GameEnvironment environment;
+    private BlockGrid grid;
+    private BlockTiles tiles;
+    private int kind;
+
+    /**
+     * Creates an environment with a 10 x 10 grid of 20 x 20 cells and empty tiles over it, with one kind of
+     * game block and a palette of red and green.
+     */
+    @BeforeEach
+    void setUp() {
+        environment = new GameEnvironment();
+        grid = new BlockGrid(0, 0, 20, 20, 10, 10);
+        environment.setBlockGrid(grid);
+        tiles = new BlockTiles(grid, new Color[] {Color.RED, Color.GREEN});
+        kind = tiles.addKind(ListenerGroup.EMPTY, true, false);
+        grid.setTiles(tiles);
+    }
+
+    /**
+     * A tile is hit as a Block with the rectangle of its cell, and the same Block every time.
+     */
+    @Test
+    void tileIsHitAsOneBlock() {
+        assertTrue(tiles.put(55, 1, 3, kind));
+
+        Collidable hit = environment.closestHit(110, 190, 0, -100, new RayHit());
+        assertInstanceOf(Block.class, hit);
+        Block block = (Block) hit;
+        assertSame(block, environment.closestHit(115, 190, 0, -100, new RayHit()));
+        assertSameBounds(grid.getCellRectangle(55), block.getCollisionRectangle());
+        assertEquals(Color.GREEN, block.getColor());
+        assertEquals(3, block.getHitPoints());
+        assertTrue(block.isGameBlock());
+        assertTrue(environment.contains(block));
+        assertTrue(environment.isTile(block));
+        assertEquals(1, environment.size());
+        assertEquals(1, tiles.getGameBlockCount());
+    }
+
+    /**
+     * A removed tile leaves the environment, and adding its Block back stores it in the grid as an object.
+     */
+    @Test
+    void removedTileComesBackAsAnObject() {
+        tiles.put(55, 1, 3, kind);
+        Block block = (Block) environment.closestHit(110, 190, 0, -100, new RayHit());
+
+        environment.removeCollidable(block);
+        assertFalse(tiles.has(55));
+        assertFalse(environment.contains(block));
+        assertEquals(0, environment.size());
+        assertEquals(0, tiles.getGameBlockCount());
+        assertNull(environment.closestHit(110, 190, 0, -100, new RayHit()));
+
+        environment.addCollidable(block);
+        assertTrue(grid.contains(block));
+        assertFalse(environment.isTile(block));
+        assertSame(block, environment.closestHit(110, 190, 0, -100, new RayHit()));
+    }
+
+    /**
+     * A tile is refused for a cell that holds a tile or an object, and for a color, hit points or a kind that
+     * do not fit a tile.
+     */
+    @Test
+    void putRefusesTakenCellsAndUnpackableTiles() {
+        Block object = new Block(grid.getCellRectangle(0), Color.RED, true, false);
+        environment.addCollidable(object);
+
+        assertFalse(tiles.put(0, 0, 1, kind));
+        assertFalse(tiles.put(1, 2, 1, kind));
+        assertFalse(tiles.put(1, -1, 1, kind));
+        assertFalse(tiles.put(1, 0, 0, kind));
+        assertFalse(tiles.put(1, 0, BlockTiles.MAX_HIT_POINTS + 1, kind));
+        assertFalse(tiles.put(1, 0, 1, kind + 1));
+        assertTrue(tiles.put(1, 0, BlockTiles.MAX_HIT_POINTS, kind));
+        assertFalse(tiles.put(1, 0, 1, kind));
+        assertEquals(1, tiles.size());
+        assertEquals(2, environment.size());
+    }
+
+    /**
+     * The grid blocks of a level are read into tiles, and a block whose cell is already taken is built as a
+     * Block wired to the listeners of its roles.
+     *
+     * @throws IOException If the level cannot be read back.
+     */
+    @Test
+    void levelGridBlocksAreReadAsTiles() throws IOException {
+        LevelWriter level = new LevelWriter("tiles");
+        level.setGrid(0, 0, 20, 20, 10, 10);
+        level.addBlock(new Rectangle(new Point(0, 0), 20, 20), Color.RED, 1, LevelWriter.ROLE_REMOVE);
+        level.addBlock(new Rectangle(new Point(180, 180), 20, 20), Color.GREEN, 2, LevelWriter.ROLE_REMOVE_BALL);
+        level.addBlock(new Rectangle(new Point(0, 0), 20, 20), Color.GREEN, 4, LevelWriter.ROLE_SCORE);
+        ListenerGroup[] groups = new ListenerGroup[LevelWriter.ROLE_COMBINATIONS];
+        for (int roles = 0; roles < groups.length; roles++) {
+            groups[roles] = ListenerGroup.EMPTY;
+        }
+
+        LevelReader reader = LevelReader.read(level.toByteBuffer(), "test");
+        BlockGrid levelGrid = reader.createGrid();
+        List<Block> taken = new ArrayList<>();
+        BlockTiles levelTiles = reader.readTiles(levelGrid, groups, taken);
+
+        assertEquals(2, levelTiles.size());
+        assertEquals(1, levelTiles.getGameBlockCount());
+        assertEquals(Color.RED, levelTiles.getColor(0));
+        assertTrue(levelTiles.isGameBlock(0));
+        assertEquals(2, levelTiles.getHitPoints(99));
+        assertTrue(levelTiles.isDeathRegion(99));
+        assertEquals(1, taken.size());
+        assertEquals(Color.GREEN, taken.get(0).getColor());
+        assertEquals(4, taken.get(0).getHitPoints());
+        assertSameBounds(levelGrid.getCellRectangle(0), taken.get(0).getCollisionRectangle());
+    }
+
+    /**
+     * Cells whose sizes are not whole pixels are drawn edge to edge: neighboring cells share one outline, and
+     * every pixel between the outlines has the color of its cell. The tiles draw the same pixels as their Blocks.
+     */
+    @Test
+    void cellsOfFractionalSizeTileWithoutGaps() {
+        BlockGrid fractional = new BlockGrid(10.25, 20.5, 20 + 21 / 64.0, 12 + 37 / 64.0, 7, 5);
+        BlockTiles checkered = new BlockTiles(fractional, new Color[] {Color.RED, Color.GREEN});
+        int checkeredKind = checkered.addKind(ListenerGroup.EMPTY, true, false);
+        for (int cell = 0; cell < 7 * 5; cell++) {
+            assertTrue(checkered.put(cell, (cell / 7 + cell % 7) % 2, 1, checkeredKind));
+        }
+        BufferedImage tilesImage = image();
+        checkered.drawOn(new ImageDrawSurface(tilesImage));
+        BufferedImage blocksImage = image();
+        for (int cell = 0; cell < 7 * 5; cell++) {
+            checkered.getBlock(cell).drawOn(new ImageDrawSurface(blocksImage));
+        }
+
+        int[] columnEdges = new int[8];
+        for (int c = 0; c < columnEdges.length; c++) {
+            columnEdges[c] = (int) Math.round(fractional.getOriginX() + c * fractional.getCellWidth());
+        }
+        int[] rowEdges = new int[6];
+        for (int r = 0; r < rowEdges.length; r++) {
+            rowEdges[r] = (int) Math.round(fractional.getOriginY() + r * fractional.getCellHeight());
+        }
+        for (int y = 0; y < IMAGE_SIZE; y++) {
+            for (int x = 0; x < IMAGE_SIZE; x++) {
+                int column = Arrays.binarySearch(columnEdges, x);
+                int row = Arrays.binarySearch(rowEdges, y);
+                Color expected;
+                if (x < columnEdges[0] || x > columnEdges[7] || y < rowEdges[0] || y > rowEdges[5]) {
+                    expected = Color.BLUE;
+                } else if (column >= 0 || row >= 0) {
+                    expected = Color.BLACK;
+                } else {
+                    expected = (-column - 2 + -row - 2) % 2 == 0 ? Color.RED : Color.GREEN;
+                }
+                assertEquals(expected.getRGB(), tilesImage.getRGB(x, y), "pixel " + x + "," + y);
+                assertEquals(tilesImage.getRGB(x, y), blocksImage.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    /**
+     * Returns a square image filled with blue.
+     *
+     * @return The image.
+     */
+    private static BufferedImage image() {
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        ImageDrawSurface surface = new ImageDrawSurface(image);
+        surface.setColor(Color.BLUE);
+        surface.fillRectangle(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+        return image;
+    }
+
+    /**
+     * Asserts that two rectangles have the same upper-left corner and size.
+     *
+     * @param expected The expected rectangle.
+     * @param actual   The actual rectangle.
+     */
+    private static void assertSameBounds(Rectangle expected, Rectangle actual) {
+        assertEquals(expected.getUpperLeft().getX(), actual.getUpperLeft().getX());
+        assertEquals(expected.getUpperLeft().getY(), actual.getUpperLeft().getY());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+    }
+}
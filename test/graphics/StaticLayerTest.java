@@ -0,0 +1,148 @@
+package graphics;
+
+import geometry.Point;
+import geometry.Rectangle;
+import interfaces.Sprite;
+import listeners.Counter;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that repainting only the changed areas of a StaticLayer gives the same image as repainting all of it.
+ */
+class StaticLayerTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    /**
+     * Removes single blocks, whole rows of neighboring blocks and overlapping blocks from a drawn layer, adds new
+     * ones, and compares the repainted areas with a repaint of the whole layer, pixel for pixel.
+     */
+    @Test
+    void repaintedLayerMatchesFullPaint() {
+        Random random = new Random(7);
+        List<Block> blocks = new ArrayList<>();
+        for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 30; column++) {
+                blocks.add(block(20 + column * 25, 40 + row * 12, 25, 12, random));
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            blocks.add(block(random.nextDouble() * 760, random.nextDouble() * 560, 5 + random.nextDouble() * 40,
+                    5 + random.nextDouble() * 40, random));
+        }
+        StaticLayer layer = new StaticLayer(WIDTH, HEIGHT, Color.BLUE);
+        blocks.forEach(layer::add);
+        render(layer);
+
+        for (int round = 0; round < 5; round++) {
+            int row = random.nextInt(20);
+            for (int column = 3; column < 12; column++) {
+                Block neighbor = blocks.get(row * 30 + column);
+                if (layer.remove(neighbor)) {
+                    blocks.set(blocks.indexOf(neighbor), null);
+                }
+            }
+            for (int i = 0; i < 40; i++) {
+                int index = random.nextInt(blocks.size());
+                if (blocks.get(index) != null) {
+                    assertTrue(layer.remove(blocks.get(index)));
+                    blocks.set(index, null);
+                }
+            }
+            for (int i = 0; i < 10; i++) {
+                Block added = block(random.nextDouble() * 760, random.nextDouble() * 560, 3 + random.nextDouble() * 30,
+                        3 + random.nextDouble() * 30, random);
+                blocks.add(added);
+                layer.add(added);
+            }
+
+            BufferedImage repainted = render(layer);
+            assertSameImage(renderFully(layer), repainted);
+        }
+    }
+
+    /**
+     * Removes blocks that reach past the edges of the layer, which are clamped to its outermost buckets.
+     */
+    @Test
+    void blocksPastTheEdgesAreRepainted() {
+        Random random = new Random(3);
+        Block left = block(-20, 100, 40, 20, random);
+        Block bottom = block(300, 590, 50, 40, random);
+        Block under = block(0, 90, 60, 60, random);
+        StaticLayer layer = new StaticLayer(WIDTH, HEIGHT, Color.BLUE);
+        layer.add(under);
+        layer.add(left);
+        layer.add(bottom);
+        render(layer);
+        layer.remove(left);
+        layer.remove(bottom);
+
+        BufferedImage repainted = render(layer);
+        assertSameImage(renderFully(layer), repainted);
+    }
+
+    /**
+     * Draws a layer on a new image.
+     *
+     * @param layer The layer.
+     * @return The image.
+     */
+    private static BufferedImage render(StaticLayer layer) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        layer.drawOn(new ImageDrawSurface(image));
+        return image;
+    }
+
+    /**
+     * Draws a layer on a new image after making it repaint the whole image. Adding a sprite that is not a
+     * collidable makes the layer repaint everything; the sprite is removed again before drawing.
+     *
+     * @param layer The layer.
+     * @return The image.
+     */
+    private static BufferedImage renderFully(StaticLayer layer) {
+        Sprite unlocated = new ScoreIndicator(new Counter());
+        layer.add(unlocated);
+        layer.remove(unlocated);
+        return render(layer);
+    }
+
+    /**
+     * Checks that two images have the same pixels.
+     *
+     * @param expected The expected image.
+     * @param actual   The actual image.
+     */
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    /**
+     * Returns a block with the given bounds and a random color.
+     *
+     * @param x      The x-coordinate of the upper-left corner.
+     * @param y      The y-coordinate of the upper-left corner.
+     * @param width  The width of the block.
+     * @param height The height of the block.
+     * @param random The source of the color.
+     * @return The block.
+     */
+    private static Block block(double x, double y, double width, double height, Random random) {
+        return new Block(new Rectangle(new Point(x, y), width, height), new Color(random.nextInt(0xFFFFFF)), true,
+                false);
+    }
+}
@@ -0,0 +1,108 @@
+package graphics;
+
+import game.GameEnvironment;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for SweptCircle, which moves a ball through the game environment for one step.
+ */
+class SweptCircleTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * A ball fast enough to cross a thin block many times over in one step still hits the block and bounces
+     * back from its face, instead of tunneling through it.
+     */
+    @Test
+    void fastBallDoesNotTunnelThroughThinBlock() {
+        GameEnvironment environment = new GameEnvironment();
+        Block wall = block(environment, 400, 0, 0.5, HEIGHT);
+        double[] state = {300, 300, 200, 0};
+        HitBuffer hits = new HitBuffer();
+
+        SweptCircle.record(environment, state, 5, WIDTH, HEIGHT, 1, 0, hits, new RayHit());
+        assertEquals(1, hits.size());
+        assertSame(wall, hits.target(0));
+        assertEquals(400, hits.contactX(0), EPSILON);
+        assertEquals(300, hits.contactY(0), EPSILON);
+        assertEquals(290, state[SweptCircle.X], EPSILON);
+        assertEquals(-200, state[SweptCircle.DX]);
+    }
+
+    /**
+     * A ball moving straight at the corner of a block meets the corner of the block grown by its radius. The hit
+     * is reported at the corner of the block, and the ball bounces back along both axes.
+     */
+    @Test
+    void cornerOfGrownBlockIsHit() {
+        GameEnvironment environment = new GameEnvironment();
+        Block block = block(environment, 100, 100, 100, 100);
+        double[] state = {70, 70, 40, 40};
+        HitBuffer hits = new HitBuffer();
+
+        SweptCircle.record(environment, state, 10, WIDTH, HEIGHT, 1, 0, hits, new RayHit());
+        assertEquals(1, hits.size());
+        assertSame(block, hits.target(0));
+        assertEquals(100, hits.contactX(0), EPSILON);
+        assertEquals(100, hits.contactY(0), EPSILON);
+        assertEquals(40, hits.velocityX(0));
+        assertEquals(40, hits.velocityY(0));
+        assertEquals(70, state[SweptCircle.X], EPSILON);
+        assertEquals(70, state[SweptCircle.Y], EPSILON);
+        assertEquals(-40, state[SweptCircle.DX]);
+        assertEquals(-40, state[SweptCircle.DY]);
+    }
+
+    /**
+     * A ball trapped in a narrow gap at a high speed stops after eight impacts in a step, still inside the gap,
+     * and goes on bouncing in the next step.
+     */
+    @Test
+    void impactsPerStepAreCapped() {
+        GameEnvironment environment = new GameEnvironment();
+        block(environment, 0, 0, 100, HEIGHT);
+        block(environment, 120, 0, 100, HEIGHT);
+        double[] state = {110, 300, 1000, 0};
+        HitBuffer hits = new HitBuffer();
+
+        SweptCircle.record(environment, state, 5, WIDTH, HEIGHT, 1, 0, hits, new RayHit());
+        assertEquals(8, hits.size());
+        for (int h = 0; h < hits.size(); h++) {
+            assertEquals(h % 2 == 0 ? 120 : 100, hits.contactX(h), EPSILON, "hit " + h);
+        }
+        assertTrue(state[SweptCircle.X] >= 105 - EPSILON && state[SweptCircle.X] <= 115 + EPSILON);
+        assertEquals(1000, Math.abs(state[SweptCircle.DX]));
+
+        hits.clear();
+        SweptCircle.record(environment, state, 5, WIDTH, HEIGHT, 1, 0, hits, new RayHit());
+        assertEquals(8, hits.size());
+        assertTrue(state[SweptCircle.X] >= 105 - EPSILON && state[SweptCircle.X] <= 115 + EPSILON);
+    }
+
+    /**
+     * Adds a block that is not a game block nor a death region to the environment.
+     *
+     * @param environment The environment to add the block to.
+     * @param left        The x-coordinate of the left edge of the block.
+     * @param top         The y-coordinate of the top edge of the block.
+     * @param width       The width of the block.
+     * @param height      The height of the block.
+     * @return The block.
+     */
+    private static Block block(GameEnvironment environment, double left, double top, double width, double height) {
+        Block block = new Block(new Rectangle(new Point(left, top), width, height), Color.BLUE, false, false);
+        environment.addCollidable(block);
+        return block;
+    }
+}
@@ -0,0 +1,138 @@
+package listeners;
+
+import geometry.Point;
+import geometry.Rectangle;
+import graphics.Ball;
+import graphics.Block;
+import interfaces.HitListener;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for ListenerGroup, the immutable, interned and weakly held lists of hit listeners shared by blocks.
+ */
+class ListenerGroupTest {
+    private static final int GC_ATTEMPTS = 50;
+
+    /**
+     * Groups with the same listeners in the same order are the same instance, however they were built, and
+     * groups with the same listeners in another order are not.
+     */
+    @Test
+    void equalListsAreInterned() {
+        HitListener first = new ScoreTrackingListener(new Counter());
+        HitListener second = new ScoreTrackingListener(new Counter());
+        HitListener third = new ScoreTrackingListener(new Counter());
+
+        ListenerGroup added = ListenerGroup.EMPTY.with(first).with(second);
+        ListenerGroup removed = ListenerGroup.EMPTY.with(first).with(third).with(second).without(third);
+        ListenerGroup rebuilt = ListenerGroup.EMPTY.with(third).without(third).with(first).with(second);
+        assertSame(added, removed);
+        assertSame(added, rebuilt);
+        assertSame(ListenerGroup.EMPTY, added.without(first).without(second));
+
+        ListenerGroup reversed = ListenerGroup.EMPTY.with(second).with(first);
+        assertNotEquals(added, reversed);
+        assertEquals(2, reversed.size());
+        assertSame(second, reversed.get(0));
+    }
+
+    /**
+     * Adding or removing a listener gives a new group and leaves the old one as it was, and removing a listener
+     * the group does not hold gives the same group.
+     */
+    @Test
+    void groupsAreImmutable() {
+        HitListener first = new ScoreTrackingListener(new Counter());
+        HitListener second = new ScoreTrackingListener(new Counter());
+
+        ListenerGroup one = ListenerGroup.EMPTY.with(first);
+        ListenerGroup two = one.with(second);
+        assertEquals(1, one.size());
+        assertSame(first, one.get(0));
+        assertEquals(2, two.size());
+
+        ListenerGroup withoutFirst = two.without(first);
+        assertEquals(1, withoutFirst.size());
+        assertSame(second, withoutFirst.get(0));
+        assertEquals(2, two.size());
+        assertSame(first, two.get(0));
+        assertSame(second, two.get(1));
+        assertSame(one, one.without(second));
+        assertEquals(0, ListenerGroup.EMPTY.size());
+    }
+
+    /**
+     * A listener that adds another listener to the block it is notified for does not change the group being
+     * notified, so the new listener only hears the next hit.
+     */
+    @Test
+    void listenersAddedDuringANotificationHearTheNextHit() {
+        Block block = new Block(new Rectangle(new Point(0, 0), 10, 10), Color.RED, true, false);
+        Ball ball = new Ball(5, 20, 3, Color.WHITE);
+        List<String> heard = new ArrayList<>();
+        HitListener late = (beingHit, hitter) -> heard.add("late");
+        block.addHitListener((beingHit, hitter) -> {
+            heard.add("early");
+            beingHit.addHitListener(late);
+        });
+
+        block.notifyHit(ball);
+        assertEquals(List.of("early"), heard);
+        block.notifyHit(ball);
+        assertEquals(List.of("early", "early", "late"), heard);
+    }
+
+    /**
+     * A group that nothing holds any more is collected with its listeners, even though it was interned and was
+     * the last group built from the empty group.
+     */
+    @Test
+    void unusedGroupsAreCollected() {
+        WeakReference<?>[] references = unusedGroup();
+        for (int attempt = 0; attempt < GC_ATTEMPTS && !cleared(references); attempt++) {
+            System.gc();
+            byte[][] garbage = new byte[64][];
+            for (int i = 0; i < garbage.length; i++) {
+                garbage[i] = new byte[1 << 16];
+            }
+        }
+        assertNull(references[0].get());
+        assertNull(references[1].get());
+    }
+
+    /**
+     * Builds a group of one new listener from the empty group and lets go of both.
+     *
+     * @return Weak references to the group and to its listener.
+     */
+    private static WeakReference<?>[] unusedGroup() {
+        HitListener listener = new ScoreTrackingListener(new Counter());
+        ListenerGroup group = ListenerGroup.EMPTY.with(listener);
+        return new WeakReference<?>[] {new WeakReference<>(group), new WeakReference<>(listener)};
+    }
+
+    /**
+     * Checks if every reference was cleared.
+     *
+     * @param references The references.
+     * @return true if no reference still refers to its object.
+     */
+    private static boolean cleared(WeakReference<?>[] references) {
+        for (WeakReference<?> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for VectorBallKernel, which must move the same balls to the same places as the scalar BallKernel.
+ */
+class VectorBallKernelTest {
+    private static final int WIDTH = 800;
+    private static final int BALLS = 1000;
+    private static final int BOXES = 40;
+    private static final int ROUNDS = 50;
+
+    /**
+     * The kernel runs on this machine, and the ball system creates it when the module is added.
+     */
+    @Test
+    void vectorKernelIsUsed() {
+        assertTrue(new VectorBallKernel().isSupported());
+        assertTrue(BallKernel.create() instanceof VectorBallKernel);
+    }
+
+    /**
+     * On random balls and boxes, over ranges that do not start or end on a whole vector, the vector kernel marks
+     * and moves exactly the balls the scalar kernel does, to the same bits.
+     */
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        Random random = new Random(3);
+        BallKernel scalar = new BallKernel();
+        BallKernel vector = new VectorBallKernel();
+        for (int round = 0; round < ROUNDS; round++) {
+            double[][] state = new double[6][BALLS];
+            int[] radius = new int[BALLS];
+            boolean[] removed = new boolean[BALLS];
+            for (int i = 0; i < BALLS; i++) {
+                state[BallKernel.X][i] = random.nextDouble() * WIDTH;
+                state[BallKernel.Y][i] = random.nextDouble() * 600;
+                state[BallKernel.DX][i] = (random.nextDouble() - 0.5) * 20;
+                state[BallKernel.DY][i] = (random.nextDouble() - 0.5) * 20;
+                radius[i] = 1 + random.nextInt(8);
+                removed[i] = random.nextInt(20) == 0;
+            }
+            double[][] boxes = new double[4][BOXES];
+            int boxCount = random.nextInt(BOXES + 1);
+            for (int b = 0; b < boxCount; b++) {
+                boxes[BallKernel.LEFT][b] = random.nextDouble() * WIDTH;
+                boxes[BallKernel.TOP][b] = random.nextDouble() * 600;
+                boxes[BallKernel.RIGHT][b] = boxes[BallKernel.LEFT][b] + random.nextDouble() * 60;
+                boxes[BallKernel.BOTTOM][b] = boxes[BallKernel.TOP][b] + random.nextDouble() * 30;
+            }
+            int from = random.nextInt(7);
+            int to = BALLS - random.nextInt(7);
+            double dt = round % 2 == 0 ? 1 : random.nextDouble();
+
+            double[][] scalarState = copy(state);
+            boolean[] scalarMoved = new boolean[BALLS];
+            scalar.moveClear(scalarState, radius, removed, boxes, boxCount, WIDTH, dt, from, to, scalarMoved);
+            double[][] vectorState = copy(state);
+            boolean[] vectorMoved = new boolean[BALLS];
+            vector.moveClear(vectorState, radius, removed, boxes, boxCount, WIDTH, dt, from, to, vectorMoved);
+
+            assertArrayEquals(scalarMoved, vectorMoved, "round " + round);
+            for (int k = 0; k < state.length; k++) {
+                assertArrayEquals(scalarState[k], vectorState[k], "round " + round + ", array " + k);
+            }
+        }
+    }
+
+    /**
+     * Some balls of a batch are moved and some are not, so the kernel's blend is tested in both directions.
+     */
+    @Test
+    void batchesMixMovedAndBlockedBalls() {
+        double[][] state = new double[6][BALLS];
+        int[] radius = new int[BALLS];
+        boolean[] removed = new boolean[BALLS];
+        for (int i = 0; i < BALLS; i++) {
+            state[BallKernel.X][i] = 10 + (i % 2) * 400;
+            state[BallKernel.Y][i] = 300;
+            state[BallKernel.DX][i] = 1;
+            radius[i] = 5;
+        }
+        // A box around every other ball
+        double[][] boxes = {{400}, {290}, {420}, {310}};
+        boolean[] moved = new boolean[BALLS];
+        new VectorBallKernel().moveClear(state, radius, removed, boxes, 1, WIDTH, 1, 0, BALLS, moved);
+        for (int i = 0; i < BALLS; i++) {
+            assertEquals(i % 2 == 0, moved[i], "ball " + i);
+            assertEquals(i % 2 == 0 ? 11 : 410, state[BallKernel.X][i], "ball " + i);
+        }
+    }
+
+    /**
+     * Returns a deep copy of the state arrays.
+     *
+     * @param state The state arrays.
+     * @return The copy.
+     */
+    private static double[][] copy(double[][] state) {
+        double[][] copy = new double[state.length][];
+        for (int k = 0; k < state.length; k++) {
+            copy[k] = state[k].clone();
+        }
+        return copy;
+    }
+}
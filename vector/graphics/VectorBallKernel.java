@@ -0,0 +1,134 @@
+package graphics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorBallKernel class is the BallKernel built on the Vector API. It loads as many balls as fit in a
+ * vector register, tests all of them against one box per instruction, and stops early once every ball of the
+ * batch overlaps some box. The clear balls of the batch are then moved by blending. The balls left
+ * over at the end of a range are moved by the scalar kernel. The arithmetic is the same as in the scalar
+ * kernel, lane by lane, so both kernels move the same balls to the same places.
+ * <p>
+ * The class is compiled only by the "vector" build profile, and must run with the module added:
+ * <pre>
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ */
+class VectorBallKernel extends BallKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class,
+            VectorShape.forBitSize(Math.max(64, DOUBLES.vectorBitSize() / 2)));
+    private static final DoubleVector ZERO = DoubleVector.zero(DOUBLES);
+
+    private double[] flags;
+
+    /**
+     * Constructs a VectorBallKernel.
+     */
+    VectorBallKernel() {
+        this.flags = new double[DOUBLES.length()];
+    }
+
+    /**
+     * Returns a new VectorBallKernel, with its own scratch arrays.
+     *
+     * @return The new kernel.
+     */
+    @Override
+    BallKernel newKernel() {
+        return new VectorBallKernel();
+    }
+
+    /**
+     * Returns the name of the kernel, for reports.
+     *
+     * @return The name, with the number of lanes.
+     */
+    @Override
+    String getName() {
+        return "vector x" + DOUBLES.length();
+    }
+
+    /**
+     * Returns whether the machine has vectors of at least two doubles, with as many ints in half their width.
+     *
+     * @return true if the kernel can run on this machine.
+     */
+    @Override
+    boolean isSupported() {
+        return DOUBLES.length() >= 2 && INTS.length() == DOUBLES.length();
+    }
+
+    /**
+     * Moves the balls in [from, to) that are clear of all boxes and of the edges of the game area, a vector of
+     * balls at a time, and marks which balls were moved.
+     *
+     * @param state    The positions and velocities of the balls, indexed by X, Y, DX, DY, PREVIOUS_X and
+     *                 PREVIOUS_Y.
+     * @param radius   The radii of the balls.
+     * @param removed  Whether each ball was removed; removed balls are not moved.
+     * @param boxes    The bounds of the collidables, indexed by LEFT, TOP, RIGHT and BOTTOM.
+     * @param boxCount The number of boxes.
+     * @param width    The width of the game area.
+     * @param dt       The length of the step, in frames of 1/60 second.
+     * @param from     The index of the first ball.
+     * @param to       The index after the last ball.
+     * @param moved    Receives true for each ball that was moved, and false for the others.
+     */
+    @Override
+    void moveClear(double[][] state, int[] radius, boolean[] removed, double[][] boxes, int boxCount, int width,
+                   double dt, int from, int to, boolean[] moved) {
+        double[] xs = state[X];
+        double[] ys = state[Y];
+        double[] previousXs = state[PREVIOUS_X];
+        double[] previousYs = state[PREVIOUS_Y];
+        double[] left = boxes[LEFT];
+        double[] top = boxes[TOP];
+        double[] right = boxes[RIGHT];
+        double[] bottom = boxes[BOTTOM];
+        int lanes = DOUBLES.length();
+        int i = from;
+        for (; i + lanes <= to; i += lanes) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, xs, i);
+            DoubleVector y = DoubleVector.fromArray(DOUBLES, ys, i);
+            DoubleVector r = (DoubleVector) IntVector.fromArray(INTS, radius, i)
+                    .convertShape(VectorOperators.I2D, DOUBLES, 0);
+            DoubleVector nextX = x.add(DoubleVector.fromArray(DOUBLES, state[DX], i).mul(dt));
+            DoubleVector nextY = y.add(DoubleVector.fromArray(DOUBLES, state[DY], i).mul(dt));
+
+            // The balls that leave the game area or were removed are left to the sweep
+            VectorMask<Double> blocked = VectorMask.fromArray(DOUBLES, removed, i)
+                    .or(nextX.sub(r).compare(VectorOperators.LT, 0))
+                    .or(nextX.add(r).compare(VectorOperators.GT, width))
+                    .or(nextY.sub(r).compare(VectorOperators.LT, 0));
+            DoubleVector minX = x.min(nextX).sub(r).sub(MARGIN);
+            DoubleVector maxX = x.max(nextX).add(r).add(MARGIN);
+            DoubleVector minY = y.min(nextY).sub(r).sub(MARGIN);
+            DoubleVector maxY = y.max(nextY).add(r).add(MARGIN);
+            for (int b = 0; b < boxCount && !blocked.allTrue(); b++) {
+                VectorMask<Double> apart = minX.compare(VectorOperators.GT, right[b])
+                        .or(maxX.compare(VectorOperators.LT, left[b]))
+                        .or(minY.compare(VectorOperators.GT, bottom[b]))
+                        .or(maxY.compare(VectorOperators.LT, top[b]));
+                blocked = blocked.or(apart.not());
+            }
+
+            // Blend and store whole vectors: masked stores and mask stores box their arguments on some JDKs
+            VectorMask<Double> clear = blocked.not();
+            DoubleVector.fromArray(DOUBLES, previousXs, i).blend(x, clear).intoArray(previousXs, i);
+            DoubleVector.fromArray(DOUBLES, previousYs, i).blend(y, clear).intoArray(previousYs, i);
+            x.blend(nextX, clear).intoArray(xs, i);
+            y.blend(nextY, clear).intoArray(ys, i);
+            ZERO.blend(1, clear).intoArray(flags, 0);
+            for (int lane = 0; lane < lanes; lane++) {
+                moved[i + lane] = flags[lane] != 0;
+            }
+        }
+        super.moveClear(state, radius, removed, boxes, boxCount, width, dt, i, to, moved);
+    }
+}